@@ -0,0 +1,111 @@
+package Bench;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Project.AppointmentService;
+import Project.ContactService;
+import Project.TaskService;
+import Server.BinaryClient;
+import Server.BinaryServer;
+
+/**
+ * JMH benchmark for reading a task from a BinaryServer on loopback, one
+ * connection per client thread, with 1, 64 and 256 requests pipelined per
+ * round trip. Scores are in single reads per second, so the pipelined
+ * results compare directly with the unpipelined one.
+ *
+ * @author Stewart Withrow
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class BinaryServerBenchmark {
+
+	/**
+	 * The server, shared by every client thread.
+	 */
+	@State(Scope.Benchmark)
+	public static class ServerState {
+		BinaryServer server;
+		int taskID;
+
+		@Setup(Level.Trial)
+		public void setUp() throws IOException {
+			TaskService taskService = new TaskService();
+			taskID = taskService.addTask("Benchmark", "Read over the binary protocol");
+			server = new BinaryServer(new InetSocketAddress("127.0.0.1", 0), new ContactService(), taskService,
+					new AppointmentService());
+			server.start();
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			server.close();
+			TaskService.tasks.clear();
+		}
+	}
+
+	/**
+	 * One connection per client thread.
+	 */
+	@State(Scope.Thread)
+	public static class ClientState {
+		BinaryClient client;
+
+		@Setup(Level.Trial)
+		public void setUp(ServerState server) throws IOException {
+			client = new BinaryClient(new InetSocketAddress("127.0.0.1", server.server.getPort()));
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws IOException {
+			client.close();
+		}
+	}
+
+	@Benchmark
+	public List<BinaryClient.Reply> getTask1(ServerState server, ClientState state) throws IOException {
+		return pipeline(server, state, 1);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(64)
+	public List<BinaryClient.Reply> getTask64(ServerState server, ClientState state) throws IOException {
+		return pipeline(server, state, 64);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(256)
+	public List<BinaryClient.Reply> getTask256(ServerState server, ClientState state) throws IOException {
+		return pipeline(server, state, 256);
+	}
+
+	private static List<BinaryClient.Reply> pipeline(ServerState server, ClientState state, int depth)
+			throws IOException {
+		for (int i = 0; i < depth; i++) {
+			state.client.getTask(server.taskID);
+		}
+		return state.client.flush();
+	}
+}
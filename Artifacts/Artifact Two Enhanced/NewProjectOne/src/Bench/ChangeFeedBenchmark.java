@@ -0,0 +1,82 @@
+package Bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Project.ChangeFeed;
+
+/**
+ * JMH benchmark for publishing to a ChangeFeed with 0, 1 and 3 subscribers,
+ * at 1 and 4 publishing threads. Each operation publishes one task delete
+ * straight to the feed, so the numbers are the feed's own cost. Run with
+ * -prof gc to confirm publishing allocates nothing.
+ *
+ * @author Stewart Withrow
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChangeFeedBenchmark {
+
+	@Param({"0", "1", "3"})
+	public int subscribers;
+
+	@Param({"1024"})
+	public int capacity;
+
+	private ChangeFeed feed;
+	private final AtomicLong handled = new AtomicLong();
+
+	/**
+	 * Creates the feed and starts its subscribers.
+	 */
+	@Setup(Level.Iteration)
+	public void setUp() {
+		feed = new ChangeFeed(capacity);
+		for (int i = 0; i < subscribers; i++) {
+			feed.subscribe("bench-subscriber-" + i, 256, (event, endOfBatch) -> {
+				if (endOfBatch) {
+					handled.lazySet(event.getSequence());
+				}
+			});
+		}
+	}
+
+	/**
+	 * Stops the subscribers.
+	 */
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		feed.close();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void publish1() {
+		feed.taskDeleted(1);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void publish4() {
+		feed.taskDeleted(1);
+	}
+}
@@ -0,0 +1,88 @@
+package Bench;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Project.ContactService;
+
+/**
+ * JMH throughput benchmark for the ContactService name indexes.
+ * A million contacts get generated last names of five letters, so a
+ * two-letter prefix matches about 1,500 names and an autocomplete query
+ * returns the first ten.
+ *
+ * @author Stewart Withrow
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContactSearchBenchmark {
+
+	private static final int PRELOAD = 1_000_000;
+
+	private ContactService service;
+
+	/**
+	 * Loads the shared map with contacts whose last names are spread over the alphabet.
+	 */
+	@Setup
+	public void setUp() {
+		ContactService.contacts.clear();
+		service = new ContactService();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		char[] name = new char[5];
+		for (int i = 0; i < PRELOAD; i++) {
+			for (int c = 0; c < name.length; c++) {
+				name[c] = (char) ('a' + random.nextInt(26));
+			}
+			service.addContact("John", new String(name), "1234567891", "123 Main Street");
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	public List<String> prefix01() {
+		return prefixQuery();
+	}
+
+	@Benchmark
+	@Threads(16)
+	public List<String> prefix16() {
+		return prefixQuery();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public List<String> exact01() {
+		return service.findByLastName(randomLetters(5));
+	}
+
+	private List<String> prefixQuery() {
+		return service.searchLastName(randomLetters(2), 10);
+	}
+
+	private static String randomLetters(int length) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		char[] letters = new char[length];
+		for (int i = 0; i < length; i++) {
+			letters[i] = (char) ('a' + random.nextInt(26));
+		}
+		return new String(letters);
+	}
+}
@@ -0,0 +1,86 @@
+package Bench;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Project.ContactService;
+
+/**
+ * JMH contention benchmark for ContactService.
+ * Each operation is a mix of one add, one edit and one delete against a
+ * shared service, measured at 1, 4, 16 and 64 threads.
+ * 
+ * @author Stewart Withrow
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContactServiceBenchmark {
+	
+	// Number of contacts loaded before each iteration so edits and deletes hit live entries
+	private static final int PRELOAD = 100_000;
+	
+	private ContactService service;
+	
+	/**
+	 * Resets the shared map and preloads it with contacts.
+	 */
+	@Setup(Level.Iteration)
+	public void setUp() {
+		ContactService.contacts.clear();
+		service = new ContactService();
+		for (int i = 0; i < PRELOAD; i++) {
+			service.addContact("John", "Smith", "1234567891", "123 Main Street");
+		}
+	}
+	
+	@Benchmark
+	@Threads(1)
+	public void mixed01() {
+		mixedOperation();
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public void mixed04() {
+		mixedOperation();
+	}
+	
+	@Benchmark
+	@Threads(16)
+	public void mixed16() {
+		mixedOperation();
+	}
+	
+	@Benchmark
+	@Threads(64)
+	public void mixed64() {
+		mixedOperation();
+	}
+	
+	/**
+	 * Adds a contact, edits a random existing one and deletes another.
+	 */
+	private void mixedOperation() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		service.addContact("Mark", "Hall", "9876543210", "123 Holly Street");
+		service.editFirstName(Integer.toString(random.nextInt(PRELOAD)), "Greg");
+		service.deleteContact(Integer.toString(random.nextInt(PRELOAD)));
+	}
+}
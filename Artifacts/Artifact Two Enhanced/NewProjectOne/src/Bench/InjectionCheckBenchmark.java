@@ -0,0 +1,66 @@
+package Bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Project.InputValidator;
+
+/**
+ * JMH comparison of the old regex injection check against the bitmap
+ * scan in InputValidator. Inputs are clean, so both have to read the
+ * whole field, which is the common case on the add and edit paths.
+ * Run with -prof gc to see the per-call Matcher allocation.
+ * 
+ * @author Stewart Withrow
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InjectionCheckBenchmark {
+	
+	// The pattern the entity classes used before InputValidator
+	private static final Pattern INJECTION_PATTERN = Pattern.compile("[<>\"'%;()&+]");
+	
+	@Param({"10", "30", "50"})
+	public int length;
+	
+	private String input;
+	
+	/**
+	 * Builds a clean field of the requested length.
+	 */
+	@Setup
+	public void setUp() {
+		StringBuilder builder = new StringBuilder(length);
+		String source = "123 Main Street Springfield ";
+		for (int i = 0; i < length; i++) {
+			builder.append(source.charAt(i % source.length()));
+		}
+		input = builder.toString();
+	}
+	
+	@Benchmark
+	public boolean regex() {
+		return INJECTION_PATTERN.matcher(input).find();
+	}
+	
+	@Benchmark
+	public boolean bitmap() {
+		return InputValidator.containsIllegalCharacters(input);
+	}
+}
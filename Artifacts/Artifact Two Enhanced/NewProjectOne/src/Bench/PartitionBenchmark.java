@@ -0,0 +1,123 @@
+package Bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Project.BatchResult;
+import Project.TaskService;
+
+/**
+ * JMH benchmark comparing one task map with a partitioned one, with and
+ * without a writer per shard. The mixed runs add a task and edit a random
+ * preloaded one from many threads; the scan and batch runs measure the
+ * fork/join fan-out across shards. Run on a machine with at least as many
+ * cores as shards for the partitioned numbers to mean anything.
+ *
+ * @author Stewart Withrow
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PartitionBenchmark {
+
+	private static final int PRELOAD = 100_000;
+
+	private static final int BATCH = 1000;
+
+	@Param({"1", "16"})
+	public int shards;
+
+	@Param({"false", "true"})
+	public boolean singleWriter;
+
+	private TaskService service;
+	private List<String[]> batch;
+
+	/**
+	 * Preloads the task map, then partitions it and starts the writers.
+	 */
+	@Setup(Level.Iteration)
+	public void setUp() {
+		TaskService.tasks.clear();
+		service = new TaskService();
+		for (int i = 0; i < PRELOAD; i++) {
+			service.addTask("Task", "Preloaded task");
+		}
+		service.partition(shards);
+		if (singleWriter) {
+			service.startWriter(1024);
+		}
+		batch = new ArrayList<String[]>(BATCH);
+		for (int i = 0; i < BATCH; i++) {
+			batch.add(new String[] {"Batch", "Added in a batch"});
+		}
+	}
+
+	/**
+	 * Stops the writers and puts the map back to one shard.
+	 */
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		service.stopWriter();
+		service.partition(1);
+		TaskService.tasks.clear();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void mixed01() {
+		mixedOperation();
+	}
+
+	@Benchmark
+	@Threads(16)
+	public void mixed16() {
+		mixedOperation();
+	}
+
+	@Benchmark
+	@Threads(64)
+	public void mixed64() {
+		mixedOperation();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public int scan() {
+		return service.findTasks(task -> task.getVersion() > 0).size();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public BatchResult addBatch() {
+		return service.addTasks(batch);
+	}
+
+	/**
+	 * Adds a task and edits a random preloaded one.
+	 */
+	private void mixedOperation() {
+		service.addTask("New task", "Added under load");
+		service.editTask(ThreadLocalRandom.current().nextInt(PRELOAD), "Edited", "Edited under load");
+	}
+}
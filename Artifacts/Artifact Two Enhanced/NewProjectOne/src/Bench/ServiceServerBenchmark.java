@@ -0,0 +1,86 @@
+package Bench;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Project.AppointmentService;
+import Project.ContactService;
+import Project.TaskService;
+import Server.ServiceServer;
+
+/**
+ * JMH benchmark for reading one task over HTTP from a ServiceServer on
+ * loopback, at 1 and 64 client threads. Sample mode reports the latency
+ * percentiles, so p99 can be read straight from the results; the client
+ * shares the machine, so run it on more cores than the server needs.
+ *
+ * @author Stewart Withrow
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceServerBenchmark {
+
+	private ServiceServer server;
+	private HttpClient client;
+	private HttpRequest readTask;
+
+	/**
+	 * Starts the server with one task and a client for it.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		TaskService taskService = new TaskService();
+		int taskID = taskService.addTaskAsync("Benchmark", "Read over HTTP").join();
+		server = new ServiceServer(new InetSocketAddress("127.0.0.1", 0), new ContactService(), taskService,
+				new AppointmentService());
+		server.start();
+		client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		readTask = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + "/tasks/" + taskID))
+				.GET().build();
+	}
+
+	/**
+	 * Stops the server and clears the shared map.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		client.close();
+		server.close();
+		TaskService.tasks.clear();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public byte[] readTask1() throws Exception {
+		return client.send(readTask, HttpResponse.BodyHandlers.ofByteArray()).body();
+	}
+
+	@Benchmark
+	@Threads(64)
+	public byte[] readTask64() throws Exception {
+		return client.send(readTask, HttpResponse.BodyHandlers.ofByteArray()).body();
+	}
+}
@@ -0,0 +1,122 @@
+package Bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Project.TaskService;
+import Project.WriteAheadLog;
+
+/**
+ * JMH benchmark comparing single-writer mode with callers taking the lock
+ * themselves, on one hot TaskService. Each operation adds a task and edits
+ * a random preloaded one. The logged runs write to a log synced on every
+ * write, where the writer's one commit per batch matters most; run them on
+ * the disk being measured by pointing java.io.tmpdir there.
+ *
+ * @author Stewart Withrow
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SingleWriterBenchmark {
+
+	private static final int PRELOAD = 100_000;
+
+	@Param({"false", "true"})
+	public boolean singleWriter;
+
+	@Param({"false", "true"})
+	public boolean logged;
+
+	private Path directory;
+	private WriteAheadLog log;
+	private TaskService service;
+
+	/**
+	 * Preloads the task map, then opens the service in the mode being measured.
+	 * @throws IOException if the log cannot be created
+	 */
+	@Setup(Level.Iteration)
+	public void setUp() throws IOException {
+		TaskService.tasks.clear();
+		if (logged) {
+			directory = Files.createTempDirectory("writer-bench");
+			log = WriteAheadLog.open(directory, WriteAheadLog.SyncPolicy.EVERY_WRITE, 0, true);
+			service = new TaskService(log);
+		} else {
+			service = new TaskService();
+		}
+		for (int i = 0; i < PRELOAD; i++) {
+			service.addTask("Task", "Preloaded task");
+		}
+		if (singleWriter) {
+			service.startWriter(1024);
+		}
+	}
+
+	/**
+	 * Stops the writer and removes the log.
+	 * @throws IOException if the log cannot be closed
+	 */
+	@TearDown(Level.Iteration)
+	public void tearDown() throws IOException {
+		service.stopWriter();
+		if (log != null) {
+			log.close();
+			try (Stream<Path> paths = Files.walk(directory)) {
+				paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+			}
+			log = null;
+		}
+		TaskService.tasks.clear();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void mixed01() {
+		mixedOperation();
+	}
+
+	@Benchmark
+	@Threads(16)
+	public void mixed16() {
+		mixedOperation();
+	}
+
+	@Benchmark
+	@Threads(64)
+	public void mixed64() {
+		mixedOperation();
+	}
+
+	/**
+	 * Adds a task and edits a random preloaded one.
+	 */
+	private void mixedOperation() {
+		service.addTask("New task", "Added under load");
+		service.editTask(ThreadLocalRandom.current().nextInt(PRELOAD), "Edited", "Edited under load");
+	}
+}
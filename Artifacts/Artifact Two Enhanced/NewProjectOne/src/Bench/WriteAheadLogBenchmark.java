@@ -0,0 +1,90 @@
+package Bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Project.ContactService;
+import Project.WriteAheadLog;
+
+/**
+ * JMH benchmark for durable mutations through the write-ahead log.
+ * Each operation adds a contact through a logged service. Runs every sync
+ * policy with and without group commit, at 1 and 64 threads; run it on the
+ * disk being measured by pointing java.io.tmpdir there.
+ * 
+ * @author Stewart Withrow
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteAheadLogBenchmark {
+	
+	@Param({"EVERY_WRITE", "INTERVAL", "OS"})
+	public String policy;
+	
+	@Param({"true", "false"})
+	public boolean groupCommit;
+	
+	private Path directory;
+	private WriteAheadLog log;
+	private ContactService service;
+	
+	/**
+	 * Opens a fresh log and a service that writes to it.
+	 * @throws IOException if the log cannot be created
+	 */
+	@Setup(Level.Iteration)
+	public void setUp() throws IOException {
+		ContactService.contacts.clear();
+		directory = Files.createTempDirectory("wal-bench");
+		log = WriteAheadLog.open(directory, WriteAheadLog.SyncPolicy.valueOf(policy), 5, groupCommit);
+		service = new ContactService(log);
+	}
+	
+	/**
+	 * Closes the log and deletes its files.
+	 * @throws IOException if the log cannot be closed
+	 */
+	@TearDown(Level.Iteration)
+	public void tearDown() throws IOException {
+		log.close();
+		try (Stream<Path> paths = Files.walk(directory)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+		ContactService.contacts.clear();
+	}
+	
+	@Benchmark
+	@Threads(1)
+	public void add01() {
+		service.addContact("Mark", "Hall", "9876543210", "123 Holly Street");
+	}
+	
+	@Benchmark
+	@Threads(64)
+	public void add64() {
+		service.addContact("Mark", "Hall", "9876543210", "123 Holly Street");
+	}
+}
@@ -1,13 +1,21 @@
 package Project;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
-import java.util.regex.Pattern;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Arrays;
 
 /**
  * Class with basic appointment information such as date and description.
  * Provides validation for all fields upon creation.
+ * The date is kept as epoch milliseconds and handed in and out as a fresh
+ * Date, so a caller changing its own Date cannot move a stored appointment
+ * out from under the service's date index and booking tree.
  * 
  * @author Stewart Withrow
  */
@@ -15,17 +23,33 @@ public class Appointment {
 
 	private static final int ID_MAX_LENGTH = 10;
 	private static final int DESC_MAX_LENGTH = 50;
+	private static final int DURATION_MAX_MINUTES = 24 * 60;
+	private static final long MILLIS_PER_MINUTE = 60_000L;
+	
+	// Field bits reported by checkFields
+	public static final int FIELD_APPT_ID = 1;
+	public static final int FIELD_DATE = 1 << 1;
+	public static final int FIELD_DESCRIPTION = 1 << 2;
+	public static final int FIELD_DURATION = 1 << 3;
 	
-	// Pattern to detect common injection characters
-	private static final Pattern INJECTION_PATTERN = Pattern.compile("[<>\"'%;()&+]");
 	// Blacklist of forbidden substrings to prevent SQL/Script injection
-	private static final HashSet<String> BLACKLIST = new HashSet<>(Arrays.asList(
+	private static final List<String> DEFAULT_BLACKLIST = Arrays.asList(
 	    "DROP TABLE", "DELETE FROM", "UPDATE", "INSERT", "<script>", "alert(", "SELECT *"
-	));
+	);
+	// Compiled blacklist, swapped as a whole when a new list is loaded
+	private static volatile BlacklistMatcher blacklist = new BlacklistMatcher(DEFAULT_BLACKLIST, false);
 	
-	private String apptID;
-	private Date date;
+	private int apptID;
+	// Scheduled time in milliseconds since the epoch
+	private long time;
 	private String description;
+	private int durationMinutes;
+	
+	// Goes up by one with every edit the service publishes
+	private long version;
+	
+	// Set once AppointmentService publishes the appointment; setters then throw
+	private boolean frozen;
 			
 	/**
      * Constructs an Appointment with validated fields.
@@ -40,25 +64,112 @@ public class Appointment {
 	    validateDate(date);
 	    validateDescription(description);
 	    
+	    setApptID(Integer.parseInt(apptID));
+	    setDate(date);
+	    setDescription(description);
+	}
+	
+	/**
+     * Constructs an Appointment with a numeric ID, skipping the String round trip.
+     * 
+     * @param apptID Unique appointment identifier (not negative)
+     * @param date Scheduled date (not in the past and not null)
+     * @param description Appointment description (<= 50 chars, not null and not empty)
+     * @throws IllegalArgumentException if any parameter is invalid
+     */
+	public Appointment (int apptID, Date date, String description) {
+	    validateDate(date);
+	    validateDescription(description);
+	    
 	    setApptID(apptID);
 	    setDate(date);
 	    setDescription(description);
 	}
+	
+	/**
+     * Constructs an Appointment with a numeric ID and a duration.
+     * 
+     * @param apptID Unique appointment identifier (not negative)
+     * @param date Scheduled date (not in the past and not null)
+     * @param description Appointment description (<= 50 chars, not null and not empty)
+     * @param durationMinutes Length of the appointment in minutes (0 to 1440)
+     * @throws IllegalArgumentException if any parameter is invalid
+     */
+	public Appointment (int apptID, Date date, String description, int durationMinutes) {
+	    this(apptID, date, description);
+	    setDurationMinutes(durationMinutes);
+	}
+	
+	/**
+	 * Constructs an empty Appointment for restore to fill in.
+	 */
+	private Appointment() {
+	}
+	
+	/**
+	 * Rebuilds an appointment from a stored record without validating it.
+	 * The record was validated when it was written, and its date may have
+	 * passed since, so the past-date check would reject it.
+	 * 
+	 * @param apptID Appointment ID
+	 * @param time Scheduled time in milliseconds since the epoch
+	 * @param description Appointment description
+	 * @param durationMinutes Duration in minutes
+	 * @return The restored appointment
+	 */
+	static Appointment restore(int apptID, long time, String description, int durationMinutes) {
+	    Appointment appointment = new Appointment();
+	    appointment.apptID = apptID;
+	    appointment.time = time;
+	    appointment.description = description;
+	    appointment.durationMinutes = durationMinutes;
+	    return appointment;
+	}
+	
+	/**
+	 * Copies this appointment as its next version, without revalidating it,
+	 * since its date may have passed. AppointmentService changes the copy
+	 * and publishes it in place of this appointment, so one other threads
+	 * can reach is never changed under them.
+	 * 
+	 * @return A new appointment with the same fields and the next version
+	 */
+	Appointment copy() {
+	    Appointment copy = restore(apptID, time, description, durationMinutes);
+	    copy.version = version + 1;
+	    return copy;
+	}
+	
+	/**
+	 * Marks this appointment as published, so its setters throw from now on.
+	 * AppointmentService freezes every appointment before other threads can reach it.
+	 */
+	void freeze() {
+	    frozen = true;
+	}
 			
 	/**
 	 * Gets the appointment's unique identifier as an integer.
 	 * @return apptID Appointment ID as integer
 	 */	
 	public int getApptID() {
-		return Integer.valueOf(apptID);
+		return apptID;
 	}
 
 	 /**
 	  * Gets the appointment's date.
-	  * @return date Appointment date
+	  * @return date Appointment date, a copy the caller may change
 	  */
 	public Date getDate() {
-		return date;
+		return new Date(time);
+	}
+	
+	/**
+	 * Gets the time the appointment starts.
+	 * @return Start time in milliseconds since the epoch
+	 */
+	public long getStartTime() {
+		return time;
 	}
 
 	 /**
@@ -68,45 +179,108 @@ public class Appointment {
 	public String getDescription() {
 		return description;
 	}
+	
+	/**
+	 * Gets the appointment's version, for AppointmentService.updateAppointment.
+	 * A new appointment is version 0; versions are not kept in the write-ahead log.
+	 * @return Version
+	 */
+	public long getVersion() {
+		return version;
+	}
+	
+	/**
+	 * Gets the appointment's duration.
+	 * @return durationMinutes Duration in minutes (0 if none was given)
+	 */
+	public int getDurationMinutes() {
+		return durationMinutes;
+	}
+	
+	/**
+	 * Gets the time the appointment ends.
+	 * An appointment without a duration ends one millisecond after it starts.
+	 * @return End time in milliseconds since the epoch (exclusive)
+	 */
+	public long getEndTime() {
+		return time + spanMillis(durationMinutes);
+	}
+	
+	/**
+	 * Gets the time an appointment of the given duration occupies.
+	 * @param durationMinutes Duration in minutes
+	 * @return Occupied time in milliseconds, at least 1
+	 */
+	static long spanMillis(int durationMinutes) {
+		return Math.max(1L, durationMinutes * MILLIS_PER_MINUTE);
+	}
 			
 	/**
      * Sets the appointment's ID.
      * ID setter is private as it cannot be changed
      * @param apptID Appointment ID
      */
-	private void setApptID(String apptID) {
+	private void setApptID(int apptID) {
 		validateID(apptID);
 		this.apptID = apptID;
 	}
 
 	/**
-	 * Sets the appointment's date.
+	 * Sets the appointment's date. Only the time is kept, not the Date itself.
 	 * @param date Appointment date
+	 * @throws IllegalStateException if the appointment was published by AppointmentService
 	 */
 	public void setDate(Date date) {
+	    checkMutable();
 	    validateDate(date);
-	    this.date = date;
+	    this.time = date.getTime();
 	}
 
 	/**
 	 * Sets the appointment's description.
 	 * @param description Appointment description
+	 * @throws IllegalStateException if the appointment was published by AppointmentService
 	 */
 	public void setDescription(String description) {
+	    checkMutable();
 	    validateDescription(description);
 	    this.description = description;
 	}
 	
+	/**
+	 * Sets the appointment's duration.
+	 * @param durationMinutes Duration in minutes
+	 * @throws IllegalStateException if the appointment was published by AppointmentService
+	 */
+	public void setDurationMinutes(int durationMinutes) {
+	    checkMutable();
+	    validateDuration(durationMinutes);
+	    this.durationMinutes = durationMinutes;
+	}
+	
+	/**
+	 * Rejects changes to a published appointment, which must go through AppointmentService.
+	 */
+	private void checkMutable() {
+	    if (frozen) {
+	        throw new IllegalStateException("Published appointments cannot be changed; edit them through AppointmentService.");
+	    }
+	}
+	
 	/**
 	 * Validates the appointment ID.
 	 * @param apptID Appointment ID
 	 */
 	private void validateID(String apptID) {
-	    if (apptID == null || apptID.length() > ID_MAX_LENGTH || apptID.isEmpty()) {
-	        throw new IllegalArgumentException("Appointment ID must be non-null, non-empty and < " + ID_MAX_LENGTH + " characters.");
-	    }
-	    
-	    validateNoInjection(apptID, "Appointment ID");
+	    throwIfInvalid(FIELD_APPT_ID, checkID(apptID));
+	}
+	
+	/**
+	 * Validates a numeric appointment ID.
+	 * @param apptID Appointment ID
+	 */
+	private void validateID(int apptID) {
+	    throwIfInvalid(FIELD_APPT_ID, checkID(apptID));
 	}
 	
 	/**
@@ -114,9 +288,15 @@ public class Appointment {
 	 * @param date Appointment date
 	 */
 	private void validateDate(Date date) {
-	    if (date == null || date.before(new Date())) {
-	        throw new IllegalArgumentException("Date cannot be null or in the past.");
-	    }
+	    throwIfInvalid(FIELD_DATE, checkDate(date));
+	}
+	
+	/**
+	 * Validates the appointment duration.
+	 * @param durationMinutes Duration in minutes
+	 */
+	private void validateDuration(int durationMinutes) {
+	    throwIfInvalid(FIELD_DURATION, checkDuration(durationMinutes));
 	}
 	
 	/**
@@ -124,12 +304,174 @@ public class Appointment {
 	 * @param description Appointment description
 	 */
 	private void validateDescription(String description) {
-	    if (description == null || description.length() > DESC_MAX_LENGTH || description.isEmpty()) {
-	        throw new IllegalArgumentException("Description must be non-null, non-empty and < " + DESC_MAX_LENGTH + " characters.");
+	    ValidationError error = checkDescription(description);
+	    if (error == ValidationError.FORBIDDEN_CONTENT) {
+	        // Rescan on the throwing path so the message can name the phrase
+	        validateBlacklist(description, "Description");
+	    }
+	    throwIfInvalid(FIELD_DESCRIPTION, error);
+	}
+	
+	/**
+	 * Throws the message for a failed field check.
+	 * @param field Field bit
+	 * @param error Result of the field check
+	 */
+	private static void throwIfInvalid(int field, ValidationError error) {
+	    if (error != null) {
+	        throw new IllegalArgumentException(errorMessage(field, error));
+	    }
+	}
+	
+	/**
+	 * Checks an appointment ID without throwing.
+	 * @param apptID Appointment ID
+	 * @return The problem found, or null if valid
+	 */
+	public static ValidationError checkID(String apptID) {
+	    ValidationError error = InputValidator.checkText(apptID, ID_MAX_LENGTH);
+	    if (error == null && IntHashMap.parseKey(apptID) < 0) {
+	        error = ValidationError.NOT_NUMERIC;
+	    }
+	    return error;
+	}
+	
+	/**
+	 * Checks a numeric appointment ID without throwing.
+	 * @param apptID Appointment ID
+	 * @return The problem found, or null if valid
+	 */
+	public static ValidationError checkID(int apptID) {
+	    return apptID < 0 ? ValidationError.NOT_NUMERIC : null;
+	}
+	
+	/**
+	 * Checks an appointment date without throwing.
+	 * @param date Appointment date
+	 * @return The problem found, or null if valid
+	 */
+	public static ValidationError checkDate(Date date) {
+	    if (date == null) {
+	        return ValidationError.MISSING;
+	    }
+	    return date.getTime() < System.currentTimeMillis() ? ValidationError.IN_PAST : null;
+	}
+	
+	/**
+	 * Checks an appointment duration without throwing.
+	 * @param durationMinutes Duration in minutes
+	 * @return The problem found, or null if valid
+	 */
+	public static ValidationError checkDuration(int durationMinutes) {
+	    if (durationMinutes < 0 || durationMinutes > DURATION_MAX_MINUTES) {
+	        return ValidationError.OUT_OF_RANGE;
+	    }
+	    return null;
+	}
+	
+	/**
+	 * Checks an appointment description without throwing.
+	 * @param description Appointment description
+	 * @return The problem found, or null if valid
+	 */
+	public static ValidationError checkDescription(String description) {
+	    ValidationError error = InputValidator.checkText(description, DESC_MAX_LENGTH);
+	    if (error == null && blacklist.matches(description)) {
+	        error = ValidationError.FORBIDDEN_CONTENT;
+	    }
+	    return error;
+	}
+	
+	/**
+	 * Checks every field without throwing or allocating.
+	 * @param apptID Appointment ID
+	 * @param date Appointment date
+	 * @param description Appointment description
+	 * @param durationMinutes Duration in minutes
+	 * @return Bitmask of FIELD_* values that failed, 0 if all are valid
+	 */
+	public static int checkFields(String apptID, Date date, String description, int durationMinutes) {
+	    int invalid = 0;
+	    if (checkID(apptID) != null) {
+	        invalid |= FIELD_APPT_ID;
+	    }
+	    if (checkDate(date) != null) {
+	        invalid |= FIELD_DATE;
+	    }
+	    if (checkDescription(description) != null) {
+	        invalid |= FIELD_DESCRIPTION;
+	    }
+	    if (checkDuration(durationMinutes) != null) {
+	        invalid |= FIELD_DURATION;
+	    }
+	    return invalid;
+	}
+	
+	/**
+	 * Gets the message for the first invalid date or description.
+	 * Used by batch inserts, where the ID is assigned by the service.
+	 * @param date Appointment date
+	 * @param description Appointment description
+	 * @return The message, or null if both are valid
+	 */
+	static String firstErrorMessage(Date date, String description) {
+	    ValidationError error;
+	    if ((error = checkDate(date)) != null) {
+	        return errorMessage(FIELD_DATE, error);
+	    }
+	    if ((error = checkDescription(description)) != null) {
+	        return errorMessage(FIELD_DESCRIPTION, error);
+	    }
+	    return null;
+	}
+	
+	/**
+	 * Gets the message for the first invalid date, description or duration.
+	 * Used by version-checked updates, which validate before reading the appointment.
+	 * @param date Appointment date
+	 * @param description Appointment description
+	 * @param durationMinutes Duration in minutes
+	 * @return The message, or null if every value is valid
+	 */
+	static String firstErrorMessage(Date date, String description, int durationMinutes) {
+	    String message = firstErrorMessage(date, description);
+	    ValidationError error;
+	    if (message == null && (error = checkDuration(durationMinutes)) != null) {
+	        return errorMessage(FIELD_DURATION, error);
+	    }
+	    return message;
+	}
+	
+	/**
+	 * Gets the fixed message for a field check failure.
+	 * Forbidden content is reported without the phrase; validateBlacklist
+	 * names it when the caller needs the detail.
+	 * @param field One FIELD_* value
+	 * @param error Problem reported by the field check
+	 * @return Message shared by every failure of this kind
+	 */
+	public static String errorMessage(int field, ValidationError error) {
+	    boolean illegal = error == ValidationError.ILLEGAL_CHARACTERS;
+	    switch (field) {
+	        case FIELD_APPT_ID:
+	            if (error == ValidationError.NOT_NUMERIC) {
+	                return "Appointment ID must be a non-negative number.";
+	            }
+	            return illegal ? "Appointment ID contains illegal characters." 
+	                    : "Appointment ID must be non-null, non-empty and < " + ID_MAX_LENGTH + " characters.";
+	        case FIELD_DATE:
+	            return "Date cannot be null or in the past.";
+	        case FIELD_DESCRIPTION:
+	            if (error == ValidationError.FORBIDDEN_CONTENT) {
+	                return "Description contains forbidden content.";
+	            }
+	            return illegal ? "Description contains illegal characters." 
+	                    : "Description must be non-null, non-empty and < " + DESC_MAX_LENGTH + " characters.";
+	        case FIELD_DURATION:
+	            return "Duration must be between 0 and " + DURATION_MAX_MINUTES + " minutes.";
+	        default:
+	            throw new IllegalArgumentException("Unknown appointment field: " + field);
 	    }
-
-	    validateNoInjection(description, "Description");
-	    validateBlacklist(description, "Description");
 	}
 
 	/**
@@ -138,9 +480,7 @@ public class Appointment {
 	 * @param fieldName Name of the field being validated (for error messages)
 	 */
 	public static void validateNoInjection(String input, String fieldName) {
-	    if (input != null && INJECTION_PATTERN.matcher(input).find()) {
-	        throw new IllegalArgumentException(fieldName + " contains illegal characters.");
-	    }
+	    InputValidator.validateNoInjection(input, fieldName);
 	}
 
 	/**
@@ -149,10 +489,43 @@ public class Appointment {
 	 * @param fieldName Name of the field being validated (for error messages)
 	 */
 	public static void validateBlacklist(String input, String fieldName) {
-	    for (String forbidden : BLACKLIST) {
-	        if (input != null && input.contains(forbidden)) {
-	            throw new IllegalArgumentException(fieldName + " contains forbidden content: " + forbidden);
+	    String forbidden = blacklist.findFirst(input);
+	    if (forbidden != null) {
+	        throw new IllegalArgumentException(fieldName + " contains forbidden content: " + forbidden);
+	    }
+	}
+	
+	/**
+	 * Replaces the blacklist of forbidden substrings.
+	 * Appointments created earlier are not re-checked.
+	 * @param phrases Forbidden substrings
+	 * @param ignoreCase true to match regardless of letter case
+	 */
+	public static void setBlacklist(Collection<String> phrases, boolean ignoreCase) {
+	    blacklist = new BlacklistMatcher(phrases, ignoreCase);
+	}
+	
+	/**
+	 * Loads the blacklist from a UTF-8 file with one phrase per line.
+	 * Blank lines and lines starting with # are skipped.
+	 * @param path File to read
+	 * @param ignoreCase true to match regardless of letter case
+	 * @throws IOException if the file cannot be read
+	 */
+	public static void loadBlacklist(Path path, boolean ignoreCase) throws IOException {
+	    List<String> phrases = new ArrayList<String>();
+	    for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+	        if (!line.isEmpty() && !line.startsWith("#")) {
+	            phrases.add(line);
 	        }
 	    }
+	    setBlacklist(phrases, ignoreCase);
+	}
+	
+	/**
+	 * Restores the built-in, case-sensitive blacklist.
+	 */
+	public static void resetBlacklist() {
+	    blacklist = new BlacklistMatcher(DEFAULT_BLACKLIST, false);
 	}
 }
\ No newline at end of file
@@ -1,35 +1,467 @@
 package Project;
 
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Flow;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 /**
  * Service class to manage Appointment objects.
  * Provides methods to add, delete, and edit appointments.
+ * 
+ * Writes lock the shard of the appointment map that owns the
+ * appointment's ID, and lookups never lock. An edit changes a copy of the
+ * appointment and swaps it in, so readers never see part of an edit. Each
+ * edit bumps the appointment's version, and updateAppointment applies a
+ * change only if the version is still the one the caller read.
+ * 
+ * A date index answers time-range queries without a full scan. In booking
+ * mode, an interval tree rejects overlapping appointments; it has its own
+ * lock, taken after the shard lock.
+ * 
+ * After startWriter, one writer thread applies every change in batches,
+ * and the log commits once per batch. Each change also has an async form
+ * that returns a future. Listeners added with addListener are told about
+ * every change, and streamAppointments reads appointments in date order
+ * in chunks.
+ * 
+ * The map has one shard until partition splits it by ID. A partitioned
+ * service gives each shard its own IDs and writer, and fans bulk adds and
+ * full scans out across the shards.
  * 
  * @author Stewart Withrow
  */
 public class AppointmentService {
 	
-	// Holds the next ID for an added appointment
+	// Holds the next ID for an added appointment, guarded by the appointment map itself
 	private int currentID = 0;
+	
+	// In partitioned mode, the next ID each shard hands out, guarded by
+	// that shard's lock; shard i issues the IDs equal to i modulo the count
+	private volatile int[] shardIDs;
+	
+	// When true, appointments that overlap an existing one are rejected
+	private final boolean preventDoubleBooking;
+		
+	// Primitive int-keyed map to hold appointment objects, keyed by their unique ID and sharded by it
+	public static ShardedIntMap<Appointment> appointments = new ShardedIntMap<Appointment>();
+	
+	// Appointments ordered by date then ID, maintained on every add, date edit and delete
+	private static final ConcurrentSkipListMap<DateKey, Appointment> dateIndex = new ConcurrentSkipListMap<DateKey, Appointment>();
+	
+	// Time span of every appointment, guarded by its own lock, taken after any shard lock
+	private static final IntervalTree<Appointment> bookings = new IntervalTree<Appointment>();
+	
+	// Told about every change made through this service
+	private volatile MutationListener listener;
+	
+	// Apply every change when set, one writer per shard; otherwise callers apply their own
+	private volatile SingleWriter[] writers;
+	
+	private static final String OVERLAP_MESSAGE = "Appointment overlaps an existing booking.";
+	
+	/**
+	 * Immutable date index key; appointments sharing a date are ordered by ID.
+	 */
+	private static final class DateKey implements Comparable<DateKey> {
+		final long time;
+		final int apptID;
+		
+		DateKey(long time, int apptID) {
+			this.time = time;
+			this.apptID = apptID;
+		}
+		
+		@Override
+		public int compareTo(DateKey other) {
+			int result = Long.compare(time, other.time);
+			return result != 0 ? result : Integer.compare(apptID, other.apptID);
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof DateKey && compareTo((DateKey) other) == 0;
+		}
 		
-	// HashMap to hold appointment objects, keyed by their unique ID
-	public static HashMap<String, Appointment> appointments = new HashMap<String, Appointment>();
+		@Override
+		public int hashCode() {
+			return Long.hashCode(time) * 31 + apptID;
+		}
+	}
+	
+	/**
+	 * Creates a service that allows overlapping appointments.
+	 */
+	public AppointmentService() {
+		this(false);
+	}
+	
+	/**
+	 * Creates a service, optionally in booking mode.
+	 * 
+	 * @param preventDoubleBooking true to reject appointments that overlap an existing one
+	 */
+	public AppointmentService(boolean preventDoubleBooking) {
+		this.preventDoubleBooking = preventDoubleBooking;
+		this.listener = MutationListener.NONE;
+	}
+	
+	/**
+	 * Creates a service that records every change in a write-ahead log.
+	 * IDs continue after the highest one recovered from the log.
+	 * 
+	 * @param preventDoubleBooking true to reject appointments that overlap an existing one
+	 * @param log Log opened with WriteAheadLog.open
+	 */
+	public AppointmentService(boolean preventDoubleBooking, WriteAheadLog log) {
+		this.preventDoubleBooking = preventDoubleBooking;
+		this.listener = log;
+		this.currentID = log.nextAppointmentID();
+	}
+		
+	/**
+	 * Switches the appointment map to partitioned mode: it is split into
+	 * shards by appointment ID, each with its own lock, so writes to
+	 * different shards no longer wait for each other. Each shard hands out
+	 * IDs from its own sub-range (shard i issues the IDs equal to i modulo
+	 * the shard count), and a new appointment goes to the shard picked by
+	 * the calling thread. IDs stay unique but are no longer consecutive.
+	 * Existing appointments move to their shards and new IDs continue above
+	 * every ID issued so far; passing 1 goes back to one map and
+	 * consecutive IDs.
+	 * The map is shared by every appointment service, so partition before
+	 * the services are used from other threads.
+	 * 
+	 * @param shardCount Number of shards, rounded up to a power of two
+	 * @throws IllegalArgumentException if the count is not between 1 and ShardedIntMap.MAX_SHARDS
+	 * @throws IllegalStateException if the writer is running
+	 */
+	public synchronized void partition(int shardCount) {
+		if (writers != null) {
+			throw new IllegalStateException("Stop the writer before partitioning.");
+		}
+		ShardedIntMap<Appointment> resharded = new ShardedIntMap<Appointment>(shardCount);
+		ShardedIntMap<Appointment> old = appointments;
+		int next = old.lockAll(() -> {
+			for (int i = 0; i < old.shardCount(); i++) {
+				old.shard(i).forEach((apptID, appointment) -> resharded.put(apptID, appointment));
+			}
+			appointments = resharded;
+			return nextID();
+		});
+		
+		int count = resharded.shardCount();
+		if (count == 1) {
+			shardIDs = null;
+			currentID = next;
+		} else {
+			int base = (next + count - 1) & -count;
+			int[] ids = new int[count];
+			for (int i = 0; i < count; i++) {
+				ids[i] = base + i;
+			}
+			shardIDs = ids;
+		}
+	}
+	
+	/**
+	 * Gets an ID above every one this service has issued.
+	 */
+	private int nextID() {
+		int[] ids = shardIDs;
+		if (ids == null) {
+			return currentID;
+		}
+		int next = 0;
+		for (int id : ids) {
+			next = Math.max(next, id);
+		}
+		return next;
+	}
+		
+	/**
+	 * Switches this service to single-writer mode: changes are queued and
+	 * applied in batches by a writer thread the service owns, and callers
+	 * wait for their change as before. Reads do not go through the writer.
+	 * A partitioned service starts one writer per shard.
+	 * The writers still take the shard locks and the booking tree's lock.
+	 * The tree spans every shard's writer, and ID block reservation, log
+	 * replay and changes made around stopWriter still run on other threads.
+	 * 
+	 * @param queueCapacity Most changes that can wait at once, per writer
+	 * @throws IllegalArgumentException if the capacity is not positive
+	 * @throws IllegalStateException if the writer is already running
+	 */
+	public synchronized void startWriter(int queueCapacity) {
+		if (writers != null) {
+			throw new IllegalStateException("Writer is already running.");
+		}
+		int[] ids = shardIDs;
+		int count = ids == null ? 1 : ids.length;
+		SingleWriter[] started = new SingleWriter[count];
+		for (int i = 0; i < count; i++) {
+			started[i] = new SingleWriter(count == 1 ? "appointment-writer" : "appointment-writer-" + i,
+					queueCapacity, () -> listener.commit());
+		}
+		writers = started;
+	}
+	
+	/**
+	 * Stops the writer threads once they have applied the changes already
+	 * queued. Later changes are applied by their callers again.
+	 */
+	public synchronized void stopWriter() {
+		SingleWriter[] stopping = writers;
+		if (stopping != null) {
+			writers = null;
+			for (SingleWriter writer : stopping) {
+				writer.close();
+			}
+		}
+	}
+	
+	/**
+	 * Adds a listener that is told about every later change made through
+	 * this service, after the listeners it already has. Adding a ChangeFeed
+	 * publishes this service's changes to the feed's subscribers.
+	 * 
+	 * @param added Listener to add
+	 */
+	public synchronized void addListener(MutationListener added) {
+		listener = MutationListener.both(listener, added);
+	}
+	
+	/**
+	 * Applies a change to a shard on that shard's writer thread if there is
+	 * one, or on this thread followed by a listener commit.
+	 */
+	private <T> T write(int shard, Supplier<T> change) {
+		SingleWriter[] current = writers;
+		if (current != null) {
+			return current[shard & (current.length - 1)].call(change);
+		}
+		T result = change.get();
+		listener.commit();
+		return result;
+	}
+	
+	/**
+	 * Gets an appointment by ID without locking.
+	 * The appointment returned is never changed; later edits replace it in the map.
+	 * 
+	 * @param apptID Appointment ID
+	 * @return The appointment, or null if absent
+	 */
+	public Appointment getAppointment(int apptID) {
+		return appointments.get(apptID);
+	}
 		
 	 /**
      * Adds a new Appointment to the map.
      * 
      * @param date Scheduled date of the appointment
      * @param description Appointment description
+     * @return The new appointment's ID
      * @throws IllegalArgumentException if parameters are invalid
      */
-	public void addAppointment(Date date, String description) {
-		String stringID = Integer.toString(currentID);	
-		Appointment appointment = new Appointment (stringID, date, description);
-		appointments.put(stringID, appointment);
-
-		++currentID;
+	public int addAppointment(Date date, String description) {
+		return addAppointment(date, description, 0);
+	}
+	
+	 /**
+     * Adds a new Appointment with a duration to the map.
+     * 
+     * @param date Scheduled date of the appointment
+     * @param description Appointment description
+     * @param durationMinutes Length of the appointment in minutes
+     * @return The new appointment's ID
+     * @throws IllegalArgumentException if parameters are invalid or, in booking
+     *         mode, the appointment overlaps an existing one
+     */
+	public int addAppointment(Date date, String description, int durationMinutes) {
+		return insertAppointment(date, description, durationMinutes);
+	}
+	
+	/**
+	 * Adds a new appointment on a virtual thread.
+	 * 
+	 * @param date Scheduled date of the appointment
+	 * @param description Appointment description
+	 * @return Future completed with the new appointment's ID, or with the
+	 *         IllegalArgumentException if a parameter is invalid
+	 */
+	public CompletableFuture<Integer> addAppointmentAsync(Date date, String description) {
+		return addAppointmentAsync(date, description, 0);
+	}
+	
+	/**
+	 * Adds a new appointment with a duration on a virtual thread.
+	 * 
+	 * @param date Scheduled date of the appointment
+	 * @param description Appointment description
+	 * @param durationMinutes Length of the appointment in minutes
+	 * @return Future completed with the new appointment's ID, or with the
+	 *         IllegalArgumentException if a parameter is invalid or, in
+	 *         booking mode, the appointment overlaps an existing one
+	 */
+	public CompletableFuture<Integer> addAppointmentAsync(Date date, String description, int durationMinutes) {
+		return Async.supply(() -> insertAppointment(date, description, durationMinutes));
+	}
+	
+	/**
+	 * Adds an appointment under the next ID and returns that ID.
+	 * A partitioned service takes the ID from the calling thread's shard.
+	 */
+	private int insertAppointment(Date date, String description, int durationMinutes) {
+		int[] ids = shardIDs;
+		if (ids == null) {
+			return write(0, () -> {
+				synchronized (appointments) {
+					synchronized (appointments.shardFor(currentID)) {
+						store(new Appointment (currentID, date, description, durationMinutes));
+					}
+					return currentID++;
+				}
+			});
+		}
+		int shard = (int) Thread.currentThread().threadId() & (ids.length - 1);
+		return write(shard, () -> {
+			synchronized (appointments.shard(shard)) {
+				int apptID = ids[shard];
+				store(new Appointment (apptID, date, description, durationMinutes));
+				ids[shard] = apptID + ids.length;
+				return apptID;
+			}
+		});
+	}
+	
+	/**
+	 * Takes a block of consecutive IDs. A partitioned service moves every
+	 * shard's sub-range past the block.
+	 */
+	private int reserveIDs(int count) {
+		int[] ids = shardIDs;
+		if (ids == null) {
+			synchronized (appointments) {
+				int firstID = currentID;
+				currentID += count;
+				return firstID;
+			}
+		}
+		return appointments.lockAll(() -> {
+			int firstID = nextID();
+			int base = (firstID + count + ids.length - 1) & -ids.length;
+			for (int i = 0; i < ids.length; i++) {
+				ids[i] = base + i;
+			}
+			return firstID;
+		});
+	}
+	
+	/**
+	 * Freezes a new appointment, tells the listener and then puts it in the
+	 * map and indexes, so a log that rejects it leaves it unpublished.
+	 * In booking mode it is first checked against the booking tree, under
+	 * the tree's lock so no other shard can book the same time meanwhile.
+	 * Caller must hold the appointment's shard lock.
+	 * 
+	 * @throws IllegalArgumentException in booking mode, if the appointment overlaps another
+	 */
+	private void store(Appointment appointment) {
+		appointment.freeze();
+		synchronized (bookings) {
+			if (preventDoubleBooking) {
+				checkAvailable(appointment.getStartTime(), appointment.getEndTime());
+			}
+			listener.appointmentPut(appointment);
+			unindex(appointments.put(appointment.getApptID(), appointment));
+			index(appointment);
+		}
+	}
+	
+	 /**
+     * Adds many appointments at once.
+     * Rows are validated in parallel and take consecutive IDs from one block,
+     * then inserted under one lock per shard, with the shards filled in
+     * parallel when the map is partitioned. In booking mode rows are
+     * inserted in order, so of two overlapping rows the first is kept.
+     * Invalid rows, and in booking mode rows that overlap, are reported in
+     * the result instead of throwing.
+     * 
+     * @param dates Scheduled date of each appointment
+     * @param descriptions Description of each appointment
+     * @return Per-row outcome of the batch
+     * @throws IllegalArgumentException if the lists differ in length
+     */
+	public BatchResult addAppointments(List<Date> dates, List<String> descriptions) {
+		if (dates.size() != descriptions.size()) {
+			throw new IllegalArgumentException("Dates and descriptions must have the same length.");
+		}
+		Date[] dateRows = dates.toArray(new Date[0]);
+		String[] descriptionRows = descriptions.toArray(new String[0]);
+		int firstID = reserveIDs(dateRows.length);
+		Appointment[] built = new Appointment[dateRows.length];
+		String[] messages = new String[dateRows.length];
+		
+		IntStream.range(0, dateRows.length).parallel().forEach(row -> {
+			messages[row] = Appointment.firstErrorMessage(dateRows[row], descriptionRows[row]);
+			if (messages[row] == null) {
+				// Already checked; revalidating could see the date cross now and throw mid-batch
+				built[row] = Appointment.restore(firstID + row, dateRows[row].getTime(), descriptionRows[row], 0);
+			}
+		});
+		
+		ShardedIntMap<Appointment> map = appointments;
+		if (preventDoubleBooking) {
+			// Rows are booked in order as one change, locking each row's shard in turn
+			write(0, () -> {
+				for (int row = 0; row < built.length; row++) {
+					if (built[row] != null) {
+						synchronized (map.shardFor(built[row].getApptID())) {
+							try {
+								store(built[row]);
+							} catch (IllegalArgumentException e) {
+								messages[row] = OVERLAP_MESSAGE;
+							}
+						}
+					}
+				}
+				return null;
+			});
+		} else {
+			int count = map.shardCount();
+			map.reduceShards(shard -> write(shard, () -> {
+				synchronized (map.shard(shard)) {
+					// Row r has ID firstID + r, so every count-th row from here belongs to this shard
+					for (int row = (shard - firstID) & (count - 1); row < built.length; row += count) {
+						if (built[row] != null) {
+							store(built[row]);
+						}
+					}
+				}
+				return null;
+			}), (left, right) -> null);
+		}
+		return BatchResult.fromMessages(firstID, messages);
+	}
+	
+	/**
+	 * Adds many appointments at once on a virtual thread.
+	 * 
+	 * @param dates Scheduled date of each appointment
+	 * @param descriptions Description of each appointment
+	 * @return Future completed with the per-row outcome of the batch, or with
+	 *         the IllegalArgumentException if the lists differ in length
+	 */
+	public CompletableFuture<BatchResult> addAppointmentsAsync(List<Date> dates, List<String> descriptions) {
+		return Async.supply(() -> addAppointments(dates, descriptions));
 	}
 		
 	 /**
@@ -37,8 +469,41 @@ public class AppointmentService {
 	 * 
 	 * @param ID Appointment ID to delete
 	 */
+	public void deleteAppointment(int ID) {
+		write(appointments.shardOf(ID), () -> {
+			synchronized (appointments.shardFor(ID)) {
+				Appointment existing = appointments.get(ID);
+				if (existing != null) {
+					listener.appointmentDeleted(ID);
+					appointments.remove(ID);
+					unindex(existing);
+				}
+			}
+			return null;
+		});
+    }
+	
+	/**
+	 * Deletes an appointment on a virtual thread.
+	 * 
+	 * @param ID Appointment ID to delete
+	 * @return Future completed once the appointment is gone
+	 */
+	public CompletableFuture<Void> deleteAppointmentAsync(int ID) {
+		return Async.run(() -> deleteAppointment(ID));
+	}
+	
+	 /**
+	 * Deletes an appointment from the map by String ID.
+	 * Compatibility shim for callers that still hold String IDs.
+	 * 
+	 * @param ID Appointment ID to delete
+	 */
 	public void deleteAppointment(String ID) {
-        appointments.remove(ID);
+		int apptID = IntHashMap.parseKey(ID);
+		if (apptID >= 0) {
+			deleteAppointment(apptID);
+		}
     }
 	
 	 /**
@@ -47,25 +512,438 @@ public class AppointmentService {
 	  * @param apptID Appointment ID
 	  * @param date New appointment date
 	  */
+	public void editDate(int apptID, Date date) {
+		write(appointments.shardOf(apptID), () -> {
+			synchronized (appointments.shardFor(apptID)) {
+				Appointment appointment = appointments.get(apptID);
+				
+				if (appointment != null) {
+					Appointment updated = appointment.copy();
+					updated.setDate(date);
+					replace(appointment, updated, preventDoubleBooking);
+				}
+			}
+			return null;
+		});
+	}
+	
+	/**
+	 * Edits an appointment date on a virtual thread.
+	 * 
+	 * @param apptID Appointment ID
+	 * @param date New appointment date
+	 * @return Future completed once the date is changed, or with the
+	 *         IllegalArgumentException if it is invalid or, in booking mode,
+	 *         the new time overlaps another appointment
+	 */
+	public CompletableFuture<Void> editDateAsync(int apptID, Date date) {
+		return Async.run(() -> editDate(apptID, date));
+	}
+	
+	 /**
+	  * Edits an appointment date from the map by String ID.
+	  * Compatibility shim for callers that still hold String IDs.
+	  * 
+	  * @param apptID Appointment ID
+	  * @param date New appointment date
+	  */
 	public void editDate(String apptID, Date date) {
-		Appointment appointment = appointments.get(apptID);
-		
-		if (appointment != null) {
-			appointment.setDate(date);
+		int ID = IntHashMap.parseKey(apptID);
+		if (ID >= 0) {
+			editDate(ID, date);
 		}
 	}
 	
+	 /**
+	  * Edits an appointment duration from the map by ID.
+	  * 
+	  * @param apptID Appointment ID
+	  * @param durationMinutes New duration in minutes
+	  */
+	public void editDuration(int apptID, int durationMinutes) {
+		write(appointments.shardOf(apptID), () -> {
+			synchronized (appointments.shardFor(apptID)) {
+				Appointment appointment = appointments.get(apptID);
+				
+				if (appointment != null) {
+					Appointment updated = appointment.copy();
+					updated.setDurationMinutes(durationMinutes);
+					replace(appointment, updated, preventDoubleBooking);
+				}
+			}
+			return null;
+		});
+	}
+	
+	/**
+	 * Edits an appointment duration on a virtual thread.
+	 * 
+	 * @param apptID Appointment ID
+	 * @param durationMinutes New duration in minutes
+	 * @return Future completed once the duration is changed, or with the
+	 *         IllegalArgumentException if it is invalid or, in booking mode,
+	 *         the new time overlaps another appointment
+	 */
+	public CompletableFuture<Void> editDurationAsync(int apptID, int durationMinutes) {
+		return Async.run(() -> editDuration(apptID, durationMinutes));
+	}
+	
 	 /**
 	  * Edits an appointment description from the map by ID.
 	  * 
 	  * @param apptID Appointment ID
 	  * @param description New appointment description
 	  */
+	public void editDescription(int apptID, String description) {
+		write(appointments.shardOf(apptID), () -> {
+			synchronized (appointments.shardFor(apptID)) {
+				Appointment appointment = appointments.get(apptID);
+				
+				if (appointment != null) {
+					Appointment updated = appointment.copy();
+					updated.setDescription(description);
+					replace(appointment, updated, false);
+				}
+			}
+			return null;
+		});
+	}
+	
+	/**
+	 * Edits an appointment description on a virtual thread.
+	 * 
+	 * @param apptID Appointment ID
+	 * @param description New appointment description
+	 * @return Future completed once the description is changed, or with the
+	 *         IllegalArgumentException if it is invalid
+	 */
+	public CompletableFuture<Void> editDescriptionAsync(int apptID, String description) {
+		return Async.run(() -> editDescription(apptID, description));
+	}
+	
+	 /**
+	  * Edits an appointment description from the map by String ID.
+	  * Compatibility shim for callers that still hold String IDs.
+	  * 
+	  * @param apptID Appointment ID
+	  * @param description New appointment description
+	  */
 	public void editDescription(String apptID, String description) {
+		int ID = IntHashMap.parseKey(apptID);
+		if (ID >= 0) {
+			editDescription(ID, description);
+		}
+	}
+
+	/**
+	 * Updates an appointment's date, description and duration together if no
+	 * one else has changed it since the caller read it. Every value is
+	 * validated before anything changes, and the copy is swapped in only if
+	 * the appointment in the map is still the one the copy was made from.
+	 * 
+	 * @param apptID Appointment ID
+	 * @param expectedVersion Version the caller read from getAppointment
+	 * @param date New appointment date
+	 * @param description New appointment description
+	 * @param durationMinutes New duration in minutes
+	 * @return true if the appointment was updated, false if it is gone or has a different version
+	 * @throws IllegalArgumentException if a value is invalid or, in booking
+	 *         mode, the new time overlaps another appointment
+	 */
+	public boolean updateAppointment(int apptID, long expectedVersion, Date date, String description,
+			int durationMinutes) {
+		String message = Appointment.firstErrorMessage(date, description, durationMinutes);
+		if (message != null) {
+			throw new IllegalArgumentException(message);
+		}
 		Appointment appointment = appointments.get(apptID);
+		if (appointment == null || appointment.getVersion() != expectedVersion) {
+			return false;
+		}
+		Appointment updated = appointment.copy();
+		updated.setDate(date);
+		updated.setDescription(description);
+		updated.setDurationMinutes(durationMinutes);
 		
+		return write(appointments.shardOf(apptID), () -> {
+			synchronized (appointments.shardFor(apptID)) {
+				if (appointments.get(apptID) != appointment) {
+					return false;
+				}
+				replace(appointment, updated, preventDoubleBooking);
+			}
+			return true;
+		});
+	}
+	
+	/**
+	 * Updates an appointment if its version is unchanged, on a virtual thread.
+	 * 
+	 * @param apptID Appointment ID
+	 * @param expectedVersion Version the caller read from getAppointment
+	 * @param date New appointment date
+	 * @param description New appointment description
+	 * @param durationMinutes New duration in minutes
+	 * @return Future completed with whether the appointment was updated, or
+	 *         with the IllegalArgumentException if a value is invalid or, in
+	 *         booking mode, the new time overlaps another appointment
+	 */
+	public CompletableFuture<Boolean> updateAppointmentAsync(int apptID, long expectedVersion, Date date,
+			String description, int durationMinutes) {
+		return Async.supply(() -> updateAppointment(apptID, expectedVersion, date, description, durationMinutes));
+	}
+
+	/**
+	 * Gets all appointments scheduled in a time window, in date order.
+	 * 
+	 * @param from Start of the window (inclusive)
+	 * @param to End of the window (exclusive)
+	 * @return Appointments in the window
+	 */
+	public List<Appointment> getAppointmentsBetween(Date from, Date to) {
+		List<Appointment> result = new ArrayList<Appointment>();
+		for (Map.Entry<DateKey, Appointment> entry : window(from, to).entrySet()) {
+			if (isCurrent(entry.getKey(), entry.getValue())) {
+				result.add(entry.getValue());
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Streams every appointment in date order to a subscriber as it asks
+	 * for them, without locking or gathering them first, so an export of
+	 * any size runs in constant memory. Appointments are sent as they are
+	 * when reached; those added, moved or deleted meanwhile may or may not
+	 * be included.
+	 * 
+	 * @return Publisher of the appointments
+	 */
+	public Flow.Publisher<Appointment> streamAppointments() {
+		return stream(dateIndex);
+	}
+	
+	/**
+	 * Streams the appointments scheduled in a time window, in date order,
+	 * to a subscriber as it asks for them.
+	 * 
+	 * @param from Start of the window (inclusive)
+	 * @param to End of the window (exclusive)
+	 * @return Publisher of the appointments in the window
+	 * @throws IllegalArgumentException if either bound is null
+	 */
+	public Flow.Publisher<Appointment> streamAppointmentsBetween(Date from, Date to) {
+		return stream(window(from, to));
+	}
+	
+	/**
+	 * Publishes the current appointments in a range of the date index.
+	 */
+	private static Flow.Publisher<Appointment> stream(ConcurrentNavigableMap<DateKey, Appointment> range) {
+		return new QueryPublisher<Appointment>(() -> range.entrySet().stream()
+				.filter(entry -> isCurrent(entry.getKey(), entry.getValue()))
+				.map(Map.Entry::getValue)
+				.iterator());
+	}
+	
+	/**
+	 * Finds every appointment that passes a filter by scanning the whole
+	 * map, without locking. In partitioned mode each shard is scanned by
+	 * its own fork/join task. Appointments are tested as they are when
+	 * reached.
+	 * 
+	 * @param filter Test for each appointment
+	 * @return Matching appointments, in no particular order
+	 * @throws IllegalArgumentException if the filter is null
+	 */
+	public List<Appointment> findAppointments(Predicate<? super Appointment> filter) {
+		if (filter == null) {
+			throw new IllegalArgumentException("Filter cannot be null.");
+		}
+		ShardedIntMap<Appointment> map = appointments;
+		return map.reduceShards(shard -> {
+			List<Appointment> found = new ArrayList<Appointment>();
+			map.shard(shard).forEach((apptID, appointment) -> {
+				if (filter.test(appointment)) {
+					found.add(appointment);
+				}
+			});
+			return found;
+		}, (left, right) -> {
+			left.addAll(right);
+			return left;
+		});
+	}
+	
+	/**
+	 * Gets the next appointments scheduled from now on, in date order.
+	 * 
+	 * @param count Maximum number of appointments to return
+	 * @return Up to count upcoming appointments
+	 */
+	public List<Appointment> getUpcomingAppointments(int count) {
+		List<Appointment> result = new ArrayList<Appointment>(Math.min(count, 64));
+		DateKey now = new DateKey(System.currentTimeMillis(), Integer.MIN_VALUE);
+		for (Map.Entry<DateKey, Appointment> entry : dateIndex.tailMap(now).entrySet()) {
+			if (result.size() >= count) {
+				break;
+			}
+			if (isCurrent(entry.getKey(), entry.getValue())) {
+				result.add(entry.getValue());
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Counts the appointments scheduled in a time window.
+	 * 
+	 * @param from Start of the window (inclusive)
+	 * @param to End of the window (exclusive)
+	 * @return Number of appointments in the window
+	 */
+	public int countAppointmentsBetween(Date from, Date to) {
+		int count = 0;
+		for (Map.Entry<DateKey, Appointment> entry : window(from, to).entrySet()) {
+			if (isCurrent(entry.getKey(), entry.getValue())) {
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Puts a recovered appointment back in the map and indexes.
+	 * Used when replaying the write-ahead log.
+	 * 
+	 * @param appointment Recovered appointment
+	 */
+	static void restore(Appointment appointment) {
+		appointment.freeze();
+		synchronized (appointments.shardFor(appointment.getApptID())) {
+			synchronized (bookings) {
+				unindex(appointments.put(appointment.getApptID(), appointment));
+				index(appointment);
+			}
+		}
+	}
+	
+	/**
+	 * Removes an appointment whose deletion was recovered.
+	 * Used when replaying the write-ahead log.
+	 * 
+	 * @param apptID Appointment ID
+	 */
+	static void restoreDelete(int apptID) {
+		synchronized (appointments.shardFor(apptID)) {
+			unindex(appointments.remove(apptID));
+		}
+	}
+	
+	/**
+	 * Gets the slice of the date index covering a time window.
+	 */
+	private static ConcurrentNavigableMap<DateKey, Appointment> window(Date from, Date to) {
+		if (from == null || to == null) {
+			throw new IllegalArgumentException("Window bounds cannot be null.");
+		}
+		if (!from.before(to)) {
+			return new ConcurrentSkipListMap<DateKey, Appointment>();
+		}
+		return dateIndex.subMap(new DateKey(from.getTime(), Integer.MIN_VALUE), 
+				new DateKey(to.getTime(), Integer.MIN_VALUE));
+	}
+	
+	/**
+	 * Publishes an edited copy in place of an appointment, moving its index
+	 * entries. The listener is told first; if it throws, the appointment is
+	 * left as it was. Caller must hold the appointment's shard lock.
+	 * 
+	 * @param current Appointment in the map
+	 * @param updated Edited copy of it
+	 * @param checkBooking true to reject the copy if it overlaps another appointment
+	 */
+	private void replace(Appointment current, Appointment updated, boolean checkBooking) {
+		updated.freeze();
+		synchronized (bookings) {
+			unindex(current);
+			if (checkBooking && !isAvailable(updated.getStartTime(), updated.getEndTime())) {
+				index(current);
+				throw new IllegalArgumentException(OVERLAP_MESSAGE);
+			}
+			try {
+				listener.appointmentPut(updated);
+			} catch (RuntimeException e) {
+				index(current);
+				throw e;
+			}
+			appointments.put(updated.getApptID(), updated);
+			index(updated);
+		}
+	}
+	
+	/**
+	 * Adds an appointment to the date index and the booking tree.
+	 */
+	private static void index(Appointment appointment) {
+		long start = appointment.getStartTime();
+		dateIndex.put(new DateKey(start, appointment.getApptID()), appointment);
+		synchronized (bookings) {
+			bookings.insert(start, appointment.getEndTime(), appointment.getApptID(), appointment);
+		}
+	}
+	
+	/**
+	 * Removes an appointment from the date index and the booking tree, if it was present.
+	 */
+	private static void unindex(Appointment appointment) {
 		if (appointment != null) {
-			appointment.setDescription(description);
+			long start = appointment.getStartTime();
+			dateIndex.remove(new DateKey(start, appointment.getApptID()), appointment);
+			synchronized (bookings) {
+				bookings.remove(start, appointment.getApptID());
+			}
+		}
+	}
+	
+	/**
+	 * Rejects a time range that overlaps a live appointment.
+	 * Caller must hold the booking tree lock until the range is booked.
+	 */
+	private static void checkAvailable(long start, long end) {
+		if (!isAvailable(start, end)) {
+			throw new IllegalArgumentException(OVERLAP_MESSAGE);
+		}
+	}
+	
+	/**
+	 * Checks whether a time range is free of live appointments.
+	 * Caller must hold the booking tree lock until the range is booked.
+	 */
+	private static boolean isAvailable(long start, long end) {
+		synchronized (bookings) {
+			IntervalTree.Interval<Appointment> overlap;
+			while ((overlap = bookings.findOverlap(start, end)) != null) {
+				Appointment booked = overlap.getValue();
+				if (appointments.get(overlap.getID()) == booked && booked.getStartTime() == overlap.getStart() 
+						&& booked.getEndTime() == overlap.getEnd()) {
+					return false;
+				}
+				bookings.remove(overlap.getStart(), overlap.getID());
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * Checks an index entry against the map, since the public map can be
+	 * changed directly. Entries that no longer match are dropped.
+	 */
+	private static boolean isCurrent(DateKey key, Appointment appointment) {
+		if (appointments.get(key.apptID) == appointment && appointment.getStartTime() == key.time) {
+			return true;
 		}
+		dateIndex.remove(key, appointment);
+		return false;
 	}
-}
\ No newline at end of file
+}
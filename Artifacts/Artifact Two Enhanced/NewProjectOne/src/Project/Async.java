@@ -0,0 +1,56 @@
+package Project;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Runs the services' async calls, each on a virtual thread of its own.
+ * A call that blocks, on a lock or on the log, parks its virtual thread
+ * and leaves the carrier free, so thousands of calls can be in flight on a
+ * few platform threads. A failed call completes its future exceptionally
+ * with what the synchronous call would have thrown.
+ *
+ * On JDK 21 a virtual thread waiting inside a synchronized block still
+ * holds its carrier. The service locks are held only briefly, but callers
+ * of a logged service wait for the sync on the log's monitor, so async
+ * callers of one should also start its writer: they then park until their
+ * batch is synced, and the writer thread does the waiting.
+ *
+ * @author Stewart Withrow
+ */
+final class Async {
+
+	private static final ExecutorService EXECUTOR =
+			Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("service-async-", 0).factory());
+
+	private Async() {
+	}
+
+	/**
+	 * Starts a call that returns a value.
+	 * @param call Synchronous call to make
+	 * @return Future completed with the call's result or failure
+	 */
+	static <T> CompletableFuture<T> supply(Supplier<T> call) {
+		return CompletableFuture.supplyAsync(call, EXECUTOR);
+	}
+
+	/**
+	 * Starts a call that returns nothing.
+	 * @param call Synchronous call to make
+	 * @return Future completed when the call returns, or with its failure
+	 */
+	static CompletableFuture<Void> run(Runnable call) {
+		return CompletableFuture.runAsync(call, EXECUTOR);
+	}
+
+	/**
+	 * Starts a task that reports its own outcome.
+	 * @param task Task to run
+	 */
+	static void execute(Runnable task) {
+		EXECUTOR.execute(task);
+	}
+}
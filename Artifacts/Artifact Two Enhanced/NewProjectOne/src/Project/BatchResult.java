@@ -0,0 +1,121 @@
+package Project;
+
+import java.util.Arrays;
+
+/**
+ * Outcome of a batch insert.
+ * Row i was given ID firstID + i; rows that failed validation keep their
+ * slot in the ID block but were not inserted. Only failed rows are stored,
+ * so a clean batch of any size costs two empty arrays.
+ *
+ * @author Stewart Withrow
+ */
+public final class BatchResult {
+
+	private static final int[] NO_ROWS = new int[0];
+	private static final String[] NO_MESSAGES = new String[0];
+
+	private final int firstID;
+	private final int rowCount;
+
+	// Failed row numbers in ascending order, with the matching messages
+	private final int[] errorRows;
+	private final String[] errorMessages;
+
+	private BatchResult(int firstID, int rowCount, int[] errorRows, String[] errorMessages) {
+		this.firstID = firstID;
+		this.rowCount = rowCount;
+		this.errorRows = errorRows;
+		this.errorMessages = errorMessages;
+	}
+
+	/**
+	 * Builds a result from one message slot per row, null meaning success.
+	 * @param firstID ID given to row 0
+	 * @param messages Error message per row, or null where the row was added
+	 * @return The compacted result
+	 */
+	static BatchResult fromMessages(int firstID, String[] messages) {
+		int errors = 0;
+		for (String message : messages) {
+			if (message != null) {
+				errors++;
+			}
+		}
+		if (errors == 0) {
+			return new BatchResult(firstID, messages.length, NO_ROWS, NO_MESSAGES);
+		}
+
+		int[] rows = new int[errors];
+		String[] text = new String[errors];
+		for (int row = 0, next = 0; row < messages.length; row++) {
+			if (messages[row] != null) {
+				rows[next] = row;
+				text[next++] = messages[row];
+			}
+		}
+		return new BatchResult(firstID, messages.length, rows, text);
+	}
+
+	/**
+	 * Gets the ID given to the first row.
+	 * @return First ID in the block
+	 */
+	public int getFirstID() {
+		return firstID;
+	}
+
+	/**
+	 * Gets the number of rows submitted.
+	 * @return Row count
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Gets the number of rows inserted.
+	 * @return Added count
+	 */
+	public int getAddedCount() {
+		return rowCount - errorRows.length;
+	}
+
+	/**
+	 * Gets the number of rows rejected.
+	 * @return Error count
+	 */
+	public int getErrorCount() {
+		return errorRows.length;
+	}
+
+	/**
+	 * Gets the row number of the i-th rejected row.
+	 * @param i Error index (0 to getErrorCount() - 1)
+	 * @return Row number in the submitted batch
+	 */
+	public int getErrorRow(int i) {
+		return errorRows[i];
+	}
+
+	/**
+	 * Gets the validation message of the i-th rejected row.
+	 * @param i Error index (0 to getErrorCount() - 1)
+	 * @return Validation message
+	 */
+	public String getErrorMessage(int i) {
+		return errorMessages[i];
+	}
+
+	/**
+	 * Gets the ID a row was stored under.
+	 * @param row Row number in the submitted batch
+	 * @return The row's ID, or -1 if the row was rejected
+	 */
+	public int getID(int row) {
+		if (row < 0 || row >= rowCount) {
+			throw new IndexOutOfBoundsException("Row " + row + " is outside the batch.");
+		}
+		return Arrays.binarySearch(errorRows, row) >= 0 ? -1 : firstID + row;
+	}
+}
@@ -0,0 +1,228 @@
+package Project;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Aho-Corasick matcher for a list of forbidden phrases.
+ * The phrases are compiled once into a flat transition table, so checking
+ * an input reads each character once no matter how many phrases there are.
+ * Immutable and safe to share between threads.
+ *
+ * @author Stewart Withrow
+ */
+public final class BlacklistMatcher {
+
+	private static final int ASCII = 128;
+	private static final int NO_MATCH = -1;
+
+	private final String[] phrases;
+	private final boolean ignoreCase;
+
+	// Symbol for each ASCII character; 0 is every character not in any phrase
+	private final int[] asciiSymbols = new int[ASCII];
+
+	// Sorted non-ASCII characters in the phrases and their symbols
+	private final char[] otherChars;
+	private final int[] otherSymbols;
+
+	private final int symbolCount;
+
+	// transitions[state * symbolCount + symbol] is the next state
+	private final int[] transitions;
+
+	// Index of the shortest phrase ending at each state, or NO_MATCH
+	private final int[] matches;
+
+	/**
+	 * Compiles a matcher.
+	 * @param phrases Forbidden phrases (empty phrases are ignored)
+	 * @param ignoreCase true to match regardless of letter case
+	 */
+	public BlacklistMatcher(Collection<String> phrases, boolean ignoreCase) {
+		this.ignoreCase = ignoreCase;
+
+		List<String> kept = new ArrayList<String>();
+		for (String phrase : phrases) {
+			if (phrase == null) {
+				throw new IllegalArgumentException("Blacklist phrases cannot be null.");
+			}
+			if (!phrase.isEmpty()) {
+				kept.add(phrase);
+			}
+		}
+		this.phrases = kept.toArray(new String[0]);
+
+		// Assign a symbol to each distinct character, folding case if asked
+		StringBuilder others = new StringBuilder();
+		int nextSymbol = 1;
+		for (String phrase : this.phrases) {
+			for (int i = 0; i < phrase.length(); i++) {
+				char c = phrase.charAt(i);
+				if (symbolFor(c, others) == 0) {
+					int symbol = nextSymbol++;
+					for (char variant : variants(c)) {
+						if (variant < ASCII) {
+							asciiSymbols[variant] = symbol;
+						} else if (symbolFor(variant, others) == 0) {
+							others.append(variant).append((char) symbol);
+						}
+					}
+				}
+			}
+		}
+		this.symbolCount = nextSymbol;
+
+		// Flatten the non-ASCII pairs into sorted lookup arrays
+		int otherCount = others.length() / 2;
+		long[] packed = new long[otherCount];
+		for (int i = 0; i < otherCount; i++) {
+			packed[i] = ((long) others.charAt(2 * i) << 32) | others.charAt(2 * i + 1);
+		}
+		Arrays.sort(packed);
+		this.otherChars = new char[otherCount];
+		this.otherSymbols = new int[otherCount];
+		for (int i = 0; i < otherCount; i++) {
+			otherChars[i] = (char) (packed[i] >>> 32);
+			otherSymbols[i] = (int) packed[i];
+		}
+
+		// Build the trie; state 0 is the root
+		int maxStates = 1;
+		for (String phrase : this.phrases) {
+			maxStates += phrase.length();
+		}
+		int[] table = new int[maxStates * symbolCount];
+		Arrays.fill(table, -1);
+		int[] found = new int[maxStates];
+		Arrays.fill(found, NO_MATCH);
+		int states = 1;
+		for (int p = 0; p < this.phrases.length; p++) {
+			String phrase = this.phrases[p];
+			int state = 0;
+			for (int i = 0; i < phrase.length(); i++) {
+				int slot = state * symbolCount + symbolOf(phrase.charAt(i));
+				if (table[slot] < 0) {
+					table[slot] = states++;
+				}
+				state = table[slot];
+			}
+			if (found[state] == NO_MATCH || this.phrases[found[state]].length() > phrase.length()) {
+				found[state] = p;
+			}
+		}
+
+		// Breadth-first pass turns the trie into a full automaton
+		int[] failure = new int[states];
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		for (int symbol = 0; symbol < symbolCount; symbol++) {
+			int next = table[symbol];
+			if (next < 0) {
+				table[symbol] = 0;
+			} else {
+				failure[next] = 0;
+				queue.add(next);
+			}
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			if (found[state] == NO_MATCH) {
+				found[state] = found[failure[state]];
+			}
+			for (int symbol = 0; symbol < symbolCount; symbol++) {
+				int slot = state * symbolCount + symbol;
+				int next = table[slot];
+				if (next < 0) {
+					table[slot] = table[failure[state] * symbolCount + symbol];
+				} else {
+					failure[next] = table[failure[state] * symbolCount + symbol];
+					queue.add(next);
+				}
+			}
+		}
+
+		this.transitions = Arrays.copyOf(table, states * symbolCount);
+		this.matches = Arrays.copyOf(found, states);
+	}
+
+	/**
+	 * Finds the first forbidden phrase in the input, scanning left to right.
+	 * @param input Input string to check
+	 * @return The phrase that matched, or null if the input is clean
+	 */
+	public String findFirst(String input) {
+		if (input == null || phrases.length == 0) {
+			return null;
+		}
+		int state = 0;
+		for (int i = 0, length = input.length(); i < length; i++) {
+			state = transitions[state * symbolCount + symbolOf(input.charAt(i))];
+			int match = matches[state];
+			if (match != NO_MATCH) {
+				return phrases[match];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Checks whether the input contains any forbidden phrase.
+	 * @param input Input string to check
+	 * @return true if a phrase matched
+	 */
+	public boolean matches(String input) {
+		return findFirst(input) != null;
+	}
+
+	/**
+	 * Gets the number of phrases compiled into the matcher.
+	 * @return Phrase count
+	 */
+	public int size() {
+		return phrases.length;
+	}
+
+	/**
+	 * Checks whether the matcher ignores letter case.
+	 * @return true if matching is case-insensitive
+	 */
+	public boolean isIgnoreCase() {
+		return ignoreCase;
+	}
+
+	private int symbolOf(char c) {
+		if (c < ASCII) {
+			return asciiSymbols[c];
+		}
+		int index = Arrays.binarySearch(otherChars, c);
+		return index < 0 ? 0 : otherSymbols[index];
+	}
+
+	/**
+	 * Looks up a symbol while the non-ASCII table is still being built.
+	 */
+	private int symbolFor(char c, StringBuilder others) {
+		if (c < ASCII) {
+			return asciiSymbols[c];
+		}
+		for (int i = 0; i < others.length(); i += 2) {
+			if (others.charAt(i) == c) {
+				return others.charAt(i + 1);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Gets the characters that should share a symbol with c.
+	 */
+	private char[] variants(char c) {
+		if (!ignoreCase) {
+			return new char[] {c};
+		}
+		return new char[] {c, Character.toLowerCase(c), Character.toUpperCase(c), Character.toTitleCase(c)};
+	}
+}
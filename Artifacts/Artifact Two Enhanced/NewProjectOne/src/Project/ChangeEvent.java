@@ -0,0 +1,142 @@
+package Project;
+
+/**
+ * One change in a ChangeFeed: what kind of change it was, the ID it was
+ * made to and, for puts, the object as it stood.
+ * Events are slots in the feed's ring that are filled again once every
+ * subscriber has moved past them, so a handler must copy out what it needs
+ * before it returns and must not keep the event itself.
+ *
+ * For contacts kept in a ContactStore or MappedContactStore the contact is
+ * a view of the stored row, so it shows the row as it is when read rather
+ * than as it was at the change. Contacts in the shared map, tasks and
+ * appointments are never changed once published.
+ *
+ * @author Stewart Withrow
+ */
+public final class ChangeEvent {
+
+	/**
+	 * Kinds of change.
+	 */
+	public enum Type {
+		CONTACT_PUT, CONTACT_DELETED, TASK_PUT, TASK_DELETED, APPOINTMENT_PUT, APPOINTMENT_DELETED
+	}
+
+	private Type type;
+	private long sequence;
+	private String contactID;
+	private int intID;
+	private Contact contact;
+	private Task task;
+	private Appointment appointment;
+
+	ChangeEvent() {
+	}
+
+	/**
+	 * Fills the slot with a contact change.
+	 */
+	void setContact(Type type, String contactID, Contact contact) {
+		this.type = type;
+		this.contactID = contactID;
+		this.intID = -1;
+		this.contact = contact;
+		this.task = null;
+		this.appointment = null;
+	}
+
+	/**
+	 * Fills the slot with a task change.
+	 */
+	void setTask(Type type, int taskID, Task task) {
+		this.type = type;
+		this.contactID = null;
+		this.intID = taskID;
+		this.contact = null;
+		this.task = task;
+		this.appointment = null;
+	}
+
+	/**
+	 * Fills the slot with an appointment change.
+	 */
+	void setAppointment(Type type, int apptID, Appointment appointment) {
+		this.type = type;
+		this.contactID = null;
+		this.intID = apptID;
+		this.contact = null;
+		this.task = null;
+		this.appointment = appointment;
+	}
+
+	void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Gets the kind of change.
+	 * @return Change type
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Gets the event's position in the feed. Positions start at 0 and go
+	 * up by one per change, and a subscriber sees every position from the
+	 * one it joined at.
+	 * @return Sequence number
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Gets the ID of the changed contact.
+	 * @return Contact ID, or null if the change was not to a contact
+	 */
+	public String getContactID() {
+		return contactID;
+	}
+
+	/**
+	 * Gets the ID of the changed task.
+	 * @return Task ID, or -1 if the change was not to a task
+	 */
+	public int getTaskID() {
+		return type == Type.TASK_PUT || type == Type.TASK_DELETED ? intID : -1;
+	}
+
+	/**
+	 * Gets the ID of the changed appointment.
+	 * @return Appointment ID, or -1 if the change was not to an appointment
+	 */
+	public int getApptID() {
+		return type == Type.APPOINTMENT_PUT || type == Type.APPOINTMENT_DELETED ? intID : -1;
+	}
+
+	/**
+	 * Gets the contact as it stood after a put.
+	 * @return Contact, or null for other changes
+	 */
+	public Contact getContact() {
+		return contact;
+	}
+
+	/**
+	 * Gets the task as it stood after a put.
+	 * @return Task, or null for other changes
+	 */
+	public Task getTask() {
+		return task;
+	}
+
+	/**
+	 * Gets the appointment as it stood after a put.
+	 * @return Appointment, or null for other changes
+	 */
+	public Appointment getAppointment() {
+		return appointment;
+	}
+}
@@ -0,0 +1,344 @@
+package Project;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process feed of every change made through the services it is added
+ * to, for consumers such as search, analytics and cache invalidation.
+ * Changes go into a ring of preallocated events; each subscriber reads the
+ * ring on its own thread, at its own pace, a batch at a time.
+ *
+ * Publishing takes no lock and allocates nothing: a change claims the next
+ * sequence number with one atomic increment, fills the event in that slot
+ * and marks the slot published. A slot is filled again only once every
+ * subscriber has handled it, so a change that would lap the slowest
+ * subscriber waits for it. The services publish while holding the lock
+ * that ordered the change, so changes to one ID arrive in order, and a
+ * slow subscriber holds up writers: a handler must keep up on average and
+ * must never make changes through a service that feeds it.
+ *
+ * @author Stewart Withrow
+ */
+public final class ChangeFeed implements MutationListener, AutoCloseable {
+
+	private static final VarHandle PUBLISHED = MethodHandles.arrayElementVarHandle(long[].class);
+
+	// Spins before a waiting thread parks
+	private static final int SPINS = 64;
+
+	// Pause between checks while a change waits for the slowest subscriber
+	private static final long LAPPED_WAIT_NANOS = 50_000L;
+
+	// Longest an idle subscriber sleeps without a wake-up
+	private static final long IDLE_WAIT_NANOS = 1_000_000L;
+
+	/**
+	 * Receives a subscriber's events.
+	 */
+	@FunctionalInterface
+	public interface Handler {
+		/**
+		 * Handles one change. The event is reused once this returns.
+		 * @param event Change
+		 * @param endOfBatch true for the last event available right now, a
+		 *        good point to flush work gathered over the batch
+		 */
+		void onChange(ChangeEvent event, boolean endOfBatch);
+	}
+
+	/**
+	 * A subscriber's place in the feed and the thread that reads for it.
+	 */
+	public final class Subscription implements AutoCloseable {
+
+		private final Handler handler;
+		private final int maxBatch;
+		private final Thread thread;
+
+		// Last sequence handled; every slot up to it may be filled again
+		private volatile long sequence;
+
+		private volatile boolean running = true;
+		private volatile boolean sleeping;
+		private volatile RuntimeException failure;
+
+		private Subscription(String name, int maxBatch, Handler handler) {
+			this.handler = handler;
+			this.maxBatch = maxBatch;
+			this.thread = new Thread(this::consume, name);
+			thread.setDaemon(true);
+		}
+
+		/**
+		 * Gets the sequence number of the last event handled. The gap to the
+		 * feed's getPublishedCount shows how far behind the subscriber is.
+		 * @return Last sequence handled, one less than the first to come
+		 */
+		public long getSequence() {
+			return sequence;
+		}
+
+		/**
+		 * Gets what the handler threw, if it ended the subscription.
+		 * @return Handler failure, or null
+		 */
+		public RuntimeException getFailure() {
+			return failure;
+		}
+
+		/**
+		 * Stops reading once the current batch is handled and releases the
+		 * subscriber's place, so writers no longer wait for it.
+		 */
+		@Override
+		public void close() {
+			running = false;
+			LockSupport.unpark(thread);
+			if (Thread.currentThread() == thread) {
+				return;
+			}
+			boolean interrupted = false;
+			while (thread.isAlive()) {
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * Reader loop: hands each run of published events to the handler,
+		 * then releases their slots together.
+		 */
+		private void consume() {
+			try {
+				long next = sequence + 1;
+				int idle = 0;
+				while (running) {
+					if (!isPublished(next)) {
+						if (idle++ < SPINS) {
+							Thread.onSpinWait();
+							continue;
+						}
+						sleeping = true;
+						if (!isPublished(next) && running) {
+							LockSupport.parkNanos(this, IDLE_WAIT_NANOS);
+						}
+						sleeping = false;
+						continue;
+					}
+					idle = 0;
+
+					long last = next;
+					while (last - next + 1 < maxBatch && isPublished(last + 1)) {
+						last++;
+					}
+					for (long current = next; current <= last; current++) {
+						handler.onChange(events[(int) current & mask], current == last);
+					}
+					sequence = last;
+					next = last + 1;
+				}
+			} catch (RuntimeException e) {
+				failure = e;
+			} finally {
+				unsubscribe(this);
+			}
+		}
+	}
+
+	private final ChangeEvent[] events;
+	private final long[] published;
+	private final int mask;
+
+	// Next sequence to claim
+	private final AtomicLong cursor = new AtomicLong();
+
+	// Replaced, never changed, when a subscriber joins or leaves
+	private volatile Subscription[] subscriptions = new Subscription[0];
+
+	private boolean closed;
+
+	/**
+	 * Creates a feed with no subscribers.
+	 * @param capacity Most events a subscriber can fall behind by before
+	 *        writers wait for it, rounded up to a power of two
+	 * @throws IllegalArgumentException if the capacity is not positive
+	 */
+	public ChangeFeed(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Feed capacity must be positive.");
+		}
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		events = new ChangeEvent[size];
+		published = new long[size];
+		for (int i = 0; i < size; i++) {
+			events[i] = new ChangeEvent();
+			published[i] = -1;
+		}
+		mask = size - 1;
+	}
+
+	/**
+	 * Starts a subscriber that sees every change published from now on.
+	 * @param name Name of the subscriber's thread
+	 * @param maxBatch Most events handled before their slots are released
+	 * @param handler Receives the events, on the subscriber's thread
+	 * @return The subscription, to close when done
+	 * @throws IllegalArgumentException if the batch size is not positive
+	 * @throws IllegalStateException if the feed is closed
+	 */
+	public synchronized Subscription subscribe(String name, int maxBatch, Handler handler) {
+		if (maxBatch <= 0) {
+			throw new IllegalArgumentException("Batch size must be positive.");
+		}
+		if (closed) {
+			throw new IllegalStateException("Feed is closed.");
+		}
+		Subscription subscription = new Subscription(name, maxBatch, handler);
+
+		// Join behind every claimed change so none can lap the new subscriber,
+		// then skip to the changes claimed from here on
+		subscription.sequence = cursor.get() - 1;
+		Subscription[] joined = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+		joined[joined.length - 1] = subscription;
+		subscriptions = joined;
+		subscription.sequence = cursor.get() - 1;
+
+		subscription.thread.start();
+		return subscription;
+	}
+
+	/**
+	 * Gets how many changes have been published, or are being published.
+	 * @return Number of sequence numbers claimed
+	 */
+	public long getPublishedCount() {
+		return cursor.get();
+	}
+
+	/**
+	 * Closes every subscription. Later changes are dropped.
+	 */
+	@Override
+	public void close() {
+		Subscription[] open;
+		synchronized (this) {
+			closed = true;
+			open = subscriptions;
+		}
+		for (Subscription subscription : open) {
+			subscription.close();
+		}
+	}
+
+	private synchronized void unsubscribe(Subscription subscription) {
+		Subscription[] current = subscriptions;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i] == subscription) {
+				Subscription[] left = new Subscription[current.length - 1];
+				System.arraycopy(current, 0, left, 0, i);
+				System.arraycopy(current, i + 1, left, i, left.length - i);
+				subscriptions = left;
+				return;
+			}
+		}
+	}
+
+	@Override
+	public void contactPut(Contact contact) {
+		long sequence = claim();
+		events[(int) sequence & mask].setContact(ChangeEvent.Type.CONTACT_PUT, contact.getContactID(), contact);
+		publish(sequence);
+	}
+
+	@Override
+	public void contactDeleted(String contactID) {
+		long sequence = claim();
+		events[(int) sequence & mask].setContact(ChangeEvent.Type.CONTACT_DELETED, contactID, null);
+		publish(sequence);
+	}
+
+	@Override
+	public void taskPut(Task task) {
+		long sequence = claim();
+		events[(int) sequence & mask].setTask(ChangeEvent.Type.TASK_PUT, task.getTaskID(), task);
+		publish(sequence);
+	}
+
+	@Override
+	public void taskDeleted(int taskID) {
+		long sequence = claim();
+		events[(int) sequence & mask].setTask(ChangeEvent.Type.TASK_DELETED, taskID, null);
+		publish(sequence);
+	}
+
+	@Override
+	public void appointmentPut(Appointment appointment) {
+		long sequence = claim();
+		events[(int) sequence & mask].setAppointment(ChangeEvent.Type.APPOINTMENT_PUT, appointment.getApptID(),
+				appointment);
+		publish(sequence);
+	}
+
+	@Override
+	public void appointmentDeleted(int apptID) {
+		long sequence = claim();
+		events[(int) sequence & mask].setAppointment(ChangeEvent.Type.APPOINTMENT_DELETED, apptID, null);
+		publish(sequence);
+	}
+
+	/**
+	 * Claims the next sequence number and waits until its slot has been
+	 * handled by every subscriber.
+	 */
+	private long claim() {
+		long sequence = cursor.getAndIncrement();
+		long lapped = sequence - events.length;
+		for (int spin = 0; lapped >= 0 && slowest() < lapped; spin++) {
+			if (spin < SPINS) {
+				Thread.onSpinWait();
+			} else {
+				LockSupport.parkNanos(this, LAPPED_WAIT_NANOS);
+			}
+		}
+		return sequence;
+	}
+
+	/**
+	 * Marks a filled slot published and wakes any sleeping subscriber.
+	 */
+	private void publish(long sequence) {
+		int index = (int) sequence & mask;
+		events[index].setSequence(sequence);
+		PUBLISHED.setVolatile(published, index, sequence);
+		for (Subscription subscription : subscriptions) {
+			if (subscription.sleeping) {
+				LockSupport.unpark(subscription.thread);
+			}
+		}
+	}
+
+	private boolean isPublished(long sequence) {
+		return (long) PUBLISHED.getAcquire(published, (int) sequence & mask) == sequence;
+	}
+
+	/**
+	 * Gets the last sequence every subscriber has handled.
+	 */
+	private long slowest() {
+		long slowest = Long.MAX_VALUE;
+		for (Subscription subscription : subscriptions) {
+			slowest = Math.min(slowest, subscription.sequence);
+		}
+		return slowest;
+	}
+}
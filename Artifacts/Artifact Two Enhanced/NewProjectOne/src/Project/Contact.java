@@ -1,6 +1,6 @@
 package Project;
 
-import java.util.regex.Pattern;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Class with basic contact information such as name, phone, and address.
@@ -12,14 +12,32 @@ public class Contact {
 	
 	private static final int VAR_MAX_LENGTH = 10;
 	private static final int ADDR_MAX_LENGTH = 30;
-	private static final Pattern INJECTION_PATTERN = Pattern.compile("[<>\"'%;()&+]");
+	
+	// Field bits reported by checkFields
+	public static final int FIELD_CONTACT_ID = 1;
+	public static final int FIELD_FIRST_NAME = 1 << 1;
+	public static final int FIELD_LAST_NAME = 1 << 2;
+	public static final int FIELD_PHONE = 1 << 3;
+	public static final int FIELD_ADDRESS = 1 << 4;
+	
+	// Returned by packPhone for phones that are not all digits
+	public static final long NOT_DIGITS = -1;
 	
 	private String contactID;
 	private String firstName;
 	private String lastName;
-	private String phone;
+	
+	// All-digit phones are packed into a long; anything else is kept as text
+	private long phoneDigits = NOT_DIGITS;
+	private String phoneText;
 	private String address;	
 	
+	// Goes up by one with every edit the service publishes
+	private long version;
+	
+	// Set once ContactService publishes the contact; setters then throw
+	private boolean frozen;
+	
 	/**
      * Constructs a Contact with validated fields.
      * 
@@ -47,6 +65,58 @@ public class Contact {
 			
 	}
 
+	/**
+	 * Constructs an empty Contact for subclasses that keep their fields
+	 * elsewhere, such as the row views handed out by ContactStore.
+	 */
+	Contact() {
+	}
+	
+	/**
+	 * Copies this contact without revalidating it.
+	 * ContactService changes the copy and publishes it in place of this
+	 * contact, so one other threads can reach is never changed under them.
+	 * @return A new contact with the same fields and version
+	 */
+	Contact copy() {
+		Contact copy = new Contact();
+		copy.contactID = getContactID();
+		copy.firstName = getFirstName();
+		copy.lastName = getLastName();
+		copy.phoneDigits = getPhoneDigits();
+		copy.phoneText = copy.phoneDigits == NOT_DIGITS ? getPhone() : null;
+		copy.address = getAddress();
+		copy.version = getVersion();
+		return copy;
+	}
+	
+	/**
+	 * Moves an edited copy on to the next version before it is published.
+	 */
+	void bumpVersion() {
+		version++;
+	}
+	
+	/**
+	 * Marks this contact as published, so its setters throw from now on.
+	 * ContactService freezes every contact before other threads can reach it.
+	 * Store views override the setters and are not affected.
+	 */
+	void freeze() {
+		frozen = true;
+	}
+	
+	/**
+	 * Copies this contact's fields, read at once if the caller holds the
+	 * lock of the store behind a view, into a frozen contact.
+	 * @return A frozen contact with the same fields and version
+	 */
+	Contact snapshot() {
+		Contact copy = copy();
+		copy.freeze();
+		return copy;
+	}
+
 	/**
      * Gets the contact's unique identifier
      * @return Contact ID
@@ -76,7 +146,16 @@ public class Contact {
 	 * @return Phone number
 	 */
 	public String getPhone() {
-		return phone;
+		return phoneDigits != NOT_DIGITS ? unpackPhone(phoneDigits) : phoneText;
+	}
+
+	/**
+	 * Gets the contact's phone number as a packed number.
+	 * @return The digits as a long, or NOT_DIGITS if the phone holds other characters
+	 */
+	public long getPhoneDigits() {
+		// Subclasses that keep their fields elsewhere pack from getPhone
+		return phoneDigits != NOT_DIGITS ? phoneDigits : packPhone(getPhone());
 	}
 
 	/**
@@ -87,6 +166,15 @@ public class Contact {
 		return address;
 	}
 	
+	/**
+	 * Gets the contact's version, for ContactService.updateContact.
+	 * A new contact is version 0; versions are not kept in the write-ahead log.
+	 * @return Version
+	 */
+	public long getVersion() {
+		return version;
+	}
+	
 	/**
      * Sets the contact's ID.
      * ID setter is private as it cannot be changed
@@ -100,8 +188,10 @@ public class Contact {
 	/**
      * Sets the contact's first name.
      * @param firstName First name
+     * @throws IllegalStateException if the contact was published by ContactService
      */
 	public void setFirstName(String firstName) {
+		checkMutable();
 		validateFirstName(firstName);
 		this.firstName = firstName;
 	}
@@ -109,8 +199,10 @@ public class Contact {
 	/**
 	 * Sets the contact's last name.
 	 * @param lastName Last name
+	 * @throws IllegalStateException if the contact was published by ContactService
 	 */
 	public void setLastName(String lastName) {
+		checkMutable();
 		validateLastName(lastName);
 		this.lastName = lastName;
 	}
@@ -118,30 +210,42 @@ public class Contact {
 	/**
 	 * Sets the contact's phone number.
 	 * @param phone Phone number
+	 * @throws IllegalStateException if the contact was published by ContactService
 	 */
 	public void setPhone(String phone) {
+		checkMutable();
 		validatePhone(phone);
-		this.phone = phone;
+		long digits = packPhone(phone);
+		this.phoneDigits = digits;
+		this.phoneText = digits == NOT_DIGITS ? phone : null;
 	}
 	
 	/**
 	 * Sets the contact's address.
 	 * @param address Address
+	 * @throws IllegalStateException if the contact was published by ContactService
 	 */
 	public void setAddress(String address) {
+		checkMutable();
 		validateAddress(address);
 		this.address = address;
 	}
 	
+	/**
+	 * Rejects changes to a published contact, which must go through ContactService.
+	 */
+	private void checkMutable() {
+		if (frozen) {
+			throw new IllegalStateException("Published contacts cannot be changed; edit them through ContactService.");
+		}
+	}
+	
 	/**
 	 * Validates the contact ID.
 	 * @param contactID Contact ID
 	 */
 	private void validateContactID(String contactID) {
-	    if (contactID == null || contactID.length() > VAR_MAX_LENGTH || contactID.isEmpty()) {
-	        throw new IllegalArgumentException("Contact ID must be non-null, non-empty and < " + VAR_MAX_LENGTH + " characters.");
-	    }
-	    validateNoInjection(contactID, "Contact ID");
+	    throwIfInvalid(FIELD_CONTACT_ID, checkContactID(contactID));
 	}
 
 	/**
@@ -149,10 +253,7 @@ public class Contact {
 	 * @param firstName First name
 	 */
 	private void validateFirstName(String firstName) {
-	    if (firstName == null || firstName.length() > VAR_MAX_LENGTH || firstName.isEmpty()) {
-	        throw new IllegalArgumentException("First name must be non-null, non-empty and < " + VAR_MAX_LENGTH + " characters.");
-	    }
-	    validateNoInjection(firstName, "First Name");
+	    throwIfInvalid(FIELD_FIRST_NAME, checkFirstName(firstName));
 	}
 
 	/**
@@ -160,10 +261,7 @@ public class Contact {
 	 * @param lastName Last name
 	 */
 	private void validateLastName(String lastName) {
-	    if (lastName == null || lastName.length() > VAR_MAX_LENGTH || lastName.isEmpty()) {
-	        throw new IllegalArgumentException("Last name must be non-null, non-empty and < " + VAR_MAX_LENGTH + " characters.");
-	    }
-	    validateNoInjection(lastName, "Last Name");
+	    throwIfInvalid(FIELD_LAST_NAME, checkLastName(lastName));
 	}
 
 	/**
@@ -171,10 +269,7 @@ public class Contact {
 	 * @param phone Phone number
 	 */
 	private void validatePhone(String phone) {
-	    if (phone == null || phone.length() != VAR_MAX_LENGTH) {
-	        throw new IllegalArgumentException("Phone number must be non-empty and exactly " + VAR_MAX_LENGTH + " characters.");
-	    }
-	    validateNoInjection(phone, "Phone Number");
+	    throwIfInvalid(FIELD_PHONE, checkPhone(phone));
 	}
 
 	/**
@@ -182,10 +277,207 @@ public class Contact {
 	 * @param address Address
 	 */
 	private void validateAddress(String address) {
-	    if (address == null || address.length() > ADDR_MAX_LENGTH || address.isEmpty()) {
-	        throw new IllegalArgumentException("Address must be non-null, non-empty and < " + ADDR_MAX_LENGTH + " characters.");
+	    throwIfInvalid(FIELD_ADDRESS, checkAddress(address));
+	}
+	
+	/**
+	 * Validates every field but the contact ID, so a caller can check a new
+	 * contact before choosing its ID.
+	 * @param firstName First name
+	 * @param lastName Last name
+	 * @param phone Phone number
+	 * @param address Address
+	 * @throws IllegalArgumentException if any field is invalid
+	 */
+	static void validateFields(String firstName, String lastName, String phone, String address) {
+	    throwIfInvalid(FIELD_FIRST_NAME, checkFirstName(firstName));
+	    throwIfInvalid(FIELD_LAST_NAME, checkLastName(lastName));
+	    throwIfInvalid(FIELD_PHONE, checkPhone(phone));
+	    throwIfInvalid(FIELD_ADDRESS, checkAddress(address));
+	}
+	
+	/**
+	 * Throws the message for a failed field check.
+	 * @param field Field bit
+	 * @param error Result of the field check
+	 */
+	private static void throwIfInvalid(int field, ValidationError error) {
+	    if (error != null) {
+	        throw new IllegalArgumentException(errorMessage(field, error));
+	    }
+	}
+	
+	/**
+	 * Checks a contact ID without throwing.
+	 * @param contactID Contact ID
+	 * @return The problem found, or null if valid
+	 */
+	public static ValidationError checkContactID(String contactID) {
+	    return InputValidator.checkText(contactID, VAR_MAX_LENGTH);
+	}
+	
+	/**
+	 * Checks a first name without throwing.
+	 * @param firstName First name
+	 * @return The problem found, or null if valid
+	 */
+	public static ValidationError checkFirstName(String firstName) {
+	    return InputValidator.checkText(firstName, VAR_MAX_LENGTH);
+	}
+	
+	/**
+	 * Checks a last name without throwing.
+	 * @param lastName Last name
+	 * @return The problem found, or null if valid
+	 */
+	public static ValidationError checkLastName(String lastName) {
+	    return InputValidator.checkText(lastName, VAR_MAX_LENGTH);
+	}
+	
+	/**
+	 * Checks a phone number without throwing.
+	 * @param phone Phone number
+	 * @return The problem found, or null if valid
+	 */
+	public static ValidationError checkPhone(String phone) {
+	    if (phone == null || phone.length() != VAR_MAX_LENGTH) {
+	        return ValidationError.WRONG_LENGTH;
+	    }
+	    return InputValidator.containsIllegalCharacters(phone) ? ValidationError.ILLEGAL_CHARACTERS : null;
+	}
+	
+	/**
+	 * Packs a phone number made only of digits into a long.
+	 * Leading zeros are restored by unpackPhone, since every phone has
+	 * exactly 10 characters.
+	 * @param phone Phone number
+	 * @return The digits as a long, or NOT_DIGITS if the phone is not 10 digits
+	 */
+	public static long packPhone(String phone) {
+	    if (phone == null || phone.length() != VAR_MAX_LENGTH) {
+	        return NOT_DIGITS;
+	    }
+	    long value = 0;
+	    for (int i = 0; i < VAR_MAX_LENGTH; i++) {
+	        char c = phone.charAt(i);
+	        if (c < '0' || c > '9') {
+	            return NOT_DIGITS;
+	        }
+	        value = value * 10 + (c - '0');
+	    }
+	    return value;
+	}
+	
+	/**
+	 * Turns a packed phone number back into its 10 digits.
+	 * @param digits Value from packPhone
+	 * @return Phone number with leading zeros
+	 */
+	public static String unpackPhone(long digits) {
+	    byte[] text = new byte[VAR_MAX_LENGTH];
+	    for (int i = VAR_MAX_LENGTH - 1; i >= 0; i--) {
+	        text[i] = (byte) ('0' + digits % 10);
+	        digits /= 10;
+	    }
+	    return new String(text, StandardCharsets.ISO_8859_1);
+	}
+	
+	/**
+	 * Checks an address without throwing.
+	 * @param address Address
+	 * @return The problem found, or null if valid
+	 */
+	public static ValidationError checkAddress(String address) {
+	    return InputValidator.checkText(address, ADDR_MAX_LENGTH);
+	}
+	
+	/**
+	 * Checks every field without throwing or allocating.
+	 * @param contactID Contact ID
+	 * @param firstName First name
+	 * @param lastName Last name
+	 * @param phone Phone number
+	 * @param address Address
+	 * @return Bitmask of FIELD_* values that failed, 0 if all are valid
+	 */
+	public static int checkFields(String contactID, String firstName, String lastName, 
+			String phone, String address) {
+	    int invalid = 0;
+	    if (checkContactID(contactID) != null) {
+	        invalid |= FIELD_CONTACT_ID;
+	    }
+	    if (checkFirstName(firstName) != null) {
+	        invalid |= FIELD_FIRST_NAME;
+	    }
+	    if (checkLastName(lastName) != null) {
+	        invalid |= FIELD_LAST_NAME;
+	    }
+	    if (checkPhone(phone) != null) {
+	        invalid |= FIELD_PHONE;
+	    }
+	    if (checkAddress(address) != null) {
+	        invalid |= FIELD_ADDRESS;
+	    }
+	    return invalid;
+	}
+	
+	/**
+	 * Gets the message for the first invalid field, in constructor order.
+	 * @param contactID Contact ID
+	 * @param firstName First name
+	 * @param lastName Last name
+	 * @param phone Phone number
+	 * @param address Address
+	 * @return The message, or null if every field is valid
+	 */
+	static String firstErrorMessage(String contactID, String firstName, String lastName, 
+			String phone, String address) {
+	    ValidationError error;
+	    if ((error = checkContactID(contactID)) != null) {
+	        return errorMessage(FIELD_CONTACT_ID, error);
+	    }
+	    if ((error = checkFirstName(firstName)) != null) {
+	        return errorMessage(FIELD_FIRST_NAME, error);
+	    }
+	    if ((error = checkLastName(lastName)) != null) {
+	        return errorMessage(FIELD_LAST_NAME, error);
+	    }
+	    if ((error = checkPhone(phone)) != null) {
+	        return errorMessage(FIELD_PHONE, error);
+	    }
+	    if ((error = checkAddress(address)) != null) {
+	        return errorMessage(FIELD_ADDRESS, error);
+	    }
+	    return null;
+	}
+	
+	/**
+	 * Gets the fixed message for a field check failure.
+	 * @param field One FIELD_* value
+	 * @param error Problem reported by the field check
+	 * @return Message shared by every failure of this kind
+	 */
+	public static String errorMessage(int field, ValidationError error) {
+	    boolean illegal = error == ValidationError.ILLEGAL_CHARACTERS;
+	    switch (field) {
+	        case FIELD_CONTACT_ID:
+	            return illegal ? "Contact ID contains illegal characters." 
+	                    : "Contact ID must be non-null, non-empty and < " + VAR_MAX_LENGTH + " characters.";
+	        case FIELD_FIRST_NAME:
+	            return illegal ? "First Name contains illegal characters." 
+	                    : "First name must be non-null, non-empty and < " + VAR_MAX_LENGTH + " characters.";
+	        case FIELD_LAST_NAME:
+	            return illegal ? "Last Name contains illegal characters." 
+	                    : "Last name must be non-null, non-empty and < " + VAR_MAX_LENGTH + " characters.";
+	        case FIELD_PHONE:
+	            return illegal ? "Phone Number contains illegal characters." 
+	                    : "Phone number must be non-empty and exactly " + VAR_MAX_LENGTH + " characters.";
+	        case FIELD_ADDRESS:
+	            return illegal ? "Address contains illegal characters." 
+	                    : "Address must be non-null, non-empty and < " + ADDR_MAX_LENGTH + " characters.";
+	        default:
+	            throw new IllegalArgumentException("Unknown contact field: " + field);
 	    }
-	    validateNoInjection(address, "Address");
 	}
 	
 	/**
@@ -194,8 +486,6 @@ public class Contact {
 	 * @param fieldName Name of the field being validated (for error messages)
 	 */
 	public static void validateNoInjection(String input, String fieldName) {
-		if (input != null && INJECTION_PATTERN.matcher(input).find()) {
-			throw new IllegalArgumentException(fieldName + " contains illegal characters.");
-		}
+		InputValidator.validateNoInjection(input, fieldName);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package Project;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of contacts in name order.
+ * Pass getNext to the next call to continue right after the last contact
+ * here; it is null once the list has been read to the end.
+ *
+ * @author Stewart Withrow
+ */
+public final class ContactPage {
+
+	private final List<Contact> contacts;
+	private final NameCursor next;
+
+	ContactPage(List<Contact> contacts, NameCursor next) {
+		this.contacts = Collections.unmodifiableList(contacts);
+		this.next = next;
+	}
+
+	/**
+	 * Gets the contacts on this page, in name order.
+	 * @return Contacts, at most the page size
+	 */
+	public List<Contact> getContacts() {
+		return contacts;
+	}
+
+	/**
+	 * Gets the position to start the next page from.
+	 * @return Cursor after the last contact, or null if there are no more
+	 */
+	public NameCursor getNext() {
+		return next;
+	}
+}
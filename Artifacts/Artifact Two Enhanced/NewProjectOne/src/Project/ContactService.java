@@ -1,20 +1,361 @@
 package Project;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 /**
  * Service class to manage Contact objects.
  * Provides methods to add, delete, and edit contacts.
+ * 
+ * Contacts live in the shared contacts map unless the service is given
+ * other storage, such as a MappedContactStore. Phone numbers and names are
+ * indexed for exact and prefix search, and a sorted view by name serves
+ * the contact list a page at a time.
+ * 
+ * IDs are allocated atomically, and an edit locks only the contact being
+ * changed. Readers get a published copy and never see part of an edit.
+ * Each edit bumps the contact's version, and updateContact applies a
+ * change only if the version is still the one the caller read.
+ * 
+ * After startWriter, one writer thread applies every change in batches,
+ * and the log commits once per batch. Each change also has an async form
+ * that returns a future. Listeners added with addListener are told about
+ * every change, and streamContacts reads contacts in name order in chunks.
  * 
  * @author Stewart Withrow
  */
 public class ContactService {
 	
 	// Holds the next ID for an added contact
-	private int currentID = 0;
+	private final AtomicInteger currentID = new AtomicInteger();
 	
-	// HashMap to hold contact objects, keyed by their unique ID
-	public static HashMap<String, Contact> contacts = new HashMap<String, Contact>();
+	// Concurrent map to hold contact objects, keyed by their unique ID
+	public static ConcurrentHashMap<String, Contact> contacts = new ConcurrentHashMap<String, Contact>();
+	
+	// Where this service keeps its contacts
+	private final ContactStorage storage;
+	
+	// Told about every change made through this service
+	private volatile MutationListener listener;
+	
+	// Phone index over the shared map, and the one this service uses
+	private static final PhoneIndex SHARED_PHONES = new PhoneIndex();
+	private final PhoneIndex phones;
+	
+	// Name indexes over the shared map, and the ones this service uses
+	private static final NameIndex SHARED_FIRST_NAMES = new NameIndex();
+	private static final NameIndex SHARED_LAST_NAMES = new NameIndex();
+	private final NameIndex firstNames;
+	private final NameIndex lastNames;
+	
+	// Sorted views by last name, first name and ID over the shared map, and the one this service uses
+	private static final ConcurrentSkipListSet<NameCursor> SHARED_BY_NAME = new ConcurrentSkipListSet<NameCursor>();
+	private final ConcurrentSkipListSet<NameCursor> byName;
+	
+	// Applies every change when set; otherwise callers apply their own
+	private volatile SingleWriter writer;
+	
+	/**
+	 * Creates a service that keeps contacts in memory only.
+	 */
+	public ContactService() {
+		this.storage = SHARED_MAP;
+		this.listener = MutationListener.NONE;
+		this.phones = SHARED_PHONES;
+		this.firstNames = SHARED_FIRST_NAMES;
+		this.lastNames = SHARED_LAST_NAMES;
+		this.byName = SHARED_BY_NAME;
+	}
+	
+	/**
+	 * Creates a service that records every change in a write-ahead log.
+	 * IDs continue after the highest one recovered from the log.
+	 * 
+	 * @param log Log opened with WriteAheadLog.open
+	 */
+	public ContactService(WriteAheadLog log) {
+		this.storage = SHARED_MAP;
+		this.listener = log;
+		this.phones = SHARED_PHONES;
+		this.firstNames = SHARED_FIRST_NAMES;
+		this.lastNames = SHARED_LAST_NAMES;
+		this.byName = SHARED_BY_NAME;
+		this.currentID.set(log.nextContactID());
+	}
+	
+	/**
+	 * Creates a service that keeps its contacts in the given storage
+	 * instead of the shared map. IDs continue after the highest one stored.
+	 * The indexes are built with one pass over the stored contacts.
+	 * 
+	 * @param storage Storage for the contacts, such as a MappedContactStore
+	 */
+	public ContactService(ContactStorage storage) {
+		this.storage = storage;
+		this.listener = MutationListener.NONE;
+		this.phones = new PhoneIndex();
+		this.firstNames = new NameIndex();
+		this.lastNames = new NameIndex();
+		this.byName = new ConcurrentSkipListSet<NameCursor>();
+		this.currentID.set(storage.nextContactID());
+		storage.forEach(this::index);
+	}
+	
+	/**
+	 * Switches this service to single-writer mode: changes are queued and
+	 * applied in batches by a writer thread the service owns, and callers
+	 * wait for their change as before. Validation runs on the caller's
+	 * thread, and reads do not go through the writer.
+	 * The writer still edits through the storage's own locking. That
+	 * locking is what keeps a reader's copy whole, and log replay and
+	 * changes made around stopWriter still run on other threads.
+	 * 
+	 * @param queueCapacity Most changes that can wait at once
+	 * @throws IllegalArgumentException if the capacity is not positive
+	 * @throws IllegalStateException if the writer is already running
+	 */
+	public synchronized void startWriter(int queueCapacity) {
+		if (writer != null) {
+			throw new IllegalStateException("Writer is already running.");
+		}
+		writer = new SingleWriter("contact-writer", queueCapacity, () -> listener.commit());
+	}
+	
+	/**
+	 * Stops the writer thread once it has applied the changes already
+	 * queued. Later changes are applied by their callers again.
+	 */
+	public synchronized void stopWriter() {
+		SingleWriter stopping = writer;
+		if (stopping != null) {
+			writer = null;
+			stopping.close();
+		}
+	}
+	
+	/**
+	 * Adds a listener that is told about every later change made through
+	 * this service, after the listeners it already has. Adding a ChangeFeed
+	 * publishes this service's changes to the feed's subscribers.
+	 * 
+	 * @param added Listener to add
+	 */
+	public synchronized void addListener(MutationListener added) {
+		listener = MutationListener.both(listener, added);
+	}
+	
+	/**
+	 * Applies a change on the writer thread if there is one, or on this
+	 * thread followed by a listener commit.
+	 */
+	private <T> T write(Supplier<T> change) {
+		SingleWriter current = writer;
+		if (current != null) {
+			return current.call(change);
+		}
+		T result = change.get();
+		listener.commit();
+		return result;
+	}
+	
+	/**
+	 * Gets a contact by ID.
+	 * The contact returned is never changed and its setters throw; edits
+	 * go through this service. From a store that keeps its own columns it
+	 * is a copy with every field read at once.
+	 * 
+	 * @param contactID Contact ID
+	 * @return The contact, or null if absent
+	 */
+	public Contact getContact(String contactID) {
+		return storage.snapshot(contactID);
+	}
+	
+	/**
+	 * Finds a contact by phone number, for caller ID.
+	 * All-digit numbers are looked up in the phone index; any other number
+	 * falls back to scanning every contact.
+	 * 
+	 * @param phone Phone number
+	 * @return ID of a contact with that number, or null if none
+	 */
+	public String findByPhone(String phone) {
+		if (phone == null) {
+			return null;
+		}
+		long digits = Contact.packPhone(phone);
+		if (digits == Contact.NOT_DIGITS) {
+			String[] found = new String[1];
+			storage.forEach(contact -> {
+				if (found[0] == null && phone.equals(contact.getPhone())) {
+					found[0] = contact.getContactID();
+				}
+			});
+			return found[0];
+		}
+		
+		// The index can hold IDs that have since changed number or been deleted
+		for (String contactID : phones.find(digits)) {
+			Contact contact = storage.get(contactID);
+			try {
+				if (contact != null && contact.getPhoneDigits() == digits) {
+					return contactID;
+				}
+			} catch (IllegalStateException e) {
+				// Deleted from a store that hands out views since the get
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Finds contacts whose first name matches, ignoring case.
+	 * 
+	 * @param firstName First name
+	 * @return IDs of the matching contacts
+	 */
+	public List<String> findByFirstName(String firstName) {
+		return search(firstNames, firstName, true, Integer.MAX_VALUE, Contact::getFirstName);
+	}
+	
+	/**
+	 * Finds contacts whose last name matches, ignoring case.
+	 * 
+	 * @param lastName Last name
+	 * @return IDs of the matching contacts
+	 */
+	public List<String> findByLastName(String lastName) {
+		return search(lastNames, lastName, true, Integer.MAX_VALUE, Contact::getLastName);
+	}
+	
+	/**
+	 * Finds contacts whose first name starts with a prefix, ignoring case,
+	 * for autocomplete. Results come in name order.
+	 * 
+	 * @param prefix Start of the first name
+	 * @param limit Most IDs to return
+	 * @return IDs of the matching contacts
+	 * @throws IllegalArgumentException if the limit is not positive
+	 */
+	public List<String> searchFirstName(String prefix, int limit) {
+		return search(firstNames, prefix, false, limit, Contact::getFirstName);
+	}
+	
+	/**
+	 * Finds contacts whose last name starts with a prefix, ignoring case,
+	 * for autocomplete. Results come in name order.
+	 * 
+	 * @param prefix Start of the last name
+	 * @param limit Most IDs to return
+	 * @return IDs of the matching contacts
+	 * @throws IllegalArgumentException if the limit is not positive
+	 */
+	public List<String> searchLastName(String prefix, int limit) {
+		return search(lastNames, prefix, false, limit, Contact::getLastName);
+	}
+	
+	/**
+	 * Searches a name index, keeping only IDs whose contact still has a matching name.
+	 */
+	private List<String> search(NameIndex index, String text, boolean exact, int limit,
+			Function<Contact, String> field) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("Limit must be positive.");
+		}
+		if (text == null) {
+			return new ArrayList<String>();
+		}
+		return index.find(text, exact, limit, (contactID, name) -> {
+			Contact contact = storage.get(contactID);
+			try {
+				return contact != null && NameIndex.fold(field.apply(contact)).equals(name);
+			} catch (IllegalStateException e) {
+				// Deleted from a store that hands out views since the get
+				return false;
+			}
+		});
+	}
+	
+	/**
+	 * Lists contacts sorted by last name, then first name, then ID, ignoring
+	 * case, one page at a time. Each page starts right after the cursor, so
+	 * it costs O(log n + pageSize) however deep into the list it is, and
+	 * contacts added or removed meanwhile do not shift later pages.
+	 * 
+	 * @param after Cursor from the previous page, or null for the first page
+	 * @param pageSize Most contacts to return
+	 * @return The page, with the cursor for the next one
+	 * @throws IllegalArgumentException if the page size is not positive
+	 */
+	public ContactPage listByName(NameCursor after, int pageSize) {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("Page size must be positive.");
+		}
+		List<Contact> page = new ArrayList<Contact>(Math.min(pageSize, 64));
+		NameCursor last = null;
+		for (NameCursor key : after == null ? byName : byName.tailSet(after, false)) {
+			Contact contact = current(key);
+			if (contact == null) {
+				continue;
+			}
+			if (page.size() == pageSize) {
+				// Another contact follows, so there is a next page
+				return new ContactPage(page, last);
+			}
+			page.add(contact);
+			last = key;
+		}
+		return new ContactPage(page, null);
+	}
+	
+	/**
+	 * Streams every contact in the same order as listByName to a subscriber
+	 * as it asks for them, without locking or gathering them first, so an
+	 * export of any size runs in constant memory. Contacts are sent as they
+	 * are when reached; those added, renamed or deleted meanwhile may or
+	 * may not be included.
+	 * 
+	 * @return Publisher of the contacts
+	 */
+	public Flow.Publisher<Contact> streamContacts() {
+		return new QueryPublisher<Contact>(() -> byName.stream()
+				.map(this::current)
+				.filter(Objects::nonNull)
+				.iterator());
+	}
+	
+	/**
+	 * Gets the contact at a sorted view position, if it is still there.
+	 */
+	private Contact current(NameCursor key) {
+		Contact contact = storage.snapshot(key.getContactID());
+		try {
+			return key.matches(contact) ? contact : null;
+		} catch (IllegalStateException e) {
+			// Deleted from a store that hands out views since the get
+			return null;
+		}
+	}
+	
+	/**
+	 * Adds a contact to this service's indexes.
+	 */
+	private void index(Contact contact) {
+		phones.add(contact.getPhoneDigits(), contact.getContactID());
+		firstNames.add(contact.getFirstName(), contact.getContactID());
+		lastNames.add(contact.getLastName(), contact.getContactID());
+		byName.add(NameCursor.of(contact));
+	}
 	
 	/**
      * Adds a new Contact to the map.
@@ -23,13 +364,110 @@ public class ContactService {
      * @param lastName Last name
      * @param phone Phone number
      * @param address Address
+     * @return The new contact's ID
      * @throws IllegalArgumentException if parameters are invalid
      */
-	public void addContact(String firstName, String lastName, String phone, String address) {
-		String stringID = Integer.toString(currentID);
+	public String addContact(String firstName, String lastName, String phone, String address) {
+		return insertContact(firstName, lastName, phone, address);
+	}
+	
+	/**
+	 * Adds a new contact on a virtual thread.
+	 * 
+	 * @param firstName First name
+	 * @param lastName Last name
+	 * @param phone Phone number
+	 * @param address Address
+	 * @return Future completed with the new contact's ID, or with the
+	 *         IllegalArgumentException if a parameter is invalid
+	 */
+	public CompletableFuture<String> addContactAsync(String firstName, String lastName, String phone,
+			String address) {
+		return Async.supply(() -> insertContact(firstName, lastName, phone, address));
+	}
+	
+	/**
+	 * Adds a contact under the next ID and returns that ID.
+	 */
+	private String insertContact(String firstName, String lastName, String phone, String address) {
+		// Check first, so a rejected add does not use up an ID
+		Contact.validateFields(firstName, lastName, phone, address);
+		if (storage != SHARED_MAP) {
+			// Stores that keep their own columns also need Latin-1 text
+			ContactStore.checkText(firstName, lastName, phone, address);
+		}
+		String stringID = Integer.toString(currentID.getAndIncrement());
 		Contact newContact = new Contact(stringID, firstName, lastName, phone, address);
-		contacts.put(stringID, newContact);
-		currentID++;
+		newContact.freeze();
+		write(() -> {
+			// Logged before it is stored, so a log that rejects it leaves it unpublished
+			listener.contactPut(newContact);
+			storage.add(newContact);
+			index(newContact);
+			return null;
+		});
+		return stringID;
+	}
+	
+	/**
+     * Adds many contacts at once.
+     * Rows are validated in parallel and take consecutive IDs from one block;
+     * invalid rows are reported in the result instead of throwing.
+     * 
+     * @param rows Contact rows, each {firstName, lastName, phone, address}
+     * @return Per-row outcome of the batch
+     */
+	public BatchResult addContacts(List<String[]> rows) {
+		String[][] input = rows.toArray(new String[0][]);
+		int firstID = currentID.getAndAdd(input.length);
+		Contact[] built = new Contact[input.length];
+		String[] messages = new String[input.length];
+		
+		IntStream.range(0, input.length).parallel().forEach(row -> {
+			String[] fields = input[row];
+			if (fields == null || fields.length != 4) {
+				messages[row] = "Contact rows must have 4 fields.";
+				return;
+			}
+			String contactID = Integer.toString(firstID + row);
+			messages[row] = Contact.firstErrorMessage(contactID, fields[0], fields[1], fields[2], fields[3]);
+			if (messages[row] == null && storage != SHARED_MAP) {
+				// Stores that keep their own columns also need Latin-1 text
+				try {
+					ContactStore.checkRow(contactID, fields[0], fields[1], fields[2], fields[3]);
+				} catch (IllegalArgumentException e) {
+					messages[row] = e.getMessage();
+				}
+			}
+			if (messages[row] == null) {
+				built[row] = new Contact(contactID, fields[0], fields[1], fields[2], fields[3]);
+				built[row].freeze();
+			}
+		});
+		
+		write(() -> {
+			// The writer thread inserts alone; callers share the work out
+			IntStream inserts = IntStream.range(0, built.length);
+			(writer == null ? inserts.parallel() : inserts).forEach(row -> {
+				if (built[row] != null) {
+					listener.contactPut(built[row]);
+					storage.add(built[row]);
+					index(built[row]);
+				}
+			});
+			return null;
+		});
+		return BatchResult.fromMessages(firstID, messages);
+	}
+	
+	/**
+	 * Adds many contacts at once on a virtual thread.
+	 * 
+	 * @param rows Contact rows, each {firstName, lastName, phone, address}
+	 * @return Future completed with the per-row outcome of the batch
+	 */
+	public CompletableFuture<BatchResult> addContactsAsync(List<String[]> rows) {
+		return Async.supply(() -> addContacts(rows));
 	}
 	
 	 /**
@@ -38,9 +476,34 @@ public class ContactService {
      * @param ID Contact ID to delete
      */
 	public void deleteContact(String ID) {
-        contacts.remove(ID);
+		write(() -> {
+			Contact existing = storage.get(ID);
+			if (existing == null) {
+				storage.remove(ID, listener);
+				return null;
+			}
+			long digits = existing.getPhoneDigits();
+			NameCursor position = NameCursor.of(existing);
+			if (storage.remove(ID, listener)) {
+				phones.remove(digits, ID);
+				firstNames.remove(position.getFirstName(), ID);
+				lastNames.remove(position.getLastName(), ID);
+				byName.remove(position);
+			}
+			return null;
+		});
     }
 	
+	/**
+	 * Deletes a contact on a virtual thread.
+	 * 
+	 * @param ID Contact ID to delete
+	 * @return Future completed once the contact is gone
+	 */
+	public CompletableFuture<Void> deleteContactAsync(String ID) {
+		return Async.run(() -> deleteContact(ID));
+	}
+	
 	/**
      * Edits the first name of a contact by ID.
      * 
@@ -48,10 +511,24 @@ public class ContactService {
      * @param firstName New first name
      */
 	public void editFirstName(String contactID, String firstName) {
-		Contact contact = contacts.get(contactID);
-		if (contact != null) {
+		write(() -> storage.edit(contactID, contact -> {
+			NameCursor oldPosition = NameCursor.of(contact);
 			contact.setFirstName(firstName);
-		}
+			firstNames.move(oldPosition.getFirstName(), firstName, contactID);
+			moveInView(oldPosition, contact);
+		}, listener));
+	}
+	
+	/**
+	 * Edits the first name of a contact on a virtual thread.
+	 * 
+	 * @param contactID Contact ID
+	 * @param firstName New first name
+	 * @return Future completed once the name is changed, or with the
+	 *         IllegalArgumentException if it is invalid
+	 */
+	public CompletableFuture<Void> editFirstNameAsync(String contactID, String firstName) {
+		return Async.run(() -> editFirstName(contactID, firstName));
 	}
 	
 	/**
@@ -61,9 +538,119 @@ public class ContactService {
      * @param lastName New last name
      */
 	public void editLastName(String contactID, String lastName) {
-		Contact contact = contacts.get(contactID);
-		if (contact != null) {
+		write(() -> storage.edit(contactID, contact -> {
+			NameCursor oldPosition = NameCursor.of(contact);
 			contact.setLastName(lastName);
+			lastNames.move(oldPosition.getLastName(), lastName, contactID);
+			moveInView(oldPosition, contact);
+		}, listener));
+	}
+	
+	/**
+	 * Edits the last name of a contact on a virtual thread.
+	 * 
+	 * @param contactID Contact ID
+	 * @param lastName New last name
+	 * @return Future completed once the name is changed, or with the
+	 *         IllegalArgumentException if it is invalid
+	 */
+	public CompletableFuture<Void> editLastNameAsync(String contactID, String lastName) {
+		return Async.run(() -> editLastName(contactID, lastName));
+	}
+	
+	/**
+	 * Moves a contact to its new place in the sorted view. The new place is
+	 * added first so a concurrent page sees the contact at one place or both;
+	 * only the one matching the contact is returned.
+	 */
+	private void moveInView(NameCursor oldPosition, Contact contact) {
+		NameCursor newPosition = NameCursor.of(contact);
+		if (!newPosition.equals(oldPosition)) {
+			byName.add(newPosition);
+			byName.remove(oldPosition);
+		}
+	}
+	
+	/**
+	 * Updates every field of a contact at once if no one else has changed it
+	 * since the caller read it. Every value is validated before anything
+	 * changes, and the version is checked while the contact is locked.
+	 * 
+	 * @param contactID Contact ID
+	 * @param expectedVersion Version the caller read from getContact
+	 * @param firstName New first name
+	 * @param lastName New last name
+	 * @param phone New phone number
+	 * @param address New address
+	 * @return true if the contact was updated, false if it is gone or has a different version
+	 * @throws IllegalArgumentException if a value is invalid
+	 */
+	public boolean updateContact(String contactID, long expectedVersion, String firstName, String lastName,
+			String phone, String address) {
+		if (storage == SHARED_MAP) {
+			String message = Contact.firstErrorMessage(contactID, firstName, lastName, phone, address);
+			if (message != null) {
+				throw new IllegalArgumentException(message);
+			}
+		} else {
+			// Stores that keep their own columns also need Latin-1 text
+			ContactStore.checkRow(contactID, firstName, lastName, phone, address);
+		}
+		
+		try {
+			return write(() -> storage.edit(contactID, contact -> {
+				if (contact.getVersion() != expectedVersion) {
+					throw VersionConflict.INSTANCE;
+				}
+				NameCursor oldPosition = NameCursor.of(contact);
+				long oldDigits = contact.getPhoneDigits();
+				contact.setFirstName(firstName);
+				contact.setLastName(lastName);
+				contact.setPhone(phone);
+				contact.setAddress(address);
+				
+				firstNames.move(oldPosition.getFirstName(), firstName, contactID);
+				lastNames.move(oldPosition.getLastName(), lastName, contactID);
+				long newDigits = contact.getPhoneDigits();
+				if (newDigits != oldDigits) {
+					phones.add(newDigits, contactID);
+					phones.remove(oldDigits, contactID);
+				}
+				moveInView(oldPosition, contact);
+			}, listener));
+		} catch (VersionConflict e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Updates every field of a contact if its version is unchanged, on a
+	 * virtual thread.
+	 * 
+	 * @param contactID Contact ID
+	 * @param expectedVersion Version the caller read from getContact
+	 * @param firstName New first name
+	 * @param lastName New last name
+	 * @param phone New phone number
+	 * @param address New address
+	 * @return Future completed with whether the contact was updated, or with
+	 *         the IllegalArgumentException if a value is invalid
+	 */
+	public CompletableFuture<Boolean> updateContactAsync(String contactID, long expectedVersion, String firstName,
+			String lastName, String phone, String address) {
+		return Async.supply(() -> updateContact(contactID, expectedVersion, firstName, lastName, phone, address));
+	}
+	
+	/**
+	 * Thrown from inside a storage edit to abandon it before anything changes.
+	 * Carries no stack trace, so one shared instance serves every conflict.
+	 */
+	private static final class VersionConflict extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		static final VersionConflict INSTANCE = new VersionConflict();
+		
+		private VersionConflict() {
+			super(null, null, false, false);
 		}
 	}
 	
@@ -74,22 +661,144 @@ public class ContactService {
      * @param phone New phone number
      */
 	public void editPhone(String contactID, String phone) {
-		Contact contact = contacts.get(contactID);
-		if (contact != null) {
+		write(() -> storage.edit(contactID, contact -> {
+			long oldDigits = contact.getPhoneDigits();
 			contact.setPhone(phone);
-		}
+			long newDigits = contact.getPhoneDigits();
+			if (newDigits != oldDigits) {
+				phones.add(newDigits, contactID);
+				phones.remove(oldDigits, contactID);
+			}
+		}, listener));
 	}
 	
 	/**
+	 * Edits the phone number of a contact on a virtual thread.
+	 * 
+	 * @param contactID Contact ID
+	 * @param phone New phone number
+	 * @return Future completed once the number is changed, or with the
+	 *         IllegalArgumentException if it is invalid
+	 */
+	public CompletableFuture<Void> editPhoneAsync(String contactID, String phone) {
+		return Async.run(() -> editPhone(contactID, phone));
+	}
+	
+	/**
 	 * Edits the address of a contact by ID.
 	 * 
 	 * @param contactID Contact ID
 	 * @param address New address
 	 */
 	public void editAddress(String contactID, String address) {
-		Contact contact = contacts.get(contactID);
-		if (contact != null) {
-			contact.setAddress(address);
+		write(() -> storage.edit(contactID, contact -> contact.setAddress(address), listener));
+	}
+	
+	/**
+	 * Edits the address of a contact on a virtual thread.
+	 * 
+	 * @param contactID Contact ID
+	 * @param address New address
+	 * @return Future completed once the address is changed, or with the
+	 *         IllegalArgumentException if it is invalid
+	 */
+	public CompletableFuture<Void> editAddressAsync(String contactID, String address) {
+		return Async.run(() -> editAddress(contactID, address));
+	}
+	
+	// Storage over the shared contacts map, read on every call since the field can be replaced
+	private static final ContactStorage SHARED_MAP = new ContactStorage() {
+		@Override
+		public Contact get(String contactID) {
+			return contactID == null ? null : contacts.get(contactID);
+		}
+		
+		@Override
+		public void add(Contact contact) {
+			if (contacts.putIfAbsent(contact.getContactID(), contact) != null) {
+				throw new IllegalArgumentException("Contact ID already exists.");
+			}
+		}
+		
+		@Override
+		public boolean remove(String contactID, MutationListener listener) {
+			boolean[] removed = new boolean[1];
+			// The listener runs before the entry goes; if it throws, the contact stays
+			contacts.computeIfPresent(contactID, (id, contact) -> {
+				listener.contactDeleted(id);
+				removed[0] = true;
+				return null;
+			});
+			return removed[0];
+		}
+		
+		@Override
+		public boolean edit(String contactID, Consumer<Contact> change, MutationListener listener) {
+			return contacts.computeIfPresent(contactID, (id, contact) -> {
+				// A rejected change leaves the published contact untouched
+				Contact updated = contact.copy();
+				change.accept(updated);
+				updated.bumpVersion();
+				updated.freeze();
+				listener.contactPut(updated);
+				return updated;
+			}) != null;
+		}
+		
+		@Override
+		public int size() {
+			return contacts.size();
+		}
+		
+		@Override
+		public void forEach(Consumer<? super Contact> action) {
+			contacts.values().forEach(action);
+		}
+	};
+	
+	/**
+	 * Puts a recovered contact back in the map.
+	 * Used when replaying the write-ahead log.
+	 * 
+	 * @param contact Recovered contact
+	 */
+	static void restore(Contact contact) {
+		contact.freeze();
+		String contactID = contact.getContactID();
+		Contact previous = contacts.put(contactID, contact);
+		if (previous == null) {
+			SHARED_FIRST_NAMES.add(contact.getFirstName(), contactID);
+			SHARED_LAST_NAMES.add(contact.getLastName(), contactID);
+			SHARED_BY_NAME.add(NameCursor.of(contact));
+		} else {
+			if (previous.getPhoneDigits() != contact.getPhoneDigits()) {
+				SHARED_PHONES.remove(previous.getPhoneDigits(), contactID);
+			}
+			SHARED_FIRST_NAMES.move(previous.getFirstName(), contact.getFirstName(), contactID);
+			SHARED_LAST_NAMES.move(previous.getLastName(), contact.getLastName(), contactID);
+			NameCursor position = NameCursor.of(contact);
+			NameCursor oldPosition = NameCursor.of(previous);
+			SHARED_BY_NAME.add(position);
+			if (!oldPosition.equals(position)) {
+				SHARED_BY_NAME.remove(oldPosition);
+			}
+		}
+		SHARED_PHONES.add(contact.getPhoneDigits(), contactID);
+	}
+	
+	/**
+	 * Removes a contact whose deletion was recovered.
+	 * Used when replaying the write-ahead log.
+	 * 
+	 * @param contactID Contact ID
+	 */
+	static void restoreDelete(String contactID) {
+		Contact removed = contacts.remove(contactID);
+		if (removed != null) {
+			SHARED_PHONES.remove(removed.getPhoneDigits(), contactID);
+			SHARED_FIRST_NAMES.remove(removed.getFirstName(), contactID);
+			SHARED_LAST_NAMES.remove(removed.getLastName(), contactID);
+			SHARED_BY_NAME.remove(NameCursor.of(removed));
 		}
 	}
-}
\ No newline at end of file
+}
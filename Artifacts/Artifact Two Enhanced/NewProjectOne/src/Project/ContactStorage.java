@@ -0,0 +1,92 @@
+package Project;
+
+import java.util.function.Consumer;
+
+/**
+ * Where a ContactService keeps its contacts.
+ * Implementations must be thread-safe, and must run an edit or removal and
+ * its listener call under the same lock so that changes to one contact
+ * reach the listener in the order they were applied.
+ *
+ * @author Stewart Withrow
+ */
+public interface ContactStorage {
+
+	/**
+	 * Gets a contact by ID.
+	 * @param contactID Contact ID
+	 * @return The contact, or null if absent
+	 */
+	Contact get(String contactID);
+
+	/**
+	 * Gets a contact as it stands now, as an object later edits do not
+	 * change and whose setters throw. Storage that hands out live views
+	 * must read every field under its lock, so the fields come from one
+	 * version of the contact.
+	 * @param contactID Contact ID
+	 * @return The contact, or null if absent
+	 */
+	default Contact snapshot(String contactID) {
+		return get(contactID);
+	}
+
+	/**
+	 * Stores a new contact. Storage that keeps its own copy of the fields
+	 * may hand out a different object from get.
+	 * @param contact Validated contact
+	 * @throws IllegalArgumentException if the ID is already stored
+	 */
+	void add(Contact contact);
+
+	/**
+	 * Deletes a contact, telling the listener first while the deletion is
+	 * locked; if the listener throws, the contact stays.
+	 * @param contactID Contact ID
+	 * @param listener Told about the deletion
+	 * @return true if a contact was removed
+	 */
+	boolean remove(String contactID, MutationListener listener);
+
+	/**
+	 * Changes a contact atomically, then tells the listener while still locked.
+	 * The change sees the contact at its current version; the version goes
+	 * up by one once the change is applied. If the change throws, the
+	 * version is left alone.
+	 * @param contactID Contact ID
+	 * @param change Setter calls to apply
+	 * @param listener Told about the contact as it now stands
+	 * @return true if the contact was found
+	 */
+	boolean edit(String contactID, Consumer<Contact> change, MutationListener listener);
+
+	/**
+	 * Gets the number of stored contacts.
+	 * @return Contact count
+	 */
+	int size();
+
+	/**
+	 * Visits every stored contact.
+	 * @param action Callback for each contact
+	 */
+	void forEach(Consumer<? super Contact> action);
+
+	/**
+	 * Gets an ID above every numeric contact ID stored, so a service
+	 * opened on existing storage does not hand out a taken ID.
+	 * Scans every contact unless overridden.
+	 * @return Next free numeric ID
+	 */
+	default int nextContactID() {
+		int[] next = new int[1];
+		forEach(contact -> {
+			try {
+				next[0] = Math.max(next[0], Integer.parseInt(contact.getContactID()) + 1);
+			} catch (NumberFormatException e) {
+				// IDs that are not numbers cannot collide with generated ones
+			}
+		});
+		return next[0];
+	}
+}
@@ -0,0 +1,598 @@
+package Project;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Columnar store for very large numbers of contacts.
+ * Each field lives in its own packed column of Latin-1 bytes, fixed-width
+ * to the Contact length limits and split into pages of 65,536 rows. A
+ * contact costs about 90 bytes including its index slot, and the heap holds
+ * a handful of large arrays per page instead of six objects per contact,
+ * so garbage collection work stays flat as the store grows.
+ *
+ * Contacts are handed out as flyweight views that read and write the
+ * columns directly. A view of a deleted contact throws on use, even if its
+ * row has since been given to another contact.
+ * Safe for use by multiple threads; every operation locks the store.
+ *
+ * @author Stewart Withrow
+ */
+public class ContactStore implements ContactStorage {
+
+	private static final int PAGE_BITS = 16;
+	private static final int PAGE_ROWS = 1 << PAGE_BITS;
+	private static final int PAGE_MASK = PAGE_ROWS - 1;
+
+	// Column widths, from the Contact length limits
+	private static final int ID_WIDTH = 10;
+	private static final int NAME_WIDTH = 10;
+	private static final int PHONE_WIDTH = 10;
+	private static final int ADDRESS_WIDTH = 30;
+
+	// Slots in the lengths column; the phone is always full width
+	private static final int ID = 0;
+	private static final int FIRST_NAME = 1;
+	private static final int LAST_NAME = 2;
+	private static final int ADDRESS = 3;
+	private static final int LENGTH_SLOTS = 4;
+
+	// Index slot values besides row + 1
+	private static final int EMPTY = 0;
+	private static final int TOMBSTONE = -1;
+
+	// Columns, one array per page; an ID length of 0 marks a free row
+	private byte[][] ids = new byte[0][];
+	private byte[][] firstNames = new byte[0][];
+	private byte[][] lastNames = new byte[0][];
+	private byte[][] phones = new byte[0][];
+	private byte[][] addresses = new byte[0][];
+	private byte[][] lengths = new byte[0][];
+
+	// Bumped when a row is freed, so old views can tell
+	private int[][] generations = new int[0][];
+
+	// Bumped by every edit of a row, and reported as the contact's version
+	private int[][] versions = new int[0][];
+
+	// Rows handed out so far, and freed rows waiting for reuse
+	private int rowLimit;
+	private int[] freeRows = new int[16];
+	private int freeCount;
+	private int size;
+
+	// Open-addressing index from contact ID to row + 1
+	private int[] index = new int[16];
+	private int indexUsed;
+
+	/**
+	 * Adds a contact.
+	 * @param contactID Unique contact identifier
+	 * @param firstName First name
+	 * @param lastName Last name
+	 * @param phone Phone number
+	 * @param address Address
+	 * @return View of the stored contact
+	 * @throws IllegalArgumentException if a field is invalid or the ID is taken
+	 */
+	public synchronized Contact add(String contactID, String firstName, String lastName,
+			String phone, String address) {
+		checkRow(contactID, firstName, lastName, phone, address);
+		if (findRow(contactID) >= 0) {
+			throw new IllegalArgumentException("Contact ID already exists.");
+		}
+		return insert(contactID, firstName, lastName, phone, address);
+	}
+
+	/**
+	 * Stores a copy of a new contact.
+	 * @param contact Contact to copy in
+	 * @throws IllegalArgumentException if a field is invalid or the ID is taken
+	 */
+	@Override
+	public synchronized void add(Contact contact) {
+		add(contact.getContactID(), contact.getFirstName(), contact.getLastName(), contact.getPhone(),
+				contact.getAddress());
+	}
+
+	/**
+	 * Stores a copy of a contact, replacing any contact with the same ID.
+	 * @param contact Contact to copy in
+	 * @return View of the stored contact
+	 * @throws IllegalArgumentException if a field is not Latin-1 text
+	 */
+	public synchronized Contact put(Contact contact) {
+		String contactID = contact.getContactID();
+		checkRow(contactID, contact.getFirstName(), contact.getLastName(), contact.getPhone(),
+				contact.getAddress());
+		int row = findRow(contactID);
+		if (row < 0) {
+			return insert(contactID, contact.getFirstName(), contact.getLastName(), contact.getPhone(),
+					contact.getAddress());
+		}
+		writeText(firstNames, NAME_WIDTH, FIRST_NAME, row, contact.getFirstName());
+		writeText(lastNames, NAME_WIDTH, LAST_NAME, row, contact.getLastName());
+		writeText(phones, PHONE_WIDTH, -1, row, contact.getPhone());
+		writeText(addresses, ADDRESS_WIDTH, ADDRESS, row, contact.getAddress());
+		versions[row >>> PAGE_BITS][row & PAGE_MASK]++;
+		return new Row(row, generation(row));
+	}
+
+	/**
+	 * Gets a view of a contact.
+	 * @param contactID Contact ID
+	 * @return View of the contact, or null if absent
+	 */
+	@Override
+	public synchronized Contact get(String contactID) {
+		int row = findRow(contactID);
+		return row < 0 ? null : new Row(row, generation(row));
+	}
+
+	/**
+	 * Gets a frozen copy of a contact, every field read under the store lock.
+	 * @param contactID Contact ID
+	 * @return The copy, or null if absent
+	 */
+	@Override
+	public synchronized Contact snapshot(String contactID) {
+		Contact view = get(contactID);
+		return view == null ? null : view.snapshot();
+	}
+
+	/**
+	 * Checks whether a contact is stored.
+	 * @param contactID Contact ID
+	 * @return true if present
+	 */
+	public synchronized boolean containsKey(String contactID) {
+		return findRow(contactID) >= 0;
+	}
+
+	/**
+	 * Changes a contact while the store is locked. The change is made to a
+	 * copy, which the listener is told about before the row is written, so
+	 * a change or listener that throws leaves the row as it was.
+	 * @param contactID Contact ID
+	 * @param change Setter calls to apply
+	 * @param listener Told about a frozen copy of the contact as it now stands
+	 * @return true if the contact was found
+	 */
+	@Override
+	public synchronized boolean edit(String contactID, Consumer<Contact> change, MutationListener listener) {
+		int row = findRow(contactID);
+		if (row < 0) {
+			return false;
+		}
+		Row view = new Row(row, generation(row));
+		Contact updated = view.copy();
+		change.accept(updated);
+		checkRow(contactID, updated.getFirstName(), updated.getLastName(), updated.getPhone(),
+				updated.getAddress());
+		updated.bumpVersion();
+		updated.freeze();
+		listener.contactPut(updated);
+
+		view.setFirstName(updated.getFirstName());
+		view.setLastName(updated.getLastName());
+		view.setPhone(updated.getPhone());
+		view.setAddress(updated.getAddress());
+		versions[row >>> PAGE_BITS][row & PAGE_MASK]++;
+		return true;
+	}
+
+	/**
+	 * Deletes a contact, telling the listener first while the store is locked.
+	 * @param contactID Contact ID
+	 * @param listener Told about the deletion
+	 * @return true if a contact was removed
+	 */
+	@Override
+	public synchronized boolean remove(String contactID, MutationListener listener) {
+		if (contactID == null || findSlot(contactID) < 0) {
+			return false;
+		}
+		// Told first, so a listener that throws leaves the contact in place
+		listener.contactDeleted(contactID);
+		return remove(contactID);
+	}
+
+	/**
+	 * Deletes a contact; its row is reused by a later add.
+	 * @param contactID Contact ID
+	 * @return true if a contact was removed
+	 */
+	public synchronized boolean remove(String contactID) {
+		if (contactID == null) {
+			return false;
+		}
+		int slot = findSlot(contactID);
+		if (slot < 0) {
+			return false;
+		}
+		int row = index[slot] - 1;
+		index[slot] = TOMBSTONE;
+		lengths[row >>> PAGE_BITS][(row & PAGE_MASK) * LENGTH_SLOTS + ID] = 0;
+		generations[row >>> PAGE_BITS][row & PAGE_MASK]++;
+		if (freeCount == freeRows.length) {
+			freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+		}
+		freeRows[freeCount++] = row;
+		size--;
+		return true;
+	}
+
+	/**
+	 * Gets the number of stored contacts.
+	 * @return Contact count
+	 */
+	@Override
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Removes every contact and releases the pages.
+	 * Views handed out earlier must not be used afterwards.
+	 */
+	public synchronized void clear() {
+		ids = new byte[0][];
+		firstNames = new byte[0][];
+		lastNames = new byte[0][];
+		phones = new byte[0][];
+		addresses = new byte[0][];
+		lengths = new byte[0][];
+		generations = new int[0][];
+		versions = new int[0][];
+		rowLimit = 0;
+		freeRows = new int[16];
+		freeCount = 0;
+		size = 0;
+		index = new int[16];
+		indexUsed = 0;
+	}
+
+	/**
+	 * Visits a view of every contact in row order.
+	 * The store is locked one row at a time, so writers are not held up
+	 * and contacts added or removed during the visit may or may not be seen.
+	 * @param action Callback for each contact
+	 */
+	@Override
+	public void forEach(Consumer<? super Contact> action) {
+		for (int row = 0; ; row++) {
+			Row view;
+			synchronized (this) {
+				if (row >= rowLimit) {
+					return;
+				}
+				if (isFree(row)) {
+					continue;
+				}
+				view = new Row(row, generation(row));
+			}
+			action.accept(view);
+		}
+	}
+
+	/**
+	 * Rejects fields Contact would reject, and text outside Latin-1.
+	 */
+	static void checkRow(String contactID, String firstName, String lastName,
+			String phone, String address) {
+		String message = Contact.firstErrorMessage(contactID, firstName, lastName, phone, address);
+		if (message != null) {
+			throw new IllegalArgumentException(message);
+		}
+		checkLatin1(contactID);
+		checkText(firstName, lastName, phone, address);
+	}
+
+	/**
+	 * Rejects contact fields, other than the ID, with text outside Latin-1.
+	 */
+	static void checkText(String firstName, String lastName, String phone, String address) {
+		checkLatin1(firstName);
+		checkLatin1(lastName);
+		checkLatin1(phone);
+		checkLatin1(address);
+	}
+
+	static void checkLatin1(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			if (value.charAt(i) > 0xFF) {
+				throw new IllegalArgumentException("Contact fields must be Latin-1 text.");
+			}
+		}
+	}
+
+	private Row insert(String contactID, String firstName, String lastName, String phone, String address) {
+		int row = allocateRow();
+		writeText(ids, ID_WIDTH, ID, row, contactID);
+		writeText(firstNames, NAME_WIDTH, FIRST_NAME, row, firstName);
+		writeText(lastNames, NAME_WIDTH, LAST_NAME, row, lastName);
+		writeText(phones, PHONE_WIDTH, -1, row, phone);
+		writeText(addresses, ADDRESS_WIDTH, ADDRESS, row, address);
+		versions[row >>> PAGE_BITS][row & PAGE_MASK] = 0;
+		addToIndex(contactID, row);
+		size++;
+		return new Row(row, generation(row));
+	}
+
+	private int allocateRow() {
+		if (freeCount > 0) {
+			return freeRows[--freeCount];
+		}
+		int row = rowLimit++;
+		int page = row >>> PAGE_BITS;
+		if (page == ids.length) {
+			ids = addPage(ids, ID_WIDTH);
+			firstNames = addPage(firstNames, NAME_WIDTH);
+			lastNames = addPage(lastNames, NAME_WIDTH);
+			phones = addPage(phones, PHONE_WIDTH);
+			addresses = addPage(addresses, ADDRESS_WIDTH);
+			lengths = addPage(lengths, LENGTH_SLOTS);
+			generations = Arrays.copyOf(generations, page + 1);
+			generations[page] = new int[PAGE_ROWS];
+			versions = Arrays.copyOf(versions, page + 1);
+			versions[page] = new int[PAGE_ROWS];
+		}
+		return row;
+	}
+
+	private static byte[][] addPage(byte[][] column, int width) {
+		byte[][] grown = Arrays.copyOf(column, column.length + 1);
+		grown[column.length] = new byte[PAGE_ROWS * width];
+		return grown;
+	}
+
+	/**
+	 * Copies a Latin-1 string into a column and records its length.
+	 * @param lengthSlot Slot in the lengths column, or -1 for the fixed-width phone
+	 */
+	private void writeText(byte[][] column, int width, int lengthSlot, int row, String value) {
+		byte[] page = column[row >>> PAGE_BITS];
+		int offset = (row & PAGE_MASK) * width;
+		for (int i = 0; i < value.length(); i++) {
+			page[offset + i] = (byte) value.charAt(i);
+		}
+		if (lengthSlot >= 0) {
+			lengths[row >>> PAGE_BITS][(row & PAGE_MASK) * LENGTH_SLOTS + lengthSlot] = (byte) value.length();
+		}
+	}
+
+	private String readText(byte[][] column, int width, int lengthSlot, int row) {
+		int length = lengthSlot < 0 ? width : lengths[row >>> PAGE_BITS][(row & PAGE_MASK) * LENGTH_SLOTS + lengthSlot];
+		return new String(column[row >>> PAGE_BITS], (row & PAGE_MASK) * width, length, StandardCharsets.ISO_8859_1);
+	}
+
+	private boolean isFree(int row) {
+		return lengths[row >>> PAGE_BITS][(row & PAGE_MASK) * LENGTH_SLOTS + ID] == 0;
+	}
+
+	private int generation(int row) {
+		return generations[row >>> PAGE_BITS][row & PAGE_MASK];
+	}
+
+	private int findRow(String contactID) {
+		if (contactID == null) {
+			return -1;
+		}
+		int slot = findSlot(contactID);
+		return slot < 0 ? -1 : index[slot] - 1;
+	}
+
+	/**
+	 * Finds the index slot holding a contact ID.
+	 * @return Slot number, or -1 if the ID is absent
+	 */
+	private int findSlot(String contactID) {
+		int mask = index.length - 1;
+		int slot = hash(contactID) & mask;
+		while (true) {
+			int entry = index[slot];
+			if (entry == EMPTY) {
+				return -1;
+			}
+			if (entry != TOMBSTONE && idEquals(entry - 1, contactID)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private void addToIndex(String contactID, int row) {
+		if ((indexUsed + 1) * 4 > index.length * 3) {
+			rebuildIndex();
+		}
+		int mask = index.length - 1;
+		int slot = hash(contactID) & mask;
+		while (index[slot] > 0) {
+			slot = (slot + 1) & mask;
+		}
+		if (index[slot] == EMPTY) {
+			indexUsed++;
+		}
+		index[slot] = row + 1;
+	}
+
+	/**
+	 * Rebuilds the index without tombstones, sized for the live rows.
+	 */
+	private void rebuildIndex() {
+		int capacity = 16;
+		while (capacity < (size + 1) * 2) {
+			capacity <<= 1;
+		}
+		int[] rebuilt = new int[capacity];
+		int mask = capacity - 1;
+		for (int row = 0; row < rowLimit; row++) {
+			if (!isFree(row)) {
+				int slot = hashRow(row) & mask;
+				while (rebuilt[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				rebuilt[slot] = row + 1;
+			}
+		}
+		index = rebuilt;
+		indexUsed = size;
+	}
+
+	private boolean idEquals(int row, String contactID) {
+		byte[] page = ids[row >>> PAGE_BITS];
+		int offset = (row & PAGE_MASK) * ID_WIDTH;
+		int length = lengths[row >>> PAGE_BITS][(row & PAGE_MASK) * LENGTH_SLOTS + ID];
+		if (length != contactID.length()) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if ((page[offset + i] & 0xFF) != contactID.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int hash(String contactID) {
+		int h = 0;
+		for (int i = 0; i < contactID.length(); i++) {
+			h = 31 * h + contactID.charAt(i);
+		}
+		return spread(h);
+	}
+
+	/**
+	 * Hashes a stored ID the same way hash(String) hashes its text.
+	 */
+	private int hashRow(int row) {
+		byte[] page = ids[row >>> PAGE_BITS];
+		int offset = (row & PAGE_MASK) * ID_WIDTH;
+		int length = lengths[row >>> PAGE_BITS][(row & PAGE_MASK) * LENGTH_SLOTS + ID];
+		int h = 0;
+		for (int i = 0; i < length; i++) {
+			h = 31 * h + (page[offset + i] & 0xFF);
+		}
+		return spread(h);
+	}
+
+	private static int spread(int h) {
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Flyweight Contact backed by one row of the store.
+	 * Holds only the row number and the generation it was created for.
+	 */
+	private final class Row extends Contact {
+		private final int row;
+		private final int generation;
+
+		Row(int row, int generation) {
+			this.row = row;
+			this.generation = generation;
+		}
+
+		@Override
+		public String getContactID() {
+			synchronized (ContactStore.this) {
+				checkLive();
+				return readText(ids, ID_WIDTH, ID, row);
+			}
+		}
+
+		@Override
+		public String getFirstName() {
+			synchronized (ContactStore.this) {
+				checkLive();
+				return readText(firstNames, NAME_WIDTH, FIRST_NAME, row);
+			}
+		}
+
+		@Override
+		public String getLastName() {
+			synchronized (ContactStore.this) {
+				checkLive();
+				return readText(lastNames, NAME_WIDTH, LAST_NAME, row);
+			}
+		}
+
+		@Override
+		public String getPhone() {
+			synchronized (ContactStore.this) {
+				checkLive();
+				return readText(phones, PHONE_WIDTH, -1, row);
+			}
+		}
+
+		@Override
+		public String getAddress() {
+			synchronized (ContactStore.this) {
+				checkLive();
+				return readText(addresses, ADDRESS_WIDTH, ADDRESS, row);
+			}
+		}
+
+		@Override
+		public long getVersion() {
+			synchronized (ContactStore.this) {
+				checkLive();
+				return versions[row >>> PAGE_BITS][row & PAGE_MASK];
+			}
+		}
+
+		@Override
+		public void setFirstName(String firstName) {
+			checkField(Contact.FIELD_FIRST_NAME, Contact.checkFirstName(firstName), firstName);
+			synchronized (ContactStore.this) {
+				checkLive();
+				writeText(firstNames, NAME_WIDTH, FIRST_NAME, row, firstName);
+			}
+		}
+
+		@Override
+		public void setLastName(String lastName) {
+			checkField(Contact.FIELD_LAST_NAME, Contact.checkLastName(lastName), lastName);
+			synchronized (ContactStore.this) {
+				checkLive();
+				writeText(lastNames, NAME_WIDTH, LAST_NAME, row, lastName);
+			}
+		}
+
+		@Override
+		public void setPhone(String phone) {
+			checkField(Contact.FIELD_PHONE, Contact.checkPhone(phone), phone);
+			synchronized (ContactStore.this) {
+				checkLive();
+				writeText(phones, PHONE_WIDTH, -1, row, phone);
+			}
+		}
+
+		@Override
+		public void setAddress(String address) {
+			checkField(Contact.FIELD_ADDRESS, Contact.checkAddress(address), address);
+			synchronized (ContactStore.this) {
+				checkLive();
+				writeText(addresses, ADDRESS_WIDTH, ADDRESS, row, address);
+			}
+		}
+
+		private void checkField(int field, ValidationError error, String value) {
+			if (error != null) {
+				throw new IllegalArgumentException(Contact.errorMessage(field, error));
+			}
+			checkLatin1(value);
+		}
+
+		/**
+		 * Rejects use of a view whose contact was deleted. Caller holds the store lock.
+		 */
+		private void checkLive() {
+			if (row >= rowLimit || generation(row) != generation || isFree(row)) {
+				throw new IllegalStateException("Contact was deleted from the store.");
+			}
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package Project;
+
+/**
+ * Shared input checks for the entity classes.
+ * Detects the injection characters < > " ' % ; ( ) & + with a single pass
+ * over the input against a precomputed bitmap, so a check never allocates.
+ * 
+ * @author Stewart Withrow
+ */
+public final class InputValidator {
+
+	// Characters rejected in any field
+	private static final String ILLEGAL_CHARACTERS = "<>\"'%;()&+";
+
+	// Bit c is set when character c is illegal; every illegal character is below 64
+	private static final long ILLEGAL_MASK = buildMask(ILLEGAL_CHARACTERS);
+
+	private InputValidator() {
+	}
+
+	/**
+	 * Checks input for injection characters.
+	 * @param input Input string to check
+	 * @return true if the input contains an illegal character
+	 */
+	public static boolean containsIllegalCharacters(String input) {
+		for (int i = 0, length = input.length(); i < length; i++) {
+			char c = input.charAt(i);
+			if (c < 64 && (ILLEGAL_MASK & (1L << c)) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks a required text field without throwing.
+	 * @param input Input string to check
+	 * @param maxLength Longest allowed length
+	 * @return The first problem found, or null if the input is valid
+	 */
+	public static ValidationError checkText(String input, int maxLength) {
+		if (input == null || input.isEmpty()) {
+			return ValidationError.MISSING;
+		}
+		if (input.length() > maxLength) {
+			return ValidationError.TOO_LONG;
+		}
+		return containsIllegalCharacters(input) ? ValidationError.ILLEGAL_CHARACTERS : null;
+	}
+
+	/**
+	 * Validates input against injection attacks.
+	 * @param input Input string to validate
+	 * @param fieldName Name of the field being validated (for error messages)
+	 * @throws IllegalArgumentException if the input contains an illegal character
+	 */
+	public static void validateNoInjection(String input, String fieldName) {
+		if (input != null && containsIllegalCharacters(input)) {
+			throw new IllegalArgumentException(fieldName + " contains illegal characters.");
+		}
+	}
+
+	/**
+	 * Builds the bitmap for a set of characters below 64.
+	 */
+	private static long buildMask(String characters) {
+		long mask = 0;
+		for (int i = 0; i < characters.length(); i++) {
+			mask |= 1L << characters.charAt(i);
+		}
+		return mask;
+	}
+}
@@ -0,0 +1,322 @@
+package Project;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Open-addressing hash map keyed by primitive int IDs.
+ * Keys live in an int[] and values in a parallel Object[], so there is no
+ * boxed Integer, String key or entry node per record.
+ *
+ * The map supports one writer at a time alongside any number of lock-free
+ * readers. Callers that mutate from several threads must serialize those
+ * writes themselves (the services lock on the map instance).
+ *
+ * @author Stewart Withrow
+ */
+public class IntHashMap<V> {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	// Marks a removed slot; slots are never reused until the next rehash
+	private static final Object TOMBSTONE = new Object();
+
+	private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Object[].class);
+
+	/**
+	 * Callback used to visit each live entry.
+	 */
+	@FunctionalInterface
+	public interface EntryConsumer<V> {
+		void accept(int key, V value);
+	}
+
+	/**
+	 * Backing arrays, swapped as a unit on resize.
+	 */
+	private static final class Table {
+		final int[] keys;
+		final Object[] values;
+		final int mask;
+		final int threshold;
+
+		Table(int capacity) {
+			keys = new int[capacity];
+			values = new Object[capacity];
+			mask = capacity - 1;
+			threshold = capacity - (capacity >>> 2);
+		}
+	}
+
+	private volatile Table table = new Table(DEFAULT_CAPACITY);
+
+	// Live entries, read by any thread
+	private volatile int size;
+
+	// Live entries plus tombstones, only touched by the writer
+	private int used;
+
+	/**
+	 * Gets the value stored for a key.
+	 * @param key Key to look up
+	 * @return The value, or null if absent
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		Table t = table;
+		int index = hash(key) & t.mask;
+		while (true) {
+			Object value = SLOTS.getAcquire(t.values, index);
+			if (value == null) {
+				return null;
+			}
+			if (value != TOMBSTONE && t.keys[index] == key) {
+				return (V) value;
+			}
+			index = (index + 1) & t.mask;
+		}
+	}
+
+	/**
+	 * Checks whether a key is present.
+	 * @param key Key to look up
+	 * @return true if the key has a value
+	 */
+	public boolean containsKey(int key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Stores a value for a key, replacing any existing value.
+	 * @param key Key to store under
+	 * @param value Value to store (not null)
+	 * @return The previous value, or null if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Value cannot be null.");
+		}
+
+		Table t = table;
+		int index = hash(key) & t.mask;
+		while (true) {
+			Object current = t.values[index];
+			if (current == null) {
+				t.keys[index] = key;
+				SLOTS.setRelease(t.values, index, value);
+				size = size + 1;
+				if (++used > t.threshold) {
+					rehash();
+				}
+				return null;
+			}
+			if (current != TOMBSTONE && t.keys[index] == key) {
+				SLOTS.setRelease(t.values, index, value);
+				return (V) current;
+			}
+			index = (index + 1) & t.mask;
+		}
+	}
+
+	/**
+	 * Removes a key.
+	 * @param key Key to remove
+	 * @return The removed value, or null if the key was absent
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+		Table t = table;
+		int index = hash(key) & t.mask;
+		while (true) {
+			Object current = t.values[index];
+			if (current == null) {
+				return null;
+			}
+			if (current != TOMBSTONE && t.keys[index] == key) {
+				SLOTS.setRelease(t.values, index, TOMBSTONE);
+				size = size - 1;
+				return (V) current;
+			}
+			index = (index + 1) & t.mask;
+		}
+	}
+
+	/**
+	 * Gets the number of entries.
+	 * @return Entry count
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Checks whether the map is empty.
+	 * @return true if there are no entries
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes every entry.
+	 */
+	public void clear() {
+		table = new Table(DEFAULT_CAPACITY);
+		size = 0;
+		used = 0;
+	}
+
+	/**
+	 * Visits every live entry. Concurrent writes may or may not be seen.
+	 * @param consumer Callback for each entry
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(EntryConsumer<? super V> consumer) {
+		Table t = table;
+		for (int i = 0; i < t.values.length; i++) {
+			Object value = SLOTS.getAcquire(t.values, i);
+			if (value != null && value != TOMBSTONE) {
+				consumer.accept(t.keys[i], (V) value);
+			}
+		}
+	}
+
+	/**
+	 * Iterates over the values without locking, so a large map can be read
+	 * a piece at a time. Each value is the one stored for its key when the
+	 * iteration reaches it; entries added or removed meanwhile may or may
+	 * not be seen, and a key removed and added again may be seen twice.
+	 * The iterator does not support remove.
+	 * @return Iterator over the live values
+	 */
+	public Iterator<V> valueIterator() {
+		Table start = table;
+		return new Iterator<V>() {
+			private int index;
+			private V next = advance();
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public V next() {
+				if (next == null) {
+					throw new NoSuchElementException();
+				}
+				V value = next;
+				next = advance();
+				return value;
+			}
+
+			/**
+			 * Finds the next key in the table the iteration started on and
+			 * looks it up again, so edits made since then are seen.
+			 */
+			private V advance() {
+				while (index < start.values.length) {
+					int slot = index++;
+					Object value = SLOTS.getAcquire(start.values, slot);
+					if (value != null && value != TOMBSTONE) {
+						V current = get(start.keys[slot]);
+						if (current != null) {
+							return current;
+						}
+					}
+				}
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * Gets the value for a decimal String key.
+	 * Compatibility shim for callers that still hold String IDs.
+	 * @param key Key as a decimal string
+	 * @return The value, or null if absent or the key is not numeric
+	 */
+	public V get(String key) {
+		int parsed = parseKey(key);
+		return parsed < 0 ? null : get(parsed);
+	}
+
+	/**
+	 * Checks whether a decimal String key is present.
+	 * Compatibility shim for callers that still hold String IDs.
+	 * @param key Key as a decimal string
+	 * @return true if the key has a value
+	 */
+	public boolean containsKey(String key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Removes a decimal String key.
+	 * Compatibility shim for callers that still hold String IDs.
+	 * @param key Key as a decimal string
+	 * @return The removed value, or null if absent or the key is not numeric
+	 */
+	public V remove(String key) {
+		int parsed = parseKey(key);
+		return parsed < 0 ? null : remove(parsed);
+	}
+
+	/**
+	 * Parses a non-negative decimal key without allocating.
+	 * @param key Key as a decimal string
+	 * @return The parsed key, or -1 if it is not a non-negative int
+	 */
+	public static int parseKey(String key) {
+		if (key == null || key.isEmpty() || key.length() > 10) {
+			return -1;
+		}
+		long value = 0;
+		for (int i = 0; i < key.length(); i++) {
+			char c = key.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value > Integer.MAX_VALUE ? -1 : (int) value;
+	}
+
+	/**
+	 * Rebuilds the table without tombstones, growing it if needed.
+	 * The new table is fully populated before it is published.
+	 */
+	private void rehash() {
+		Table old = table;
+		int capacity = DEFAULT_CAPACITY;
+		while (capacity - (capacity >>> 1) < size) {
+			capacity <<= 1;
+		}
+
+		Table t = new Table(capacity);
+		for (int i = 0; i < old.values.length; i++) {
+			Object value = old.values[i];
+			if (value != null && value != TOMBSTONE) {
+				int index = hash(old.keys[i]) & t.mask;
+				while (t.values[index] != null) {
+					index = (index + 1) & t.mask;
+				}
+				t.keys[index] = old.keys[i];
+				t.values[index] = value;
+			}
+		}
+		used = size;
+		table = t;
+	}
+
+	/**
+	 * Spreads sequential IDs across the table.
+	 */
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,227 @@
+package Project;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Interval tree over half-open time ranges [start, end).
+ * Built as a treap ordered by (start, ID) where each node also tracks the
+ * latest end in its subtree, so an overlap search visits one root-to-leaf
+ * path: O(log n) expected for insert, remove and overlap lookup.
+ * Not thread-safe; callers serialize access.
+ *
+ * @author Stewart Withrow
+ */
+public class IntervalTree<V> {
+
+	/**
+	 * A stored interval and the value it belongs to.
+	 */
+	public static final class Interval<V> {
+		private final long start;
+		private final long end;
+		private final int id;
+		private final V value;
+		private final int priority;
+		private long maxEnd;
+		private Interval<V> left;
+		private Interval<V> right;
+
+		private Interval(long start, long end, int id, V value) {
+			this.start = start;
+			this.end = end;
+			this.id = id;
+			this.value = value;
+			this.priority = ThreadLocalRandom.current().nextInt();
+			this.maxEnd = end;
+		}
+
+		/**
+		 * Gets the start of the interval (inclusive).
+		 * @return Start time
+		 */
+		public long getStart() {
+			return start;
+		}
+
+		/**
+		 * Gets the end of the interval (exclusive).
+		 * @return End time
+		 */
+		public long getEnd() {
+			return end;
+		}
+
+		/**
+		 * Gets the ID the interval was stored under.
+		 * @return ID
+		 */
+		public int getID() {
+			return id;
+		}
+
+		/**
+		 * Gets the value stored with the interval.
+		 * @return Value
+		 */
+		public V getValue() {
+			return value;
+		}
+	}
+
+	private Interval<V> root;
+	private int size;
+
+	/**
+	 * Adds an interval.
+	 * @param start Start time (inclusive)
+	 * @param end End time (exclusive, after start)
+	 * @param id ID that, with start, identifies the interval
+	 * @param value Value to store with the interval
+	 */
+	public void insert(long start, long end, int id, V value) {
+		if (end <= start) {
+			throw new IllegalArgumentException("Interval end must be after its start.");
+		}
+		root = insert(root, new Interval<V>(start, end, id, value));
+		size++;
+	}
+
+	/**
+	 * Removes the interval stored under a start time and ID.
+	 * @param start Start time the interval was stored with
+	 * @param id ID the interval was stored with
+	 * @return true if an interval was removed
+	 */
+	public boolean remove(long start, int id) {
+		int before = size;
+		root = remove(root, start, id);
+		return size < before;
+	}
+
+	/**
+	 * Finds any stored interval overlapping [start, end).
+	 * @param start Start time (inclusive)
+	 * @param end End time (exclusive)
+	 * @return An overlapping interval, or null if the range is free
+	 */
+	public Interval<V> findOverlap(long start, long end) {
+		Interval<V> node = root;
+		while (node != null) {
+			if (node.start < end && start < node.end) {
+				return node;
+			}
+			if (node.left != null && node.left.maxEnd > start) {
+				node = node.left;
+			} else {
+				node = node.right;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the number of stored intervals.
+	 * @return Interval count
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes every interval.
+	 */
+	public void clear() {
+		root = null;
+		size = 0;
+	}
+
+	private Interval<V> insert(Interval<V> node, Interval<V> added) {
+		if (node == null) {
+			return added;
+		}
+		if (compare(added.start, added.id, node) < 0) {
+			node.left = insert(node.left, added);
+			if (node.left.priority > node.priority) {
+				node = rotateRight(node);
+			}
+		} else {
+			node.right = insert(node.right, added);
+			if (node.right.priority > node.priority) {
+				node = rotateLeft(node);
+			}
+		}
+		update(node);
+		return node;
+	}
+
+	private Interval<V> remove(Interval<V> node, long start, int id) {
+		if (node == null) {
+			return null;
+		}
+		int result = compare(start, id, node);
+		if (result < 0) {
+			node.left = remove(node.left, start, id);
+		} else if (result > 0) {
+			node.right = remove(node.right, start, id);
+		} else {
+			size--;
+			return merge(node.left, node.right);
+		}
+		update(node);
+		return node;
+	}
+
+	/**
+	 * Joins two subtrees where every key on the left sorts before the right.
+	 */
+	private Interval<V> merge(Interval<V> left, Interval<V> right) {
+		if (left == null) {
+			return right;
+		}
+		if (right == null) {
+			return left;
+		}
+		if (left.priority > right.priority) {
+			left.right = merge(left.right, right);
+			update(left);
+			return left;
+		}
+		right.left = merge(left, right.left);
+		update(right);
+		return right;
+	}
+
+	private Interval<V> rotateRight(Interval<V> node) {
+		Interval<V> pivot = node.left;
+		node.left = pivot.right;
+		pivot.right = node;
+		update(node);
+		update(pivot);
+		return pivot;
+	}
+
+	private Interval<V> rotateLeft(Interval<V> node) {
+		Interval<V> pivot = node.right;
+		node.right = pivot.left;
+		pivot.left = node;
+		update(node);
+		update(pivot);
+		return pivot;
+	}
+
+	private static <V> void update(Interval<V> node) {
+		long maxEnd = node.end;
+		if (node.left != null && node.left.maxEnd > maxEnd) {
+			maxEnd = node.left.maxEnd;
+		}
+		if (node.right != null && node.right.maxEnd > maxEnd) {
+			maxEnd = node.right.maxEnd;
+		}
+		node.maxEnd = maxEnd;
+	}
+
+	private static int compare(long start, int id, Interval<?> node) {
+		int result = Long.compare(start, node.start);
+		return result != 0 ? result : Integer.compare(id, node.id);
+	}
+}
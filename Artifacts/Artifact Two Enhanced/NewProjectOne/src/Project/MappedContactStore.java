@@ -0,0 +1,551 @@
+package Project;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Contact storage in a memory-mapped file, outside the Java heap.
+ * The file is an open-addressing hash table of fixed-width 80-byte slots
+ * keyed by contact ID; the Contact length caps give every field a fixed
+ * offset in its slot, and the room left over holds the contact's version. Reads and edits go straight to the mapped pages with
+ * no deserialization, and reopening a file only reads its header and maps
+ * it, so startup time does not depend on the number of contacts.
+ *
+ * Writes reach the disk when the OS writes back the pages or force() is
+ * called; a crash in between can lose recent changes. Growing the table
+ * rewrites it to a temporary file that atomically replaces the old one.
+ * Safe for use by multiple threads; every operation locks the store.
+ *
+ * @author Stewart Withrow
+ */
+public class MappedContactStore implements ContactStorage, Closeable {
+
+	private static final int MAGIC = 0x434E5443;
+	private static final int VERSION = 1;
+
+	// Header: magic, version, capacity, size, used slots, next ID
+	private static final int HEADER_BYTES = 64;
+	private static final int CAPACITY_AT = 8;
+	private static final int SIZE_AT = 12;
+	private static final int USED_AT = 16;
+	private static final int NEXT_ID_AT = 20;
+
+	// Slot layout: state, four lengths, then the fixed-width fields
+	private static final int SLOT_BYTES = 80;
+	private static final int STATE = 0;
+	private static final int ID_LENGTH = 1;
+	private static final int FIRST_NAME_LENGTH = 2;
+	private static final int LAST_NAME_LENGTH = 3;
+	private static final int ADDRESS_LENGTH = 4;
+	private static final int ID_AT = 5;
+	private static final int FIRST_NAME_AT = 15;
+	private static final int LAST_NAME_AT = 25;
+	private static final int PHONE_AT = 35;
+	private static final int ADDRESS_AT = 45;
+	private static final int PHONE_WIDTH = 10;
+	private static final int ROW_VERSION_AT = 75;
+
+	// Slot states; a new file is all zeros, so every slot starts empty
+	private static final byte EMPTY = 0;
+	private static final byte LIVE = 1;
+	private static final byte DELETED = 2;
+
+	// Slots per mapping, keeping each mapping far below the 2 GB limit
+	private static final int CHUNK_BITS = 20;
+	private static final int CHUNK_SLOTS = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SLOTS - 1;
+
+	private static final int MIN_CAPACITY = 1024;
+
+	private final Path file;
+	private FileChannel channel;
+	private MappedByteBuffer header;
+	private MappedByteBuffer[] chunks;
+	private int capacity;
+
+	private MappedContactStore(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Opens a store, creating the file if it does not exist.
+	 * @param file Path of the store file
+	 * @return The open store
+	 * @throws IOException if the file cannot be opened or is not a contact store
+	 */
+	public static MappedContactStore open(Path file) throws IOException {
+		Files.deleteIfExists(tempFile(file));
+		MappedContactStore store = new MappedContactStore(file);
+		store.map(MIN_CAPACITY);
+		return store;
+	}
+
+	/**
+	 * Maps the file, formatting it first if it is empty.
+	 * @param newCapacity Slot count to format an empty file with
+	 */
+	private void map(int newCapacity) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			boolean fresh = channel.size() == 0;
+			header = channel.map(MapMode.READ_WRITE, 0, HEADER_BYTES);
+			if (fresh) {
+				header.putInt(0, MAGIC);
+				header.putInt(4, VERSION);
+				header.putInt(CAPACITY_AT, newCapacity);
+			} else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+				throw new IOException(file + " is not a contact store.");
+			}
+			capacity = header.getInt(CAPACITY_AT);
+			if (!fresh && channel.size() != HEADER_BYTES + (long) capacity * SLOT_BYTES) {
+				throw new IOException(file + " is damaged.");
+			}
+			chunks = new MappedByteBuffer[(capacity + CHUNK_SLOTS - 1) >>> CHUNK_BITS];
+			for (int c = 0; c < chunks.length; c++) {
+				int slots = Math.min(CHUNK_SLOTS, capacity - c * CHUNK_SLOTS);
+				long at = HEADER_BYTES + (long) c * CHUNK_SLOTS * SLOT_BYTES;
+				chunks[c] = channel.map(MapMode.READ_WRITE, at, (long) slots * SLOT_BYTES);
+			}
+		} catch (IOException e) {
+			channel.close();
+			channel = null;
+			throw e;
+		}
+	}
+
+	@Override
+	public synchronized Contact get(String contactID) {
+		checkOpen();
+		return contactID != null && findSlot(contactID) >= 0 ? new Record(contactID) : null;
+	}
+
+	/**
+	 * Gets a frozen copy of a contact, every field read under the store lock.
+	 * @param contactID Contact ID
+	 * @return The copy, or null if absent
+	 */
+	@Override
+	public synchronized Contact snapshot(String contactID) {
+		Contact view = get(contactID);
+		return view == null ? null : view.snapshot();
+	}
+
+	/**
+	 * Copies a new contact into the file.
+	 * @param contact Contact to copy in
+	 * @throws IllegalArgumentException if a field is invalid or the ID is taken
+	 * @throws UncheckedIOException if the table had to grow and the rewrite failed
+	 */
+	@Override
+	public synchronized void add(Contact contact) {
+		checkOpen();
+		String contactID = contact.getContactID();
+		ContactStore.checkRow(contactID, contact.getFirstName(), contact.getLastName(), contact.getPhone(),
+				contact.getAddress());
+		if (findSlot(contactID) >= 0) {
+			throw new IllegalArgumentException("Contact ID already exists.");
+		}
+		if ((header.getInt(USED_AT) + 1) * 4L > capacity * 3L) {
+			rebuild();
+		}
+
+		int mask = capacity - 1;
+		int slot = hash(contactID) & mask;
+		while (state(slot) == LIVE) {
+			slot = (slot + 1) & mask;
+		}
+		if (state(slot) == EMPTY) {
+			header.putInt(USED_AT, header.getInt(USED_AT) + 1);
+		}
+		writeText(slot, ID_AT, ID_LENGTH, contactID);
+		writeText(slot, FIRST_NAME_AT, FIRST_NAME_LENGTH, contact.getFirstName());
+		writeText(slot, LAST_NAME_AT, LAST_NAME_LENGTH, contact.getLastName());
+		writeText(slot, PHONE_AT, -1, contact.getPhone());
+		writeText(slot, ADDRESS_AT, ADDRESS_LENGTH, contact.getAddress());
+		chunk(slot).putInt(offset(slot) + ROW_VERSION_AT, 0);
+		chunk(slot).put(offset(slot) + STATE, LIVE);
+		header.putInt(SIZE_AT, header.getInt(SIZE_AT) + 1);
+
+		int numericID = numericID(contactID);
+		if (numericID >= header.getInt(NEXT_ID_AT)) {
+			header.putInt(NEXT_ID_AT, numericID + 1);
+		}
+	}
+
+	@Override
+	public synchronized boolean remove(String contactID, MutationListener listener) {
+		checkOpen();
+		int slot = contactID == null ? -1 : findSlot(contactID);
+		if (slot < 0) {
+			return false;
+		}
+		// Told first, so a listener that throws leaves the contact in place
+		listener.contactDeleted(contactID);
+		chunk(slot).put(offset(slot) + STATE, DELETED);
+		header.putInt(SIZE_AT, header.getInt(SIZE_AT) - 1);
+		return true;
+	}
+
+	@Override
+	public synchronized boolean edit(String contactID, Consumer<Contact> change, MutationListener listener) {
+		checkOpen();
+		if (contactID == null || findSlot(contactID) < 0) {
+			return false;
+		}
+		// Changed on a copy and logged before the file is written, as in ContactStore
+		Record record = new Record(contactID);
+		Contact updated = record.copy();
+		change.accept(updated);
+		ContactStore.checkRow(contactID, updated.getFirstName(), updated.getLastName(), updated.getPhone(),
+				updated.getAddress());
+		updated.bumpVersion();
+		updated.freeze();
+		listener.contactPut(updated);
+
+		record.setFirstName(updated.getFirstName());
+		record.setLastName(updated.getLastName());
+		record.setPhone(updated.getPhone());
+		record.setAddress(updated.getAddress());
+		int slot = findSlot(contactID);
+		chunk(slot).putInt(offset(slot) + ROW_VERSION_AT, chunk(slot).getInt(offset(slot) + ROW_VERSION_AT) + 1);
+		return true;
+	}
+
+	@Override
+	public synchronized int size() {
+		checkOpen();
+		return header.getInt(SIZE_AT);
+	}
+
+	/**
+	 * Visits every stored contact. The store is locked for the whole visit.
+	 * @param action Callback for each contact
+	 */
+	@Override
+	public synchronized void forEach(Consumer<? super Contact> action) {
+		checkOpen();
+		for (int slot = 0; slot < capacity; slot++) {
+			if (state(slot) == LIVE) {
+				action.accept(new Record(readText(slot, ID_AT, ID_LENGTH)));
+			}
+		}
+	}
+
+	/**
+	 * Gets an ID above every numeric contact ID stored, kept in the header.
+	 * @return Next free numeric ID
+	 */
+	@Override
+	public synchronized int nextContactID() {
+		checkOpen();
+		return header.getInt(NEXT_ID_AT);
+	}
+
+	/**
+	 * Writes every changed page of the file to the disk.
+	 */
+	public synchronized void force() {
+		checkOpen();
+		for (MappedByteBuffer chunk : chunks) {
+			chunk.force();
+		}
+		header.force();
+	}
+
+	/**
+	 * Forces the file to disk and closes it.
+	 * Views handed out earlier throw IllegalStateException afterwards.
+	 * @throws IOException if the file cannot be closed
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (channel == null) {
+			return;
+		}
+		force();
+		channel.close();
+		channel = null;
+		header = null;
+		chunks = null;
+	}
+
+	private void checkOpen() {
+		if (channel == null) {
+			throw new IllegalStateException("Contact store is closed.");
+		}
+	}
+
+	/**
+	 * Rewrites the table without deleted slots, sized for one more contact,
+	 * then swaps it in for the current file.
+	 */
+	private void rebuild() {
+		int size = header.getInt(SIZE_AT);
+		int newCapacity = MIN_CAPACITY;
+		while (newCapacity < (size + 1) * 2) {
+			newCapacity <<= 1;
+		}
+
+		Path temp = tempFile(file);
+		try {
+			Files.deleteIfExists(temp);
+			MappedContactStore target = new MappedContactStore(temp);
+			target.map(newCapacity);
+			byte[] slotBytes = new byte[SLOT_BYTES];
+			int mask = newCapacity - 1;
+			for (int slot = 0; slot < capacity; slot++) {
+				if (state(slot) == LIVE) {
+					int to = hashSlot(slot) & mask;
+					while (target.state(to) != EMPTY) {
+						to = (to + 1) & mask;
+					}
+					chunk(slot).get(offset(slot), slotBytes);
+					target.chunk(to).put(target.offset(to), slotBytes);
+				}
+			}
+			target.header.putInt(SIZE_AT, size);
+			target.header.putInt(USED_AT, size);
+			target.header.putInt(NEXT_ID_AT, header.getInt(NEXT_ID_AT));
+			target.close();
+
+			// Remaps the old file if the move fails, since it is then unchanged
+			channel.close();
+			try {
+				Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				map(newCapacity);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private MappedByteBuffer chunk(int slot) {
+		return chunks[slot >>> CHUNK_BITS];
+	}
+
+	private int offset(int slot) {
+		return (slot & CHUNK_MASK) * SLOT_BYTES;
+	}
+
+	private byte state(int slot) {
+		return chunk(slot).get(offset(slot) + STATE);
+	}
+
+	/**
+	 * Copies a Latin-1 string into a slot and records its length.
+	 * @param lengthAt Length byte in the slot, or -1 for the fixed-width phone
+	 */
+	private void writeText(int slot, int fieldAt, int lengthAt, String value) {
+		MappedByteBuffer chunk = chunk(slot);
+		int at = offset(slot) + fieldAt;
+		for (int i = 0; i < value.length(); i++) {
+			chunk.put(at + i, (byte) value.charAt(i));
+		}
+		if (lengthAt >= 0) {
+			chunk.put(offset(slot) + lengthAt, (byte) value.length());
+		}
+	}
+
+	private String readText(int slot, int fieldAt, int lengthAt) {
+		MappedByteBuffer chunk = chunk(slot);
+		int length = lengthAt < 0 ? PHONE_WIDTH : chunk.get(offset(slot) + lengthAt);
+		byte[] text = new byte[length];
+		chunk.get(offset(slot) + fieldAt, text);
+		return new String(text, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Finds the live slot holding a contact ID.
+	 * @return Slot number, or -1 if the ID is absent
+	 */
+	private int findSlot(String contactID) {
+		int mask = capacity - 1;
+		int slot = hash(contactID) & mask;
+		while (true) {
+			byte state = state(slot);
+			if (state == EMPTY) {
+				return -1;
+			}
+			if (state == LIVE && idEquals(slot, contactID)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private boolean idEquals(int slot, String contactID) {
+		MappedByteBuffer chunk = chunk(slot);
+		int at = offset(slot);
+		if (chunk.get(at + ID_LENGTH) != contactID.length()) {
+			return false;
+		}
+		for (int i = 0; i < contactID.length(); i++) {
+			if ((chunk.get(at + ID_AT + i) & 0xFF) != contactID.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int hash(String contactID) {
+		int h = 0;
+		for (int i = 0; i < contactID.length(); i++) {
+			h = 31 * h + contactID.charAt(i);
+		}
+		return spread(h);
+	}
+
+	/**
+	 * Hashes a stored ID the same way hash(String) hashes its text.
+	 */
+	private int hashSlot(int slot) {
+		MappedByteBuffer chunk = chunk(slot);
+		int at = offset(slot);
+		int h = 0;
+		for (int i = 0, length = chunk.get(at + ID_LENGTH); i < length; i++) {
+			h = 31 * h + (chunk.get(at + ID_AT + i) & 0xFF);
+		}
+		return spread(h);
+	}
+
+	private static int spread(int h) {
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Reads an ID made only of digits.
+	 * @return The ID's value, or -1 if it is not a number below Integer.MAX_VALUE
+	 */
+	private static int numericID(String contactID) {
+		long value = 0;
+		for (int i = 0; i < contactID.length(); i++) {
+			char c = contactID.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value < Integer.MAX_VALUE ? (int) value : -1;
+	}
+
+	private static Path tempFile(Path file) {
+		return file.resolveSibling(file.getFileName() + ".tmp");
+	}
+
+	/**
+	 * Contact view that reads and writes its slot in the mapped file.
+	 * Holds only the ID, since growing the table moves contacts to new slots.
+	 */
+	private final class Record extends Contact {
+		private final String contactID;
+
+		Record(String contactID) {
+			this.contactID = contactID;
+		}
+
+		@Override
+		public String getContactID() {
+			return contactID;
+		}
+
+		@Override
+		public String getFirstName() {
+			synchronized (MappedContactStore.this) {
+				return readText(liveSlot(), FIRST_NAME_AT, FIRST_NAME_LENGTH);
+			}
+		}
+
+		@Override
+		public String getLastName() {
+			synchronized (MappedContactStore.this) {
+				return readText(liveSlot(), LAST_NAME_AT, LAST_NAME_LENGTH);
+			}
+		}
+
+		@Override
+		public String getPhone() {
+			synchronized (MappedContactStore.this) {
+				return readText(liveSlot(), PHONE_AT, -1);
+			}
+		}
+
+		@Override
+		public String getAddress() {
+			synchronized (MappedContactStore.this) {
+				return readText(liveSlot(), ADDRESS_AT, ADDRESS_LENGTH);
+			}
+		}
+
+		@Override
+		public long getVersion() {
+			synchronized (MappedContactStore.this) {
+				int slot = liveSlot();
+				return chunk(slot).getInt(offset(slot) + ROW_VERSION_AT);
+			}
+		}
+
+		@Override
+		public void setFirstName(String firstName) {
+			checkField(Contact.FIELD_FIRST_NAME, Contact.checkFirstName(firstName), firstName);
+			synchronized (MappedContactStore.this) {
+				writeText(liveSlot(), FIRST_NAME_AT, FIRST_NAME_LENGTH, firstName);
+			}
+		}
+
+		@Override
+		public void setLastName(String lastName) {
+			checkField(Contact.FIELD_LAST_NAME, Contact.checkLastName(lastName), lastName);
+			synchronized (MappedContactStore.this) {
+				writeText(liveSlot(), LAST_NAME_AT, LAST_NAME_LENGTH, lastName);
+			}
+		}
+
+		@Override
+		public void setPhone(String phone) {
+			checkField(Contact.FIELD_PHONE, Contact.checkPhone(phone), phone);
+			synchronized (MappedContactStore.this) {
+				writeText(liveSlot(), PHONE_AT, -1, phone);
+			}
+		}
+
+		@Override
+		public void setAddress(String address) {
+			checkField(Contact.FIELD_ADDRESS, Contact.checkAddress(address), address);
+			synchronized (MappedContactStore.this) {
+				writeText(liveSlot(), ADDRESS_AT, ADDRESS_LENGTH, address);
+			}
+		}
+
+		private void checkField(int field, ValidationError error, String value) {
+			if (error != null) {
+				throw new IllegalArgumentException(Contact.errorMessage(field, error));
+			}
+			ContactStore.checkLatin1(value);
+		}
+
+		/**
+		 * Finds this contact's slot. Caller holds the store lock.
+		 */
+		private int liveSlot() {
+			checkOpen();
+			int slot = findSlot(contactID);
+			if (slot < 0) {
+				throw new IllegalStateException("Contact was deleted from the store.");
+			}
+			return slot;
+		}
+	}
+}
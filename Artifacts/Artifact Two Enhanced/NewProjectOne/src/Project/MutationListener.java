@@ -0,0 +1,122 @@
+package Project;
+
+/**
+ * Receives every change a service makes to its store.
+ * Puts carry the full state of the object after the change, so applying
+ * the same event twice leaves the same result. Events for one ID arrive in
+ * the order they were applied; the services report them while still holding
+ * the lock that ordered the change, so implementations must be quick and
+ * thread-safe. Every method defaults to doing nothing.
+ *
+ * The services report a change before they publish it. A listener that
+ * throws, such as a closed WriteAheadLog, stops the change: the caller
+ * gets the exception and the store is left as it was.
+ *
+ * @author Stewart Withrow
+ */
+public interface MutationListener {
+
+	// Listener used by services that have nothing attached
+	MutationListener NONE = new MutationListener() { };
+
+	/**
+	 * Called when a contact is added or edited, before it is published.
+	 * @param contact Contact as it now stands
+	 */
+	default void contactPut(Contact contact) { }
+
+	/**
+	 * Called when a contact is deleted, before it is removed.
+	 * @param contactID ID of the deleted contact
+	 */
+	default void contactDeleted(String contactID) { }
+
+	/**
+	 * Called when a task is added or edited, before it is published.
+	 * @param task Task as it now stands
+	 */
+	default void taskPut(Task task) { }
+
+	/**
+	 * Called when a task is deleted, before it is removed.
+	 * @param taskID ID of the deleted task
+	 */
+	default void taskDeleted(int taskID) { }
+
+	/**
+	 * Called when an appointment is added or edited, before it is published.
+	 * @param appointment Appointment as it now stands
+	 */
+	default void appointmentPut(Appointment appointment) { }
+
+	/**
+	 * Called when an appointment is deleted, before it is removed.
+	 * @param apptID ID of the deleted appointment
+	 */
+	default void appointmentDeleted(int apptID) { }
+
+	/**
+	 * Called once a service call has released its locks, before it returns.
+	 * Lets a listener finish slow work, such as waiting for a disk flush,
+	 * without holding up other writers.
+	 */
+	default void commit() { }
+
+	/**
+	 * Combines two listeners into one that tells the first, then the second.
+	 * @param first Listener told first
+	 * @param second Listener told second
+	 * @return Combined listener
+	 */
+	static MutationListener both(MutationListener first, MutationListener second) {
+		if (first == NONE) {
+			return second;
+		}
+		if (second == NONE) {
+			return first;
+		}
+		return new MutationListener() {
+			@Override
+			public void contactPut(Contact contact) {
+				first.contactPut(contact);
+				second.contactPut(contact);
+			}
+
+			@Override
+			public void contactDeleted(String contactID) {
+				first.contactDeleted(contactID);
+				second.contactDeleted(contactID);
+			}
+
+			@Override
+			public void taskPut(Task task) {
+				first.taskPut(task);
+				second.taskPut(task);
+			}
+
+			@Override
+			public void taskDeleted(int taskID) {
+				first.taskDeleted(taskID);
+				second.taskDeleted(taskID);
+			}
+
+			@Override
+			public void appointmentPut(Appointment appointment) {
+				first.appointmentPut(appointment);
+				second.appointmentPut(appointment);
+			}
+
+			@Override
+			public void appointmentDeleted(int apptID) {
+				first.appointmentDeleted(apptID);
+				second.appointmentDeleted(apptID);
+			}
+
+			@Override
+			public void commit() {
+				first.commit();
+				second.commit();
+			}
+		};
+	}
+}
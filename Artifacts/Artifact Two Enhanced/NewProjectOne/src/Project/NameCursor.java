@@ -0,0 +1,113 @@
+package Project;
+
+/**
+ * Position in the contact list sorted by last name, first name, then ID.
+ * Names compare without regard to case. ContactService keeps one of these
+ * per contact in its sorted view, and a page hands back the position of
+ * its last contact so the next page starts right after it, however the
+ * list has changed in between.
+ * Immutable and safe to share between threads.
+ *
+ * @author Stewart Withrow
+ */
+public final class NameCursor implements Comparable<NameCursor> {
+
+	private final String lastName;
+	private final String firstName;
+	private final String contactID;
+
+	// Folded names, so comparisons do not allocate
+	private final String lastKey;
+	private final String firstKey;
+
+	/**
+	 * Creates a position.
+	 * @param lastName Last name
+	 * @param firstName First name
+	 * @param contactID Contact ID
+	 * @throws IllegalArgumentException if any part is null
+	 */
+	public NameCursor(String lastName, String firstName, String contactID) {
+		if (lastName == null || firstName == null || contactID == null) {
+			throw new IllegalArgumentException("Cursor fields cannot be null.");
+		}
+		this.lastName = lastName;
+		this.firstName = firstName;
+		this.contactID = contactID;
+		this.lastKey = NameIndex.fold(lastName);
+		this.firstKey = NameIndex.fold(firstName);
+	}
+
+	/**
+	 * Creates the position of a contact as it stands now.
+	 * @param contact Contact
+	 * @return The contact's position
+	 */
+	public static NameCursor of(Contact contact) {
+		return new NameCursor(contact.getLastName(), contact.getFirstName(), contact.getContactID());
+	}
+
+	/**
+	 * Gets the last name at this position.
+	 * @return Last name
+	 */
+	public String getLastName() {
+		return lastName;
+	}
+
+	/**
+	 * Gets the first name at this position.
+	 * @return First name
+	 */
+	public String getFirstName() {
+		return firstName;
+	}
+
+	/**
+	 * Gets the contact ID at this position.
+	 * @return Contact ID
+	 */
+	public String getContactID() {
+		return contactID;
+	}
+
+	/**
+	 * Checks whether a contact still sits at this position.
+	 * @param contact Contact to check, may be null
+	 * @return true if the contact has this ID and these names
+	 */
+	boolean matches(Contact contact) {
+		return contact != null && contactID.equals(contact.getContactID())
+				&& lastName.equals(contact.getLastName()) && firstName.equals(contact.getFirstName());
+	}
+
+	@Override
+	public int compareTo(NameCursor other) {
+		int result = lastKey.compareTo(other.lastKey);
+		if (result == 0) {
+			result = firstKey.compareTo(other.firstKey);
+		}
+		if (result == 0) {
+			// Shorter numeric IDs first, so "9" sorts before "10"
+			result = Integer.compare(contactID.length(), other.contactID.length());
+		}
+		if (result == 0) {
+			result = contactID.compareTo(other.contactID);
+		}
+		if (result == 0) {
+			// Names that differ only in case are still different positions
+			result = lastName.compareTo(other.lastName);
+		}
+		return result != 0 ? result : firstName.compareTo(other.firstName);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof NameCursor && compareTo((NameCursor) other) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return (lastName.hashCode() * 31 + firstName.hashCode()) * 31 + contactID.hashCode();
+	}
+}
@@ -0,0 +1,265 @@
+package Project;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
+
+/**
+ * Trie from a name to the IDs of contacts with that name, for exact and
+ * prefix search. Names are folded to lower case, so "smi" finds "Smith".
+ * A prefix search walks the prefix and then the subtree below it, which
+ * costs O(prefix + k) for k results since names are at most 10 characters.
+ *
+ * Nodes replace their child array instead of changing it, and a name shared
+ * by several contacts keeps its IDs in a concurrent set, so searches need
+ * no lock; changes lock the index. The index may keep IDs
+ * whose contact has since changed or gone, so searches take a filter that
+ * checks each candidate's name against the contact.
+ *
+ * @author Stewart Withrow
+ */
+final class NameIndex {
+
+	private static final Node[] NO_CHILDREN = new Node[0];
+
+	/**
+	 * One character of a name. Children are sorted by label.
+	 */
+	private static final class Node {
+		final char label;
+		volatile Node[] children = NO_CHILDREN;
+
+		// IDs of names ending here: null, a String or a concurrent Set<String>
+		volatile Object ids;
+
+		Node(char label) {
+			this.label = label;
+		}
+
+		Node child(char c) {
+			Node[] current = children;
+			int low = 0;
+			int high = current.length - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				char label = current[mid].label;
+				if (label < c) {
+					low = mid + 1;
+				} else if (label > c) {
+					high = mid - 1;
+				} else {
+					return current[mid];
+				}
+			}
+			return null;
+		}
+	}
+
+	private final Node root = new Node('\0');
+
+	/**
+	 * Folds a name the way the index stores it.
+	 * @param name Name
+	 * @return Lower-case name
+	 */
+	static String fold(String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Records that a contact has a name.
+	 * @param name Name, or null to do nothing
+	 * @param contactID Contact ID
+	 */
+	synchronized void add(String name, String contactID) {
+		if (name == null) {
+			return;
+		}
+		String key = fold(name);
+		Node node = root;
+		for (int i = 0; i < key.length(); i++) {
+			char c = key.charAt(i);
+			Node next = node.child(c);
+			if (next == null) {
+				next = new Node(c);
+				Node[] current = node.children;
+				int at = 0;
+				while (at < current.length && current[at].label < c) {
+					at++;
+				}
+				Node[] grown = new Node[current.length + 1];
+				System.arraycopy(current, 0, grown, 0, at);
+				grown[at] = next;
+				System.arraycopy(current, at, grown, at + 1, current.length - at);
+				node.children = grown;
+			}
+			node = next;
+		}
+
+		node.ids = withID(node.ids, contactID);
+	}
+
+	/**
+	 * Forgets that a contact has a name, pruning nodes left empty.
+	 * @param name Name, or null to do nothing
+	 * @param contactID Contact ID
+	 */
+	synchronized void remove(String name, String contactID) {
+		if (name == null) {
+			return;
+		}
+		String key = fold(name);
+		Node[] path = new Node[key.length() + 1];
+		path[0] = root;
+		for (int i = 0; i < key.length(); i++) {
+			path[i + 1] = path[i].child(key.charAt(i));
+			if (path[i + 1] == null) {
+				return;
+			}
+		}
+
+		Node node = path[key.length()];
+		node.ids = withoutID(node.ids, contactID);
+
+		for (int i = key.length(); i > 0; i--) {
+			Node empty = path[i];
+			if (empty.ids != null || empty.children.length > 0) {
+				break;
+			}
+			Node[] siblings = path[i - 1].children;
+			Node[] shrunk = new Node[siblings.length - 1];
+			for (int from = 0, to = 0; from < siblings.length; from++) {
+				if (siblings[from] != empty) {
+					shrunk[to++] = siblings[from];
+				}
+			}
+			path[i - 1].children = shrunk;
+		}
+	}
+
+	/**
+	 * Moves a contact from one name to another, if they differ once folded.
+	 * @param oldName Name before the change
+	 * @param newName Name after the change
+	 * @param contactID Contact ID
+	 */
+	synchronized void move(String oldName, String newName, String contactID) {
+		if (oldName != null && newName != null && fold(oldName).equals(fold(newName))) {
+			return;
+		}
+		add(newName, contactID);
+		remove(oldName, contactID);
+	}
+
+	/**
+	 * Finds IDs recorded under a name or a prefix of names.
+	 * Results come in name order; IDs sharing a name come in no set order.
+	 * @param text Name or prefix
+	 * @param exact true to match the whole name, false to match a prefix
+	 * @param limit Most IDs to return
+	 * @param accept Filter given each candidate ID and the folded name it was
+	 *        found under; only candidates that pass are returned and counted
+	 * @return Matching IDs
+	 */
+	List<String> find(String text, boolean exact, int limit, BiPredicate<String, String> accept) {
+		List<String> found = new ArrayList<String>();
+		StringBuilder key = new StringBuilder(fold(text));
+		Node node = root;
+		for (int i = 0; i < key.length() && node != null; i++) {
+			node = node.child(key.charAt(i));
+		}
+		if (node != null) {
+			collect(node, key, !exact, limit, accept, found);
+		}
+		return found;
+	}
+
+	/**
+	 * Adds a node's IDs and, for a prefix search, those of its subtree.
+	 * @return false once the limit has been reached
+	 */
+	private static boolean collect(Node node, StringBuilder key, boolean subtree, int limit,
+			BiPredicate<String, String> accept, List<String> found) {
+		Object ids = node.ids;
+		if (ids instanceof String) {
+			if (!offer((String) ids, key, limit, accept, found)) {
+				return false;
+			}
+		} else if (ids != null) {
+			for (String contactID : castSet(ids)) {
+				if (!offer(contactID, key, limit, accept, found)) {
+					return false;
+				}
+			}
+		}
+		if (subtree) {
+			for (Node child : node.children) {
+				key.append(child.label);
+				boolean more = collect(child, key, true, limit, accept, found);
+				key.setLength(key.length() - 1);
+				if (!more) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static boolean offer(String contactID, StringBuilder key, int limit,
+			BiPredicate<String, String> accept, List<String> found) {
+		if (accept.test(contactID, key.toString())) {
+			found.add(contactID);
+		}
+		return found.size() < limit;
+	}
+
+	/**
+	 * Adds an ID to an entry that is null, one ID or a set of IDs.
+	 * Caller holds the index lock.
+	 * @return The entry to store
+	 */
+	static Object withID(Object ids, String contactID) {
+		if (ids == null) {
+			return contactID;
+		}
+		if (ids instanceof String) {
+			if (ids.equals(contactID)) {
+				return ids;
+			}
+			Set<String> set = ConcurrentHashMap.newKeySet();
+			set.add((String) ids);
+			set.add(contactID);
+			return set;
+		}
+		castSet(ids).add(contactID);
+		return ids;
+	}
+
+	/**
+	 * Removes an ID from an entry, going back to a bare ID when one is left.
+	 * Caller holds the index lock.
+	 * @return The entry to store, or null if no IDs are left
+	 */
+	static Object withoutID(Object ids, String contactID) {
+		if (ids instanceof String) {
+			return ids.equals(contactID) ? null : ids;
+		}
+		if (ids == null) {
+			return null;
+		}
+		Set<String> set = castSet(ids);
+		set.remove(contactID);
+		if (set.size() == 1) {
+			return set.iterator().next();
+		}
+		return set.isEmpty() ? null : set;
+	}
+
+	@SuppressWarnings("unchecked")
+	static Set<String> castSet(Object ids) {
+		return (Set<String>) ids;
+	}
+}
@@ -0,0 +1,74 @@
+package Project;
+
+import java.util.List;
+
+/**
+ * Reverse index from packed phone number to the IDs of contacts with it.
+ * Most numbers belong to one contact, so an entry is a bare String ID and
+ * only shared numbers pay for a concurrent set. Lookups need no lock;
+ * changes lock the index.
+ *
+ * The index may keep IDs whose contact has since changed or gone, so callers
+ * check each candidate against the contact before trusting it.
+ *
+ * @author Stewart Withrow
+ */
+final class PhoneIndex {
+
+	// Each value is a String ID or a concurrent Set<String> of IDs
+	private final LongHashMap<Object> entries = new LongHashMap<Object>();
+
+	/**
+	 * Records that a contact has a phone number.
+	 * @param digits Packed phone, or NOT_DIGITS to do nothing
+	 * @param contactID Contact ID
+	 */
+	synchronized void add(long digits, String contactID) {
+		if (digits == Contact.NOT_DIGITS) {
+			return;
+		}
+		Object current = entries.get(digits);
+		Object updated = NameIndex.withID(current, contactID);
+		if (updated != current) {
+			entries.put(digits, updated);
+		}
+	}
+
+	/**
+	 * Forgets that a contact has a phone number.
+	 * @param digits Packed phone, or NOT_DIGITS to do nothing
+	 * @param contactID Contact ID
+	 */
+	synchronized void remove(long digits, String contactID) {
+		if (digits == Contact.NOT_DIGITS) {
+			return;
+		}
+		Object current = entries.get(digits);
+		Object updated = NameIndex.withoutID(current, contactID);
+		if (updated == null) {
+			entries.remove(digits);
+		} else if (updated != current) {
+			entries.put(digits, updated);
+		}
+	}
+
+	/**
+	 * Gets the IDs recorded for a phone number.
+	 * @param digits Packed phone
+	 * @return Candidate IDs, empty if none
+	 */
+	Iterable<String> find(long digits) {
+		Object current = entries.get(digits);
+		if (current == null) {
+			return List.of();
+		}
+		return current instanceof String ? List.of((String) current) : NameIndex.castSet(current);
+	}
+
+	/**
+	 * Removes every entry.
+	 */
+	synchronized void clear() {
+		entries.clear();
+	}
+}
@@ -0,0 +1,169 @@
+package Project;
+
+import java.util.Iterator;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Publishes a query's results to each subscriber as it asks for them.
+ * Every subscriber gets its own pass over the results, started when it
+ * subscribes, and results are pulled from the source one at a time as
+ * demand allows, so nothing is gathered up front and memory stays flat
+ * however many results there are. Delivery runs on a virtual thread while
+ * the subscriber has demand; cancelling stops it before the next result
+ * and lets go of the source.
+ *
+ * @author Stewart Withrow
+ */
+final class QueryPublisher<T> implements Flow.Publisher<T> {
+
+	private final Supplier<Iterator<T>> query;
+
+	/**
+	 * Creates a publisher over a query.
+	 * @param query Starts a fresh pass over the results for each subscriber
+	 */
+	QueryPublisher(Supplier<Iterator<T>> query) {
+		this.query = query;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super T> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("Subscriber cannot be null.");
+		}
+		subscriber.onSubscribe(new QuerySubscription<T>(subscriber, query));
+	}
+
+	/**
+	 * One subscriber's pass over the results.
+	 */
+	private static final class QuerySubscription<T> implements Flow.Subscription {
+
+		private final Flow.Subscriber<? super T> subscriber;
+
+		// Started on the first delivery; dropped once the pass ends
+		private Supplier<Iterator<T>> query;
+		private Iterator<T> results;
+
+		// Results asked for and not yet sent; Long.MAX_VALUE means no limit
+		private final AtomicLong demand = new AtomicLong();
+
+		// Calls waiting for the delivery loop; the caller that makes it 1 starts the loop
+		private final AtomicInteger pending = new AtomicInteger();
+
+		private volatile boolean cancelled;
+		private volatile IllegalArgumentException badRequest;
+
+		QuerySubscription(Flow.Subscriber<? super T> subscriber, Supplier<Iterator<T>> query) {
+			this.subscriber = subscriber;
+			this.query = query;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				badRequest = new IllegalArgumentException("Request must be positive.");
+			} else {
+				demand.getAndAccumulate(n, (current, added) -> {
+					long total = current + added;
+					return total < 0 ? Long.MAX_VALUE : total;
+				});
+			}
+			schedule();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			schedule();
+		}
+
+		private void schedule() {
+			if (pending.getAndIncrement() == 0) {
+				Async.execute(this::drain);
+			}
+		}
+
+		/**
+		 * Delivery loop: runs until every call made meanwhile has been seen.
+		 */
+		private void drain() {
+			int missed = 1;
+			while (true) {
+				if (query != null) {
+					try {
+						deliver();
+					} catch (RuntimeException e) {
+						// A subscriber that throws has in effect cancelled
+						finish();
+						throw e;
+					}
+				}
+				missed = pending.addAndGet(-missed);
+				if (missed == 0) {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Sends results while there is demand, and ends the pass when the
+		 * results run out, the source fails or the subscriber cancels.
+		 */
+		private void deliver() {
+			long sent = 0;
+			while (true) {
+				if (cancelled) {
+					finish();
+					return;
+				}
+				if (badRequest != null) {
+					finish();
+					subscriber.onError(badRequest);
+					return;
+				}
+
+				long wanted = demand.get();
+				boolean more;
+				T next = null;
+				try {
+					if (results == null) {
+						results = query.get();
+					}
+					more = results.hasNext();
+					if (more && sent < wanted) {
+						next = results.next();
+					}
+				} catch (RuntimeException e) {
+					finish();
+					subscriber.onError(e);
+					return;
+				}
+				if (!more) {
+					finish();
+					subscriber.onComplete();
+					return;
+				}
+				if (sent == wanted) {
+					// Out of demand until the next request
+					if (demand.addAndGet(-sent) == 0) {
+						return;
+					}
+					sent = 0;
+					continue;
+				}
+				subscriber.onNext(next);
+				sent++;
+			}
+		}
+
+		private void finish() {
+			cancelled = true;
+			query = null;
+			results = null;
+		}
+	}
+}
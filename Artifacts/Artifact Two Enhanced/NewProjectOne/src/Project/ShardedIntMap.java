@@ -0,0 +1,302 @@
+package Project;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Int-keyed map split into a power-of-two number of IntHashMap shards,
+ * each holding the keys whose low bits select it. Every shard is its own
+ * lock: writers lock only the shard that owns their key (see shardFor), so
+ * writes to different shards run at once, while reads stay lock-free as
+ * in IntHashMap. With one shard it behaves like a single IntHashMap.
+ *
+ * Work over every shard, such as a full scan or a bulk insert, can be
+ * fanned out with reduceShards, which runs one fork/join task per shard.
+ *
+ * @author Stewart Withrow
+ */
+public class ShardedIntMap<V> {
+
+	// Most shards a map can have; lockAll nests one monitor per shard on the stack
+	public static final int MAX_SHARDS = 256;
+
+	private final IntHashMap<V>[] shards;
+
+	private final int mask;
+
+	/**
+	 * Creates a map with one shard.
+	 */
+	public ShardedIntMap() {
+		this(1);
+	}
+
+	/**
+	 * Creates a map with a number of shards.
+	 * @param shardCount Number of shards, rounded up to a power of two
+	 * @throws IllegalArgumentException if shardCount is not between 1 and MAX_SHARDS
+	 */
+	public ShardedIntMap(int shardCount) {
+		if (shardCount < 1 || shardCount > MAX_SHARDS) {
+			throw new IllegalArgumentException("Shard count must be between 1 and " + MAX_SHARDS + ".");
+		}
+		int count = Integer.highestOneBit(shardCount);
+		if (count < shardCount) {
+			count <<= 1;
+		}
+		@SuppressWarnings("unchecked")
+		IntHashMap<V>[] created = (IntHashMap<V>[]) new IntHashMap<?>[count];
+		for (int i = 0; i < count; i++) {
+			created[i] = new IntHashMap<V>();
+		}
+		shards = created;
+		mask = count - 1;
+	}
+
+	/**
+	 * Gets the number of shards.
+	 * @return Shard count, a power of two
+	 */
+	public int shardCount() {
+		return shards.length;
+	}
+
+	/**
+	 * Gets the index of the shard that owns a key.
+	 * @param key Key
+	 * @return Shard index
+	 */
+	public int shardOf(int key) {
+		return key & mask;
+	}
+
+	/**
+	 * Gets a shard by index. Writers lock the shard before changing it.
+	 * @param index Shard index
+	 * @return The shard
+	 */
+	public IntHashMap<V> shard(int index) {
+		return shards[index];
+	}
+
+	/**
+	 * Gets the shard that owns a key, which is also the lock for writing it.
+	 * @param key Key
+	 * @return The shard
+	 */
+	public IntHashMap<V> shardFor(int key) {
+		return shards[key & mask];
+	}
+
+	/**
+	 * Gets the value stored for a key without locking.
+	 * @param key Key to look up
+	 * @return The value, or null if absent
+	 */
+	public V get(int key) {
+		return shards[key & mask].get(key);
+	}
+
+	/**
+	 * Checks whether a key is present.
+	 * @param key Key to look up
+	 * @return true if the key has a value
+	 */
+	public boolean containsKey(int key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Stores a value for a key, replacing any existing value.
+	 * Caller must hold the lock of shardFor(key).
+	 * @param key Key to store under
+	 * @param value Value to store (not null)
+	 * @return The previous value, or null if there was none
+	 */
+	public V put(int key, V value) {
+		return shards[key & mask].put(key, value);
+	}
+
+	/**
+	 * Removes a key.
+	 * Caller must hold the lock of shardFor(key).
+	 * @param key Key to remove
+	 * @return The removed value, or null if the key was absent
+	 */
+	public V remove(int key) {
+		return shards[key & mask].remove(key);
+	}
+
+	/**
+	 * Gets the number of entries across every shard.
+	 * @return Entry count
+	 */
+	public int size() {
+		int size = 0;
+		for (IntHashMap<V> shard : shards) {
+			size += shard.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Checks whether every shard is empty.
+	 * @return true if there are no entries
+	 */
+	public boolean isEmpty() {
+		for (IntHashMap<V> shard : shards) {
+			if (!shard.isEmpty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Removes every entry, one shard at a time under its lock.
+	 */
+	public void clear() {
+		for (IntHashMap<V> shard : shards) {
+			synchronized (shard) {
+				shard.clear();
+			}
+		}
+	}
+
+	/**
+	 * Iterates over the values of each shard in turn, without locking.
+	 * Concurrent changes may or may not be seen, as in IntHashMap.
+	 * @return Iterator over the live values
+	 */
+	public Iterator<V> valueIterator() {
+		return new Iterator<V>() {
+			private int next = 0;
+			private Iterator<V> current = null;
+
+			@Override
+			public boolean hasNext() {
+				while (current == null || !current.hasNext()) {
+					if (next == shards.length) {
+						return false;
+					}
+					current = shards[next++].valueIterator();
+				}
+				return true;
+			}
+
+			@Override
+			public V next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return current.next();
+			}
+		};
+	}
+
+	/**
+	 * Runs an action with every shard locked, taking the locks in index
+	 * order so callers that lock several shards cannot deadlock. The shards
+	 * are monitors, so each lock is one nested call; MAX_SHARDS keeps that
+	 * depth small.
+	 * @param action Action to run
+	 * @return The action's result
+	 */
+	public <T> T lockAll(Supplier<T> action) {
+		return lockFrom(0, action);
+	}
+
+	private <T> T lockFrom(int index, Supplier<T> action) {
+		if (index == shards.length) {
+			return action.get();
+		}
+		synchronized (shards[index]) {
+			return lockFrom(index + 1, action);
+		}
+	}
+
+	/**
+	 * Runs a function on every shard index in parallel on the common
+	 * fork/join pool and combines the results. With one shard it runs on
+	 * the calling thread. An exception from any shard is rethrown once
+	 * every shard has finished or failed.
+	 * @param perShard Function given a shard index
+	 * @param combine Merges the results of two groups of shards
+	 * @return The combined result
+	 */
+	public <R> R reduceShards(IntFunction<R> perShard, BinaryOperator<R> combine) {
+		if (shards.length == 1) {
+			return perShard.apply(0);
+		}
+		return ForkJoinPool.commonPool().invoke(new ShardTask<R>(0, shards.length, perShard, combine));
+	}
+
+	/**
+	 * Splits a range of shards in half until each task has one shard.
+	 */
+	private static final class ShardTask<R> extends RecursiveTask<R> {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final transient IntFunction<R> perShard;
+		private final transient BinaryOperator<R> combine;
+
+		ShardTask(int from, int to, IntFunction<R> perShard, BinaryOperator<R> combine) {
+			this.from = from;
+			this.to = to;
+			this.perShard = perShard;
+			this.combine = combine;
+		}
+
+		@Override
+		protected R compute() {
+			if (to - from == 1) {
+				return perShard.apply(from);
+			}
+			int middle = (from + to) >>> 1;
+			ShardTask<R> right = new ShardTask<R>(middle, to, perShard, combine);
+			right.fork();
+			R left = new ShardTask<R>(from, middle, perShard, combine).compute();
+			return combine.apply(left, right.join());
+		}
+	}
+
+	/**
+	 * Gets the value for a decimal String key.
+	 * Compatibility shim for callers that still hold String IDs.
+	 * @param key Key as a decimal string
+	 * @return The value, or null if absent or the key is not numeric
+	 */
+	public V get(String key) {
+		int parsed = IntHashMap.parseKey(key);
+		return parsed < 0 ? null : get(parsed);
+	}
+
+	/**
+	 * Checks whether a decimal String key is present.
+	 * Compatibility shim for callers that still hold String IDs.
+	 * @param key Key as a decimal string
+	 * @return true if the key has a value
+	 */
+	public boolean containsKey(String key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Removes a decimal String key.
+	 * Compatibility shim for callers that still hold String IDs.
+	 * Caller must hold the lock of the key's shard.
+	 * @param key Key as a decimal string
+	 * @return The removed value, or null if absent or the key is not numeric
+	 */
+	public V remove(String key) {
+		int parsed = IntHashMap.parseKey(key);
+		return parsed < 0 ? null : remove(parsed);
+	}
+}
@@ -0,0 +1,246 @@
+package Project;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * One writer thread that applies a service's changes in batches.
+ * Callers put their change on a bounded multi-producer, single-consumer
+ * ring and wait; the writer takes everything queued, applies it in order,
+ * runs the batch hook once (the service's listener commit, so a logged
+ * service syncs once per batch instead of once per change) and then
+ * releases the callers. Every change to the service's data is made by one
+ * thread, so its locks are never contended and its tables stay in that
+ * core's cache.
+ *
+ * The ring takes no lock: a producer claims a slot by advancing the tail
+ * and publishes it through the slot's sequence number. A full ring makes
+ * producers wait for the writer, which keeps a burst from queueing
+ * without bound.
+ *
+ * @author Stewart Withrow
+ */
+public final class SingleWriter implements AutoCloseable {
+
+	private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Object[].class);
+	private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+
+	// Spins before a waiting thread parks
+	private static final int SPINS = 64;
+
+	// Longest a waiting caller sleeps before checking that the writer is still running
+	private static final long STOP_CHECK_NANOS = 10_000_000L;
+
+	/**
+	 * A queued change and, once applied, its outcome.
+	 */
+	private static final class Command {
+		final Supplier<?> change;
+		final Thread caller;
+		Object result;
+		RuntimeException failure;
+		volatile boolean done;
+
+		Command(Supplier<?> change, Thread caller) {
+			this.change = change;
+			this.caller = caller;
+		}
+	}
+
+	private final Object[] slots;
+	private final long[] sequences;
+	private final int mask;
+
+	// Next slot a producer claims; only producers advance it
+	private final AtomicLong tail = new AtomicLong();
+
+	// Next slot the writer takes; only the writer advances it
+	private long head;
+
+	private final Runnable afterBatch;
+	private final Thread thread;
+	private final Command[] batch;
+
+	private volatile boolean running = true;
+	private volatile boolean sleeping;
+
+	/**
+	 * Starts a writer thread.
+	 * @param name Thread name
+	 * @param capacity Most changes that can wait at once, rounded up to a power of two
+	 * @param afterBatch Run on the writer thread after each batch, before its callers are released
+	 * @throws IllegalArgumentException if the capacity is not positive
+	 */
+	SingleWriter(String name, int capacity, Runnable afterBatch) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Queue capacity must be positive.");
+		}
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		slots = new Object[size];
+		sequences = new long[size];
+		for (int i = 0; i < size; i++) {
+			sequences[i] = i;
+		}
+		mask = size - 1;
+		batch = new Command[size];
+		this.afterBatch = afterBatch;
+		thread = new Thread(this::drain, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Applies a change on the writer thread and waits for it, including the
+	 * batch hook. A change made from the writer thread itself runs at once.
+	 * @param change Change to apply
+	 * @return What the change returned
+	 * @throws RuntimeException whatever the change or the batch hook threw
+	 * @throws IllegalStateException if the writer has been stopped
+	 */
+	@SuppressWarnings("unchecked")
+	<T> T call(Supplier<T> change) {
+		if (Thread.currentThread() == thread) {
+			return change.get();
+		}
+		Command command = new Command(change, Thread.currentThread());
+		offer(command);
+		if (sleeping) {
+			LockSupport.unpark(thread);
+		}
+
+		for (int spin = 0; !command.done; spin++) {
+			if (spin < SPINS) {
+				Thread.onSpinWait();
+			} else if (thread.isAlive()) {
+				LockSupport.parkNanos(this, STOP_CHECK_NANOS);
+			} else if (!command.done) {
+				// Queued as the writer was stopping, after its last look at the ring
+				throw new IllegalStateException("Writer is stopped.");
+			}
+		}
+		if (command.failure != null) {
+			throw command.failure;
+		}
+		return (T) command.result;
+	}
+
+	/**
+	 * Claims a slot and publishes a command in it, waiting while the ring is full.
+	 */
+	private void offer(Command command) {
+		for (int spin = 0; ; spin++) {
+			if (!running) {
+				throw new IllegalStateException("Writer is stopped.");
+			}
+			long position = tail.get();
+			int index = (int) position & mask;
+			long sequence = (long) SEQUENCES.getAcquire(sequences, index);
+			if (sequence == position) {
+				if (tail.compareAndSet(position, position + 1)) {
+					SLOTS.setRelease(slots, index, command);
+					SEQUENCES.setRelease(sequences, index, position + 1);
+					return;
+				}
+			} else if (sequence < position) {
+				// Full: the writer has not freed this slot since the last lap
+				if (sleeping) {
+					LockSupport.unpark(thread);
+				}
+				if (spin < SPINS) {
+					Thread.onSpinWait();
+				} else {
+					Thread.yield();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Takes the next published command, or null if the ring is empty.
+	 */
+	private Command poll() {
+		int index = (int) head & mask;
+		if ((long) SEQUENCES.getAcquire(sequences, index) != head + 1) {
+			return null;
+		}
+		Command command = (Command) SLOTS.getAcquire(slots, index);
+		SLOTS.setRelease(slots, index, null);
+		SEQUENCES.setRelease(sequences, index, head + mask + 1);
+		head++;
+		return command;
+	}
+
+	/**
+	 * Writer loop: takes a batch, applies it, runs the hook, releases the callers.
+	 */
+	private void drain() {
+		while (true) {
+			int count = 0;
+			Command command;
+			while (count < batch.length && (command = poll()) != null) {
+				batch[count++] = command;
+			}
+			if (count == 0) {
+				if (!running && tail.get() == head) {
+					return;
+				}
+				sleeping = true;
+				if (tail.get() == head && running) {
+					LockSupport.park(this);
+				}
+				sleeping = false;
+				continue;
+			}
+
+			for (int i = 0; i < count; i++) {
+				Command next = batch[i];
+				try {
+					next.result = next.change.get();
+				} catch (RuntimeException e) {
+					next.failure = e;
+				}
+			}
+			RuntimeException hookFailure = null;
+			try {
+				afterBatch.run();
+			} catch (RuntimeException e) {
+				hookFailure = e;
+			}
+			for (int i = 0; i < count; i++) {
+				Command next = batch[i];
+				batch[i] = null;
+				if (hookFailure != null && next.failure == null) {
+					next.failure = hookFailure;
+				}
+				next.done = true;
+				LockSupport.unpark(next.caller);
+			}
+		}
+	}
+
+	/**
+	 * Stops accepting changes and waits for the writer to apply those already queued.
+	 */
+	@Override
+	public void close() {
+		running = false;
+		LockSupport.unpark(thread);
+		if (Thread.currentThread() == thread) {
+			return;
+		}
+		boolean interrupted = false;
+		while (thread.isAlive()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -1,7 +1,5 @@
 package Project;
 
-import java.util.regex.Pattern;
-
 /**
  * Class with basic task information such as name and description.
  * Provides validation for all fields upon creation.
@@ -13,11 +11,21 @@ public class Task {
 	private static final int ID_MAX_LENGTH = 10;
 	private static final int NAME_MAX_LENGTH = 20;
 	private static final int DESC_MAX_LENGTH = 50;
-	private static final Pattern INJECTION_PATTERN = Pattern.compile("[<>\"'%;()&+]");
 	
-	private String taskID;
+	// Field bits reported by checkFields
+	public static final int FIELD_TASK_ID = 1;
+	public static final int FIELD_NAME = 1 << 1;
+	public static final int FIELD_DESCRIPTION = 1 << 2;
+	
+	private int taskID;
 	private String name;
 	private String description;
+	
+	// Goes up by one with every edit the service publishes
+	private long version;
+	
+	// Set once TaskService publishes the task; setters then throw
+	private boolean frozen;
 		
 	/**
      * Constructs a Task with validated fields.
@@ -33,10 +41,58 @@ public class Task {
 		validateName(name);
 		validateDescription(description);
 			
-		setTaskID(taskID);
+		setTaskID(Integer.parseInt(taskID));
 		setName(name);
 		setDescription(description);
 			
+	}
+	
+	/**
+     * Constructs a Task with a numeric ID, skipping the String round trip.
+     * 
+     * @param taskID Unique task identifier (not negative)
+     * @param name Task name (<= 20 chars, not null and not empty)
+     * @param description Task description (<= 50 chars, not null and not empty)
+     * @throws IllegalArgumentException if any parameter is invalid
+     */
+	public Task (int taskID, String name, String description) {
+		
+		validateName(name);
+		validateDescription(description);
+		
+		setTaskID(taskID);
+		setName(name);
+		setDescription(description);
+		
+	}
+	
+	/**
+	 * Constructs an empty Task for copy to fill in.
+	 */
+	private Task() {
+	}
+	
+	/**
+	 * Copies this task as its next version, without revalidating it.
+	 * TaskService changes the copy and publishes it in place of this task,
+	 * so a task other threads can reach is never changed under them.
+	 * @return A new task with the same fields and the next version
+	 */
+	Task copy() {
+		Task copy = new Task();
+		copy.taskID = taskID;
+		copy.name = name;
+		copy.description = description;
+		copy.version = version + 1;
+		return copy;
+	}
+	
+	/**
+	 * Marks this task as published, so its setters throw from now on.
+	 * TaskService freezes every task before other threads can reach it.
+	 */
+	void freeze() {
+		frozen = true;
 	}
 		
 	 /**
@@ -44,7 +100,7 @@ public class Task {
      * @return Task ID as integer
      */
 	public int getTaskID() {
-		return Integer.valueOf(taskID);
+		return taskID;
 	}
 	
 	 /**
@@ -63,12 +119,21 @@ public class Task {
 		return description;
 	}
 	
+	/**
+	 * Gets the task's version, for TaskService.updateTask.
+	 * A new task is version 0; versions are not kept in the write-ahead log.
+	 * @return Version
+	 */
+	public long getVersion() {
+		return version;
+	}
+	
 	/**
      * Sets the task's ID.
      * ID setter is private as it cannot be changed
      * @param taskID Task ID
      */
-	private void setTaskID(String taskID) {
+	private void setTaskID(int taskID) {
 		validateTaskID(taskID);
 		this.taskID = taskID;
 	}
@@ -76,8 +141,10 @@ public class Task {
 	 /**
      * Sets the task's name.
      * @param name Task name
+     * @throws IllegalStateException if the task was published by TaskService
      */
 	public void setName(String name) {
+		checkMutable();
 		validateName(name);
 		this.name = name;
 	}
@@ -85,22 +152,38 @@ public class Task {
 	 /**
 	 * Sets the task's description.
 	 * @param description Task description
+	 * @throws IllegalStateException if the task was published by TaskService
 	 */
 	public void setDescription(String description) {
+		checkMutable();
 		validateDescription(description);
 		this.description = description;
 	}
 	
 	
+	/**
+	 * Rejects changes to a published task, which must go through TaskService.
+	 */
+	private void checkMutable() {
+		if (frozen) {
+			throw new IllegalStateException("Published tasks cannot be changed; edit them through TaskService.");
+		}
+	}
+	
 	/**
 	 * Validates the task ID.
 	 * @param taskID Task ID
 	 */
 	private void validateTaskID(String taskID) {
-	    if (taskID == null || taskID.length() > ID_MAX_LENGTH || taskID.isEmpty()) {
-	        throw new IllegalArgumentException("Task ID must be non-null, non-empty and <= " + ID_MAX_LENGTH + " characters.");
-	    }
-	    validateNoInjection(taskID, "Task ID");
+	    throwIfInvalid(FIELD_TASK_ID, checkTaskID(taskID));
+	}
+	
+	/**
+	 * Validates a numeric task ID.
+	 * @param taskID Task ID
+	 */
+	private void validateTaskID(int taskID) {
+	    throwIfInvalid(FIELD_TASK_ID, checkTaskID(taskID));
 	}
 
 	/**
@@ -108,10 +191,7 @@ public class Task {
 	 * @param name Task name
 	 */
 	private void validateName(String name) {
-	    if (name == null || name.length() > NAME_MAX_LENGTH || name.isEmpty()) {
-	        throw new IllegalArgumentException("Name must be non-null, non-empty and < " + NAME_MAX_LENGTH + " characters.");
-	    }
-	    validateNoInjection(name, "Name");
+	    throwIfInvalid(FIELD_NAME, checkName(name));
 	}
 
 	/**
@@ -119,10 +199,123 @@ public class Task {
 	 * @param description Task description
 	 */
 	private void validateDescription(String description) {
-	    if (description == null || description.length() > DESC_MAX_LENGTH || description.isEmpty()) {
-	        throw new IllegalArgumentException("Description must be non-null, non-empty and < " + DESC_MAX_LENGTH + " characters.");
+	    throwIfInvalid(FIELD_DESCRIPTION, checkDescription(description));
+	}
+	
+	/**
+	 * Throws the message for a failed field check.
+	 * @param field Field bit
+	 * @param error Result of the field check
+	 */
+	private static void throwIfInvalid(int field, ValidationError error) {
+	    if (error != null) {
+	        throw new IllegalArgumentException(errorMessage(field, error));
+	    }
+	}
+	
+	/**
+	 * Checks a task ID without throwing.
+	 * @param taskID Task ID
+	 * @return The problem found, or null if valid
+	 */
+	public static ValidationError checkTaskID(String taskID) {
+	    ValidationError error = InputValidator.checkText(taskID, ID_MAX_LENGTH);
+	    if (error == null && IntHashMap.parseKey(taskID) < 0) {
+	        error = ValidationError.NOT_NUMERIC;
+	    }
+	    return error;
+	}
+	
+	/**
+	 * Checks a numeric task ID without throwing.
+	 * @param taskID Task ID
+	 * @return The problem found, or null if valid
+	 */
+	public static ValidationError checkTaskID(int taskID) {
+	    return taskID < 0 ? ValidationError.NOT_NUMERIC : null;
+	}
+	
+	/**
+	 * Checks a task name without throwing.
+	 * @param name Task name
+	 * @return The problem found, or null if valid
+	 */
+	public static ValidationError checkName(String name) {
+	    return InputValidator.checkText(name, NAME_MAX_LENGTH);
+	}
+	
+	/**
+	 * Checks a task description without throwing.
+	 * @param description Task description
+	 * @return The problem found, or null if valid
+	 */
+	public static ValidationError checkDescription(String description) {
+	    return InputValidator.checkText(description, DESC_MAX_LENGTH);
+	}
+	
+	/**
+	 * Checks every field without throwing or allocating.
+	 * @param taskID Task ID
+	 * @param name Task name
+	 * @param description Task description
+	 * @return Bitmask of FIELD_* values that failed, 0 if all are valid
+	 */
+	public static int checkFields(String taskID, String name, String description) {
+	    int invalid = 0;
+	    if (checkTaskID(taskID) != null) {
+	        invalid |= FIELD_TASK_ID;
+	    }
+	    if (checkName(name) != null) {
+	        invalid |= FIELD_NAME;
+	    }
+	    if (checkDescription(description) != null) {
+	        invalid |= FIELD_DESCRIPTION;
+	    }
+	    return invalid;
+	}
+	
+	/**
+	 * Gets the message for the first invalid name or description.
+	 * Used by batch inserts, where the ID is assigned by the service.
+	 * @param name Task name
+	 * @param description Task description
+	 * @return The message, or null if both are valid
+	 */
+	static String firstErrorMessage(String name, String description) {
+	    ValidationError error;
+	    if ((error = checkName(name)) != null) {
+	        return errorMessage(FIELD_NAME, error);
+	    }
+	    if ((error = checkDescription(description)) != null) {
+	        return errorMessage(FIELD_DESCRIPTION, error);
+	    }
+	    return null;
+	}
+	
+	/**
+	 * Gets the fixed message for a field check failure.
+	 * @param field One FIELD_* value
+	 * @param error Problem reported by the field check
+	 * @return Message shared by every failure of this kind
+	 */
+	public static String errorMessage(int field, ValidationError error) {
+	    boolean illegal = error == ValidationError.ILLEGAL_CHARACTERS;
+	    switch (field) {
+	        case FIELD_TASK_ID:
+	            if (error == ValidationError.NOT_NUMERIC) {
+	                return "Task ID must be a non-negative number.";
+	            }
+	            return illegal ? "Task ID contains illegal characters." 
+	                    : "Task ID must be non-null, non-empty and <= " + ID_MAX_LENGTH + " characters.";
+	        case FIELD_NAME:
+	            return illegal ? "Name contains illegal characters." 
+	                    : "Name must be non-null, non-empty and < " + NAME_MAX_LENGTH + " characters.";
+	        case FIELD_DESCRIPTION:
+	            return illegal ? "Description contains illegal characters." 
+	                    : "Description must be non-null, non-empty and < " + DESC_MAX_LENGTH + " characters.";
+	        default:
+	            throw new IllegalArgumentException("Unknown task field: " + field);
 	    }
-	    validateNoInjection(description, "Description");
 	}
 	
 	/**
@@ -131,8 +324,6 @@ public class Task {
 	 * @param fieldName Name of the field being validated (for error messages)
 	 */
 	public static void validateNoInjection(String input, String fieldName) {
-	    if (input != null && INJECTION_PATTERN.matcher(input).find()) {
-	        throw new IllegalArgumentException(fieldName + " contains illegal characters.");
-	    }
+	    InputValidator.validateNoInjection(input, fieldName);
 	}
 }
\ No newline at end of file
@@ -1,57 +1,593 @@
 package Project;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 /**
  * Service class to manage Task objects.
  * Provides methods to add, delete, and edit tasks.
  * 
+ * Writes lock the shard of the task map that owns the task's ID, and
+ * lookups never lock. An edit changes a copy of the task and swaps it in,
+ * so readers never see part of an edit. Each edit bumps the task's
+ * version, and updateTask applies a change only if the version is still
+ * the one the caller read.
+ * 
+ * Names and descriptions are indexed for ranked keyword search.
+ * 
+ * After startWriter, one writer thread applies every change in batches,
+ * and the log commits once per batch. Each change also has an async form
+ * that returns a future. Listeners added with addListener are told about
+ * every change, and streamTasks reads the tasks in chunks.
+ * 
+ * The map has one shard until partition splits it by ID. A partitioned
+ * service gives each shard its own IDs and writer, and fans bulk adds and
+ * full scans out across the shards.
+ * 
  * @author Stewart Withrow
  */
 public class TaskService {
 	
-	// Holds the next ID for an added task
+	// Holds the next ID for an added task, guarded by the task map itself
 	private int currentID = 0;
 	
-	// HashMap to hold task objects, keyed by their unique ID
-	public static HashMap<String, Task> tasks = new HashMap<String, Task>();
+	// In partitioned mode, the next ID each shard hands out, guarded by
+	// that shard's lock; shard i issues the IDs equal to i modulo the count
+	private volatile int[] shardIDs;
+	
+	// Primitive int-keyed map to hold task objects, keyed by their unique ID and sharded by it
+	public static ShardedIntMap<Task> tasks = new ShardedIntMap<Task>();
+	
+	// Told about every change made through this service
+	private volatile MutationListener listener;
+	
+	// Keyword index over the tasks map, updated under the task's shard lock; it has its own lock
+	private static final TaskTextIndex textIndex = new TaskTextIndex();
+	
+	// Apply every change when set, one writer per shard; otherwise callers apply their own
+	private volatile SingleWriter[] writers;
+	
+	/**
+	 * Creates a service that keeps tasks in memory only.
+	 */
+	public TaskService() {
+		this.listener = MutationListener.NONE;
+	}
+	
+	/**
+	 * Creates a service that records every change in a write-ahead log.
+	 * IDs continue after the highest one recovered from the log.
+	 * 
+	 * @param log Log opened with WriteAheadLog.open
+	 */
+	public TaskService(WriteAheadLog log) {
+		this.listener = log;
+		this.currentID = log.nextTaskID();
+	}
+	
+	/**
+	 * Switches the task map to partitioned mode: it is split into shards by
+	 * task ID, each with its own lock, so writes to different shards no
+	 * longer wait for each other. Each shard hands out IDs from its own
+	 * sub-range (shard i issues the IDs equal to i modulo the shard count),
+	 * and a new task goes to the shard picked by the calling thread, so
+	 * threads adding at once rarely meet. IDs stay unique but are no longer
+	 * consecutive. Existing tasks move to their shards and new IDs continue
+	 * above every ID issued so far; passing 1 goes back to one map and
+	 * consecutive IDs.
+	 * The map is shared by every task service, so partition before the
+	 * services are used from other threads.
+	 * 
+	 * @param shardCount Number of shards, rounded up to a power of two
+	 * @throws IllegalArgumentException if the count is not between 1 and ShardedIntMap.MAX_SHARDS
+	 * @throws IllegalStateException if the writer is running
+	 */
+	public synchronized void partition(int shardCount) {
+		if (writers != null) {
+			throw new IllegalStateException("Stop the writer before partitioning.");
+		}
+		ShardedIntMap<Task> resharded = new ShardedIntMap<Task>(shardCount);
+		ShardedIntMap<Task> old = tasks;
+		int next = old.lockAll(() -> {
+			for (int i = 0; i < old.shardCount(); i++) {
+				old.shard(i).forEach((taskID, task) -> resharded.put(taskID, task));
+			}
+			tasks = resharded;
+			return nextID();
+		});
+		
+		int count = resharded.shardCount();
+		if (count == 1) {
+			shardIDs = null;
+			currentID = next;
+		} else {
+			int base = (next + count - 1) & -count;
+			int[] ids = new int[count];
+			for (int i = 0; i < count; i++) {
+				ids[i] = base + i;
+			}
+			shardIDs = ids;
+		}
+	}
+	
+	/**
+	 * Gets an ID above every one this service has issued.
+	 */
+	private int nextID() {
+		int[] ids = shardIDs;
+		if (ids == null) {
+			return currentID;
+		}
+		int next = 0;
+		for (int id : ids) {
+			next = Math.max(next, id);
+		}
+		return next;
+	}
+	
+	/**
+	 * Switches this service to single-writer mode: changes are queued and
+	 * applied in batches by a writer thread the service owns, and callers
+	 * wait for their change as before. Reads do not go through the writer.
+	 * A partitioned service starts one writer per shard.
+	 * The writer still takes the shard locks. They cost little while it
+	 * runs alone, and they are still needed by work on other threads: ID
+	 * block reservation, log replay and changes made around stopWriter.
+	 * 
+	 * @param queueCapacity Most changes that can wait at once, per writer
+	 * @throws IllegalArgumentException if the capacity is not positive
+	 * @throws IllegalStateException if the writer is already running
+	 */
+	public synchronized void startWriter(int queueCapacity) {
+		if (writers != null) {
+			throw new IllegalStateException("Writer is already running.");
+		}
+		int[] ids = shardIDs;
+		int count = ids == null ? 1 : ids.length;
+		SingleWriter[] started = new SingleWriter[count];
+		for (int i = 0; i < count; i++) {
+			started[i] = new SingleWriter(count == 1 ? "task-writer" : "task-writer-" + i, queueCapacity,
+					() -> listener.commit());
+		}
+		writers = started;
+	}
+	
+	/**
+	 * Stops the writer threads once they have applied the changes already
+	 * queued. Later changes are applied by their callers again.
+	 */
+	public synchronized void stopWriter() {
+		SingleWriter[] stopping = writers;
+		if (stopping != null) {
+			writers = null;
+			for (SingleWriter writer : stopping) {
+				writer.close();
+			}
+		}
+	}
+	
+	/**
+	 * Adds a listener that is told about every later change made through
+	 * this service, after the listeners it already has. Adding a ChangeFeed
+	 * publishes this service's changes to the feed's subscribers.
+	 * 
+	 * @param added Listener to add
+	 */
+	public synchronized void addListener(MutationListener added) {
+		listener = MutationListener.both(listener, added);
+	}
+	
+	/**
+	 * Applies a change to a shard on that shard's writer thread if there is
+	 * one, or on this thread followed by a listener commit.
+	 */
+	private <T> T write(int shard, Supplier<T> change) {
+		SingleWriter[] current = writers;
+		if (current != null) {
+			return current[shard & (current.length - 1)].call(change);
+		}
+		T result = change.get();
+		listener.commit();
+		return result;
+	}
+	
+	/**
+	 * Gets a task by ID without locking.
+	 * The task returned is never changed; later edits replace it in the map.
+	 * 
+	 * @param taskID Task ID
+	 * @return The task, or null if absent
+	 */
+	public Task getTask(int taskID) {
+		return tasks.get(taskID);
+	}
 	
 	/**
      * Adds a new Task to the map.
      * 
      * @param name Task name
      * @param description Task description
+     * @return The new task's ID
      * @throws IllegalArgumentException if parameters are invalid
      */
-	public void addTask(String name, String description) {
-		String stringID = Integer.toString(currentID);	
-		Task newTask = new Task (stringID, name, description);
-		tasks.put(stringID, newTask);
-
-		++currentID;
+	public int addTask(String name, String description) {
+		return insertTask(name, description);
+	}
+	
+	/**
+	 * Adds a new task on a virtual thread.
+	 * 
+	 * @param name Task name
+	 * @param description Task description
+	 * @return Future completed with the new task's ID, or with the
+	 *         IllegalArgumentException if a parameter is invalid
+	 */
+	public CompletableFuture<Integer> addTaskAsync(String name, String description) {
+		return Async.supply(() -> insertTask(name, description));
+	}
+	
+	/**
+	 * Adds a task under the next ID and returns that ID.
+	 * A partitioned service takes the ID from the calling thread's shard.
+	 */
+	private int insertTask(String name, String description) {
+		int[] ids = shardIDs;
+		if (ids == null) {
+			return write(0, () -> {
+				synchronized (tasks) {
+					synchronized (tasks.shardFor(currentID)) {
+						store(new Task (currentID, name, description));
+					}
+					return currentID++;
+				}
+			});
+		}
+		int shard = (int) Thread.currentThread().threadId() & (ids.length - 1);
+		return write(shard, () -> {
+			synchronized (tasks.shard(shard)) {
+				int taskID = ids[shard];
+				store(new Task (taskID, name, description));
+				ids[shard] = taskID + ids.length;
+				return taskID;
+			}
+		});
+	}
+	
+	/**
+	 * Takes a block of consecutive IDs. A partitioned service moves every
+	 * shard's sub-range past the block.
+	 */
+	private int reserveIDs(int count) {
+		int[] ids = shardIDs;
+		if (ids == null) {
+			synchronized (tasks) {
+				int firstID = currentID;
+				currentID += count;
+				return firstID;
+			}
+		}
+		return tasks.lockAll(() -> {
+			int firstID = nextID();
+			int base = (firstID + count + ids.length - 1) & -ids.length;
+			for (int i = 0; i < ids.length; i++) {
+				ids[i] = base + i;
+			}
+			return firstID;
+		});
+	}
+	
+	/**
+	 * Freezes a task, tells the listener and then puts it in the map and the
+	 * text index. The listener goes first so a log that rejects the task
+	 * leaves it unpublished. Caller must hold the task's shard lock.
+	 */
+	private void store(Task task) {
+		task.freeze();
+		listener.taskPut(task);
+		tasks.put(task.getTaskID(), task);
+		textIndex.put(task);
+	}
+	
+	/**
+     * Adds many tasks at once.
+     * Rows are validated in parallel and take consecutive IDs from one block,
+     * then inserted under one lock per shard, with the shards filled in
+     * parallel when the map is partitioned; invalid rows are reported in
+     * the result instead of throwing.
+     * 
+     * @param rows Task rows, each {name, description}
+     * @return Per-row outcome of the batch
+     */
+	public BatchResult addTasks(List<String[]> rows) {
+		String[][] input = rows.toArray(new String[0][]);
+		int firstID = reserveIDs(input.length);
+		Task[] built = new Task[input.length];
+		String[] messages = new String[input.length];
+		
+		IntStream.range(0, input.length).parallel().forEach(row -> {
+			String[] fields = input[row];
+			if (fields == null || fields.length != 2) {
+				messages[row] = "Task rows must have 2 fields.";
+				return;
+			}
+			messages[row] = Task.firstErrorMessage(fields[0], fields[1]);
+			if (messages[row] == null) {
+				built[row] = new Task(firstID + row, fields[0], fields[1]);
+			}
+		});
+		
+		ShardedIntMap<Task> map = tasks;
+		int count = map.shardCount();
+		map.reduceShards(shard -> write(shard, () -> {
+			synchronized (map.shard(shard)) {
+				// Row r has ID firstID + r, so every count-th row from here belongs to this shard
+				for (int row = (shard - firstID) & (count - 1); row < built.length; row += count) {
+					if (built[row] != null) {
+						store(built[row]);
+					}
+				}
+			}
+			return null;
+		}), (left, right) -> null);
+		return BatchResult.fromMessages(firstID, messages);
+	}
+	
+	/**
+	 * Adds many tasks at once on a virtual thread.
+	 * 
+	 * @param rows Task rows, each {name, description}
+	 * @return Future completed with the per-row outcome of the batch
+	 */
+	public CompletableFuture<BatchResult> addTasksAsync(List<String[]> rows) {
+		return Async.supply(() -> addTasks(rows));
 	}
 	
 	/**
      * Deletes a Task from the map by ID.
      * 
      * @param ID Task ID to delete
+     */
+	public void deleteTask(int ID) {
+		write(tasks.shardOf(ID), () -> {
+			synchronized (tasks.shardFor(ID)) {
+				if (tasks.get(ID) != null) {
+					listener.taskDeleted(ID);
+					tasks.remove(ID);
+					textIndex.remove(ID);
+				}
+			}
+			return null;
+		});
+	}
+	
+	/**
+	 * Deletes a task on a virtual thread.
+	 * 
+	 * @param ID Task ID to delete
+	 * @return Future completed once the task is gone
+	 */
+	public CompletableFuture<Void> deleteTaskAsync(int ID) {
+		return Async.run(() -> deleteTask(ID));
+	}
+	
+	/**
+     * Deletes a Task from the map by String ID.
+     * Compatibility shim for callers that still hold String IDs.
+     * 
+     * @param ID Task ID to delete
      */
 	public void deleteTask(String ID) {
-		tasks.remove(ID);
+		int taskID = IntHashMap.parseKey(ID);
+		if (taskID >= 0) {
+			deleteTask(taskID);
+		}
 	}
 	
 	/**
      * Updates an existing Task's name and description.
+     * Both are applied to a copy that replaces the task, so if either is
+     * rejected the task is left as it was.
      * 
      * @param ID Task ID
      * @param newName New name for the task
      * @param newDescription New description for the task
+     * @throws IllegalArgumentException if either value is invalid
      */
-	public void editTask(String ID, String newName, String newDescription) {
+	public void editTask(int ID, String newName, String newDescription) {
+		write(tasks.shardOf(ID), () -> {
+			synchronized (tasks.shardFor(ID)) {
+				Task task = tasks.get(ID);
+				if (task != null) {
+					Task updated = task.copy();
+					updated.setName(newName);
+					updated.setDescription(newDescription);
+					store(updated);
+				}
+			}
+			return null;
+		});
+	}
+	
+	/**
+	 * Updates a task's name and description on a virtual thread.
+	 * 
+	 * @param ID Task ID
+	 * @param newName New name for the task
+	 * @param newDescription New description for the task
+	 * @return Future completed once the task is updated, or with the
+	 *         IllegalArgumentException if either value is invalid
+	 */
+	public CompletableFuture<Void> editTaskAsync(int ID, String newName, String newDescription) {
+		return Async.run(() -> editTask(ID, newName, newDescription));
+	}
+	
+	/**
+	 * Updates a task's name and description if no one else has changed it
+	 * since the caller read it. Both values are validated before anything
+	 * changes, and the copy is swapped in only if the task in the map is
+	 * still the one the copy was made from.
+	 * 
+	 * @param ID Task ID
+	 * @param expectedVersion Version the caller read from getTask
+	 * @param newName New name for the task
+	 * @param newDescription New description for the task
+	 * @return true if the task was updated, false if it is gone or has a different version
+	 * @throws IllegalArgumentException if either value is invalid
+	 */
+	public boolean updateTask(int ID, long expectedVersion, String newName, String newDescription) {
+		String message = Task.firstErrorMessage(newName, newDescription);
+		if (message != null) {
+			throw new IllegalArgumentException(message);
+		}
 		Task task = tasks.get(ID);
-		if (task != null) {
-			task.setName(newName);
-			task.setDescription(newDescription);
+		if (task == null || task.getVersion() != expectedVersion) {
+			return false;
+		}
+		Task updated = task.copy();
+		updated.setName(newName);
+		updated.setDescription(newDescription);
+		
+		return write(tasks.shardOf(ID), () -> {
+			synchronized (tasks.shardFor(ID)) {
+				if (tasks.get(ID) != task) {
+					return false;
+				}
+				store(updated);
+			}
+			return true;
+		});
+	}
+	
+	/**
+	 * Updates a task if its version is unchanged, on a virtual thread.
+	 * 
+	 * @param ID Task ID
+	 * @param expectedVersion Version the caller read from getTask
+	 * @param newName New name for the task
+	 * @param newDescription New description for the task
+	 * @return Future completed with whether the task was updated, or with
+	 *         the IllegalArgumentException if either value is invalid
+	 */
+	public CompletableFuture<Boolean> updateTaskAsync(int ID, long expectedVersion, String newName,
+			String newDescription) {
+		return Async.supply(() -> updateTask(ID, expectedVersion, newName, newDescription));
+	}
+	
+	/**
+     * Updates an existing Task's name and description by String ID.
+     * Compatibility shim for callers that still hold String IDs.
+     * 
+     * @param ID Task ID
+     * @param newName New name for the task
+     * @param newDescription New description for the task
+     */
+	public void editTask(String ID, String newName, String newDescription) {
+		int taskID = IntHashMap.parseKey(ID);
+		if (taskID >= 0) {
+			editTask(taskID, newName, newDescription);
+		}
+	}
+	
+	/**
+	 * Streams every task to a subscriber as it asks for them, without
+	 * locking or gathering them first, so an export of any size runs in
+	 * constant memory. Each subscriber reads the map as it stands while its
+	 * stream runs: tasks are sent as they are when reached, and tasks added
+	 * or deleted meanwhile may or may not be included.
+	 * 
+	 * @return Publisher of the tasks, in no particular order
+	 */
+	public Flow.Publisher<Task> streamTasks() {
+		return new QueryPublisher<Task>(() -> tasks.valueIterator());
+	}
+	
+	/**
+	 * Finds every task that passes a filter by scanning the whole map,
+	 * without locking. In partitioned mode each shard is scanned by its
+	 * own fork/join task. Tasks are tested as they are when reached.
+	 * 
+	 * @param filter Test for each task
+	 * @return Matching tasks, in no particular order
+	 * @throws IllegalArgumentException if the filter is null
+	 */
+	public List<Task> findTasks(Predicate<? super Task> filter) {
+		if (filter == null) {
+			throw new IllegalArgumentException("Filter cannot be null.");
+		}
+		ShardedIntMap<Task> map = tasks;
+		return map.reduceShards(shard -> {
+			List<Task> found = new ArrayList<Task>();
+			map.shard(shard).forEach((taskID, task) -> {
+				if (filter.test(task)) {
+					found.add(task);
+				}
+			});
+			return found;
+		}, (left, right) -> {
+			left.addAll(right);
+			return left;
+		});
+	}
+	
+	/**
+	 * Finds tasks by keyword in their name or description, best match first.
+	 * Words are matched whole, ignoring case and punctuation, and ranked by
+	 * BM25 with name matches counting double.
+	 * 
+	 * @param query Words to look for
+	 * @param matchAll true to require every word, false to require any of them
+	 * @param limit Most task IDs to return
+	 * @return IDs of the best matching tasks
+	 * @throws IllegalArgumentException if the limit is not positive
+	 */
+	public List<Integer> searchTasks(String query, boolean matchAll, int limit) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("Limit must be positive.");
+		}
+		// The index outlives tasks removed from the map directly, so check each hit
+		return textIndex.search(query, matchAll, limit, task -> tasks.get(task.getTaskID()) == task);
+	}
+	
+	/**
+	 * Gets the number of documents in the keyword index, counting the dead
+	 * ones left by edits and deletes until the index compacts.
+	 * 
+	 * @return Indexed document count
+	 */
+	public static int indexedDocuments() {
+		return textIndex.documentCount();
+	}
+	
+	/**
+	 * Puts a recovered task back in the map.
+	 * Used when replaying the write-ahead log.
+	 * 
+	 * @param task Recovered task
+	 */
+	static void restore(Task task) {
+		task.freeze();
+		synchronized (tasks.shardFor(task.getTaskID())) {
+			tasks.put(task.getTaskID(), task);
+			textIndex.put(task);
+		}
+	}
+	
+	/**
+	 * Removes a task whose deletion was recovered.
+	 * Used when replaying the write-ahead log.
+	 * 
+	 * @param taskID Task ID
+	 */
+	static void restoreDelete(int taskID) {
+		synchronized (tasks.shardFor(taskID)) {
+			if (tasks.remove(taskID) != null) {
+				textIndex.remove(taskID);
+			}
 		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,525 @@
+package Project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Inverted index over task names and descriptions, for ranked keyword search.
+ * Each version of a task's text is one document. A term's postings are
+ * delta-encoded varint pairs of (document gap, weighted count), about two
+ * bytes per task, with a skip entry every 64 postings so that an AND query
+ * can jump over blocks that cannot match.
+ *
+ * Documents are only appended: an edit marks the task's old document dead
+ * and appends a new one, and a delete marks it dead. Once dead documents
+ * outnumber live ones, the postings are rewritten without them.
+ * Matches are ranked by BM25, with words in the name counting twice.
+ * Queries share a read lock; changes take the write lock.
+ *
+ * @author Stewart Withrow
+ */
+final class TaskTextIndex {
+
+	private static final int SKIP_INTERVAL = 64;
+	private static final int NAME_WEIGHT = 2;
+	private static final int MIN_COMPACT = 1024;
+	private static final int NO_MORE = Integer.MAX_VALUE;
+
+	// BM25 parameters
+	private static final double K1 = 1.2;
+	private static final double B = 0.75;
+
+	/**
+	 * Postings for one term, in document order.
+	 */
+	private static final class Postings {
+		byte[] data = new byte[16];
+		int length;
+		int count;
+		int lastDoc = -1;
+
+		// Postings of live documents; count also holds dead ones until compaction
+		int live;
+
+		// skipDocs[i] is the document before posting (i + 1) * SKIP_INTERVAL,
+		// and skipOffsets[i] is where that posting starts
+		int[] skipDocs = new int[0];
+		int[] skipOffsets = new int[0];
+		int skips;
+
+		void append(int doc, int frequency) {
+			if (count > 0 && count % SKIP_INTERVAL == 0) {
+				if (skips == skipDocs.length) {
+					skipDocs = Arrays.copyOf(skipDocs, Math.max(4, skips * 2));
+					skipOffsets = Arrays.copyOf(skipOffsets, skipDocs.length);
+				}
+				skipDocs[skips] = lastDoc;
+				skipOffsets[skips++] = length;
+			}
+			if (length + 10 > data.length) {
+				data = Arrays.copyOf(data, data.length * 2);
+			}
+			length = putVarint(data, length, doc - lastDoc);
+			length = putVarint(data, length, frequency);
+			lastDoc = doc;
+			count++;
+			live++;
+		}
+	}
+
+	/**
+	 * Reads one term's postings during a query.
+	 */
+	private static final class Cursor {
+		final Postings postings;
+		final double idf;
+		int offset;
+		int read;
+		int doc = -1;
+		int frequency;
+
+		Cursor(Postings postings, double idf) {
+			this.postings = postings;
+			this.idf = idf;
+		}
+
+		/**
+		 * Moves to the next posting.
+		 * @return false if there are no more
+		 */
+		boolean next() {
+			if (read == postings.count) {
+				doc = NO_MORE;
+				return false;
+			}
+			byte[] data = postings.data;
+			int gap = 0;
+			for (int shift = 0; ; shift += 7) {
+				byte b = data[offset++];
+				gap |= (b & 0x7F) << shift;
+				if (b >= 0) {
+					break;
+				}
+			}
+			int count = 0;
+			for (int shift = 0; ; shift += 7) {
+				byte b = data[offset++];
+				count |= (b & 0x7F) << shift;
+				if (b >= 0) {
+					break;
+				}
+			}
+			doc += gap;
+			frequency = count;
+			read++;
+			return true;
+		}
+
+		/**
+		 * Moves to the first posting at or after a document, using skips.
+		 * @return false if there is none
+		 */
+		boolean advance(int target) {
+			if (doc >= target) {
+				return doc != NO_MORE;
+			}
+			int skip = read / SKIP_INTERVAL;
+			if (skip < postings.skips && postings.skipDocs[skip] < target) {
+				while (skip + 1 < postings.skips && postings.skipDocs[skip + 1] < target) {
+					skip++;
+				}
+				doc = postings.skipDocs[skip];
+				offset = postings.skipOffsets[skip];
+				read = (skip + 1) * SKIP_INTERVAL;
+			}
+			while (doc < target) {
+				if (!next()) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * A scored document waiting in the top-K heap.
+	 */
+	private static final class Hit {
+		final double score;
+		final int taskID;
+
+		Hit(double score, int taskID) {
+			this.score = score;
+			this.taskID = taskID;
+		}
+	}
+
+	// Best hit first: higher score, then lower task ID
+	private static final Comparator<Hit> BEST_FIRST = (a, b) -> a.score != b.score
+			? Double.compare(b.score, a.score) : Integer.compare(a.taskID, b.taskID);
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private HashMap<String, Postings> terms = new HashMap<String, Postings>();
+
+	// Per document: the task it indexed, its weighted length and whether it is dead
+	private Task[] docs = new Task[16];
+	private short[] lengths = new short[16];
+	private long[] dead = new long[1];
+	private int docCount;
+
+	private int liveCount;
+	private long liveLength;
+
+	// Live document of each task
+	private IntHashMap<Integer> docOf = new IntHashMap<Integer>();
+
+	/**
+	 * Indexes a task's current text, replacing any earlier version.
+	 * @param task Task to index
+	 */
+	void put(Task task) {
+		lock.writeLock().lock();
+		try {
+			kill(task.getTaskID());
+			Map<String, int[]> counts = new HashMap<String, int[]>();
+			int length = tokenize(task.getName(), NAME_WEIGHT, counts) + tokenize(task.getDescription(), 1, counts);
+
+			int doc = docCount++;
+			if (doc == docs.length) {
+				docs = Arrays.copyOf(docs, doc * 2);
+				lengths = Arrays.copyOf(lengths, doc * 2);
+			}
+			if ((doc >>> 6) == dead.length) {
+				dead = Arrays.copyOf(dead, dead.length * 2);
+			}
+			docs[doc] = task;
+			lengths[doc] = (short) Math.min(length, Short.MAX_VALUE);
+			for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+				terms.computeIfAbsent(entry.getKey(), term -> new Postings()).append(doc, entry.getValue()[0]);
+			}
+			docOf.put(task.getTaskID(), doc);
+			liveCount++;
+			liveLength += lengths[doc];
+			compactIfSparse();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Drops a task from the index.
+	 * @param taskID Task ID
+	 */
+	void remove(int taskID) {
+		lock.writeLock().lock();
+		try {
+			kill(taskID);
+			compactIfSparse();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of documents held, including dead ones not yet
+	 * compacted away.
+	 * @return Document count
+	 */
+	int documentCount() {
+		lock.readLock().lock();
+		try {
+			return docCount;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds the best matching tasks for a keyword query.
+	 * @param query Words to look for; case and punctuation are ignored
+	 * @param matchAll true to require every word, false to require any
+	 * @param limit Most results to return
+	 * @param current Filter that drops tasks the index holds but the caller no longer has
+	 * @return Task IDs, best match first
+	 */
+	List<Integer> search(String query, boolean matchAll, int limit, Predicate<Task> current) {
+		Map<String, int[]> words = new LinkedHashMap<String, int[]>();
+		tokenize(query, 1, words);
+		PriorityQueue<Hit> top = new PriorityQueue<Hit>(BEST_FIRST.reversed());
+
+		lock.readLock().lock();
+		try {
+			List<Cursor> cursors = new ArrayList<Cursor>();
+			for (String word : words.keySet()) {
+				Postings postings = terms.get(word);
+				if (postings == null) {
+					if (matchAll) {
+						return new ArrayList<Integer>();
+					}
+					continue;
+				}
+				// Dead postings would make the term look common and sink its weight
+				double idf = Math.log(1 + (liveCount - postings.live + 0.5) / (postings.live + 0.5));
+				cursors.add(new Cursor(postings, idf));
+			}
+			if (cursors.isEmpty()) {
+				return new ArrayList<Integer>();
+			}
+			double averageLength = liveCount == 0 ? 1 : (double) liveLength / liveCount;
+			if (matchAll) {
+				searchAll(cursors, averageLength, limit, current, top);
+			} else {
+				searchAny(cursors, averageLength, limit, current, top);
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		List<Hit> hits = new ArrayList<Hit>(top);
+		hits.sort(BEST_FIRST);
+		List<Integer> results = new ArrayList<Integer>(hits.size());
+		for (Hit hit : hits) {
+			results.add(hit.taskID);
+		}
+		return results;
+	}
+
+	/**
+	 * Intersects the postings, led by the rarest term.
+	 */
+	private void searchAll(List<Cursor> cursors, double averageLength, int limit, Predicate<Task> current,
+			PriorityQueue<Hit> top) {
+		cursors.sort(Comparator.comparingInt(cursor -> cursor.postings.count));
+		Cursor lead = cursors.get(0);
+		if (!lead.next()) {
+			return;
+		}
+		int target = lead.doc;
+		search:
+		while (true) {
+			for (int i = 1; i < cursors.size(); i++) {
+				Cursor cursor = cursors.get(i);
+				if (!cursor.advance(target)) {
+					return;
+				}
+				if (cursor.doc > target) {
+					if (!lead.advance(cursor.doc)) {
+						return;
+					}
+					target = lead.doc;
+					continue search;
+				}
+			}
+			double score = 0;
+			for (Cursor cursor : cursors) {
+				score += termScore(cursor, target, averageLength);
+			}
+			offer(target, score, limit, current, top);
+			if (!lead.next()) {
+				return;
+			}
+			target = lead.doc;
+		}
+	}
+
+	/**
+	 * Merges the postings a document at a time with MaxScore pruning: once
+	 * the top K is full, terms whose best possible scores together cannot
+	 * beat the worst kept hit stop producing candidates and are only
+	 * checked for documents that other terms found.
+	 */
+	private void searchAny(List<Cursor> cursors, double averageLength, int limit, Predicate<Task> current,
+			PriorityQueue<Hit> top) {
+		// Cheapest terms first; bounds[i] is the most terms 0 to i-1 can add together
+		cursors.sort(Comparator.comparingDouble(cursor -> cursor.idf));
+		int count = cursors.size();
+		double[] bounds = new double[count + 1];
+		for (int i = 0; i < count; i++) {
+			bounds[i + 1] = bounds[i] + cursors.get(i).idf * (K1 + 1);
+			cursors.get(i).next();
+		}
+
+		// Terms before firstEssential cannot make a hit on their own
+		int firstEssential = 0;
+		while (firstEssential < count) {
+			int doc = NO_MORE;
+			for (int i = firstEssential; i < count; i++) {
+				doc = Math.min(doc, cursors.get(i).doc);
+			}
+			if (doc == NO_MORE) {
+				return;
+			}
+
+			double score = 0;
+			for (int i = firstEssential; i < count; i++) {
+				Cursor cursor = cursors.get(i);
+				if (cursor.doc == doc) {
+					score += termScore(cursor, doc, averageLength);
+					cursor.next();
+				}
+			}
+			double threshold = top.size() == limit ? top.peek().score : -1;
+			for (int i = firstEssential - 1; i >= 0 && score + bounds[i + 1] >= threshold; i--) {
+				Cursor cursor = cursors.get(i);
+				if (cursor.advance(doc) && cursor.doc == doc) {
+					score += termScore(cursor, doc, averageLength);
+				}
+			}
+			offer(doc, score, limit, current, top);
+
+			if (top.size() == limit) {
+				threshold = top.peek().score;
+				while (firstEssential < count && bounds[firstEssential + 1] < threshold) {
+					firstEssential++;
+				}
+			}
+		}
+	}
+
+	private double termScore(Cursor cursor, int doc, double averageLength) {
+		double frequency = cursor.frequency;
+		double norm = K1 * (1 - B + B * lengths[doc] / averageLength);
+		return cursor.idf * frequency * (K1 + 1) / (frequency + norm);
+	}
+
+	/**
+	 * Keeps a live, current document if it ranks in the top K so far.
+	 */
+	private void offer(int doc, double score, int limit, Predicate<Task> current, PriorityQueue<Hit> top) {
+		if ((dead[doc >>> 6] & (1L << doc)) != 0) {
+			return;
+		}
+		Task task = docs[doc];
+		if (top.size() == limit) {
+			Hit worst = top.peek();
+			if (score < worst.score || (score == worst.score && task.getTaskID() > worst.taskID)) {
+				return;
+			}
+		}
+		if (!current.test(task)) {
+			return;
+		}
+		top.add(new Hit(score, task.getTaskID()));
+		if (top.size() > limit) {
+			top.poll();
+		}
+	}
+
+	/**
+	 * Marks a task's live document dead and takes it out of its terms' live
+	 * counts, found by tokenizing the indexed task again. Caller holds the
+	 * write lock.
+	 */
+	private void kill(int taskID) {
+		Integer doc = docOf.remove(taskID);
+		if (doc != null) {
+			Task task = docs[doc];
+			Map<String, int[]> counts = new HashMap<String, int[]>();
+			tokenize(task.getName(), NAME_WEIGHT, counts);
+			tokenize(task.getDescription(), 1, counts);
+			for (String term : counts.keySet()) {
+				terms.get(term).live--;
+			}
+			dead[doc >>> 6] |= 1L << doc;
+			liveCount--;
+			liveLength -= lengths[doc];
+		}
+	}
+
+	/**
+	 * Compacts once dead documents outnumber live ones and MIN_COMPACT.
+	 * Edits leave a dead document behind just as deletes do, so both check.
+	 * Caller holds the write lock.
+	 */
+	private void compactIfSparse() {
+		if (docCount - liveCount > Math.max(liveCount, MIN_COMPACT)) {
+			compact();
+		}
+	}
+
+	/**
+	 * Rewrites the postings and document table without dead documents.
+	 * Caller holds the write lock.
+	 */
+	private void compact() {
+		int[] renumber = new int[docCount];
+		Task[] liveDocs = new Task[Math.max(16, liveCount)];
+		short[] liveLengths = new short[liveDocs.length];
+		IntHashMap<Integer> liveDocOf = new IntHashMap<Integer>();
+		int next = 0;
+		for (int doc = 0; doc < docCount; doc++) {
+			if ((dead[doc >>> 6] & (1L << doc)) != 0) {
+				renumber[doc] = -1;
+			} else {
+				renumber[doc] = next;
+				liveDocs[next] = docs[doc];
+				liveLengths[next] = lengths[doc];
+				liveDocOf.put(docs[doc].getTaskID(), next);
+				next++;
+			}
+		}
+
+		HashMap<String, Postings> liveTerms = new HashMap<String, Postings>();
+		for (Map.Entry<String, Postings> entry : terms.entrySet()) {
+			Cursor cursor = new Cursor(entry.getValue(), 0);
+			Postings rewritten = new Postings();
+			while (cursor.next()) {
+				if (renumber[cursor.doc] >= 0) {
+					rewritten.append(renumber[cursor.doc], cursor.frequency);
+				}
+			}
+			if (rewritten.count > 0) {
+				liveTerms.put(entry.getKey(), rewritten);
+			}
+		}
+
+		terms = liveTerms;
+		docs = liveDocs;
+		lengths = liveLengths;
+		dead = new long[(liveDocs.length >>> 6) + 1];
+		docCount = next;
+		docOf = liveDocOf;
+	}
+
+	/**
+	 * Splits text into lower-case words of letters and digits, adding
+	 * weight to each word's count.
+	 * @return Weighted number of words
+	 */
+	private static int tokenize(String text, int weight, Map<String, int[]> counts) {
+		if (text == null) {
+			return 0;
+		}
+		int words = 0;
+		StringBuilder word = new StringBuilder();
+		for (int i = 0; i <= text.length(); i++) {
+			char c = i < text.length() ? text.charAt(i) : ' ';
+			if (Character.isLetterOrDigit(c)) {
+				word.append(Character.toLowerCase(c));
+			} else if (word.length() > 0) {
+				counts.computeIfAbsent(word.toString(), key -> new int[1])[0] += weight;
+				words += weight;
+				word.setLength(0);
+			}
+		}
+		return words;
+	}
+
+	private static int putVarint(byte[] data, int offset, int value) {
+		while ((value & ~0x7F) != 0) {
+			data[offset++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		data[offset++] = (byte) value;
+		return offset;
+	}
+}
@@ -0,0 +1,35 @@
+package Project;
+
+/**
+ * Reason a field failed validation.
+ * Returned by the entity check methods in place of an exception; the
+ * constants are shared, so reporting a failure allocates nothing.
+ * 
+ * @author Stewart Withrow
+ */
+public enum ValidationError {
+	
+	// Null or empty where a value is required
+	MISSING,
+	
+	// Longer than the field allows
+	TOO_LONG,
+	
+	// Not the exact length the field requires
+	WRONG_LENGTH,
+	
+	// Contains one of the injection characters
+	ILLEGAL_CHARACTERS,
+	
+	// Contains a blacklisted phrase
+	FORBIDDEN_CONTENT,
+	
+	// Not a non-negative number where one is required
+	NOT_NUMERIC,
+	
+	// A number outside the allowed range
+	OUT_OF_RANGE,
+	
+	// A date that has already passed
+	IN_PAST
+}
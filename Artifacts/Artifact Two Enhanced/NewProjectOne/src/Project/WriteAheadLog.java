@@ -0,0 +1,990 @@
+package Project;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of every change made through the services.
+ * Each record is [int body length][int CRC32 of body][body], where the body
+ * is a type byte followed by the fields of the change. Adds and edits are
+ * logged as the full object after the change and deletes as the ID alone,
+ * so replaying a record twice is harmless.
+ *
+ * The log is a directory of numbered segment files (log-N) plus at most one
+ * snapshot (snapshot-N) holding the state as of the start of segment N.
+ * Opening a log loads the snapshot and replays the segments after it into
+ * the service stores. A crash can leave a half-written record at the end;
+ * replay stops at the first record whose length or checksum is wrong and
+ * cuts the file back to the last good one.
+ *
+ * A snapshot starts a new segment, then folds the previous snapshot and the
+ * finished segments into a new snapshot on the calling thread and deletes
+ * what it replaces. It reads only those files, never the live stores, so
+ * writers wait just for the segment switch and restart time is bounded by
+ * the snapshot size plus the log written since.
+ *
+ * With group commit, records are encoded into a memory buffer and the first
+ * caller to commit writes everyone's records with one write and, under
+ * EVERY_WRITE, one fsync, while the others wait for it. Without group
+ * commit each record is written, and synced if required, on its own.
+ *
+ * @author Stewart Withrow
+ */
+public class WriteAheadLog implements MutationListener, Closeable {
+
+	/**
+	 * When log records are forced to disk.
+	 */
+	public enum SyncPolicy {
+		// Each service call returns only once its records are on disk
+		EVERY_WRITE,
+		// A background thread forces the log every interval; calls never wait
+		INTERVAL,
+		// Records are handed to the OS on each call and flushed when it chooses
+		OS
+	}
+
+	// Record types
+	static final byte CONTACT_PUT = 1;
+	static final byte CONTACT_DELETE = 2;
+	static final byte TASK_PUT = 3;
+	static final byte TASK_DELETE = 4;
+	static final byte APPOINTMENT_PUT = 5;
+	static final byte APPOINTMENT_DELETE = 6;
+
+	private static final int HEADER_BYTES = 8;
+
+	private static final String LOG_PREFIX = "log-";
+	private static final String SNAPSHOT_PREFIX = "snapshot-";
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	// "SNAP", followed by the next free contact, task and appointment IDs
+	private static final int SNAPSHOT_MAGIC = 0x534E4150;
+
+	// Largest body any record can have; every field is length-limited by validation
+	private static final int MAX_RECORD = 512;
+
+	private static final int BUFFER_BYTES = 64 * 1024;
+
+	private final Path directory;
+	private final SyncPolicy policy;
+	private final boolean groupCommit;
+	private final Thread syncer;
+
+	// Guards everything below
+	private final Object lock = new Object();
+	private final CRC32 checksum = new CRC32();
+	// Written with RandomAccessFile because an interrupted FileChannel closes itself
+	private RandomAccessFile out;
+	private long segment;
+	private ScheduledExecutorService snapshotter;
+	private ByteBuffer pending = ByteBuffer.allocate(BUFFER_BYTES);
+	private ByteBuffer spare = ByteBuffer.allocate(BUFFER_BYTES);
+	private long appended;
+	private long written;
+	private long synced;
+	private boolean flushing;
+	private boolean closed;
+	private IOException failure;
+
+	// One snapshot at a time; guards lastSnapshot
+	private final Object snapshotLock = new Object();
+	private long lastSnapshot;
+
+	// Next free IDs after replay, used by services created on this log
+	private final int nextContactID;
+	private final int nextTaskID;
+	private final int nextAppointmentID;
+
+	/**
+	 * Opens a log, loading its snapshot and replaying it into the service stores.
+	 * @param directory Log directory, created if missing
+	 * @param policy When records are forced to disk
+	 * @param syncIntervalMillis Time between syncs under INTERVAL (ignored otherwise)
+	 * @param groupCommit true to batch concurrent writers into one write and sync
+	 * @return The opened log, positioned after the last good record
+	 * @throws IOException if the files cannot be read or opened
+	 */
+	public static WriteAheadLog open(Path directory, SyncPolicy policy, long syncIntervalMillis,
+			boolean groupCommit) throws IOException {
+		if (policy == SyncPolicy.INTERVAL && syncIntervalMillis <= 0) {
+			throw new IllegalArgumentException("Sync interval must be positive.");
+		}
+		Files.createDirectories(directory);
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path path : (Iterable<Path>) files::iterator) {
+				if (path.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+					Files.delete(path);
+				}
+			}
+		}
+
+		// Only the newest snapshot counts; older ones were left by a crash
+		StoreLoader loader = new StoreLoader();
+		List<Long> snapshots = sequences(directory, SNAPSHOT_PREFIX);
+		long snapshot = snapshots.isEmpty() ? -1 : snapshots.get(snapshots.size() - 1);
+		if (snapshot >= 0) {
+			loadSnapshot(snapshotPath(directory, snapshot), loader);
+		}
+		for (long older : snapshots) {
+			if (older != snapshot) {
+				Files.delete(snapshotPath(directory, older));
+			}
+		}
+
+		long segment = Math.max(snapshot, 0);
+		long end = 0;
+		for (long sequence : sequences(directory, LOG_PREFIX)) {
+			if (sequence < snapshot) {
+				Files.delete(segmentPath(directory, sequence));
+			} else {
+				end = replay(segmentPath(directory, sequence), loader);
+				segment = sequence;
+			}
+		}
+		return new WriteAheadLog(directory, segment, end, snapshot, policy, syncIntervalMillis, groupCommit, loader);
+	}
+
+	private WriteAheadLog(Path directory, long segment, long end, long snapshot, SyncPolicy policy,
+			long syncIntervalMillis, boolean groupCommit, StoreLoader loader) throws IOException {
+		this.directory = directory;
+		this.segment = segment;
+		this.lastSnapshot = snapshot;
+		this.policy = policy;
+		this.groupCommit = groupCommit;
+		this.nextContactID = loader.nextContactID;
+		this.nextTaskID = loader.nextTaskID;
+		this.nextAppointmentID = loader.nextAppointmentID;
+
+		out = new RandomAccessFile(segmentPath(directory, segment).toFile(), "rw");
+		out.setLength(end);
+		out.seek(end);
+
+		if (policy == SyncPolicy.INTERVAL) {
+			syncer = Thread.ofPlatform().daemon().name("wal-sync").start(() -> syncLoop(syncIntervalMillis));
+		} else {
+			syncer = null;
+		}
+	}
+
+	/**
+	 * Replays every good record in a log segment.
+	 * @param file Segment file
+	 * @param target Listener that receives each change in order
+	 * @return Length of the file up to the end of the last good record
+	 * @throws IOException if the file cannot be read or holds an unknown record
+	 */
+	static long replay(Path file, MutationListener target) throws IOException {
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(file), BUFFER_BYTES))) {
+			return replay(in, target);
+		}
+	}
+
+	/**
+	 * Loads a snapshot file, which must be complete and undamaged.
+	 * @param file Snapshot file
+	 * @param target Tracker that receives every stored object and the next IDs
+	 * @throws IOException if the file cannot be read or is damaged
+	 */
+	private static void loadSnapshot(Path file, IDTracker target) throws IOException {
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(file), BUFFER_BYTES))) {
+			if (in.readInt() != SNAPSHOT_MAGIC) {
+				throw new IOException("Not a snapshot file: " + file);
+			}
+			target.nextContactID = Math.max(target.nextContactID, in.readInt());
+			target.nextTaskID = Math.max(target.nextTaskID, in.readInt());
+			target.nextAppointmentID = Math.max(target.nextAppointmentID, in.readInt());
+			if (replay(in, target) + 16 != Files.size(file)) {
+				throw new IOException("Snapshot is damaged: " + file);
+			}
+		}
+	}
+
+	/**
+	 * Replays records from a stream until its end or the first bad record.
+	 * @return Number of bytes in the good records
+	 */
+	private static long replay(DataInputStream in, MutationListener target) throws IOException {
+		long good = 0;
+		byte[] body = new byte[MAX_RECORD];
+		CRC32 check = new CRC32();
+		while (true) {
+			int length;
+			int sum;
+			try {
+				length = in.readInt();
+				sum = in.readInt();
+				if (length < 1 || length > MAX_RECORD) {
+					break;
+				}
+				in.readFully(body, 0, length);
+			} catch (EOFException e) {
+				break;
+			}
+			check.reset();
+			check.update(body, 0, length);
+			if ((int) check.getValue() != sum) {
+				break;
+			}
+			apply(ByteBuffer.wrap(body, 0, length), target);
+			good += HEADER_BYTES + length;
+		}
+		return good;
+	}
+
+	@Override
+	public void contactPut(Contact contact) {
+		synchronized (lock) {
+			reserve();
+			putContact(pending, checksum, contact);
+			appendDone();
+		}
+	}
+
+	@Override
+	public void contactDeleted(String contactID) {
+		synchronized (lock) {
+			reserve();
+			int start = startRecord(pending, CONTACT_DELETE);
+			putString(pending, contactID);
+			endRecord(pending, start, checksum);
+			appendDone();
+		}
+	}
+
+	@Override
+	public void taskPut(Task task) {
+		synchronized (lock) {
+			reserve();
+			putTask(pending, checksum, task);
+			appendDone();
+		}
+	}
+
+	@Override
+	public void taskDeleted(int taskID) {
+		synchronized (lock) {
+			reserve();
+			int start = startRecord(pending, TASK_DELETE);
+			pending.putInt(taskID);
+			endRecord(pending, start, checksum);
+			appendDone();
+		}
+	}
+
+	@Override
+	public void appointmentPut(Appointment appointment) {
+		synchronized (lock) {
+			reserve();
+			putAppointment(pending, checksum, appointment);
+			appendDone();
+		}
+	}
+
+	@Override
+	public void appointmentDeleted(int apptID) {
+		synchronized (lock) {
+			reserve();
+			int start = startRecord(pending, APPOINTMENT_DELETE);
+			pending.putInt(apptID);
+			endRecord(pending, start, checksum);
+			appendDone();
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the stores and deletes the log files it replaces.
+	 * Writers pause only while the current segment is synced and a new one
+	 * is started. The snapshot is then built on the calling thread from the
+	 * previous snapshot and the finished segments, without touching the
+	 * live stores.
+	 * @throws IOException if a file cannot be read or written
+	 * @throws IllegalStateException if the log is closed
+	 */
+	public void snapshot() throws IOException {
+		synchronized (snapshotLock) {
+			long covered = roll();
+
+			Compactor state = new Compactor();
+			if (lastSnapshot >= 0) {
+				loadSnapshot(snapshotPath(directory, lastSnapshot), state);
+			}
+			List<Long> finished = new ArrayList<Long>();
+			for (long sequence : sequences(directory, LOG_PREFIX)) {
+				if (sequence < covered) {
+					replay(segmentPath(directory, sequence), state);
+					finished.add(sequence);
+				}
+			}
+			writeSnapshot(snapshotPath(directory, covered), state);
+
+			// The new snapshot is in place, so everything before it can go
+			if (lastSnapshot >= 0) {
+				Files.deleteIfExists(snapshotPath(directory, lastSnapshot));
+			}
+			for (long sequence : finished) {
+				Files.deleteIfExists(segmentPath(directory, sequence));
+			}
+			lastSnapshot = covered;
+		}
+	}
+
+	/**
+	 * Takes a snapshot on a background thread at a fixed delay.
+	 * A snapshot that fails stops the schedule; the log itself keeps working.
+	 * @param intervalMillis Time between the end of one snapshot and the start of the next
+	 */
+	public void scheduleSnapshots(long intervalMillis) {
+		if (intervalMillis <= 0) {
+			throw new IllegalArgumentException("Snapshot interval must be positive.");
+		}
+		synchronized (lock) {
+			if (closed) {
+				throw new IllegalStateException("Log is closed.");
+			}
+			if (snapshotter != null) {
+				throw new IllegalStateException("Snapshots are already scheduled.");
+			}
+			snapshotter = Executors.newSingleThreadScheduledExecutor(
+					Thread.ofPlatform().daemon().name("wal-snapshot").factory());
+			snapshotter.scheduleWithFixedDelay(() -> {
+				try {
+					snapshot();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Waits until every record appended so far is as durable as the policy
+	 * requires: forced to disk under EVERY_WRITE, handed to the OS under OS.
+	 * Returns at once under INTERVAL or without group commit, since the
+	 * records were already dealt with when they were appended.
+	 * @throws UncheckedIOException if writing the log failed
+	 */
+	@Override
+	public void commit() {
+		long target;
+		synchronized (lock) {
+			checkFailure();
+			if (!groupCommit || policy == SyncPolicy.INTERVAL) {
+				return;
+			}
+			target = appended;
+		}
+		flush(target, policy == SyncPolicy.EVERY_WRITE);
+	}
+
+	/**
+	 * Gets the sync policy.
+	 * @return Sync policy
+	 */
+	public SyncPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Checks whether concurrent writers share writes and syncs.
+	 * @return true if group commit is on
+	 */
+	public boolean isGroupCommit() {
+		return groupCommit;
+	}
+
+	/**
+	 * Gets the number of records appended since the log was opened.
+	 * @return Record count
+	 */
+	public long getAppendedCount() {
+		synchronized (lock) {
+			return appended;
+		}
+	}
+
+	/**
+	 * Writes and forces any buffered records, then closes the file.
+	 * Later changes through services on this log throw IllegalStateException.
+	 * @throws IOException if the final write or sync fails
+	 */
+	@Override
+	public void close() throws IOException {
+		long target;
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			target = appended;
+			lock.notifyAll();
+		}
+		if (snapshotter != null) {
+			snapshotter.shutdown();
+			try {
+				snapshotter.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (syncer != null) {
+			try {
+				syncer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		try {
+			flush(target, true);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			out.close();
+		}
+	}
+
+	int nextContactID() {
+		return nextContactID;
+	}
+
+	int nextTaskID() {
+		return nextTaskID;
+	}
+
+	int nextAppointmentID() {
+		return nextAppointmentID;
+	}
+
+	/**
+	 * Makes room in the pending buffer for one more record. Caller holds the lock.
+	 */
+	private void reserve() {
+		if (closed) {
+			throw new IllegalStateException("Log is closed.");
+		}
+		checkFailure();
+		if (pending.remaining() < HEADER_BYTES + MAX_RECORD) {
+			ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+			pending.flip();
+			larger.put(pending);
+			pending = larger;
+		}
+	}
+
+	/**
+	 * Counts a record just added to the pending buffer and, without group
+	 * commit, writes it out at once. Caller holds the lock.
+	 */
+	private void appendDone() {
+		appended++;
+
+		if (!groupCommit) {
+			try {
+				boolean force = policy == SyncPolicy.EVERY_WRITE;
+				writeOut(pending, force);
+				written = appended;
+				if (force) {
+					synced = appended;
+				}
+			} catch (IOException e) {
+				failure = e;
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Starts a record, leaving room for its header.
+	 * @return Position of the record header
+	 */
+	private static int startRecord(ByteBuffer buffer, byte type) {
+		int start = buffer.position();
+		buffer.position(start + HEADER_BYTES);
+		buffer.put(type);
+		return start;
+	}
+
+	/**
+	 * Fills in the length and checksum of the record started at start.
+	 */
+	private static void endRecord(ByteBuffer buffer, int start, CRC32 checksum) {
+		int length = buffer.position() - start - HEADER_BYTES;
+		checksum.reset();
+		checksum.update(buffer.array(), start + HEADER_BYTES, length);
+		buffer.putInt(start, length);
+		buffer.putInt(start + 4, (int) checksum.getValue());
+	}
+
+	private static void putContact(ByteBuffer buffer, CRC32 checksum, Contact contact) {
+		int start = startRecord(buffer, CONTACT_PUT);
+		putString(buffer, contact.getContactID());
+		putString(buffer, contact.getFirstName());
+		putString(buffer, contact.getLastName());
+		putString(buffer, contact.getPhone());
+		putString(buffer, contact.getAddress());
+		endRecord(buffer, start, checksum);
+	}
+
+	private static void putTask(ByteBuffer buffer, CRC32 checksum, Task task) {
+		int start = startRecord(buffer, TASK_PUT);
+		buffer.putInt(task.getTaskID());
+		putString(buffer, task.getName());
+		putString(buffer, task.getDescription());
+		endRecord(buffer, start, checksum);
+	}
+
+	private static void putAppointment(ByteBuffer buffer, CRC32 checksum, Appointment appointment) {
+		int start = startRecord(buffer, APPOINTMENT_PUT);
+		buffer.putInt(appointment.getApptID());
+		buffer.putLong(appointment.getStartTime());
+		buffer.putInt(appointment.getDurationMinutes());
+		putString(buffer, appointment.getDescription());
+		endRecord(buffer, start, checksum);
+	}
+
+	/**
+	 * Writes a string as an unsigned short byte count and UTF-8 bytes.
+	 * ASCII strings are copied directly without building a byte array.
+	 */
+	private static void putString(ByteBuffer buffer, String value) {
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			if (value.charAt(i) >= 0x80) {
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				buffer.putShort((short) bytes.length);
+				buffer.put(bytes);
+				return;
+			}
+		}
+		buffer.putShort((short) length);
+		for (int i = 0; i < length; i++) {
+			buffer.put((byte) value.charAt(i));
+		}
+	}
+
+	private static String getString(ByteBuffer body) {
+		int length = Short.toUnsignedInt(body.getShort());
+		String value = new String(body.array(), body.arrayOffset() + body.position(), length, StandardCharsets.UTF_8);
+		body.position(body.position() + length);
+		return value;
+	}
+
+	/**
+	 * Decodes one record body and passes the change to the target.
+	 */
+	private static void apply(ByteBuffer body, MutationListener target) throws IOException {
+		byte type = body.get();
+		switch (type) {
+			case CONTACT_PUT:
+				target.contactPut(new Contact(getString(body), getString(body), getString(body),
+						getString(body), getString(body)));
+				break;
+			case CONTACT_DELETE:
+				target.contactDeleted(getString(body));
+				break;
+			case TASK_PUT:
+				target.taskPut(new Task(body.getInt(), getString(body), getString(body)));
+				break;
+			case TASK_DELETE:
+				target.taskDeleted(body.getInt());
+				break;
+			case APPOINTMENT_PUT:
+				int apptID = body.getInt();
+				long time = body.getLong();
+				int durationMinutes = body.getInt();
+				target.appointmentPut(Appointment.restore(apptID, time, getString(body), durationMinutes));
+				break;
+			case APPOINTMENT_DELETE:
+				target.appointmentDeleted(body.getInt());
+				break;
+			default:
+				throw new IOException("Unknown log record type " + type + ".");
+		}
+	}
+
+	/**
+	 * Makes sure records up to target are written, and forced if asked.
+	 * One caller at a time does the I/O outside the lock, taking every record
+	 * buffered so far; the rest wait and usually find their records done.
+	 */
+	private void flush(long target, boolean force) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				ByteBuffer batch;
+				long upTo;
+				synchronized (lock) {
+					checkFailure();
+					if ((force ? synced : written) >= target) {
+						return;
+					}
+					if (flushing) {
+						try {
+							lock.wait();
+						} catch (InterruptedException e) {
+							interrupted = true;
+						}
+						continue;
+					}
+					flushing = true;
+					batch = pending;
+					pending = spare;
+					upTo = appended;
+				}
+
+				// Writers keep appending to the other buffer during the I/O
+				IOException error = null;
+				try {
+					writeOut(batch, force);
+				} catch (IOException e) {
+					error = e;
+					batch.clear();
+				}
+
+				synchronized (lock) {
+					spare = batch;
+					flushing = false;
+					if (error != null) {
+						failure = error;
+					} else {
+						written = upTo;
+						if (force) {
+							synced = upTo;
+						}
+					}
+					lock.notifyAll();
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Writes a buffer's contents to the file, syncing if asked, and empties it.
+	 */
+	private void writeOut(ByteBuffer buffer, boolean force) throws IOException {
+		out.write(buffer.array(), 0, buffer.position());
+		buffer.clear();
+		if (force) {
+			out.getFD().sync();
+		}
+	}
+
+	/**
+	 * Syncs the current segment and starts the next one.
+	 * @return Number of the new segment
+	 */
+	private long roll() throws IOException {
+		boolean interrupted = false;
+		try {
+			synchronized (lock) {
+				while (flushing) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+				if (closed) {
+					throw new IllegalStateException("Log is closed.");
+				}
+				checkFailure();
+				try {
+					writeOut(pending, true);
+					written = appended;
+					synced = appended;
+					out.close();
+					segment++;
+					out = new RandomAccessFile(segmentPath(directory, segment).toFile(), "rw");
+				} catch (IOException e) {
+					failure = e;
+					throw e;
+				}
+				return segment;
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Writes a snapshot to a temporary file, syncs it and moves it into place,
+	 * so a snapshot file that exists is always complete.
+	 */
+	private static void writeSnapshot(Path file, Compactor state) throws IOException {
+		Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+		try (FileOutputStream stream = new FileOutputStream(temp.toFile())) {
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+			CRC32 checksum = new CRC32();
+			buffer.putInt(SNAPSHOT_MAGIC);
+			buffer.putInt(state.nextContactID);
+			buffer.putInt(state.nextTaskID);
+			buffer.putInt(state.nextAppointmentID);
+			for (Contact contact : state.contacts.values()) {
+				drain(stream, buffer);
+				putContact(buffer, checksum, contact);
+			}
+			try {
+				state.tasks.forEach((taskID, task) -> {
+					drain(stream, buffer);
+					putTask(buffer, checksum, task);
+				});
+				state.appointments.forEach((apptID, appointment) -> {
+					drain(stream, buffer);
+					putAppointment(buffer, checksum, appointment);
+				});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			stream.write(buffer.array(), 0, buffer.position());
+			stream.getFD().sync();
+		}
+		Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Writes out a snapshot buffer once it may not hold another record.
+	 */
+	private static void drain(FileOutputStream stream, ByteBuffer buffer) {
+		if (buffer.remaining() < HEADER_BYTES + MAX_RECORD) {
+			try {
+				stream.write(buffer.array(), 0, buffer.position());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			buffer.clear();
+		}
+	}
+
+	private static Path segmentPath(Path directory, long sequence) {
+		return directory.resolve(String.format("%s%010d", LOG_PREFIX, sequence));
+	}
+
+	private static Path snapshotPath(Path directory, long sequence) {
+		return directory.resolve(String.format("%s%010d", SNAPSHOT_PREFIX, sequence));
+	}
+
+	/**
+	 * Lists the sequence numbers of the files with a prefix, in order.
+	 */
+	private static List<Long> sequences(Path directory, String prefix) throws IOException {
+		List<Long> result = new ArrayList<Long>();
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path path : (Iterable<Path>) files::iterator) {
+				String name = path.getFileName().toString();
+				if (name.startsWith(prefix) && !name.endsWith(TEMP_SUFFIX)) {
+					try {
+						result.add(Long.parseLong(name.substring(prefix.length())));
+					} catch (NumberFormatException e) {
+						// Not one of ours
+					}
+				}
+			}
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	private void checkFailure() {
+		if (failure != null) {
+			throw new UncheckedIOException("Write-ahead log failed.", failure);
+		}
+	}
+
+	/**
+	 * Forces the log every interval until the log is closed.
+	 */
+	private void syncLoop(long intervalMillis) {
+		while (true) {
+			long target;
+			synchronized (lock) {
+				long deadline = System.currentTimeMillis() + intervalMillis;
+				long remaining = intervalMillis;
+				while (!closed && remaining > 0) {
+					try {
+						lock.wait(remaining);
+					} catch (InterruptedException e) {
+						return;
+					}
+					remaining = deadline - System.currentTimeMillis();
+				}
+				if (closed || failure != null) {
+					return;
+				}
+				target = appended;
+			}
+			try {
+				flush(target, true);
+			} catch (UncheckedIOException e) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Tracks the next free ID of each kind while records are replayed.
+	 * Deleted IDs count too, so they are never handed out again.
+	 */
+	private abstract static class IDTracker implements MutationListener {
+		int nextContactID;
+		int nextTaskID;
+		int nextAppointmentID;
+
+		@Override
+		public void contactPut(Contact contact) {
+			seenContact(contact.getContactID());
+		}
+
+		@Override
+		public void contactDeleted(String contactID) {
+			seenContact(contactID);
+		}
+
+		@Override
+		public void taskPut(Task task) {
+			seenTask(task.getTaskID());
+		}
+
+		@Override
+		public void taskDeleted(int taskID) {
+			seenTask(taskID);
+		}
+
+		@Override
+		public void appointmentPut(Appointment appointment) {
+			seenAppointment(appointment.getApptID());
+		}
+
+		@Override
+		public void appointmentDeleted(int apptID) {
+			seenAppointment(apptID);
+		}
+
+		private void seenContact(String contactID) {
+			nextContactID = Math.max(nextContactID, IntHashMap.parseKey(contactID) + 1);
+		}
+
+		private void seenTask(int taskID) {
+			nextTaskID = Math.max(nextTaskID, taskID + 1);
+		}
+
+		private void seenAppointment(int apptID) {
+			nextAppointmentID = Math.max(nextAppointmentID, apptID + 1);
+		}
+	}
+
+	/**
+	 * Applies replayed changes to the service stores.
+	 */
+	private static final class StoreLoader extends IDTracker {
+
+		@Override
+		public void contactPut(Contact contact) {
+			ContactService.restore(contact);
+			super.contactPut(contact);
+		}
+
+		@Override
+		public void contactDeleted(String contactID) {
+			ContactService.restoreDelete(contactID);
+			super.contactDeleted(contactID);
+		}
+
+		@Override
+		public void taskPut(Task task) {
+			TaskService.restore(task);
+			super.taskPut(task);
+		}
+
+		@Override
+		public void taskDeleted(int taskID) {
+			TaskService.restoreDelete(taskID);
+			super.taskDeleted(taskID);
+		}
+
+		@Override
+		public void appointmentPut(Appointment appointment) {
+			AppointmentService.restore(appointment);
+			super.appointmentPut(appointment);
+		}
+
+		@Override
+		public void appointmentDeleted(int apptID) {
+			AppointmentService.restoreDelete(apptID);
+			super.appointmentDeleted(apptID);
+		}
+	}
+
+	/**
+	 * Collects the latest state of every object while a snapshot is built.
+	 */
+	private static final class Compactor extends IDTracker {
+		final Map<String, Contact> contacts = new HashMap<String, Contact>();
+		final IntHashMap<Task> tasks = new IntHashMap<Task>();
+		final IntHashMap<Appointment> appointments = new IntHashMap<Appointment>();
+
+		@Override
+		public void contactPut(Contact contact) {
+			contacts.put(contact.getContactID(), contact);
+			super.contactPut(contact);
+		}
+
+		@Override
+		public void contactDeleted(String contactID) {
+			contacts.remove(contactID);
+			super.contactDeleted(contactID);
+		}
+
+		@Override
+		public void taskPut(Task task) {
+			tasks.put(task.getTaskID(), task);
+			super.taskPut(task);
+		}
+
+		@Override
+		public void taskDeleted(int taskID) {
+			tasks.remove(taskID);
+			super.taskDeleted(taskID);
+		}
+
+		@Override
+		public void appointmentPut(Appointment appointment) {
+			appointments.put(appointment.getApptID(), appointment);
+			super.appointmentPut(appointment);
+		}
+
+		@Override
+		public void appointmentDeleted(int apptID) {
+			appointments.remove(apptID);
+			super.appointmentDeleted(apptID);
+		}
+	}
+}
@@ -0,0 +1,438 @@
+package Server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pipelining client for BinaryServer.
+ *
+ * Each operation method only queues its request; flush sends everything
+ * queued at once and returns the replies in the same order, so any number
+ * of operations cost one round trip. Replies are read while requests are
+ * still being sent, so a batch larger than the socket buffers cannot stall
+ * against the server's backpressure. A request too large to encode is
+ * refused with IllegalArgumentException when queued, leaving the rest of
+ * the queue as it was. If flush fails the connection is in an unknown
+ * state and should be closed. Not thread-safe; use one client per thread.
+ *
+ * @author Stewart Withrow
+ */
+public final class BinaryClient implements AutoCloseable {
+
+	private static final Object[] NO_VALUES = new Object[0];
+
+	private final SocketChannel channel;
+	private final Selector selector;
+	private final SelectionKey key;
+
+	// Queued requests, in write mode between flushes
+	private ByteBuffer out = ByteBuffer.allocate(16 * 1024);
+	private ByteBuffer in = ByteBuffer.allocate(16 * 1024);
+
+	// Opcode of each queued request, to decode its reply
+	private byte[] opcodes = new byte[64];
+	private int queued;
+
+	/**
+	 * One reply: its status and, for a successful get or add, the fields
+	 * BinaryProtocol lists for it.
+	 */
+	public static final class Reply {
+
+		private final byte status;
+		private final String message;
+		private final Object[] values;
+
+		private Reply(byte status, String message, Object[] values) {
+			this.status = status;
+			this.message = message;
+			this.values = values;
+		}
+
+		/**
+		 * Gets the reply's status.
+		 * @return One of the BinaryProtocol status codes
+		 */
+		public byte getStatus() {
+			return status;
+		}
+
+		/**
+		 * Gets the reason a request was refused.
+		 * @return Message for INVALID, UNAVAILABLE and BAD_REQUEST, otherwise null
+		 */
+		public String getMessage() {
+			return message;
+		}
+
+		/**
+		 * Gets the number of fields the reply carries.
+		 * @return Field count
+		 */
+		public int size() {
+			return values.length;
+		}
+
+		/**
+		 * Gets an int field.
+		 * @param index Field position
+		 * @return The field
+		 */
+		public int getInt(int index) {
+			return (Integer) values[index];
+		}
+
+		/**
+		 * Gets a long field.
+		 * @param index Field position
+		 * @return The field
+		 */
+		public long getLong(int index) {
+			return (Long) values[index];
+		}
+
+		/**
+		 * Gets a string field.
+		 * @param index Field position
+		 * @return The field
+		 */
+		public String getString(int index) {
+			return (String) values[index];
+		}
+	}
+
+	/**
+	 * Connects to a server.
+	 * @param address Server address
+	 * @throws IOException if the connection fails
+	 */
+	public BinaryClient(InetSocketAddress address) throws IOException {
+		this.channel = SocketChannel.open(address);
+		channel.socket().setTcpNoDelay(true);
+		channel.configureBlocking(false);
+		this.selector = Selector.open();
+		this.key = channel.register(selector, 0);
+	}
+
+	/**
+	 * Gets the number of requests waiting for flush.
+	 * @return Queued request count
+	 */
+	public int getQueued() {
+		return queued;
+	}
+
+	/**
+	 * Queues a read of a task.
+	 * @param taskID Task ID
+	 */
+	public void getTask(int taskID) {
+		int start = begin(4);
+		out.putInt(taskID);
+		end(start, BinaryProtocol.TASK_GET);
+	}
+
+	/**
+	 * Queues adding a task; its reply carries the new ID.
+	 * @param name Task name
+	 * @param description Task description
+	 */
+	public void addTask(String name, String description) {
+		int start = begin(BinaryProtocol.maxSize(name) + BinaryProtocol.maxSize(description));
+		putString(start, name);
+		putString(start, description);
+		end(start, BinaryProtocol.TASK_ADD);
+	}
+
+	/**
+	 * Queues replacing a task if it still has the given version.
+	 * @param taskID Task ID
+	 * @param expectedVersion Version the task must still have
+	 * @param name New name
+	 * @param description New description
+	 */
+	public void updateTask(int taskID, long expectedVersion, String name, String description) {
+		int start = begin(12 + BinaryProtocol.maxSize(name) + BinaryProtocol.maxSize(description));
+		out.putInt(taskID).putLong(expectedVersion);
+		putString(start, name);
+		putString(start, description);
+		end(start, BinaryProtocol.TASK_UPDATE);
+	}
+
+	/**
+	 * Queues deleting a task.
+	 * @param taskID Task ID
+	 */
+	public void deleteTask(int taskID) {
+		int start = begin(4);
+		out.putInt(taskID);
+		end(start, BinaryProtocol.TASK_DELETE);
+	}
+
+	/**
+	 * Queues a read of a contact.
+	 * @param contactID Contact ID
+	 */
+	public void getContact(String contactID) {
+		int start = begin(BinaryProtocol.maxSize(contactID));
+		putString(start, contactID);
+		end(start, BinaryProtocol.CONTACT_GET);
+	}
+
+	/**
+	 * Queues adding a contact; its reply carries the new ID.
+	 * @param firstName First name
+	 * @param lastName Last name
+	 * @param phone Phone number
+	 * @param address Address
+	 */
+	public void addContact(String firstName, String lastName, String phone, String address) {
+		int start = begin(BinaryProtocol.maxSize(firstName) + BinaryProtocol.maxSize(lastName)
+				+ BinaryProtocol.maxSize(phone) + BinaryProtocol.maxSize(address));
+		putString(start, firstName);
+		putString(start, lastName);
+		putString(start, phone);
+		putString(start, address);
+		end(start, BinaryProtocol.CONTACT_ADD);
+	}
+
+	/**
+	 * Queues replacing a contact if it still has the given version.
+	 * @param contactID Contact ID
+	 * @param expectedVersion Version the contact must still have
+	 * @param firstName New first name
+	 * @param lastName New last name
+	 * @param phone New phone number
+	 * @param address New address
+	 */
+	public void updateContact(String contactID, long expectedVersion, String firstName, String lastName,
+			String phone, String address) {
+		int start = begin(8 + BinaryProtocol.maxSize(contactID) + BinaryProtocol.maxSize(firstName)
+				+ BinaryProtocol.maxSize(lastName) + BinaryProtocol.maxSize(phone) + BinaryProtocol.maxSize(address));
+		putString(start, contactID);
+		out.putLong(expectedVersion);
+		putString(start, firstName);
+		putString(start, lastName);
+		putString(start, phone);
+		putString(start, address);
+		end(start, BinaryProtocol.CONTACT_UPDATE);
+	}
+
+	/**
+	 * Queues deleting a contact.
+	 * @param contactID Contact ID
+	 */
+	public void deleteContact(String contactID) {
+		int start = begin(BinaryProtocol.maxSize(contactID));
+		putString(start, contactID);
+		end(start, BinaryProtocol.CONTACT_DELETE);
+	}
+
+	/**
+	 * Queues a read of an appointment.
+	 * @param apptID Appointment ID
+	 */
+	public void getAppointment(int apptID) {
+		int start = begin(4);
+		out.putInt(apptID);
+		end(start, BinaryProtocol.APPOINTMENT_GET);
+	}
+
+	/**
+	 * Queues adding an appointment; its reply carries the new ID.
+	 * @param date Scheduled time in epoch milliseconds
+	 * @param description Appointment description
+	 * @param durationMinutes Length in minutes
+	 */
+	public void addAppointment(long date, String description, int durationMinutes) {
+		int start = begin(12 + BinaryProtocol.maxSize(description));
+		out.putLong(date);
+		putString(start, description);
+		out.putInt(durationMinutes);
+		end(start, BinaryProtocol.APPOINTMENT_ADD);
+	}
+
+	/**
+	 * Queues replacing an appointment if it still has the given version.
+	 * @param apptID Appointment ID
+	 * @param expectedVersion Version the appointment must still have
+	 * @param date New time in epoch milliseconds
+	 * @param description New description
+	 * @param durationMinutes New length in minutes
+	 */
+	public void updateAppointment(int apptID, long expectedVersion, long date, String description,
+			int durationMinutes) {
+		int start = begin(24 + BinaryProtocol.maxSize(description));
+		out.putInt(apptID).putLong(expectedVersion).putLong(date);
+		putString(start, description);
+		out.putInt(durationMinutes);
+		end(start, BinaryProtocol.APPOINTMENT_UPDATE);
+	}
+
+	/**
+	 * Queues deleting an appointment.
+	 * @param apptID Appointment ID
+	 */
+	public void deleteAppointment(int apptID) {
+		int start = begin(4);
+		out.putInt(apptID);
+		end(start, BinaryProtocol.APPOINTMENT_DELETE);
+	}
+
+	/**
+	 * Sends every queued request and waits for all their replies.
+	 * @return Replies, one per request, in the order they were queued
+	 * @throws IOException if the connection fails or a reply is malformed
+	 */
+	public List<Reply> flush() throws IOException {
+		List<Reply> replies = new ArrayList<Reply>(queued);
+		out.flip();
+		try {
+			while (out.hasRemaining() || replies.size() < queued) {
+				int written = out.hasRemaining() ? channel.write(out) : 0;
+				int read = channel.read(in);
+				if (read < 0) {
+					throw new EOFException("Server closed the connection.");
+				}
+				decode(replies);
+				if (written == 0 && read == 0) {
+					key.interestOps(SelectionKey.OP_READ | (out.hasRemaining() ? SelectionKey.OP_WRITE : 0));
+					selector.select();
+					selector.selectedKeys().clear();
+				}
+			}
+		} finally {
+			out.clear();
+			queued = 0;
+		}
+		return replies;
+	}
+
+	/**
+	 * Closes the connection, dropping any queued requests.
+	 * @throws IOException if closing fails
+	 */
+	@Override
+	public void close() throws IOException {
+		selector.close();
+		channel.close();
+	}
+
+	/**
+	 * Starts a request frame with room for the given field bytes.
+	 * @return Position of the frame, for end
+	 */
+	private int begin(int fieldSize) {
+		int needed = 5 + fieldSize;
+		if (out.remaining() < needed) {
+			out = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + needed))
+					.put(out.flip());
+		}
+		int start = out.position();
+		out.putInt(0).put((byte) 0);
+		return start;
+	}
+
+	/**
+	 * Finishes a request frame and queues it.
+	 */
+	private void end(int start, byte opcode) {
+		int length = out.position() - start - 4;
+		if (length > BinaryProtocol.MAX_FRAME) {
+			out.position(start);
+			throw new IllegalArgumentException("Request is too large.");
+		}
+		out.putInt(start, length).put(start + 4, opcode);
+		if (queued == opcodes.length) {
+			opcodes = Arrays.copyOf(opcodes, queued * 2);
+		}
+		opcodes[queued++] = opcode;
+	}
+
+	/**
+	 * Writes a string field, dropping the request if it cannot be encoded.
+	 */
+	private void putString(int start, String value) {
+		try {
+			BinaryProtocol.putString(out, value);
+		} catch (IllegalArgumentException e) {
+			out.position(start);
+			throw e;
+		}
+	}
+
+	/**
+	 * Decodes every complete reply that has arrived.
+	 */
+	private void decode(List<Reply> replies) throws IOException {
+		in.flip();
+		try {
+			while (in.remaining() >= 4) {
+				int length = in.getInt(in.position());
+				if (length < 1 || length > BinaryProtocol.MAX_FRAME || replies.size() == queued) {
+					throw new IOException("Malformed reply.");
+				}
+				if (in.remaining() < 4 + length) {
+					break;
+				}
+				int end = in.position() + 4 + length;
+				int limit = in.limit();
+				in.position(in.position() + 4).limit(end);
+				replies.add(reply(opcodes[replies.size()], in));
+				if (in.hasRemaining()) {
+					throw new IOException("Malformed reply.");
+				}
+				in.limit(limit).position(end);
+			}
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Malformed reply.", e);
+		}
+		in.compact();
+		if (in.position() >= 4) {
+			int needed = 4 + in.getInt(0);
+			if (needed > in.capacity()) {
+				in = ByteBuffer.allocate(needed).put(in.flip());
+			}
+		}
+	}
+
+	private static Reply reply(byte opcode, ByteBuffer frame) {
+		byte status = frame.get();
+		if (status != BinaryProtocol.OK) {
+			String message = status >= BinaryProtocol.INVALID ? BinaryProtocol.getString(frame) : null;
+			return new Reply(status, message, NO_VALUES);
+		}
+		switch (opcode) {
+			case BinaryProtocol.TASK_GET:
+				return ok(frame.getInt(), frame.getLong(), BinaryProtocol.getString(frame),
+						BinaryProtocol.getString(frame));
+			case BinaryProtocol.CONTACT_GET:
+				return ok(BinaryProtocol.getString(frame), frame.getLong(), BinaryProtocol.getString(frame),
+						BinaryProtocol.getString(frame), BinaryProtocol.getString(frame),
+						BinaryProtocol.getString(frame));
+			case BinaryProtocol.APPOINTMENT_GET:
+				return ok(frame.getInt(), frame.getLong(), frame.getLong(), frame.getInt(),
+						BinaryProtocol.getString(frame));
+			case BinaryProtocol.TASK_ADD:
+			case BinaryProtocol.APPOINTMENT_ADD:
+				return ok(frame.getInt());
+			case BinaryProtocol.CONTACT_ADD:
+				return ok(BinaryProtocol.getString(frame));
+			default:
+				return ok();
+		}
+	}
+
+	private static Reply ok(Object... values) {
+		return new Reply(BinaryProtocol.OK, null, values);
+	}
+}
@@ -0,0 +1,129 @@
+package Server;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire format shared by BinaryServer and BinaryClient.
+ *
+ * Every message is a frame: a four-byte big-endian length, then that many
+ * bytes. A request frame starts with a one-byte opcode and a response frame
+ * with a one-byte status, each followed by its fields. Ints are four bytes,
+ * longs eight, and strings an unsigned two-byte UTF-8 length followed by
+ * the bytes, with NULL_STRING as the length of a null. Responses come back
+ * in the order the requests were sent, so a client may send any number of
+ * requests before reading the replies.
+ *
+ * Request fields by opcode:
+ * TASK_GET and TASK_DELETE: int id;
+ * TASK_ADD: name, description;
+ * TASK_UPDATE: int id, long version, name, description;
+ * CONTACT_GET and CONTACT_DELETE: string id;
+ * CONTACT_ADD: firstName, lastName, phone, address;
+ * CONTACT_UPDATE: string id, long version, firstName, lastName, phone, address;
+ * APPOINTMENT_GET and APPOINTMENT_DELETE: int id;
+ * APPOINTMENT_ADD: long date, description, int durationMinutes;
+ * APPOINTMENT_UPDATE: int id, long version, long date, description, int durationMinutes.
+ *
+ * An OK reply to a get carries the record: a task as int id, long version,
+ * name, description; a contact as string id, long version, firstName,
+ * lastName, phone, address; an appointment as int id, long version, long
+ * date, int durationMinutes, description. An OK reply to an add carries
+ * the new ID, and to an update or delete nothing. INVALID, UNAVAILABLE and
+ * BAD_REQUEST replies carry a message string.
+ *
+ * @author Stewart Withrow
+ */
+public final class BinaryProtocol {
+
+	public static final byte TASK_GET = 1;
+	public static final byte TASK_ADD = 2;
+	public static final byte TASK_UPDATE = 3;
+	public static final byte TASK_DELETE = 4;
+	public static final byte CONTACT_GET = 5;
+	public static final byte CONTACT_ADD = 6;
+	public static final byte CONTACT_UPDATE = 7;
+	public static final byte CONTACT_DELETE = 8;
+	public static final byte APPOINTMENT_GET = 9;
+	public static final byte APPOINTMENT_ADD = 10;
+	public static final byte APPOINTMENT_UPDATE = 11;
+	public static final byte APPOINTMENT_DELETE = 12;
+
+	// Done
+	public static final byte OK = 0;
+	// No entity with that ID
+	public static final byte NOT_FOUND = 1;
+	// Update's version is no longer current
+	public static final byte CONFLICT = 2;
+	// Rejected by validation
+	public static final byte INVALID = 3;
+	// Service cannot take writes, e.g. its log has closed
+	public static final byte UNAVAILABLE = 4;
+	// Unknown opcode or malformed fields
+	public static final byte BAD_REQUEST = 5;
+
+	// Largest frame either side accepts, not counting the length itself
+	public static final int MAX_FRAME = 64 * 1024;
+
+	// Length written for a null string
+	public static final int NULL_STRING = 0xFFFF;
+
+	private BinaryProtocol() {
+	}
+
+	/**
+	 * Writes a string field.
+	 * @param buffer Buffer with room for maxSize(value) bytes
+	 * @param value String, or null
+	 * @throws IllegalArgumentException if the string encodes to more than 65534 bytes
+	 */
+	public static void putString(ByteBuffer buffer, String value) {
+		if (value == null) {
+			buffer.putShort((short) NULL_STRING);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length >= NULL_STRING) {
+			throw new IllegalArgumentException("String is too long.");
+		}
+		buffer.putShort((short) bytes.length);
+		buffer.put(bytes);
+	}
+
+	/**
+	 * Reads a string field.
+	 * @param buffer Buffer positioned at the field
+	 * @return The string, or null
+	 * @throws BufferUnderflowException if the field runs past the limit
+	 */
+	public static String getString(ByteBuffer buffer) {
+		int length = buffer.getShort() & 0xFFFF;
+		if (length == NULL_STRING) {
+			return null;
+		}
+		if (length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		String value;
+		if (buffer.hasArray()) {
+			value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+					StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+		} else {
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			value = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return value;
+	}
+
+	/**
+	 * Gets the most bytes a string field can take.
+	 * @param value String, or null
+	 * @return Upper bound on its encoded size
+	 */
+	public static int maxSize(String value) {
+		return value == null ? 2 : 2 + 3 * value.length();
+	}
+}
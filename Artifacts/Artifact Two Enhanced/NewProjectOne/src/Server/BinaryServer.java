@@ -0,0 +1,764 @@
+package Server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import Project.Appointment;
+import Project.AppointmentService;
+import Project.Contact;
+import Project.ContactService;
+import Project.Task;
+import Project.TaskService;
+
+/**
+ * Serves the three services over the compact binary protocol described in
+ * BinaryProtocol, for internal callers that find JSON over HTTP too heavy.
+ *
+ * Connections are spread over a fixed set of event loops, one thread and
+ * selector each. A loop reads whatever has arrived on a connection, runs
+ * every complete request in it in order, and sends all their replies back
+ * in one gathered write, so a client that pipelines many requests pays
+ * for one round trip and a couple of system calls rather than one per
+ * request. Replies are encoded into pooled direct buffers; a connection
+ * whose client stops reading is paused once its unsent replies pass a
+ * limit, and resumed when they drain.
+ *
+ * Reads run on the loop thread, since the services answer them without
+ * locking. A change may wait on a write-ahead log sync or a service's
+ * writer, so the first change in a read and every request after it run on
+ * a virtual thread instead. The connection is neither read nor written
+ * until that thread hands it back, which keeps its replies in order, and
+ * the loop goes on serving its other connections meanwhile.
+ *
+ * @author Stewart Withrow
+ */
+public final class BinaryServer implements AutoCloseable {
+
+	// Size of each pooled reply buffer and of a new connection's read buffer
+	private static final int CHUNK = 16 * 1024;
+
+	// Unsent reply bytes at which a connection stops being read
+	private static final int HIGH_WATER = 256 * 1024;
+
+	// Spare reply buffers each loop keeps
+	private static final int POOL = 64;
+
+	// Longest error message sent, in chars
+	private static final int MAX_MESSAGE = 1024;
+
+	private final ServerSocketChannel acceptor;
+	private final Loop[] loops;
+	private final ContactService contactService;
+	private final TaskService taskService;
+	private final AppointmentService appointmentService;
+	private volatile boolean closed;
+
+	/**
+	 * Creates a server with one event loop per processor.
+	 * @param address Address and port to listen on; port 0 picks a free one
+	 * @param contactService Service for the contact operations
+	 * @param taskService Service for the task operations
+	 * @param appointmentService Service for the appointment operations
+	 * @throws IOException if the address cannot be bound
+	 */
+	public BinaryServer(InetSocketAddress address, ContactService contactService, TaskService taskService,
+			AppointmentService appointmentService) throws IOException {
+		this(address, contactService, taskService, appointmentService, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a server. Nothing is served until start.
+	 * @param address Address and port to listen on; port 0 picks a free one
+	 * @param contactService Service for the contact operations
+	 * @param taskService Service for the task operations
+	 * @param appointmentService Service for the appointment operations
+	 * @param loopCount Number of event loop threads
+	 * @throws IllegalArgumentException if loopCount is not positive
+	 * @throws IOException if the address cannot be bound
+	 */
+	public BinaryServer(InetSocketAddress address, ContactService contactService, TaskService taskService,
+			AppointmentService appointmentService, int loopCount) throws IOException {
+		if (loopCount < 1) {
+			throw new IllegalArgumentException("Loop count must be positive.");
+		}
+		this.contactService = contactService;
+		this.taskService = taskService;
+		this.appointmentService = appointmentService;
+		this.loops = new Loop[loopCount];
+		for (int i = 0; i < loopCount; i++) {
+			loops[i] = new Loop(i);
+		}
+		this.acceptor = ServerSocketChannel.open();
+		acceptor.bind(address, 1024);
+		acceptor.configureBlocking(false);
+		acceptor.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/**
+	 * Starts the event loops.
+	 */
+	public void start() {
+		for (Loop loop : loops) {
+			loop.thread.start();
+		}
+	}
+
+	/**
+	 * Gets the port the server listens on.
+	 * @return Port number
+	 */
+	public int getPort() {
+		return acceptor.socket().getLocalPort();
+	}
+
+	/**
+	 * Stops the event loops and closes every connection.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		for (Loop loop : loops) {
+			loop.selector.wakeup();
+		}
+		boolean interrupted = false;
+		for (Loop loop : loops) {
+			while (loop.thread.isAlive()) {
+				try {
+					loop.thread.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		for (Loop loop : loops) {
+			closeQuietly(loop.selector);
+		}
+		closeQuietly(acceptor);
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Serves in-memory services until the process is stopped.
+	 * @param args Optional port, 9090 by default
+	 * @throws IOException if the port cannot be bound
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 9090;
+		BinaryServer server = new BinaryServer(new InetSocketAddress(port), new ContactService(), new TaskService(),
+				new AppointmentService());
+		server.start();
+		System.out.println("Listening on port " + server.getPort());
+	}
+
+	private static void closeQuietly(AutoCloseable closeable) {
+		try {
+			closeable.close();
+		} catch (Exception e) {
+			// Shutting down; nothing more to do with it
+		}
+	}
+
+	/**
+	 * One event loop: a thread with its own selector and buffer pool.
+	 */
+	private final class Loop implements Runnable {
+
+		final Selector selector;
+		final Thread thread;
+
+		// Connections accepted by loop 0 for this loop to register
+		final ConcurrentLinkedQueue<SocketChannel> accepted = new ConcurrentLinkedQueue<SocketChannel>();
+
+		// Connections whose changes have been run off the loop, to be picked up again
+		final ConcurrentLinkedQueue<Connection> resumed = new ConcurrentLinkedQueue<Connection>();
+
+		private final ArrayDeque<ByteBuffer> pool = new ArrayDeque<ByteBuffer>();
+
+		// Next loop to hand a connection to; used by loop 0 only
+		private int next;
+
+		Loop(int index) throws IOException {
+			this.selector = Selector.open();
+			this.thread = new Thread(this, "binary-loop-" + index);
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (!closed) {
+					selector.select();
+					SocketChannel channel;
+					while ((channel = accepted.poll()) != null) {
+						register(channel);
+					}
+					Connection handedBack;
+					while ((handedBack = resumed.poll()) != null) {
+						handedBack.resume();
+					}
+					Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+					while (keys.hasNext()) {
+						SelectionKey key = keys.next();
+						keys.remove();
+						if (key.channel() == acceptor) {
+							try {
+								accept();
+							} catch (IOException e) {
+								// Such as running out of descriptors; retried on the next select
+							}
+							continue;
+						}
+						Connection connection = (Connection) key.attachment();
+						try {
+							if (key.isReadable()) {
+								connection.read();
+							}
+							if (key.isValid() && key.isWritable() && !connection.busy) {
+								connection.write();
+							}
+						} catch (IOException | RuntimeException e) {
+							// Includes a cancelled key or a service failing unexpectedly
+							connection.close();
+						}
+					}
+				}
+			} catch (IOException e) {
+				// Selector failed; fall through and drop this loop's connections
+			} finally {
+				for (SelectionKey key : selector.keys()) {
+					if (key.attachment() instanceof Connection) {
+						((Connection) key.attachment()).close();
+					}
+				}
+				SocketChannel channel;
+				while ((channel = accepted.poll()) != null) {
+					closeQuietly(channel);
+				}
+			}
+		}
+
+		/**
+		 * Accepts waiting connections and deals them out to the loops in turn.
+		 */
+		private void accept() throws IOException {
+			SocketChannel channel;
+			while ((channel = acceptor.accept()) != null) {
+				Loop target = loops[next];
+				next = (next + 1) % loops.length;
+				if (target == this) {
+					register(channel);
+				} else {
+					target.accepted.add(channel);
+					target.selector.wakeup();
+				}
+			}
+		}
+
+		private void register(SocketChannel channel) {
+			try {
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+				Connection connection = new Connection(channel, this);
+				connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+			} catch (IOException e) {
+				closeQuietly(channel);
+			}
+		}
+
+		ByteBuffer take() {
+			ByteBuffer buffer = pool.poll();
+			return buffer != null ? buffer : ByteBuffer.allocateDirect(CHUNK);
+		}
+
+		void recycle(ByteBuffer buffer) {
+			if (buffer.isDirect() && buffer.capacity() == CHUNK && pool.size() < POOL) {
+				buffer.clear();
+				pool.push(buffer);
+			}
+		}
+	}
+
+	/**
+	 * One client connection: its partly read requests and unsent replies.
+	 */
+	private final class Connection {
+
+		private final SocketChannel channel;
+		private final Loop loop;
+		SelectionKey key;
+
+		private ByteBuffer in = ByteBuffer.allocate(CHUNK);
+
+		// Reply buffer being filled, in write mode; null when there is none
+		private ByteBuffer current;
+
+		// Filled reply buffers waiting to be written, flipped for reading
+		private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<ByteBuffer>();
+		private ByteBuffer[] gather = new ByteBuffer[8];
+		private long pendingBytes;
+
+		// Set while a virtual thread runs this connection's requests; the loop leaves it alone
+		boolean busy;
+
+		// Set off the loop when framing is lost, for the loop to close the connection
+		private boolean lost;
+
+		Connection(SocketChannel channel, Loop loop) {
+			this.channel = channel;
+			this.loop = loop;
+		}
+
+		/**
+		 * Reads what has arrived, runs every complete request and sends the
+		 * replies, unless a change among them hands the rest off the loop.
+		 */
+		void read() throws IOException {
+			if (channel.read(in) < 0) {
+				close();
+				return;
+			}
+			in.flip();
+			if (runRequests(true)) {
+				finishRead();
+			} else if (lost) {
+				close();
+			}
+		}
+
+		/**
+		 * Runs the complete requests in the read buffer, in order. On the
+		 * loop it stops before the first change and hands that request and
+		 * the rest to a virtual thread.
+		 * @param onLoop true when called on the loop thread
+		 * @return false if framing was lost or the requests were handed off
+		 */
+		private boolean runRequests(boolean onLoop) {
+			while (in.remaining() >= 4) {
+				int length = in.getInt(in.position());
+				if (length < 1 || length > BinaryProtocol.MAX_FRAME) {
+					// Framing is lost; nothing after this can be trusted
+					lost = true;
+					return false;
+				}
+				if (in.remaining() < 4 + length) {
+					break;
+				}
+				if (onLoop && isChange(in.get(in.position() + 4))) {
+					handOff();
+					return false;
+				}
+				int end = in.position() + 4 + length;
+				int limit = in.limit();
+				in.position(in.position() + 4).limit(end);
+				handle(in);
+				in.limit(limit).position(end);
+			}
+			return true;
+		}
+
+		/**
+		 * Pauses the connection and runs its remaining requests on a virtual
+		 * thread, which queues the connection back to the loop when done.
+		 */
+		private void handOff() {
+			busy = true;
+			key.interestOps(0);
+			Thread.startVirtualThread(() -> {
+				try {
+					runRequests(false);
+				} catch (RuntimeException e) {
+					// A service failing unexpectedly; the loop drops the connection
+					lost = true;
+				} finally {
+					loop.resumed.add(this);
+					loop.selector.wakeup();
+				}
+			});
+		}
+
+		/**
+		 * Takes the connection back on the loop once its handed-off requests
+		 * have run, and sends their replies.
+		 */
+		void resume() {
+			busy = false;
+			if (lost || !key.isValid()) {
+				close();
+				return;
+			}
+			try {
+				finishRead();
+			} catch (IOException e) {
+				close();
+			}
+		}
+
+		/**
+		 * Keeps any partial request for the next read and sends the replies.
+		 */
+		private void finishRead() throws IOException {
+			in.compact();
+			if (in.position() >= 4) {
+				int needed = 4 + in.getInt(0);
+				if (needed > in.capacity()) {
+					in.flip();
+					in = ByteBuffer.allocate(needed).put(in);
+				}
+			}
+			write();
+		}
+
+		/**
+		 * Writes as many unsent replies as the socket takes in one gathered
+		 * write, then waits for the socket if any are left.
+		 */
+		void write() throws IOException {
+			if (current != null && current.position() > 0) {
+				queue(current);
+				current = null;
+			}
+			if (!pending.isEmpty()) {
+				int count = pending.size();
+				gather = pending.toArray(gather);
+				pendingBytes -= channel.write(gather, 0, count);
+				while (!pending.isEmpty() && !pending.peek().hasRemaining()) {
+					loop.recycle(pending.poll());
+				}
+			}
+			int ops = pendingBytes > HIGH_WATER ? 0 : SelectionKey.OP_READ;
+			if (!pending.isEmpty()) {
+				ops |= SelectionKey.OP_WRITE;
+			}
+			key.interestOps(ops);
+		}
+
+		void close() {
+			key.cancel();
+			closeQuietly(channel);
+			if (busy) {
+				// Its buffers are still in use off the loop
+				return;
+			}
+			if (current != null) {
+				loop.recycle(current);
+				current = null;
+			}
+			while (!pending.isEmpty()) {
+				loop.recycle(pending.poll());
+			}
+		}
+
+		private void queue(ByteBuffer buffer) {
+			buffer.flip();
+			pendingBytes += buffer.remaining();
+			pending.add(buffer);
+		}
+
+		/**
+		 * Gets a reply buffer with room for a frame of at most the given size.
+		 */
+		private ByteBuffer reserve(int size) {
+			if (current != null && current.remaining() >= size) {
+				return current;
+			}
+			if (current != null) {
+				queue(current);
+			}
+			if (size > CHUNK) {
+				current = ByteBuffer.allocateDirect(size);
+			} else {
+				// The pool belongs to the loop thread
+				current = Thread.currentThread() == loop.thread ? loop.take() : ByteBuffer.allocate(CHUNK);
+			}
+			return current;
+		}
+
+		/**
+		 * Runs one request and writes its reply.
+		 */
+		private void handle(ByteBuffer frame) {
+			byte opcode = frame.get();
+			try {
+				switch (opcode) {
+					case BinaryProtocol.TASK_GET:
+						getTask(frame);
+						break;
+					case BinaryProtocol.TASK_ADD:
+						addTask(frame);
+						break;
+					case BinaryProtocol.TASK_UPDATE:
+						updateTask(frame);
+						break;
+					case BinaryProtocol.TASK_DELETE:
+						deleteTask(frame);
+						break;
+					case BinaryProtocol.CONTACT_GET:
+						getContact(frame);
+						break;
+					case BinaryProtocol.CONTACT_ADD:
+						addContact(frame);
+						break;
+					case BinaryProtocol.CONTACT_UPDATE:
+						updateContact(frame);
+						break;
+					case BinaryProtocol.CONTACT_DELETE:
+						deleteContact(frame);
+						break;
+					case BinaryProtocol.APPOINTMENT_GET:
+						getAppointment(frame);
+						break;
+					case BinaryProtocol.APPOINTMENT_ADD:
+						addAppointment(frame);
+						break;
+					case BinaryProtocol.APPOINTMENT_UPDATE:
+						updateAppointment(frame);
+						break;
+					case BinaryProtocol.APPOINTMENT_DELETE:
+						deleteAppointment(frame);
+						break;
+					default:
+						error(BinaryProtocol.BAD_REQUEST, "Unknown opcode " + opcode + ".");
+				}
+			} catch (BufferUnderflowException e) {
+				error(BinaryProtocol.BAD_REQUEST, "Malformed request.");
+			} catch (IllegalArgumentException e) {
+				error(BinaryProtocol.INVALID, e.getMessage());
+			} catch (IllegalStateException e) {
+				error(BinaryProtocol.UNAVAILABLE, e.getMessage());
+			}
+		}
+
+		private void getTask(ByteBuffer frame) {
+			int taskID = frame.getInt();
+			end(frame);
+			Task task = taskService.getTask(taskID);
+			if (task == null) {
+				status(BinaryProtocol.NOT_FOUND);
+				return;
+			}
+			String name = task.getName();
+			String description = task.getDescription();
+			ByteBuffer out = reserve(17 + BinaryProtocol.maxSize(name) + BinaryProtocol.maxSize(description));
+			int start = out.position();
+			out.putInt(0).put(BinaryProtocol.OK).putInt(task.getTaskID()).putLong(task.getVersion());
+			BinaryProtocol.putString(out, name);
+			BinaryProtocol.putString(out, description);
+			finish(out, start);
+		}
+
+		private void addTask(ByteBuffer frame) {
+			String name = BinaryProtocol.getString(frame);
+			String description = BinaryProtocol.getString(frame);
+			end(frame);
+			int taskID = taskService.addTask(name, description);
+			ByteBuffer out = reserve(9);
+			out.putInt(5).put(BinaryProtocol.OK).putInt(taskID);
+		}
+
+		private void updateTask(ByteBuffer frame) {
+			int taskID = frame.getInt();
+			long version = frame.getLong();
+			String name = BinaryProtocol.getString(frame);
+			String description = BinaryProtocol.getString(frame);
+			end(frame);
+			if (taskService.updateTask(taskID, version, name, description)) {
+				status(BinaryProtocol.OK);
+			} else {
+				status(taskService.getTask(taskID) == null ? BinaryProtocol.NOT_FOUND : BinaryProtocol.CONFLICT);
+			}
+		}
+
+		private void deleteTask(ByteBuffer frame) {
+			int taskID = frame.getInt();
+			end(frame);
+			if (taskService.getTask(taskID) == null) {
+				status(BinaryProtocol.NOT_FOUND);
+				return;
+			}
+			taskService.deleteTask(taskID);
+			status(BinaryProtocol.OK);
+		}
+
+		private void getContact(ByteBuffer frame) {
+			String contactID = BinaryProtocol.getString(frame);
+			end(frame);
+			Contact contact = contactID == null ? null : contactService.getContact(contactID);
+			if (contact == null) {
+				status(BinaryProtocol.NOT_FOUND);
+				return;
+			}
+			String id = contact.getContactID();
+			String firstName = contact.getFirstName();
+			String lastName = contact.getLastName();
+			String phone = contact.getPhone();
+			String address = contact.getAddress();
+			ByteBuffer out = reserve(13 + BinaryProtocol.maxSize(id) + BinaryProtocol.maxSize(firstName)
+					+ BinaryProtocol.maxSize(lastName) + BinaryProtocol.maxSize(phone)
+					+ BinaryProtocol.maxSize(address));
+			int start = out.position();
+			out.putInt(0).put(BinaryProtocol.OK);
+			BinaryProtocol.putString(out, id);
+			out.putLong(contact.getVersion());
+			BinaryProtocol.putString(out, firstName);
+			BinaryProtocol.putString(out, lastName);
+			BinaryProtocol.putString(out, phone);
+			BinaryProtocol.putString(out, address);
+			finish(out, start);
+		}
+
+		private void addContact(ByteBuffer frame) {
+			String firstName = BinaryProtocol.getString(frame);
+			String lastName = BinaryProtocol.getString(frame);
+			String phone = BinaryProtocol.getString(frame);
+			String address = BinaryProtocol.getString(frame);
+			end(frame);
+			String contactID = contactService.addContact(firstName, lastName, phone, address);
+			ByteBuffer out = reserve(5 + BinaryProtocol.maxSize(contactID));
+			int start = out.position();
+			out.putInt(0).put(BinaryProtocol.OK);
+			BinaryProtocol.putString(out, contactID);
+			finish(out, start);
+		}
+
+		private void updateContact(ByteBuffer frame) {
+			String contactID = BinaryProtocol.getString(frame);
+			long version = frame.getLong();
+			String firstName = BinaryProtocol.getString(frame);
+			String lastName = BinaryProtocol.getString(frame);
+			String phone = BinaryProtocol.getString(frame);
+			String address = BinaryProtocol.getString(frame);
+			end(frame);
+			if (contactID != null
+					&& contactService.updateContact(contactID, version, firstName, lastName, phone, address)) {
+				status(BinaryProtocol.OK);
+			} else {
+				status(contactID == null || contactService.getContact(contactID) == null
+						? BinaryProtocol.NOT_FOUND : BinaryProtocol.CONFLICT);
+			}
+		}
+
+		private void deleteContact(ByteBuffer frame) {
+			String contactID = BinaryProtocol.getString(frame);
+			end(frame);
+			if (contactID == null || contactService.getContact(contactID) == null) {
+				status(BinaryProtocol.NOT_FOUND);
+				return;
+			}
+			contactService.deleteContact(contactID);
+			status(BinaryProtocol.OK);
+		}
+
+		private void getAppointment(ByteBuffer frame) {
+			int apptID = frame.getInt();
+			end(frame);
+			Appointment appointment = appointmentService.getAppointment(apptID);
+			if (appointment == null) {
+				status(BinaryProtocol.NOT_FOUND);
+				return;
+			}
+			String description = appointment.getDescription();
+			ByteBuffer out = reserve(29 + BinaryProtocol.maxSize(description));
+			int start = out.position();
+			out.putInt(0).put(BinaryProtocol.OK).putInt(appointment.getApptID()).putLong(appointment.getVersion())
+					.putLong(appointment.getStartTime()).putInt(appointment.getDurationMinutes());
+			BinaryProtocol.putString(out, description);
+			finish(out, start);
+		}
+
+		private void addAppointment(ByteBuffer frame) {
+			long date = frame.getLong();
+			String description = BinaryProtocol.getString(frame);
+			int durationMinutes = frame.getInt();
+			end(frame);
+			int apptID = appointmentService.addAppointment(new Date(date), description, durationMinutes);
+			ByteBuffer out = reserve(9);
+			out.putInt(5).put(BinaryProtocol.OK).putInt(apptID);
+		}
+
+		private void updateAppointment(ByteBuffer frame) {
+			int apptID = frame.getInt();
+			long version = frame.getLong();
+			long date = frame.getLong();
+			String description = BinaryProtocol.getString(frame);
+			int durationMinutes = frame.getInt();
+			end(frame);
+			if (appointmentService.updateAppointment(apptID, version, new Date(date), description, durationMinutes)) {
+				status(BinaryProtocol.OK);
+			} else {
+				status(appointmentService.getAppointment(apptID) == null
+						? BinaryProtocol.NOT_FOUND : BinaryProtocol.CONFLICT);
+			}
+		}
+
+		private void deleteAppointment(ByteBuffer frame) {
+			int apptID = frame.getInt();
+			end(frame);
+			if (appointmentService.getAppointment(apptID) == null) {
+				status(BinaryProtocol.NOT_FOUND);
+				return;
+			}
+			appointmentService.deleteAppointment(apptID);
+			status(BinaryProtocol.OK);
+		}
+
+		/**
+		 * Checks whether an opcode changes a service, and so may wait on a log
+		 * sync or a service's writer.
+		 */
+		private boolean isChange(byte opcode) {
+			switch (opcode) {
+				case BinaryProtocol.TASK_ADD:
+				case BinaryProtocol.TASK_UPDATE:
+				case BinaryProtocol.TASK_DELETE:
+				case BinaryProtocol.CONTACT_ADD:
+				case BinaryProtocol.CONTACT_UPDATE:
+				case BinaryProtocol.CONTACT_DELETE:
+				case BinaryProtocol.APPOINTMENT_ADD:
+				case BinaryProtocol.APPOINTMENT_UPDATE:
+				case BinaryProtocol.APPOINTMENT_DELETE:
+					return true;
+				default:
+					return false;
+			}
+		}
+
+		/**
+		 * Rejects a request with fields left over, before it has any effect.
+		 */
+		private void end(ByteBuffer frame) {
+			if (frame.hasRemaining()) {
+				throw new BufferUnderflowException();
+			}
+		}
+
+		private void finish(ByteBuffer out, int start) {
+			out.putInt(start, out.position() - start - 4);
+		}
+
+		private void status(byte status) {
+			reserve(5).putInt(1).put(status);
+		}
+
+		private void error(byte status, String message) {
+			if (message != null && message.length() > MAX_MESSAGE) {
+				message = message.substring(0, MAX_MESSAGE);
+			}
+			ByteBuffer out = reserve(5 + BinaryProtocol.maxSize(message));
+			int start = out.position();
+			out.putInt(0).put(status);
+			BinaryProtocol.putString(out, message);
+			finish(out, start);
+		}
+	}
+}
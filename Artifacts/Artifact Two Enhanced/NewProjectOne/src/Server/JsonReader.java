@@ -0,0 +1,247 @@
+package Server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reader for the JSON request bodies the HTTP front end accepts: one flat
+ * object whose members are strings, whole numbers, booleans or null.
+ * Parses the raw UTF-8 bytes in one pass without building a tree; strings
+ * without escapes are decoded straight from the bytes.
+ *
+ * @author Stewart Withrow
+ */
+public final class JsonReader {
+
+	private final byte[] bytes;
+	private final int end;
+	private int position;
+
+	private JsonReader(byte[] bytes, int length) {
+		this.bytes = bytes;
+		this.end = length;
+	}
+
+	/**
+	 * Reads a flat object.
+	 * @param bytes UTF-8 JSON text
+	 * @param length Number of bytes to read
+	 * @return Members by name: String, Long, Boolean or null values
+	 * @throws IllegalArgumentException if the text is not a flat JSON object
+	 */
+	public static Map<String, Object> readObject(byte[] bytes, int length) {
+		JsonReader reader = new JsonReader(bytes, length);
+		Map<String, Object> members = reader.object();
+		reader.skipSpace();
+		if (reader.position != reader.end) {
+			throw reader.error("Unexpected text after the object");
+		}
+		return members;
+	}
+
+	private Map<String, Object> object() {
+		skipSpace();
+		expect('{');
+		Map<String, Object> members = new HashMap<String, Object>();
+		skipSpace();
+		if (peek() == '}') {
+			position++;
+			return members;
+		}
+		while (true) {
+			skipSpace();
+			String name = string();
+			skipSpace();
+			expect(':');
+			skipSpace();
+			members.put(name, value());
+			skipSpace();
+			byte next = next();
+			if (next == '}') {
+				return members;
+			}
+			if (next != ',') {
+				position--;
+				throw error("Expected , or }");
+			}
+		}
+	}
+
+	private Object value() {
+		byte next = peek();
+		switch (next) {
+			case '"':
+				return string();
+			case 't':
+				literal("true");
+				return Boolean.TRUE;
+			case 'f':
+				literal("false");
+				return Boolean.FALSE;
+			case 'n':
+				literal("null");
+				return null;
+			case '{':
+			case '[':
+				throw error("Nested values are not supported");
+			default:
+				return number();
+		}
+	}
+
+	private Long number() {
+		int start = position;
+		boolean negative = peek() == '-';
+		if (negative) {
+			position++;
+		}
+		long value = 0;
+		int digits = 0;
+		while (position < end && bytes[position] >= '0' && bytes[position] <= '9') {
+			int digit = bytes[position++] - '0';
+			if (value < (Long.MIN_VALUE + digit) / 10) {
+				throw error("Number out of range");
+			}
+			// Accumulate negatively so Long.MIN_VALUE fits
+			value = value * 10 - digit;
+			digits++;
+		}
+		if (digits == 0 || (digits > 1 && bytes[start + (negative ? 1 : 0)] == '0')) {
+			position = start;
+			throw error("Malformed number");
+		}
+		if (position < end && (bytes[position] == '.' || bytes[position] == 'e' || bytes[position] == 'E')) {
+			throw error("Numbers must be whole");
+		}
+		if (!negative) {
+			if (value == Long.MIN_VALUE) {
+				throw error("Number out of range");
+			}
+			value = -value;
+		}
+		return value;
+	}
+
+	private String string() {
+		expect('"');
+		int start = position;
+		while (position < end && bytes[position] != '"' && bytes[position] != '\\') {
+			if ((bytes[position] & 0xFF) < 0x20) {
+				throw error("Control character in string");
+			}
+			position++;
+		}
+		if (position < end && bytes[position] == '"') {
+			return new String(bytes, start, position++ - start, StandardCharsets.UTF_8);
+		}
+
+		// Escapes present: decode the plain run so far, then the rest piece by piece
+		StringBuilder text = new StringBuilder(new String(bytes, start, position - start, StandardCharsets.UTF_8));
+		while (true) {
+			byte next = next();
+			if (next == '"') {
+				return text.toString();
+			}
+			if (next != '\\') {
+				int runStart = position - 1;
+				while (position < end && bytes[position] != '"' && bytes[position] != '\\') {
+					if ((bytes[position] & 0xFF) < 0x20) {
+						throw error("Control character in string");
+					}
+					position++;
+				}
+				text.append(new String(bytes, runStart, position - runStart, StandardCharsets.UTF_8));
+				continue;
+			}
+			byte escaped = next();
+			switch (escaped) {
+				case '"':
+				case '\\':
+				case '/':
+					text.append((char) escaped);
+					break;
+				case 'b':
+					text.append('\b');
+					break;
+				case 'f':
+					text.append('\f');
+					break;
+				case 'n':
+					text.append('\n');
+					break;
+				case 'r':
+					text.append('\r');
+					break;
+				case 't':
+					text.append('\t');
+					break;
+				case 'u':
+					text.append(hexChar());
+					break;
+				default:
+					position--;
+					throw error("Unknown escape");
+			}
+		}
+	}
+
+	private char hexChar() {
+		if (position + 4 > end) {
+			throw error("Short unicode escape");
+		}
+		int value = 0;
+		for (int i = 0; i < 4; i++) {
+			int digit = Character.digit(bytes[position++], 16);
+			if (digit < 0) {
+				position--;
+				throw error("Bad unicode escape");
+			}
+			value = value * 16 + digit;
+		}
+		return (char) value;
+	}
+
+	private void literal(String word) {
+		for (int i = 0; i < word.length(); i++) {
+			if (position >= end || bytes[position] != word.charAt(i)) {
+				throw error("Unknown value");
+			}
+			position++;
+		}
+	}
+
+	private void skipSpace() {
+		while (position < end) {
+			byte b = bytes[position];
+			if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+				return;
+			}
+			position++;
+		}
+	}
+
+	private void expect(char c) {
+		if (position >= end || bytes[position] != c) {
+			throw error("Expected " + c);
+		}
+		position++;
+	}
+
+	private byte peek() {
+		if (position >= end) {
+			throw error("Unexpected end of JSON");
+		}
+		return bytes[position];
+	}
+
+	private byte next() {
+		byte b = peek();
+		position++;
+		return b;
+	}
+
+	private IllegalArgumentException error(String problem) {
+		return new IllegalArgumentException("Malformed JSON: " + problem + " at byte " + position + ".");
+	}
+}
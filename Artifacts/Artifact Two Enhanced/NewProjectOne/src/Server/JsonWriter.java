@@ -0,0 +1,320 @@
+package Server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming JSON writer for the HTTP front end.
+ * Encodes straight to UTF-8 in its own byte buffer. Given a stream, it
+ * writes the buffer out whenever it fills, so a response of any length
+ * needs only the buffer's memory; without one, it keeps growing the buffer
+ * so the length is known before anything is sent. Writes only what the
+ * front end needs: objects, arrays, strings, whole numbers, booleans and
+ * null. Not thread-safe.
+ *
+ * @author Stewart Withrow
+ */
+public final class JsonWriter {
+
+	private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+	private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+	private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+	private static final byte[] LONG_MIN = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+	// Deepest nesting the writer tracks, one bit per level
+	private static final int MAX_DEPTH = 63;
+
+	private final OutputStream out;
+	private byte[] buffer;
+	private int position;
+
+	// Bit per open container, set once it has a member
+	private long started;
+	private int depth;
+
+	// True between a member name and its value
+	private boolean afterName;
+
+	/**
+	 * Creates a writer that keeps everything in memory.
+	 * @param initialSize Starting buffer size in bytes
+	 */
+	public JsonWriter(int initialSize) {
+		this(null, initialSize);
+	}
+
+	/**
+	 * Creates a writer that streams to an output.
+	 * @param out Stream the buffer is written to when it fills and on flush
+	 * @param bufferSize Buffer size in bytes
+	 */
+	public JsonWriter(OutputStream out, int bufferSize) {
+		this.out = out;
+		this.buffer = new byte[Math.max(16, bufferSize)];
+	}
+
+	/**
+	 * Opens an object.
+	 * @return This writer
+	 * @throws IOException if the stream fails
+	 */
+	public JsonWriter beginObject() throws IOException {
+		return open('{');
+	}
+
+	/**
+	 * Closes the current object.
+	 * @return This writer
+	 * @throws IOException if the stream fails
+	 */
+	public JsonWriter endObject() throws IOException {
+		return close('}');
+	}
+
+	/**
+	 * Opens an array.
+	 * @return This writer
+	 * @throws IOException if the stream fails
+	 */
+	public JsonWriter beginArray() throws IOException {
+		return open('[');
+	}
+
+	/**
+	 * Closes the current array.
+	 * @return This writer
+	 * @throws IOException if the stream fails
+	 */
+	public JsonWriter endArray() throws IOException {
+		return close(']');
+	}
+
+	/**
+	 * Writes a member name; the next call writes its value.
+	 * @param name Member name
+	 * @return This writer
+	 * @throws IOException if the stream fails
+	 */
+	public JsonWriter name(String name) throws IOException {
+		separate();
+		string(name);
+		put((byte) ':');
+		afterName = true;
+		return this;
+	}
+
+	/**
+	 * Writes a string value, or null.
+	 * @param value Value
+	 * @return This writer
+	 * @throws IOException if the stream fails
+	 */
+	public JsonWriter value(String value) throws IOException {
+		separate();
+		if (value == null) {
+			put(NULL);
+		} else {
+			string(value);
+		}
+		return this;
+	}
+
+	/**
+	 * Writes a whole number.
+	 * @param value Value
+	 * @return This writer
+	 * @throws IOException if the stream fails
+	 */
+	public JsonWriter value(long value) throws IOException {
+		separate();
+		if (value == Long.MIN_VALUE) {
+			put(LONG_MIN);
+			return this;
+		}
+		ensure(20);
+		if (value < 0) {
+			buffer[position++] = '-';
+			value = -value;
+		}
+		int digits = 1;
+		for (long rest = value / 10; rest != 0; rest /= 10) {
+			digits++;
+		}
+		for (int i = position + digits - 1; i >= position; i--) {
+			buffer[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		position += digits;
+		return this;
+	}
+
+	/**
+	 * Writes a boolean.
+	 * @param value Value
+	 * @return This writer
+	 * @throws IOException if the stream fails
+	 */
+	public JsonWriter value(boolean value) throws IOException {
+		separate();
+		put(value ? TRUE : FALSE);
+		return this;
+	}
+
+	/**
+	 * Gets the number of bytes held in the buffer.
+	 * @return Buffered length
+	 */
+	public int size() {
+		return position;
+	}
+
+	/**
+	 * Copies the buffered bytes to a stream and empties the buffer.
+	 * @param target Stream to write to
+	 * @throws IOException if the stream fails
+	 */
+	public void writeTo(OutputStream target) throws IOException {
+		target.write(buffer, 0, position);
+		position = 0;
+	}
+
+	/**
+	 * Writes the buffer to the stream given at construction and flushes it.
+	 * @throws IOException if the stream fails
+	 */
+	public void flush() throws IOException {
+		if (out != null) {
+			writeTo(out);
+			out.flush();
+		}
+	}
+
+	private JsonWriter open(char bracket) throws IOException {
+		separate();
+		if (depth == MAX_DEPTH) {
+			throw new IllegalStateException("JSON nested too deeply.");
+		}
+		depth++;
+		started &= ~(1L << depth);
+		put((byte) bracket);
+		return this;
+	}
+
+	private JsonWriter close(char bracket) throws IOException {
+		if (depth == 0 || afterName) {
+			throw new IllegalStateException("Nothing to close.");
+		}
+		depth--;
+		put((byte) bracket);
+		return this;
+	}
+
+	/**
+	 * Writes the comma before a member or element, if it is not the first.
+	 */
+	private void separate() throws IOException {
+		if (afterName) {
+			afterName = false;
+			return;
+		}
+		long bit = 1L << depth;
+		if ((started & bit) != 0) {
+			put((byte) ',');
+		}
+		started |= bit;
+	}
+
+	/**
+	 * Writes a quoted string, escaping what JSON requires and encoding the
+	 * rest as UTF-8. An unpaired surrogate is written as an escape.
+	 */
+	private void string(String value) throws IOException {
+		put((byte) '"');
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			ensure(6);
+			if (c < 0x80) {
+				if (c >= 0x20 && c != '"' && c != '\\') {
+					buffer[position++] = (byte) c;
+				} else {
+					escape(c);
+				}
+			} else if (c < 0x800) {
+				buffer[position++] = (byte) (0xC0 | (c >> 6));
+				buffer[position++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				escape(c);
+			} else {
+				buffer[position++] = (byte) (0xE0 | (c >> 12));
+				buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				buffer[position++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		put((byte) '"');
+	}
+
+	/**
+	 * Writes a character as a JSON escape; room for six bytes is ensured.
+	 */
+	private void escape(char c) {
+		buffer[position++] = '\\';
+		switch (c) {
+			case '"':
+				buffer[position++] = '"';
+				break;
+			case '\\':
+				buffer[position++] = '\\';
+				break;
+			case '\n':
+				buffer[position++] = 'n';
+				break;
+			case '\r':
+				buffer[position++] = 'r';
+				break;
+			case '\t':
+				buffer[position++] = 't';
+				break;
+			default:
+				buffer[position++] = 'u';
+				buffer[position++] = HEX[(c >> 12) & 0xF];
+				buffer[position++] = HEX[(c >> 8) & 0xF];
+				buffer[position++] = HEX[(c >> 4) & 0xF];
+				buffer[position++] = HEX[c & 0xF];
+		}
+	}
+
+	private void put(byte b) throws IOException {
+		ensure(1);
+		buffer[position++] = b;
+	}
+
+	private void put(byte[] bytes) throws IOException {
+		ensure(bytes.length);
+		System.arraycopy(bytes, 0, buffer, position, bytes.length);
+		position += bytes.length;
+	}
+
+	/**
+	 * Makes room for a number of bytes, writing out or growing the buffer.
+	 */
+	private void ensure(int needed) throws IOException {
+		if (position + needed <= buffer.length) {
+			return;
+		}
+		if (out != null) {
+			writeTo(out);
+		} else {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + needed));
+		}
+	}
+}
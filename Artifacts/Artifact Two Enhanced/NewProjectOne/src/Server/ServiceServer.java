@@ -0,0 +1,574 @@
+package Server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import Project.Appointment;
+import Project.AppointmentService;
+import Project.Contact;
+import Project.ContactService;
+import Project.IntHashMap;
+import Project.Task;
+import Project.TaskService;
+
+/**
+ * Serves the three services as JSON over HTTP, using the JDK's built-in
+ * server with one virtual thread per request.
+ *
+ * Each service has a collection and an item resource:
+ * GET /tasks streams every task as a JSON array and POST /tasks adds one,
+ * answering 201 with its ID; GET, PUT and DELETE /tasks/{id} read, replace
+ * and delete one. /contacts and /appointments work the same way, and GET
+ * /appointments takes optional from and to query parameters in epoch
+ * milliseconds, from inclusive and to exclusive. A PUT that carries a version replaces the item only if it
+ * still has that version and answers 409 otherwise; without one, the last
+ * writer wins. Invalid input answers 400 with the validation message, and
+ * a service that cannot take writes, such as one whose log has closed,
+ * answers 503.
+ *
+ * Single items are encoded in memory and sent with a fixed length;
+ * collections are streamed from the services' publishers a chunk at a
+ * time, so a large listing costs the server one buffer.
+ *
+ * @author Stewart Withrow
+ */
+public final class ServiceServer implements AutoCloseable {
+
+	// Largest request body accepted
+	private static final int MAX_BODY = 64 * 1024;
+
+	// Results a streamed listing asks for at a time
+	private static final int STREAM_CHUNK = 256;
+
+	private static final String JSON = "application/json; charset=utf-8";
+
+	static {
+		// The JDK server writes headers and body separately, so with Nagle on a
+		// kept-alive connection waits on the client's delayed ACK every request
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final ContactService contactService;
+	private final TaskService taskService;
+	private final AppointmentService appointmentService;
+
+	/**
+	 * Thrown by a route to answer with a status and message.
+	 */
+	private static final class HttpError extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		final int status;
+
+		HttpError(int status, String message) {
+			super(message, null, false, false);
+			this.status = status;
+		}
+	}
+
+	/**
+	 * Handles one resource; id is null for the collection.
+	 */
+	@FunctionalInterface
+	private interface Route {
+		void handle(HttpExchange exchange, String id) throws IOException;
+	}
+
+	/**
+	 * Writes one result as JSON.
+	 */
+	@FunctionalInterface
+	private interface Encoder<T> {
+		void write(JsonWriter json, T item) throws IOException;
+	}
+
+	/**
+	 * Creates a server for the given services. Nothing is served until start.
+	 * @param address Address and port to listen on; port 0 picks a free one
+	 * @param contactService Service behind /contacts
+	 * @param taskService Service behind /tasks
+	 * @param appointmentService Service behind /appointments
+	 * @throws IOException if the address cannot be bound
+	 */
+	public ServiceServer(InetSocketAddress address, ContactService contactService, TaskService taskService,
+			AppointmentService appointmentService) throws IOException {
+		this.contactService = contactService;
+		this.taskService = taskService;
+		this.appointmentService = appointmentService;
+		this.server = HttpServer.create(address, 4096);
+		this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-", 0).factory());
+		server.setExecutor(executor);
+		server.createContext("/contacts", exchange -> dispatch(exchange, "/contacts", this::contacts));
+		server.createContext("/tasks", exchange -> dispatch(exchange, "/tasks", this::tasks));
+		server.createContext("/appointments", exchange -> dispatch(exchange, "/appointments", this::appointments));
+	}
+
+	/**
+	 * Starts accepting requests.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Gets the port the server listens on.
+	 * @return Port number
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Stops accepting requests and waits for those in progress to finish.
+	 */
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.close();
+	}
+
+	/**
+	 * Serves in-memory services until the process is stopped.
+	 * @param args Optional port, 8080 by default
+	 * @throws IOException if the port cannot be bound
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+		ServiceServer server = new ServiceServer(new InetSocketAddress(port), new ContactService(),
+				new TaskService(), new AppointmentService());
+		server.start();
+		System.out.println("Listening on port " + server.getPort());
+	}
+
+	/**
+	 * Finds the item ID in the path, runs the route and turns failures into responses.
+	 */
+	private void dispatch(HttpExchange exchange, String prefix, Route route) throws IOException {
+		try {
+			String path = exchange.getRequestURI().getRawPath();
+			String rest = path.substring(prefix.length());
+			String id;
+			if (rest.isEmpty() || rest.equals("/")) {
+				id = null;
+			} else if (rest.charAt(0) == '/' && rest.indexOf('/', 1) < 0) {
+				id = rest.substring(1);
+			} else {
+				throw new HttpError(404, "Not found.");
+			}
+			route.handle(exchange, id);
+		} catch (HttpError e) {
+			sendError(exchange, e.status, e.getMessage());
+		} catch (IllegalArgumentException e) {
+			sendError(exchange, 400, e.getMessage());
+		} catch (IllegalStateException e) {
+			sendError(exchange, 503, e.getMessage());
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void tasks(HttpExchange exchange, String id) throws IOException {
+		String method = exchange.getRequestMethod();
+		if (id == null) {
+			if (method.equals("GET")) {
+				sendStream(exchange, taskService.streamTasks(), ServiceServer::writeTask);
+			} else if (method.equals("POST")) {
+				Map<String, Object> body = readBody(exchange);
+				int taskID = taskService.addTask(text(body, "name"), text(body, "description"));
+				sendCreated(exchange, taskID);
+			} else {
+				throw notAllowed(exchange, "GET, POST");
+			}
+			return;
+		}
+
+		int taskID = IntHashMap.parseKey(id);
+		Task task = taskID < 0 ? null : taskService.getTask(taskID);
+		if (task == null) {
+			throw new HttpError(404, "Task not found.");
+		}
+		switch (method) {
+			case "GET":
+				send(exchange, 200, task, ServiceServer::writeTask);
+				break;
+			case "PUT": {
+				Map<String, Object> body = readBody(exchange);
+				String name = text(body, "name");
+				String description = text(body, "description");
+				Long version = number(body, "version");
+				while (!taskService.updateTask(taskID, version != null ? version : task.getVersion(), name,
+						description)) {
+					task = taskService.getTask(taskID);
+					if (task == null) {
+						throw new HttpError(404, "Task not found.");
+					}
+					if (version != null) {
+						throw new HttpError(409, "Task has changed.");
+					}
+				}
+				send(exchange, 200, taskService.getTask(taskID), ServiceServer::writeTask);
+				break;
+			}
+			case "DELETE":
+				taskService.deleteTask(taskID);
+				sendEmpty(exchange, 204);
+				break;
+			default:
+				throw notAllowed(exchange, "GET, PUT, DELETE");
+		}
+	}
+
+	private void contacts(HttpExchange exchange, String id) throws IOException {
+		String method = exchange.getRequestMethod();
+		if (id == null) {
+			if (method.equals("GET")) {
+				sendStream(exchange, contactService.streamContacts(), ServiceServer::writeContact);
+			} else if (method.equals("POST")) {
+				Map<String, Object> body = readBody(exchange);
+				String contactID = contactService.addContact(text(body, "firstName"), text(body, "lastName"),
+						text(body, "phone"), text(body, "address"));
+				sendCreated(exchange, contactID);
+			} else {
+				throw notAllowed(exchange, "GET, POST");
+			}
+			return;
+		}
+
+		Contact contact = contactService.getContact(id);
+		if (contact == null) {
+			throw new HttpError(404, "Contact not found.");
+		}
+		switch (method) {
+			case "GET":
+				send(exchange, 200, contact, ServiceServer::writeContact);
+				break;
+			case "PUT": {
+				Map<String, Object> body = readBody(exchange);
+				String firstName = text(body, "firstName");
+				String lastName = text(body, "lastName");
+				String phone = text(body, "phone");
+				String address = text(body, "address");
+				Long version = number(body, "version");
+				while (!contactService.updateContact(id, version != null ? version : contact.getVersion(),
+						firstName, lastName, phone, address)) {
+					contact = contactService.getContact(id);
+					if (contact == null) {
+						throw new HttpError(404, "Contact not found.");
+					}
+					if (version != null) {
+						throw new HttpError(409, "Contact has changed.");
+					}
+				}
+				send(exchange, 200, contactService.getContact(id), ServiceServer::writeContact);
+				break;
+			}
+			case "DELETE":
+				contactService.deleteContact(id);
+				sendEmpty(exchange, 204);
+				break;
+			default:
+				throw notAllowed(exchange, "GET, PUT, DELETE");
+		}
+	}
+
+	private void appointments(HttpExchange exchange, String id) throws IOException {
+		String method = exchange.getRequestMethod();
+		if (id == null) {
+			if (method.equals("GET")) {
+				String from = query(exchange, "from");
+				String to = query(exchange, "to");
+				Flow.Publisher<Appointment> appointments = from == null && to == null
+						? appointmentService.streamAppointments()
+						: appointmentService.streamAppointmentsBetween(
+								new Date(from == null ? Long.MIN_VALUE : parseLong(from, "from")),
+								new Date(to == null ? Long.MAX_VALUE : parseLong(to, "to")));
+				sendStream(exchange, appointments, ServiceServer::writeAppointment);
+			} else if (method.equals("POST")) {
+				Map<String, Object> body = readBody(exchange);
+				int apptID = appointmentService.addAppointment(date(body), text(body, "description"), duration(body));
+				sendCreated(exchange, apptID);
+			} else {
+				throw notAllowed(exchange, "GET, POST");
+			}
+			return;
+		}
+
+		int apptID = IntHashMap.parseKey(id);
+		Appointment appointment = apptID < 0 ? null : appointmentService.getAppointment(apptID);
+		if (appointment == null) {
+			throw new HttpError(404, "Appointment not found.");
+		}
+		switch (method) {
+			case "GET":
+				send(exchange, 200, appointment, ServiceServer::writeAppointment);
+				break;
+			case "PUT": {
+				Map<String, Object> body = readBody(exchange);
+				Date date = date(body);
+				String description = text(body, "description");
+				int durationMinutes = duration(body);
+				Long version = number(body, "version");
+				while (!appointmentService.updateAppointment(apptID,
+						version != null ? version : appointment.getVersion(), date, description, durationMinutes)) {
+					appointment = appointmentService.getAppointment(apptID);
+					if (appointment == null) {
+						throw new HttpError(404, "Appointment not found.");
+					}
+					if (version != null) {
+						throw new HttpError(409, "Appointment has changed.");
+					}
+				}
+				send(exchange, 200, appointmentService.getAppointment(apptID), ServiceServer::writeAppointment);
+				break;
+			}
+			case "DELETE":
+				appointmentService.deleteAppointment(apptID);
+				sendEmpty(exchange, 204);
+				break;
+			default:
+				throw notAllowed(exchange, "GET, PUT, DELETE");
+		}
+	}
+
+	private static void writeTask(JsonWriter json, Task task) throws IOException {
+		json.beginObject()
+				.name("id").value(task.getTaskID())
+				.name("name").value(task.getName())
+				.name("description").value(task.getDescription())
+				.name("version").value(task.getVersion())
+				.endObject();
+	}
+
+	private static void writeContact(JsonWriter json, Contact contact) throws IOException {
+		json.beginObject()
+				.name("id").value(contact.getContactID())
+				.name("firstName").value(contact.getFirstName())
+				.name("lastName").value(contact.getLastName())
+				.name("phone").value(contact.getPhone())
+				.name("address").value(contact.getAddress())
+				.name("version").value(contact.getVersion())
+				.endObject();
+	}
+
+	private static void writeAppointment(JsonWriter json, Appointment appointment) throws IOException {
+		json.beginObject()
+				.name("id").value(appointment.getApptID())
+				.name("date").value(appointment.getStartTime())
+				.name("durationMinutes").value(appointment.getDurationMinutes())
+				.name("description").value(appointment.getDescription())
+				.name("version").value(appointment.getVersion())
+				.endObject();
+	}
+
+	/**
+	 * Reads and parses the request body.
+	 */
+	private static Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+		try (InputStream in = exchange.getRequestBody()) {
+			byte[] body = in.readNBytes(MAX_BODY + 1);
+			if (body.length > MAX_BODY) {
+				throw new HttpError(413, "Request body is too large.");
+			}
+			return JsonReader.readObject(body, body.length);
+		}
+	}
+
+	private static String text(Map<String, Object> body, String name) {
+		Object value = body.get(name);
+		if (value != null && !(value instanceof String)) {
+			throw new IllegalArgumentException(name + " must be a string.");
+		}
+		return (String) value;
+	}
+
+	private static Long number(Map<String, Object> body, String name) {
+		Object value = body.get(name);
+		if (value != null && !(value instanceof Long)) {
+			throw new IllegalArgumentException(name + " must be a whole number.");
+		}
+		return (Long) value;
+	}
+
+	private static Date date(Map<String, Object> body) {
+		Long time = number(body, "date");
+		return time == null ? null : new Date(time);
+	}
+
+	private static int duration(Map<String, Object> body) {
+		Long minutes = number(body, "durationMinutes");
+		if (minutes == null) {
+			return 0;
+		}
+		if (minutes < Integer.MIN_VALUE || minutes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("durationMinutes is out of range.");
+		}
+		return minutes.intValue();
+	}
+
+	/**
+	 * Gets a query parameter's raw value, or null if absent.
+	 */
+	private static String query(HttpExchange exchange, String name) {
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query == null) {
+			return null;
+		}
+		for (String pair : query.split("&")) {
+			if (pair.length() > name.length() && pair.startsWith(name) && pair.charAt(name.length()) == '=') {
+				return pair.substring(name.length() + 1);
+			}
+		}
+		return null;
+	}
+
+	private static long parseLong(String value, String name) {
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(name + " must be a whole number.");
+		}
+	}
+
+	private static HttpError notAllowed(HttpExchange exchange, String allowed) {
+		exchange.getResponseHeaders().set("Allow", allowed);
+		return new HttpError(405, "Method not allowed.");
+	}
+
+	private static <T> void send(HttpExchange exchange, int status, T item, Encoder<T> encoder) throws IOException {
+		JsonWriter json = new JsonWriter(256);
+		encoder.write(json, item);
+		sendJson(exchange, status, json);
+	}
+
+	private static void sendCreated(HttpExchange exchange, long id) throws IOException {
+		JsonWriter json = new JsonWriter(32);
+		json.beginObject().name("id").value(id).endObject();
+		sendJson(exchange, 201, json);
+	}
+
+	private static void sendCreated(HttpExchange exchange, String id) throws IOException {
+		JsonWriter json = new JsonWriter(32);
+		json.beginObject().name("id").value(id).endObject();
+		sendJson(exchange, 201, json);
+	}
+
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		JsonWriter json = new JsonWriter(128);
+		json.beginObject().name("error").value(message).endObject();
+		sendJson(exchange, status, json);
+	}
+
+	private static void sendEmpty(HttpExchange exchange, int status) throws IOException {
+		exchange.sendResponseHeaders(status, -1);
+	}
+
+	private static void sendJson(HttpExchange exchange, int status, JsonWriter json) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", JSON);
+		exchange.sendResponseHeaders(status, json.size());
+		try (OutputStream out = exchange.getResponseBody()) {
+			json.writeTo(out);
+		}
+	}
+
+	/**
+	 * Streams a publisher's results as a JSON array, asking for a chunk at
+	 * a time. The results are written on the publisher's delivery thread
+	 * while this request's thread waits; if the client goes away the
+	 * subscription is cancelled.
+	 */
+	private static <T> void sendStream(HttpExchange exchange, Flow.Publisher<T> publisher, Encoder<T> encoder)
+			throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", JSON);
+		exchange.sendResponseHeaders(200, 0);
+		OutputStream out = exchange.getResponseBody();
+		JsonWriter json = new JsonWriter(out, 16 * 1024);
+		json.beginArray();
+
+		CountDownLatch done = new CountDownLatch(1);
+		IOException[] failure = new IOException[1];
+		publisher.subscribe(new Flow.Subscriber<T>() {
+			private Flow.Subscription subscription;
+			private int left;
+
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				this.subscription = subscription;
+				left = STREAM_CHUNK;
+				subscription.request(STREAM_CHUNK);
+			}
+
+			@Override
+			public void onNext(T item) {
+				if (failure[0] != null) {
+					// Cancelled; drop anything already in flight
+					return;
+				}
+				try {
+					encoder.write(json, item);
+				} catch (IOException e) {
+					stop(e);
+					return;
+				} catch (RuntimeException e) {
+					// Left uncaught it would only reach the publisher and the latch would never open
+					stop(new IOException("Listing failed.", e));
+					return;
+				}
+				if (--left == 0) {
+					left = STREAM_CHUNK;
+					subscription.request(STREAM_CHUNK);
+				}
+			}
+
+			private void stop(IOException e) {
+				failure[0] = e;
+				subscription.cancel();
+				done.countDown();
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				failure[0] = new IOException("Listing failed.", throwable);
+				done.countDown();
+			}
+
+			@Override
+			public void onComplete() {
+				done.countDown();
+			}
+		});
+
+		boolean interrupted = false;
+		while (true) {
+			try {
+				done.await();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure[0] != null) {
+			// Headers are gone, so all that can be done is cut the response short
+			throw failure[0];
+		}
+		json.endArray();
+		json.flush();
+		out.close();
+	}
+}
@@ -4,14 +4,23 @@ package Test;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import Project.Appointment;
 import Project.AppointmentService;
+import Project.BatchResult;
 
 class AppointmentServiceTest {
 	
@@ -360,4 +369,377 @@ class AppointmentServiceTest {
         }
     }
 
+
+    // Builds a date the given number of hours from now
+    private static Date hoursFromNow(int hours) {
+        return new Date(System.currentTimeMillis() + hours * 3_600_000L);
+    }
+
+    // Tests range, upcoming and count queries over the date index
+    @Test
+    void testDateRangeQueries() {
+        AppointmentService tempAppt = new AppointmentService();
+        tempAppt.addAppointment(hoursFromNow(30), "Third");
+        tempAppt.addAppointment(hoursFromNow(10), "First");
+        tempAppt.addAppointment(hoursFromNow(20), "Second");
+        tempAppt.addAppointment(hoursFromNow(50), "Fourth");
+
+        List<Appointment> window = tempAppt.getAppointmentsBetween(hoursFromNow(5), hoursFromNow(40));
+        assertEquals(3, window.size());
+        assertEquals("First", window.get(0).getDescription());
+        assertEquals("Second", window.get(1).getDescription());
+        assertEquals("Third", window.get(2).getDescription());
+        assertEquals(3, tempAppt.countAppointmentsBetween(hoursFromNow(5), hoursFromNow(40)));
+        assertEquals(0, tempAppt.countAppointmentsBetween(hoursFromNow(40), hoursFromNow(5)));
+
+        List<Appointment> upcoming = tempAppt.getUpcomingAppointments(2);
+        assertEquals(2, upcoming.size());
+        assertEquals("First", upcoming.get(0).getDescription());
+        assertEquals("Second", upcoming.get(1).getDescription());
+    }
+
+    // Tests that the date index follows date edits and deletes
+    @Test
+    void testDateIndexTracksEdits() {
+        AppointmentService tempAppt = new AppointmentService();
+        tempAppt.addAppointment(hoursFromNow(10), "Moved");
+        tempAppt.addAppointment(hoursFromNow(12), "Deleted");
+
+        tempAppt.editDate(0, hoursFromNow(100));
+        tempAppt.deleteAppointment(1);
+
+        assertEquals(0, tempAppt.countAppointmentsBetween(hoursFromNow(5), hoursFromNow(50)));
+        List<Appointment> moved = tempAppt.getAppointmentsBetween(hoursFromNow(90), hoursFromNow(110));
+        assertEquals(1, moved.size());
+        assertEquals("Moved", moved.get(0).getDescription());
+    }
+
+    // Tests that entries removed from the map directly are not returned
+    @Test
+    void testDateIndexIgnoresClearedEntries() {
+        AppointmentService tempAppt = new AppointmentService();
+        tempAppt.addAppointment(hoursFromNow(10), "Cleared");
+        AppointmentService.appointments.clear();
+
+        assertTrue(tempAppt.getUpcomingAppointments(10).isEmpty());
+        assertEquals(0, tempAppt.countAppointmentsBetween(hoursFromNow(0), hoursFromNow(20)));
+    }
+
+    // Tests that booking mode rejects overlapping appointments
+    @Test
+    void testBookingRejectsOverlap() {
+        AppointmentService tempAppt = new AppointmentService(true);
+        tempAppt.addAppointment(hoursFromNow(10), "Meeting", 60);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            tempAppt.addAppointment(new Date(hoursFromNow(10).getTime() + 30 * 60_000L), "Overlap", 60);
+        });
+        Assertions.assertDoesNotThrow(() -> tempAppt.addAppointment(hoursFromNow(11), "Back to back", 30));
+        assertEquals(2, AppointmentService.appointments.size());
+    }
+
+    // Tests that changing a Date after handing it over or reading it back
+    // does not move the stored appointment in the index or booking tree
+    @Test
+    void testCallerDateChangesIgnored() {
+        AppointmentService tempAppt = new AppointmentService(true);
+        Date slot = hoursFromNow(10);
+        long time = slot.getTime();
+        int apptID = tempAppt.addAppointment(slot, "Meeting", 60);
+
+        slot.setTime(time + 1_000 * 3_600_000L);
+        tempAppt.getAppointment(apptID).getDate().setTime(time + 2_000 * 3_600_000L);
+
+        assertEquals(time, tempAppt.getAppointment(apptID).getStartTime());
+        assertEquals(1, tempAppt.countAppointmentsBetween(hoursFromNow(9), hoursFromNow(11)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            tempAppt.addAppointment(new Date(time), "Double booked", 30);
+        });
+    }
+
+    // Tests that the default mode still allows overlapping appointments
+    @Test
+    void testOverlapAllowedByDefault() {
+        AppointmentService tempAppt = new AppointmentService();
+        tempAppt.addAppointment(hoursFromNow(10), "Meeting", 60);
+        tempAppt.addAppointment(hoursFromNow(10), "Same time", 60);
+
+        assertEquals(2, AppointmentService.appointments.size());
+    }
+
+    // Tests that date and duration edits are checked in booking mode
+    @Test
+    void testBookingChecksEdits() {
+        AppointmentService tempAppt = new AppointmentService(true);
+        Date first = hoursFromNow(10);
+        tempAppt.addAppointment(first, "First", 60);
+        tempAppt.addAppointment(new Date(first.getTime() + 2 * 3_600_000L), "Second", 60);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            tempAppt.editDate(1, new Date(first.getTime() + 30 * 60_000L));
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            tempAppt.editDuration(0, 180);
+        });
+        tempAppt.editDuration(0, 120);
+        tempAppt.editDate(1, new Date(first.getTime() + 3 * 3_600_000L));
+        tempAppt.editDate(0, new Date(first.getTime() + 60 * 60_000L));
+        assertEquals(120, AppointmentService.appointments.get(0).getDurationMinutes());
+
+        tempAppt.deleteAppointment(1);
+        tempAppt.editDuration(0, 180);
+        assertEquals(180, AppointmentService.appointments.get(0).getDurationMinutes());
+    }
+
+    // Tests that concurrent bookings for the same slot cannot both succeed
+    @Test
+    void testConcurrentBookingSameSlot() throws Exception {
+        AppointmentService tempAppt = new AppointmentService(true);
+        Date slot = hoursFromNow(10);
+        int threadCount = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger booked = new AtomicInteger();
+        Thread[] threads = new Thread[threadCount];
+
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    tempAppt.addAppointment(slot, "Race", 30);
+                    booked.incrementAndGet();
+                } catch (IllegalArgumentException | InterruptedException e) {
+                    // Expected for every thread but one
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, booked.get());
+        assertEquals(1, AppointmentService.appointments.size());
+    }
+
+    // Tests a batch insert with good and bad rows, including overlaps in booking mode
+    @Test
+    void testAddAppointmentsBatch() {
+        AppointmentService tempAppt = new AppointmentService(true);
+        Date slot = hoursFromNow(10);
+        List<Date> dates = Arrays.asList(slot, hoursFromNow(-1), slot, hoursFromNow(20));
+        List<String> descriptions = Arrays.asList("First", "Past", "Clash", "DROP TABLE x");
+
+        BatchResult result = tempAppt.addAppointments(dates, descriptions);
+
+        assertEquals(1, result.getAddedCount());
+        assertEquals(3, result.getErrorCount());
+        assertEquals(1, result.getErrorRow(0));
+        assertEquals(2, result.getErrorRow(1));
+        assertTrue(result.getErrorMessage(1).contains("overlaps"));
+        assertEquals(3, result.getErrorRow(2));
+        assertEquals("First", AppointmentService.appointments.get(0).getDescription());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            tempAppt.addAppointments(dates, descriptions.subList(0, 1));
+        });
+    }
+
+    // Tests that edits replace the appointment and a rejected edit changes nothing
+    @Test
+    void testEditPublishesCopy() {
+        AppointmentService tempAppt = new AppointmentService(true);
+        tempAppt.addAppointment(hoursFromNow(10), "First", 60);
+        tempAppt.addAppointment(hoursFromNow(12), "Second", 60);
+        Appointment before = tempAppt.getAppointment(0);
+
+        tempAppt.editDescription(0, "Renamed");
+        assertEquals("First", before.getDescription());
+        assertEquals("Renamed", tempAppt.getAppointment(0).getDescription());
+
+        Appointment edited = tempAppt.getAppointment(0);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            tempAppt.editDuration(0, 180);
+        });
+        assertSame(edited, tempAppt.getAppointment(0));
+        assertEquals(60, edited.getDurationMinutes());
+        assertEquals(2, tempAppt.getAppointmentsBetween(hoursFromNow(0), hoursFromNow(24)).size());
+        assertNull(tempAppt.getAppointment(2));
+
+        // Published appointments only change through the service
+        assertThrows(IllegalStateException.class, () -> edited.setDate(hoursFromNow(12)));
+        assertThrows(IllegalStateException.class, () -> edited.setDescription("Sneaky"));
+        assertThrows(IllegalStateException.class, () -> edited.setDurationMinutes(30));
+        assertEquals(60, tempAppt.getAppointment(0).getDurationMinutes());
+    }
+
+    // Tests that updateAppointment applies every field only at the version read
+    @Test
+    void testUpdateAppointmentVersion() {
+        AppointmentService tempAppt = new AppointmentService(true);
+        tempAppt.addAppointment(hoursFromNow(10), "First", 60);
+        tempAppt.addAppointment(hoursFromNow(12), "Second", 60);
+        Appointment read = tempAppt.getAppointment(0);
+
+        tempAppt.editDescription(0, "Renamed");
+        assertFalse(tempAppt.updateAppointment(0, read.getVersion(), hoursFromNow(20), "Stale", 30));
+        assertEquals("Renamed", tempAppt.getAppointment(0).getDescription());
+
+        // Invalid values are rejected before the ID or version is looked at
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            tempAppt.updateAppointment(0, read.getVersion(), hoursFromNow(20), "Stale", 5000);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            tempAppt.updateAppointment(99, 0, null, "Missing", 30);
+        });
+
+        long current = tempAppt.getAppointment(0).getVersion();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            tempAppt.updateAppointment(0, current, hoursFromNow(11), "Overlaps", 120);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            tempAppt.updateAppointment(0, current, hoursFromNow(20), "Too long", 5000);
+        });
+        assertEquals("Renamed", tempAppt.getAppointment(0).getDescription());
+
+        Date moved = hoursFromNow(20);
+        assertTrue(tempAppt.updateAppointment(0, current, moved, "Moved", 30));
+        assertEquals(moved, tempAppt.getAppointment(0).getDate());
+        assertEquals(30, tempAppt.getAppointment(0).getDurationMinutes());
+        assertEquals(current + 1, tempAppt.getAppointment(0).getVersion());
+        assertEquals(1, tempAppt.getAppointmentsBetween(hoursFromNow(19), hoursFromNow(21)).size());
+    }
+
+    // Tests that booking mode still admits one appointment per slot through the writer thread
+    @Test
+    void testSingleWriterBooking() throws Exception {
+        AppointmentService tempAppt = new AppointmentService(true);
+        tempAppt.startWriter(4);
+        Date slot = hoursFromNow(10);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger booked = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    tempAppt.addAppointment(slot, "Race", 30);
+                    booked.incrementAndGet();
+                } catch (IllegalArgumentException | InterruptedException e) {
+                    // Expected for every thread but one
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        tempAppt.stopWriter();
+
+        assertEquals(1, booked.get());
+        assertEquals(1, AppointmentService.appointments.size());
+        tempAppt.editDescription(0, "After stop");
+        assertEquals("After stop", tempAppt.getAppointment(0).getDescription());
+    }
+
+    // Tests the async changes, including overlaps failing the future in booking mode
+    @Test
+    void testAsyncChanges() {
+        AppointmentService tempAppt = new AppointmentService(true);
+        List<CompletableFuture<Integer>> adds = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            adds.add(tempAppt.addAppointmentAsync(hoursFromNow(10 + i), "Slot", 30));
+        }
+        for (int i = 0; i < adds.size(); i++) {
+            assertNotNull(tempAppt.getAppointment(adds.get(i).join()));
+        }
+        assertEquals(100, AppointmentService.appointments.size());
+
+        CompletionException overlap = assertThrows(CompletionException.class,
+                () -> tempAppt.addAppointmentAsync(hoursFromNow(10), "Clash", 30).join());
+        assertTrue(overlap.getCause() instanceof IllegalArgumentException);
+        assertThrows(CompletionException.class, () -> tempAppt.editDescriptionAsync(0, null).join());
+
+        tempAppt.editDescriptionAsync(0, "Renamed").join();
+        tempAppt.editDurationAsync(0, 45).join();
+        tempAppt.editDateAsync(1, hoursFromNow(500)).join();
+        assertEquals("Renamed", tempAppt.getAppointment(0).getDescription());
+        assertEquals(45, tempAppt.getAppointment(0).getDurationMinutes());
+        assertFalse(tempAppt.updateAppointmentAsync(0, 0, hoursFromNow(600), "Stale", 30).join());
+        assertTrue(tempAppt.updateAppointmentAsync(0, 2, hoursFromNow(600), "Moved", 30).join());
+        assertEquals(1, tempAppt.addAppointmentsAsync(Arrays.asList(hoursFromNow(700), hoursFromNow(700)),
+                Arrays.asList("Batch", "Batch clash")).join().getAddedCount());
+        tempAppt.deleteAppointmentAsync(0).join();
+        assertNull(tempAppt.getAppointment(0));
+        assertEquals(100, AppointmentService.appointments.size());
+    }
+
+    // Tests streaming appointments in date order, in full and by window
+    @Test
+    void testStreamAppointments() throws InterruptedException {
+        AppointmentService tempAppt = new AppointmentService();
+        for (int i = 0; i < 50; i++) {
+            tempAppt.addAppointment(hoursFromNow(10 + (i * 7) % 50), "Streamed");
+        }
+
+        CollectingSubscriber<Appointment> all = new CollectingSubscriber<>(8);
+        tempAppt.streamAppointments().subscribe(all);
+        List<Appointment> streamed = all.await();
+        assertTrue(all.completed);
+        assertEquals(50, streamed.size());
+        for (int i = 1; i < streamed.size(); i++) {
+            assertTrue(streamed.get(i - 1).getDate().before(streamed.get(i).getDate()));
+        }
+
+        CollectingSubscriber<Appointment> window = new CollectingSubscriber<>(3);
+        tempAppt.streamAppointmentsBetween(streamed.get(5).getDate(), streamed.get(15).getDate()).subscribe(window);
+        assertEquals(streamed.subList(5, 15), window.await());
+        assertThrows(IllegalArgumentException.class, () -> tempAppt.streamAppointmentsBetween(null, hoursFromNow(1)));
+    }
+
+    // Tests partitioned booking mode: adds from many threads and a batch
+    // across shards still reject every overlap, and scans see every shard
+    @Test
+    void testPartitionedBooking() {
+        AppointmentService tempAppt = new AppointmentService(true);
+        tempAppt.partition(4);
+        try {
+            List<CompletableFuture<Integer>> adds = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                adds.add(tempAppt.addAppointmentAsync(hoursFromNow(10 + i % 50), "Slot", 30));
+            }
+            int booked = 0;
+            for (CompletableFuture<Integer> add : adds) {
+                try {
+                    assertNotNull(tempAppt.getAppointment(add.join()));
+                    booked++;
+                } catch (CompletionException e) {
+                    assertTrue(e.getCause() instanceof IllegalArgumentException);
+                }
+            }
+            assertEquals(50, booked);
+
+            Date slot = hoursFromNow(100);
+            BatchResult result = tempAppt.addAppointments(Arrays.asList(slot, hoursFromNow(200), slot),
+                    Arrays.asList("First", "Second", "Clash"));
+            assertEquals(2, result.getAddedCount());
+            assertEquals(2, result.getErrorRow(0));
+            assertEquals("First", tempAppt.getAppointment(result.getID(0)).getDescription());
+            assertEquals(52, AppointmentService.appointments.size());
+            assertEquals(50, tempAppt.findAppointments(appointment -> appointment.getDescription().equals("Slot")).size());
+            assertEquals(52, tempAppt.countAppointmentsBetween(hoursFromNow(0), hoursFromNow(300)));
+
+            tempAppt.editDate(result.getID(1), hoursFromNow(300));
+            assertThrows(IllegalArgumentException.class, () -> tempAppt.editDate(result.getID(1), slot));
+            tempAppt.deleteAppointment(result.getID(0));
+            tempAppt.editDate(result.getID(1), slot);
+            assertEquals(slot, tempAppt.getAppointment(result.getID(1)).getDate());
+        } finally {
+            tempAppt.partition(1);
+        }
+        assertEquals(1, AppointmentService.appointments.shardCount());
+        assertEquals(51, AppointmentService.appointments.size());
+    }
 }
\ No newline at end of file
@@ -1,12 +1,16 @@
 package Test;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Calendar;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import Project.Appointment;
+import Project.ValidationError;
 
 /*
  * Unit tests for the Appointment class.
@@ -443,4 +447,101 @@ class AppointmentTest {
             });
         }
     }
-}
\ No newline at end of file
+
+    /*
+     * Tests the duration constructor and setter
+     */
+    @Test
+    void testDuration() {
+        Date date = new Date(System.currentTimeMillis() + 3_600_000L);
+        Appointment appointment = new Appointment(1, date, "Lorem ipsum dolor sit amet.", 90);
+        
+        Assertions.assertEquals(90, appointment.getDurationMinutes());
+        Assertions.assertEquals(date.getTime() + 90 * 60_000L, appointment.getEndTime());
+        appointment.setDurationMinutes(0);
+        Assertions.assertEquals(date.getTime() + 1, appointment.getEndTime());
+    }
+
+    /*
+     * Tests that out-of-range durations are rejected
+     */
+    @Test
+    void testDurationInvalid() {
+        Date date = new Date(System.currentTimeMillis() + 3_600_000L);
+        
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new Appointment(1, date, "Lorem ipsum dolor sit amet.", -1);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new Appointment(1, date, "Lorem ipsum dolor sit amet.", 24 * 60 + 1);
+        });
+    }
+
+    /*
+     * Tests replacing the blacklist at runtime with case-insensitive matching
+     */
+    @Test
+    void testSetBlacklist() {
+        Date date = new Date(System.currentTimeMillis() + 3_600_000L);
+        try {
+            Appointment.setBlacklist(Arrays.asList("truncate", "exec"), true);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> {
+                new Appointment(1, date, "Please TRUNCATE logs");
+            });
+            Assertions.assertDoesNotThrow(() -> new Appointment(1, date, "DROP TABLE is allowed now"));
+        } finally {
+            Appointment.resetBlacklist();
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new Appointment(1, date, "DROP TABLE users");
+        });
+    }
+
+    /*
+     * Tests loading the blacklist from a file
+     */
+    @Test
+    void testLoadBlacklist() throws Exception {
+        Date date = new Date(System.currentTimeMillis() + 3_600_000L);
+        Path file = Files.createTempFile("blacklist", ".txt");
+        try {
+            Files.write(file, Arrays.asList("# comment", "", "shutdown"));
+            Appointment.loadBlacklist(file, false);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> {
+                new Appointment(1, date, "shutdown now");
+            });
+            Assertions.assertDoesNotThrow(() -> new Appointment(1, date, "SHUTDOWN # comment"));
+        } finally {
+            Appointment.resetBlacklist();
+            Files.delete(file);
+        }
+    }
+
+    /*
+     * Tests the non-throwing field checks
+     */
+    @Test
+    void testCheckFields() {
+        Date future = new Date(System.currentTimeMillis() + 3_600_000L);
+        Date past = new Date(System.currentTimeMillis() - 3_600_000L);
+        
+        Assertions.assertEquals(0, Appointment.checkFields("1", future, "Lorem ipsum dolor sit amet.", 30));
+        Assertions.assertEquals(Appointment.FIELD_DATE | Appointment.FIELD_DURATION, 
+                Appointment.checkFields("1", past, "Lorem ipsum dolor sit amet.", -1));
+        Assertions.assertEquals(ValidationError.MISSING, Appointment.checkDate(null));
+        Assertions.assertEquals(ValidationError.FORBIDDEN_CONTENT, Appointment.checkDescription("DROP TABLE users"));
+        Assertions.assertEquals(ValidationError.ILLEGAL_CHARACTERS, Appointment.checkDescription("a < b"));
+    }
+
+    /*
+     * Tests that the throwing path still names the forbidden phrase
+     */
+    @Test
+    void testForbiddenMessageNamesPhrase() {
+        Date date = new Date(System.currentTimeMillis() + 3_600_000L);
+        Exception exception = Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new Appointment(1, date, "DROP TABLE users");
+        });
+        Assertions.assertEquals("Description contains forbidden content: DROP TABLE", exception.getMessage());
+    }
+}
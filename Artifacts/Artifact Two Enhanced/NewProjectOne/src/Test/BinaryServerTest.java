@@ -0,0 +1,308 @@
+package Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import Project.AppointmentService;
+import Project.ContactService;
+import Project.MutationListener;
+import Project.Task;
+import Project.TaskService;
+import Server.BinaryClient;
+import Server.BinaryProtocol;
+import Server.BinaryServer;
+
+/**
+ * End-to-end tests for the BinaryServer and BinaryClient classes.
+ * Tests each operation, pipelining, large batches, several connections
+ * across event loops, and malformed requests.
+ *
+ * @author Stewart Withrow
+ */
+class BinaryServerTest {
+
+    private BinaryServer server;
+    private InetSocketAddress address;
+    private TaskService taskService;
+    private ContactService contactService;
+    private AppointmentService appointmentService;
+
+	/*
+	 * Starts a server with two event loops on a free port before each test.
+	 */
+    @BeforeEach
+    void setUp() throws Exception {
+        taskService = new TaskService();
+        contactService = new ContactService();
+        appointmentService = new AppointmentService();
+        server = new BinaryServer(new InetSocketAddress("127.0.0.1", 0), contactService, taskService,
+                appointmentService, 2);
+        server.start();
+        address = new InetSocketAddress("127.0.0.1", server.getPort());
+    }
+
+	/*
+	 * Stops the server and clears the shared maps after each test.
+	 */
+    @AfterEach
+    void tearDown() {
+        server.close();
+        TaskService.tasks.clear();
+        ContactService.contacts.clear();
+        AppointmentService.appointments.clear();
+    }
+
+    /*
+     * Tests the task operations, pipelined so one flush carries several.
+     */
+    @Test
+    void testTaskOperations() throws Exception {
+        try (BinaryClient client = new BinaryClient(address)) {
+            client.addTask("Write", "Draft it");
+            client.addTask("Read", "Check it");
+            List<BinaryClient.Reply> added = client.flush();
+            assertEquals(2, added.size());
+            int id = added.get(0).getInt(0);
+            assertEquals("Read", taskService.getTask(added.get(1).getInt(0)).getName());
+
+            client.getTask(id);
+            client.updateTask(id, 0, "Edit", "Tidy it");
+            client.updateTask(id, 0, "Late", "Too late");
+            client.getTask(id);
+            client.deleteTask(id);
+            client.getTask(id);
+            client.deleteTask(id);
+            assertEquals(7, client.getQueued());
+            List<BinaryClient.Reply> replies = client.flush();
+            assertEquals(0, client.getQueued());
+
+            BinaryClient.Reply first = replies.get(0);
+            assertEquals(BinaryProtocol.OK, first.getStatus());
+            assertEquals(id, first.getInt(0));
+            assertEquals(0, first.getLong(1));
+            assertEquals("Write", first.getString(2));
+            assertEquals("Draft it", first.getString(3));
+            assertEquals(BinaryProtocol.OK, replies.get(1).getStatus());
+            assertEquals(BinaryProtocol.CONFLICT, replies.get(2).getStatus());
+            assertEquals("Edit", replies.get(3).getString(2));
+            assertEquals(1, replies.get(3).getLong(1));
+            assertEquals(BinaryProtocol.OK, replies.get(4).getStatus());
+            assertEquals(BinaryProtocol.NOT_FOUND, replies.get(5).getStatus());
+            assertEquals(BinaryProtocol.NOT_FOUND, replies.get(6).getStatus());
+            assertNull(taskService.getTask(id));
+        }
+    }
+
+    /*
+     * Tests the contact and appointment operations.
+     */
+    @Test
+    void testContactAndAppointmentOperations() throws Exception {
+        long date = System.currentTimeMillis() + 24L * 60 * 60 * 1000;
+        try (BinaryClient client = new BinaryClient(address)) {
+            client.addContact("Ada", "Lovelace", "5551234567", "1 Main St");
+            client.addAppointment(date, "Visit", 45);
+            List<BinaryClient.Reply> added = client.flush();
+            String contactID = added.get(0).getString(0);
+            int apptID = added.get(1).getInt(0);
+
+            client.updateContact(contactID, 0, "Ada", "King", "5557654321", "2 Main St");
+            client.getContact(contactID);
+            client.updateAppointment(apptID, 0, date + 60000, "Moved", 30);
+            client.getAppointment(apptID);
+            client.deleteContact(contactID);
+            client.deleteAppointment(apptID);
+            List<BinaryClient.Reply> replies = client.flush();
+
+            assertEquals(BinaryProtocol.OK, replies.get(0).getStatus());
+            BinaryClient.Reply contact = replies.get(1);
+            assertEquals(contactID, contact.getString(0));
+            assertEquals(1, contact.getLong(1));
+            assertEquals("King", contact.getString(3));
+            assertEquals("5557654321", contact.getString(4));
+            assertEquals("2 Main St", contact.getString(5));
+            BinaryClient.Reply appointment = replies.get(3);
+            assertEquals(apptID, appointment.getInt(0));
+            assertEquals(date + 60000, appointment.getLong(2));
+            assertEquals(30, appointment.getInt(3));
+            assertEquals("Moved", appointment.getString(4));
+            assertEquals(BinaryProtocol.OK, replies.get(4).getStatus());
+            assertEquals(BinaryProtocol.OK, replies.get(5).getStatus());
+            assertNull(contactService.getContact(contactID));
+            assertNull(appointmentService.getAppointment(apptID));
+        }
+    }
+
+    /*
+     * Tests that a batch far larger than the socket buffers completes,
+     * with every reply in order.
+     */
+    @Test
+    void testLargePipeline() throws Exception {
+        int id = taskService.addTask("Task", "A long description to make the replies bigger");
+        try (BinaryClient client = new BinaryClient(address)) {
+            for (int i = 0; i < 50000; i++) {
+                if (i % 1000 == 0) {
+                    client.getTask(-1);
+                } else {
+                    client.getTask(id);
+                }
+            }
+            List<BinaryClient.Reply> replies = client.flush();
+            assertEquals(50000, replies.size());
+            for (int i = 0; i < replies.size(); i++) {
+                assertEquals(i % 1000 == 0 ? BinaryProtocol.NOT_FOUND : BinaryProtocol.OK,
+                        replies.get(i).getStatus());
+            }
+        }
+    }
+
+    /*
+     * Tests several connections at once, spread across the event loops.
+     */
+    @Test
+    void testConcurrentClients() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int c = 0; c < 4; c++) {
+                results.add(executor.submit(() -> {
+                    int added = 0;
+                    try (BinaryClient client = new BinaryClient(address)) {
+                        for (int round = 0; round < 20; round++) {
+                            for (int i = 0; i < 50; i++) {
+                                client.addTask("Task", "Added by a client");
+                            }
+                            for (BinaryClient.Reply reply : client.flush()) {
+                                assertEquals(BinaryProtocol.OK, reply.getStatus());
+                                added++;
+                            }
+                        }
+                    }
+                    return added;
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(1000, result.get().intValue());
+            }
+            assertEquals(4000, TaskService.tasks.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /*
+     * Tests that a change stuck behind a slow listener, such as a log
+     * waiting on a sync, does not hold up other connections on its loop.
+     */
+    @Test
+    void testSlowChangeLeavesLoopFree() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        TaskService slowService = new TaskService();
+        slowService.addListener(new MutationListener() {
+            @Override
+            public void taskPut(Task task) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (BinaryServer single = new BinaryServer(new InetSocketAddress("127.0.0.1", 0), contactService,
+                slowService, appointmentService, 1)) {
+            single.start();
+            InetSocketAddress singleAddress = new InetSocketAddress("127.0.0.1", single.getPort());
+            try (BinaryClient writer = new BinaryClient(singleAddress);
+                    BinaryClient reader = new BinaryClient(singleAddress)) {
+                writer.addTask("Write", "Waits for the listener");
+                Future<List<BinaryClient.Reply>> added = executor.submit(() -> writer.flush());
+                
+                reader.getTask(12345);
+                Future<List<BinaryClient.Reply>> read = executor.submit(() -> reader.flush());
+                assertEquals(BinaryProtocol.NOT_FOUND, read.get(10, TimeUnit.SECONDS).get(0).getStatus());
+                assertFalse(added.isDone());
+                
+                release.countDown();
+                assertEquals(BinaryProtocol.OK, added.get(10, TimeUnit.SECONDS).get(0).getStatus());
+            }
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    /*
+     * Tests that refused requests carry a reason and leave the connection usable.
+     */
+    @Test
+    void testRefusedRequests() throws Exception {
+        try (BinaryClient client = new BinaryClient(address)) {
+            client.addTask(null, "No name");
+            client.addAppointment(0, "In the past", 30);
+            client.getContact(null);
+            client.addTask("Fine", "Still served");
+            List<BinaryClient.Reply> replies = client.flush();
+            assertEquals(BinaryProtocol.INVALID, replies.get(0).getStatus());
+            assertNotNull(replies.get(0).getMessage());
+            assertEquals(BinaryProtocol.INVALID, replies.get(1).getStatus());
+            assertEquals(BinaryProtocol.NOT_FOUND, replies.get(2).getStatus());
+            assertEquals(BinaryProtocol.OK, replies.get(3).getStatus());
+
+            assertThrows(IllegalArgumentException.class, () -> client.addTask("x".repeat(70000), "Too long"));
+            assertEquals(0, client.getQueued());
+        }
+    }
+
+    /*
+     * Tests malformed frames: a bad request is answered and the stream
+     * goes on, while a bad length closes the connection.
+     */
+    @Test
+    void testMalformedFrames() throws Exception {
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+
+            // Unknown opcode
+            out.writeInt(1);
+            out.writeByte(99);
+            // Get with a field missing
+            out.writeInt(3);
+            out.writeByte(BinaryProtocol.TASK_GET);
+            out.writeShort(0);
+            // Get with a field too many
+            out.writeInt(9);
+            out.writeByte(BinaryProtocol.TASK_GET);
+            out.writeInt(0);
+            out.writeInt(0);
+            out.flush();
+            for (int i = 0; i < 3; i++) {
+                int length = in.readInt();
+                assertEquals(BinaryProtocol.BAD_REQUEST, in.readByte());
+                in.skipBytes(length - 1);
+            }
+
+            out.writeInt(BinaryProtocol.MAX_FRAME + 1);
+            out.flush();
+            assertThrows(EOFException.class, () -> in.readInt());
+        }
+    }
+}
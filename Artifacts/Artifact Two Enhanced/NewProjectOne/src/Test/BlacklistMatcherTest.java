@@ -0,0 +1,113 @@
+package Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import Project.BlacklistMatcher;
+
+/**
+ * Unit tests for the BlacklistMatcher class.
+ * Tests single-pass matching, overlapping phrases and case folding.
+ * 
+ * @author Stewart Withrow
+ */
+class BlacklistMatcherTest {
+
+    /*
+     * Tests matching the default appointment blacklist.
+     */
+    @Test
+    void testDefaultPhrases() {
+        BlacklistMatcher matcher = new BlacklistMatcher(Arrays.asList(
+            "DROP TABLE", "DELETE FROM", "UPDATE", "INSERT", "<script>", "alert(", "SELECT *"), false);
+        
+        assertEquals("DROP TABLE", matcher.findFirst("Please DROP TABLE users"));
+        assertEquals("alert(", matcher.findFirst("x alert(1)"));
+        assertNull(matcher.findFirst("Dentist at noon"));
+        assertNull(matcher.findFirst("drop table users"));
+        assertNull(matcher.findFirst(null));
+    }
+
+    /*
+     * Tests phrases that share prefixes and suffixes.
+     */
+    @Test
+    void testOverlappingPhrases() {
+        BlacklistMatcher matcher = new BlacklistMatcher(Arrays.asList("he", "she", "his", "hers"), false);
+        
+        assertEquals("she", matcher.findFirst("ushers"));
+        assertEquals("his", matcher.findFirst("this"));
+        assertTrue(matcher.matches("hhhhe"));
+        assertFalse(matcher.matches("hhhh"));
+    }
+
+    /*
+     * Tests case-insensitive matching, including non-ASCII letters.
+     */
+    @Test
+    void testIgnoreCase() {
+        BlacklistMatcher matcher = new BlacklistMatcher(Arrays.asList("drop table", "Ñandú"), true);
+        
+        assertTrue(matcher.isIgnoreCase());
+        assertEquals("drop table", matcher.findFirst("DROP TABLE users"));
+        assertEquals("drop table", matcher.findFirst("Drop Table users"));
+        assertEquals("Ñandú", matcher.findFirst("el ÑANDÚ corre"));
+        assertNull(matcher.findFirst("drop-table? no, drip table"));
+    }
+
+    /*
+     * Tests an empty blacklist.
+     */
+    @Test
+    void testEmpty() {
+        BlacklistMatcher matcher = new BlacklistMatcher(Collections.<String>emptyList(), false);
+        
+        assertEquals(0, matcher.size());
+        assertNull(matcher.findFirst("anything"));
+    }
+
+    /*
+     * Tests a large random blacklist against String.contains.
+     */
+    @Test
+    void testMatchesContains() {
+        Random random = new Random(7);
+        List<String> phrases = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            phrases.add(randomText(random, 3 + random.nextInt(6)));
+        }
+        BlacklistMatcher matcher = new BlacklistMatcher(phrases, false);
+        
+        for (int i = 0; i < 2000; i++) {
+            String input = randomText(random, 50);
+            boolean expected = false;
+            for (String phrase : phrases) {
+                if (input.contains(phrase)) {
+                    expected = true;
+                    break;
+                }
+            }
+            String found = matcher.findFirst(input);
+            assertEquals(expected, found != null);
+            if (found != null) {
+                assertTrue(input.contains(found));
+            }
+        }
+    }
+
+    // Builds a string from a small alphabet so random phrases actually match
+    private static String randomText(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(4)));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,217 @@
+package Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import Project.AppointmentService;
+import Project.ChangeEvent;
+import Project.ChangeFeed;
+import Project.ContactService;
+import Project.TaskService;
+
+/**
+ * Unit tests for the ChangeFeed class.
+ * Tests fan-out to several subscribers, batching, backpressure and
+ * failing handlers.
+ *
+ * @author Stewart Withrow
+ */
+class ChangeFeedTest {
+
+	/*
+	 * Clears the shared maps after each test to ensure test isolation.
+	 */
+    @AfterEach
+    void tearDown() {
+        TaskService.tasks.clear();
+        ContactService.contacts.clear();
+        AppointmentService.appointments.clear();
+    }
+
+    /*
+     * Tests that a fast and a slow subscriber both see every change from
+     * all three services, in order, through a ring much smaller than the
+     * number of changes.
+     */
+    @Test
+    void testEverySubscriberSeesEveryChange() throws InterruptedException {
+        try (ChangeFeed feed = new ChangeFeed(8)) {
+            List<String> fast = Collections.synchronizedList(new ArrayList<>());
+            List<String> slow = Collections.synchronizedList(new ArrayList<>());
+            ChangeFeed.Subscription fastSubscription = feed.subscribe("fast", 64,
+                    (event, endOfBatch) -> fast.add(describe(event)));
+            ChangeFeed.Subscription slowSubscription = feed.subscribe("slow", 4, (event, endOfBatch) -> {
+                slow.add(describe(event));
+                if (endOfBatch) {
+                    sleep(1);
+                }
+            });
+
+            TaskService taskService = new TaskService();
+            ContactService contactService = new ContactService();
+            AppointmentService appointmentService = new AppointmentService();
+            taskService.addListener(feed);
+            contactService.addListener(feed);
+            appointmentService.addListener(feed);
+
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                taskService.addTask("Task", "Fed to subscribers");
+                expected.add("TASK_PUT " + i);
+            }
+            taskService.editTask(3, "Edited", "Fed again");
+            expected.add("TASK_PUT 3");
+            taskService.deleteTask(4);
+            expected.add("TASK_DELETED 4");
+            contactService.addContact("John", "Smith", "1234567891", "123 Main Street");
+            expected.add("CONTACT_PUT 0");
+            contactService.deleteContact("0");
+            expected.add("CONTACT_DELETED 0");
+            Calendar date = Calendar.getInstance();
+            date.add(Calendar.DAY_OF_MONTH, 1);
+            appointmentService.addAppointment(date.getTime(), "Fed to subscribers");
+            expected.add("APPOINTMENT_PUT 0");
+            appointmentService.deleteAppointment(0);
+            expected.add("APPOINTMENT_DELETED 0");
+
+            assertEquals(expected.size(), feed.getPublishedCount());
+            awaitSequence(fastSubscription, expected.size() - 1);
+            awaitSequence(slowSubscription, expected.size() - 1);
+            assertEquals(expected, fast);
+            assertEquals(expected, slow);
+        }
+    }
+
+    /*
+     * Tests that batches are no larger than asked for and end with the
+     * end-of-batch flag, and that sequence numbers have no gaps.
+     */
+    @Test
+    void testBatches() throws InterruptedException {
+        try (ChangeFeed feed = new ChangeFeed(64)) {
+            AtomicInteger inBatch = new AtomicInteger();
+            AtomicInteger largest = new AtomicInteger();
+            AtomicInteger batches = new AtomicInteger();
+            List<Long> sequences = Collections.synchronizedList(new ArrayList<>());
+            ChangeFeed.Subscription subscription = feed.subscribe("batches", 5, (event, endOfBatch) -> {
+                sequences.add(event.getSequence());
+                largest.accumulateAndGet(inBatch.incrementAndGet(), Math::max);
+                if (endOfBatch) {
+                    inBatch.set(0);
+                    batches.incrementAndGet();
+                }
+            });
+
+            TaskService taskService = new TaskService();
+            taskService.addListener(feed);
+            for (int i = 0; i < 500; i++) {
+                taskService.addTask("Task", "Batched");
+            }
+            awaitSequence(subscription, 499);
+
+            assertTrue(largest.get() <= 5);
+            assertTrue(batches.get() >= 100);
+            assertEquals(0, inBatch.get());
+            for (int i = 0; i < 500; i++) {
+                assertEquals(i, sequences.get(i).longValue());
+            }
+        }
+    }
+
+    /*
+     * Tests that a subscriber joining late sees only later changes.
+     */
+    @Test
+    void testLateSubscriber() throws InterruptedException {
+        try (ChangeFeed feed = new ChangeFeed(16)) {
+            TaskService taskService = new TaskService();
+            taskService.addListener(feed);
+            for (int i = 0; i < 40; i++) {
+                taskService.addTask("Task", "Before anyone listened");
+            }
+
+            List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+            ChangeFeed.Subscription subscription = feed.subscribe("late", 8,
+                    (event, endOfBatch) -> seen.add(event.getTaskID()));
+            assertEquals(39, subscription.getSequence());
+            taskService.addTask("Task", "After");
+            awaitSequence(subscription, 40);
+            assertEquals(List.of(40), seen);
+        }
+    }
+
+    /*
+     * Tests that a handler that throws ends its subscription without
+     * holding up writers.
+     */
+    @Test
+    void testFailingHandler() throws InterruptedException {
+        try (ChangeFeed feed = new ChangeFeed(4)) {
+            ChangeFeed.Subscription subscription = feed.subscribe("failing", 1, (event, endOfBatch) -> {
+                throw new IllegalStateException("Handler failed.");
+            });
+            TaskService taskService = new TaskService();
+            taskService.addListener(feed);
+            for (int i = 0; i < 50; i++) {
+                taskService.addTask("Task", "Past a failed subscriber");
+            }
+
+            assertEquals(50, TaskService.tasks.size());
+            assertTrue(subscription.getFailure() instanceof IllegalStateException);
+        }
+    }
+
+    /*
+     * Tests the argument and state checks.
+     */
+    @Test
+    void testInvalidUse() {
+        assertThrows(IllegalArgumentException.class, () -> new ChangeFeed(0));
+        ChangeFeed feed = new ChangeFeed(4);
+        assertThrows(IllegalArgumentException.class, () -> feed.subscribe("none", 0, (event, endOfBatch) -> { }));
+        feed.close();
+        assertThrows(IllegalStateException.class, () -> feed.subscribe("closed", 1, (event, endOfBatch) -> { }));
+
+        // Changes published to a closed feed are dropped
+        feed.taskDeleted(1);
+        assertEquals(1, feed.getPublishedCount());
+    }
+
+    private static String describe(ChangeEvent event) {
+        switch (event.getType()) {
+            case CONTACT_PUT:
+            case CONTACT_DELETED:
+                return event.getType() + " " + event.getContactID();
+            case TASK_PUT:
+            case TASK_DELETED:
+                return event.getType() + " " + event.getTaskID();
+            default:
+                return event.getType() + " " + event.getApptID();
+        }
+    }
+
+    private static void awaitSequence(ChangeFeed.Subscription subscription, long sequence)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (subscription.getSequence() < sequence && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(sequence, subscription.getSequence());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Subscriber used by the stream tests. It asks for results a chunk at a
+ * time and keeps them, and can cancel after a given number.
+ *
+ * @author Stewart Withrow
+ */
+class CollectingSubscriber<T> implements Flow.Subscriber<T> {
+
+    private final long chunk;
+    private final long cancelAfter;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private Flow.Subscription subscription;
+    private long leftInChunk;
+
+    final List<T> items = Collections.synchronizedList(new ArrayList<>());
+    volatile Throwable error;
+    volatile boolean completed;
+
+    CollectingSubscriber(long chunk) {
+        this(chunk, Long.MAX_VALUE);
+    }
+
+    CollectingSubscriber(long chunk, long cancelAfter) {
+        this.chunk = chunk;
+        this.cancelAfter = cancelAfter;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        leftInChunk = chunk;
+        subscription.request(chunk);
+    }
+
+    @Override
+    public void onNext(T item) {
+        items.add(item);
+        if (items.size() >= cancelAfter) {
+            subscription.cancel();
+            done.countDown();
+        } else if (--leftInChunk == 0) {
+            leftInChunk = chunk;
+            subscription.request(chunk);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = throwable;
+        done.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+        completed = true;
+        done.countDown();
+    }
+
+    /**
+     * Waits for the stream to end or be cancelled.
+     * @return Results received
+     */
+    List<T> await() throws InterruptedException {
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return items;
+    }
+}
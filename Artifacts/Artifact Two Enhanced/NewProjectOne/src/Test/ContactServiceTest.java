@@ -3,12 +3,20 @@ package Test;
 import static org.junit.Assert.assertEquals;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import Project.ContactService;
+import Project.BatchResult;
 import Project.Contact;
+import Project.ContactPage;
+import Project.NameCursor;
 
 /**
  * Unit tests for the ContactService class.
@@ -54,6 +62,20 @@ class ContactServiceTest {
         assertEquals(address, contact.getAddress());
     }
 
+    /*
+     * Tests that a rejected add does not use up an ID.
+     */
+    @Test
+    void testRejectedAddKeepsID() {
+        ContactService contactService = new ContactService();
+        assertThrows(IllegalArgumentException.class,
+                () -> contactService.addContact("John", "Smith", "123", "123 Main Street"));
+        assertThrows(IllegalArgumentException.class,
+                () -> contactService.addContact(null, "Smith", "1234567891", "123 Main Street"));
+        
+        assertEquals("0", contactService.addContact("John", "Smith", "1234567891", "123 Main Street"));
+    }
+
     /*
 	 * Tests deleting a contact from the ContactService.
 	 */
@@ -419,4 +441,358 @@ class ContactServiceTest {
         
         assertNull(ContactService.contacts.get(id));
     }
+
+    /*
+     * Tests that concurrent adds never hand out the same ID twice.
+     */
+    @Test
+    void testConcurrentAddUniqueIDs() throws Exception {
+        int threadCount = 8;
+        int addsPerThread = 1000;
+        ContactService contactService = new ContactService();
+        List<Thread> threads = new ArrayList<>();
+        
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < addsPerThread; j++) {
+                    contactService.addContact("John", "Smith", "1234567891", "123 Main Street");
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertEquals(threadCount * addsPerThread, ContactService.contacts.size());
+        for (int id = 0; id < threadCount * addsPerThread; id++) {
+            assertNotNull(ContactService.contacts.get(Integer.toString(id)));
+        }
+    }
+
+    /*
+     * Tests a batch insert with good and bad rows.
+     */
+    @Test
+    void testAddContactsBatch() {
+        ContactService contactService = new ContactService();
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[] {"John", "Smith", "1234567891", "123 Main Street"});
+        rows.add(new String[] {"Mark", "Hall", "123", "123 Holly Street"});
+        rows.add(new String[] {"Greg", "Tippton", "9876543210", "1 Elm Street"});
+        rows.add(new String[] {"Too", "Few"});
+        
+        BatchResult result = contactService.addContacts(rows);
+        
+        assertEquals(4, result.getRowCount());
+        assertEquals(2, result.getAddedCount());
+        assertEquals(2, result.getErrorCount());
+        assertEquals(1, result.getErrorRow(0));
+        assertTrue(result.getErrorMessage(0).startsWith("Phone number"));
+        assertEquals(3, result.getErrorRow(1));
+        assertEquals(0, result.getID(0));
+        assertEquals(-1, result.getID(1));
+        assertEquals(2, result.getID(2));
+        assertEquals("Greg", ContactService.contacts.get("2").getFirstName());
+        assertNull(ContactService.contacts.get("1"));
+        
+        contactService.addContact("Next", "Contact", "1234567891", "123 Main Street");
+        assertNotNull(ContactService.contacts.get("4"));
+    }
+
+    /*
+     * Tests caller-ID lookup through the phone index, across edits and deletes.
+     */
+    @Test
+    void testFindByPhone() {
+        ContactService contactService = new ContactService();
+        contactService.addContact("John", "Smith", "1234567891", "123 Main Street");
+        contactService.addContact("Jane", "Smith", "1234567891", "123 Main Street");
+        contactService.addContact("Greg", "Tippton", "555CALLNOW", "1 Elm Street");
+        
+        assertEquals("0", contactService.findByPhone("1234567891"));
+        assertEquals("2", contactService.findByPhone("555CALLNOW"));
+        assertNull(contactService.findByPhone("0000000000"));
+        assertNull(contactService.findByPhone(null));
+        
+        contactService.deleteContact("0");
+        assertEquals("1", contactService.findByPhone("1234567891"));
+        
+        contactService.editPhone("1", "0987654321");
+        assertNull(contactService.findByPhone("1234567891"));
+        assertEquals("1", contactService.findByPhone("0987654321"));
+    }
+
+    /*
+     * Tests exact name lookup, ignoring case.
+     */
+    @Test
+    void testFindByName() {
+        ContactService contactService = new ContactService();
+        contactService.addContact("John", "Smith", "1234567891", "123 Main Street");
+        contactService.addContact("Jane", "smith", "1234567891", "123 Main Street");
+        contactService.addContact("John", "Smithers", "1234567891", "123 Main Street");
+        
+        List<String> smiths = new ArrayList<>(contactService.findByLastName("SMITH"));
+        smiths.sort(null);
+        assertEquals(List.of("0", "1"), smiths);
+        List<String> johns = new ArrayList<>(contactService.findByFirstName("john"));
+        johns.sort(null);
+        assertEquals(List.of("0", "2"), johns);
+        assertTrue(contactService.findByLastName("Smit").isEmpty());
+        assertTrue(contactService.findByLastName(null).isEmpty());
+    }
+    
+    /*
+     * Tests prefix search order and limit.
+     */
+    @Test
+    void testSearchPrefix() {
+        ContactService contactService = new ContactService();
+        contactService.addContact("John", "Smithers", "1234567891", "123 Main Street");
+        contactService.addContact("Jane", "Smith", "1234567891", "123 Main Street");
+        contactService.addContact("Greg", "Smyth", "1234567891", "123 Main Street");
+        contactService.addContact("Mark", "Hall", "1234567891", "123 Main Street");
+        
+        assertEquals(List.of("1", "0", "2"), contactService.searchLastName("sm", 10));
+        assertEquals(List.of("1", "0"), contactService.searchLastName("Sm", 2));
+        assertEquals(List.of("3"), contactService.searchLastName("h", 10));
+        assertEquals(4, contactService.searchLastName("", 10).size());
+        assertThrows(IllegalArgumentException.class, () -> contactService.searchFirstName("J", 0));
+    }
+    
+    /*
+     * Tests that the name indexes follow edits and deletes.
+     */
+    @Test
+    void testNameIndexFollowsEdits() {
+        ContactService contactService = new ContactService();
+        contactService.addContact("John", "Smith", "1234567891", "123 Main Street");
+        contactService.addContact("Jane", "Doe", "1234567891", "123 Main Street");
+        
+        contactService.editLastName("0", "Jones");
+        contactService.editFirstName("1", "Janet");
+        
+        assertTrue(contactService.findByLastName("Smith").isEmpty());
+        assertEquals(List.of("0"), contactService.findByLastName("Jones"));
+        assertEquals(List.of("1"), contactService.searchFirstName("janet", 10));
+        
+        contactService.deleteContact("0");
+        assertTrue(contactService.searchLastName("Jo", 10).isEmpty());
+        assertEquals(List.of("1"), contactService.searchLastName("D", 10));
+    }
+    
+    /*
+     * Tests paging through contacts in name order, with inserts between pages.
+     */
+    @Test
+    void testListByName() {
+        ContactService contactService = new ContactService();
+        contactService.addContact("John", "Smith", "1234567891", "123 Main Street");
+        contactService.addContact("Adam", "smith", "1234567891", "123 Main Street");
+        contactService.addContact("Greg", "Abbott", "1234567891", "123 Main Street");
+        contactService.addContact("Mark", "Young", "1234567891", "123 Main Street");
+        
+        ContactPage first = contactService.listByName(null, 2);
+        assertEquals(List.of("2", "1"), ids(first));
+        assertNotNull(first.getNext());
+        
+        // Added before the cursor, so it does not shift the next page
+        contactService.addContact("Zoe", "Adams", "1234567891", "123 Main Street");
+        ContactPage second = contactService.listByName(first.getNext(), 2);
+        assertEquals(List.of("0", "3"), ids(second));
+        assertNull(second.getNext());
+        
+        // Added after the end, so it turns up after the last contact seen
+        contactService.addContact("Ann", "Zimmer", "1234567891", "123 Main Street");
+        NameCursor end = NameCursor.of(second.getContacts().get(1));
+        assertEquals(List.of("5"), ids(contactService.listByName(end, 2)));
+        
+        assertEquals(List.of("2", "4", "1", "0", "3", "5"), ids(contactService.listByName(null, 10)));
+        assertThrows(IllegalArgumentException.class, () -> contactService.listByName(null, 0));
+    }
+    
+    /*
+     * Tests that the sorted view follows edits and deletes.
+     */
+    @Test
+    void testListByNameFollowsEdits() {
+        ContactService contactService = new ContactService();
+        contactService.addContact("John", "Smith", "1234567891", "123 Main Street");
+        contactService.addContact("Jane", "Doe", "1234567891", "123 Main Street");
+        contactService.addContact("Greg", "Brown", "1234567891", "123 Main Street");
+        
+        contactService.editLastName("0", "Adams");
+        contactService.editFirstName("2", "Abe");
+        contactService.deleteContact("1");
+        
+        assertEquals(List.of("0", "2"), ids(contactService.listByName(null, 10)));
+        
+        ContactPage page = contactService.listByName(new NameCursor("Adams", "John", "0"), 10);
+        assertEquals(List.of("2"), ids(page));
+        assertEquals("Abe", page.getContacts().get(0).getFirstName());
+    }
+    
+    private static List<String> ids(ContactPage page) {
+        List<String> ids = new ArrayList<>();
+        for (Contact contact : page.getContacts()) {
+            ids.add(contact.getContactID());
+        }
+        return ids;
+    }
+    
+    /*
+     * Tests that an edit replaces the contact and a rejected edit changes nothing.
+     */
+    @Test
+    void testEditPublishesCopy() {
+        ContactService contactService = new ContactService();
+        contactService.addContact("John", "Smith", "1234567891", "123 Main Street");
+        Contact before = contactService.getContact("0");
+        
+        contactService.editPhone("0", "0987654321");
+        assertEquals("1234567891", before.getPhone());
+        assertEquals("0987654321", contactService.getContact("0").getPhone());
+        
+        Contact edited = contactService.getContact("0");
+        assertThrows(IllegalArgumentException.class, () -> contactService.editLastName("0", null));
+        assertSame(edited, contactService.getContact("0"));
+        assertEquals(List.of("0"), contactService.findByLastName("Smith"));
+        
+        // Published contacts only change through the service
+        assertThrows(IllegalStateException.class, () -> edited.setLastName("Jones"));
+        assertThrows(IllegalStateException.class, () -> edited.setPhone("5555555555"));
+        assertEquals(List.of("0"), contactService.findByLastName("Smith"));
+    }
+    
+    /*
+     * Tests that updateContact applies every field only at the version read.
+     */
+    @Test
+    void testUpdateContactVersion() {
+        ContactService contactService = new ContactService();
+        contactService.addContact("John", "Smith", "1234567891", "123 Main Street");
+        long read = contactService.getContact("0").getVersion();
+        
+        contactService.editAddress("0", "9 Oak Street");
+        assertFalse(contactService.updateContact("0", read, "Jane", "Doe", "0987654321", "Stale"));
+        assertEquals("John", contactService.getContact("0").getFirstName());
+        
+        long current = contactService.getContact("0").getVersion();
+        assertEquals(read + 1, current);
+        assertThrows(IllegalArgumentException.class,
+                () -> contactService.updateContact("0", current, "Jane", "Doe", "123", "1 Elm Street"));
+        assertEquals("John", contactService.getContact("0").getFirstName());
+        
+        assertTrue(contactService.updateContact("0", current, "Jane", "Doe", "0987654321", "1 Elm Street"));
+        Contact updated = contactService.getContact("0");
+        assertEquals("Jane", updated.getFirstName());
+        assertEquals("1 Elm Street", updated.getAddress());
+        assertEquals(List.of("0"), contactService.findByLastName("Doe"));
+        assertTrue(contactService.findByLastName("Smith").isEmpty());
+        assertEquals("0", contactService.findByPhone("0987654321"));
+        assertFalse(contactService.updateContact("9", 0, "Jane", "Doe", "0987654321", "1 Elm Street"));
+    }
+    
+    /*
+     * Tests single-writer mode for single, batch and versioned changes.
+     */
+    @Test
+    void testSingleWriterMode() throws InterruptedException {
+        ContactService contactService = new ContactService();
+        contactService.startWriter(8);
+        
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 250; i++) {
+                    contactService.addContact("John", "Smith", "1234567891", "123 Main Street");
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1000, ContactService.contacts.size());
+        
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[] {"Jane", "Doe", "0987654321", "1 Elm Street"});
+        rows.add(new String[] {"Bad", "Row", "123", "1 Elm Street"});
+        assertEquals(1, contactService.addContacts(rows).getAddedCount());
+        
+        contactService.editLastName("0", "Jones");
+        assertFalse(contactService.updateContact("0", 0, "Jane", "Doe", "0987654321", "1 Elm Street"));
+        assertTrue(contactService.updateContact("0", 1, "Jane", "Doe", "0987654321", "1 Elm Street"));
+        contactService.deleteContact("1");
+        contactService.stopWriter();
+        
+        assertEquals("Jane", contactService.getContact("0").getFirstName());
+        assertNull(contactService.getContact("1"));
+        assertEquals(1000, ContactService.contacts.size());
+    }
+    
+    /*
+     * Tests the async changes through the single writer: the adds share
+     * batches, each gets its own ID, and errors fail the future.
+     */
+    @Test
+    void testAsyncChanges() {
+        ContactService contactService = new ContactService();
+        contactService.startWriter(64);
+        List<CompletableFuture<String>> adds = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            adds.add(contactService.addContactAsync("John", "Smith", "1234567891", "123 Main Street"));
+        }
+        for (CompletableFuture<String> add : adds) {
+            assertNotNull(contactService.getContact(add.join()));
+        }
+        assertEquals(500, ContactService.contacts.size());
+        
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> contactService.addContactAsync("John", "Smith", "123", "123 Main Street").join());
+        assertTrue(failure.getCause() instanceof IllegalArgumentException);
+        assertThrows(CompletionException.class, () -> contactService.editPhoneAsync("0", "abc").join());
+        
+        contactService.editFirstNameAsync("0", "Jane").join();
+        contactService.editLastNameAsync("0", "Doe").join();
+        contactService.editPhoneAsync("0", "0987654321").join();
+        contactService.editAddressAsync("0", "1 Elm Street").join();
+        assertEquals("0", contactService.findByPhone("0987654321"));
+        assertFalse(contactService.updateContactAsync("0", 0, "Jo", "Doe", "0987654321", "1 Elm Street").join());
+        assertTrue(contactService.updateContactAsync("0", 4, "Jo", "Doe", "0987654321", "1 Elm Street").join());
+        
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[] {"Jane", "Doe", "0987654321", "1 Elm Street"});
+        assertEquals(1, contactService.addContactsAsync(rows).join().getAddedCount());
+        contactService.deleteContactAsync("1").join();
+        contactService.stopWriter();
+        
+        assertEquals("Jo", contactService.getContact("0").getFirstName());
+        assertNull(contactService.getContact("1"));
+        assertEquals(500, ContactService.contacts.size());
+    }
+    
+    /*
+     * Tests streaming contacts in name order, matching the paged list.
+     */
+    @Test
+    void testStreamContacts() throws InterruptedException {
+        ContactService contactService = new ContactService();
+        String[] lastNames = {"Smith", "Adams", "jones", "Brown", "Adams", "Zane", "Clark"};
+        for (String lastName : lastNames) {
+            contactService.addContact("John", lastName, "1234567891", "123 Main Street");
+        }
+        contactService.deleteContact("3");
+        
+        CollectingSubscriber<Contact> subscriber = new CollectingSubscriber<>(2);
+        contactService.streamContacts().subscribe(subscriber);
+        List<Contact> streamed = subscriber.await();
+        assertTrue(subscriber.completed);
+        assertEquals(contactService.listByName(null, 100).getContacts(), streamed);
+        assertEquals(6, streamed.size());
+        assertEquals("Adams", streamed.get(0).getLastName());
+        assertEquals("Zane", streamed.get(5).getLastName());
+    }
 }
\ No newline at end of file
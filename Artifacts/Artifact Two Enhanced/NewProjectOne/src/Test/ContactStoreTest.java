@@ -0,0 +1,233 @@
+package Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import Project.BatchResult;
+import Project.Contact;
+import Project.ContactService;
+import Project.ContactStore;
+import Project.ValidationError;
+
+/**
+ * Unit tests for the ContactStore class.
+ * Tests adding, reading, editing through views, deletion, row reuse and growth.
+ *
+ * @author Stewart Withrow
+ */
+class ContactStoreTest {
+
+    /*
+     * Tests that an added contact reads back through a fresh view.
+     */
+    @Test
+    void testAddGet() {
+        ContactStore store = new ContactStore();
+        store.add("1", "Bob", "Smith", "1234567890", "123 Maple Street");
+
+        Contact contact = store.get("1");
+        assertEquals("1", contact.getContactID());
+        assertEquals("Bob", contact.getFirstName());
+        assertEquals("Smith", contact.getLastName());
+        assertEquals("1234567890", contact.getPhone());
+        assertEquals("123 Maple Street", contact.getAddress());
+        assertEquals(1, store.size());
+        assertNull(store.get("2"));
+        assertNull(store.get(null));
+    }
+
+    /*
+     * Tests that setters on a view write through to the store.
+     */
+    @Test
+    void testEditThroughView() {
+        ContactStore store = new ContactStore();
+        Contact view = store.add("1", "Bob", "Smith", "1234567890", "123 Maple Street");
+        view.setFirstName("Robert");
+        view.setAddress("1 Oak Road");
+
+        assertEquals("Robert", store.get("1").getFirstName());
+        assertEquals("1 Oak Road", store.get("1").getAddress());
+    }
+
+    /*
+     * Tests that invalid fields are rejected with the Contact messages.
+     */
+    @Test
+    void testInvalidFields() {
+        ContactStore store = new ContactStore();
+        Exception e = assertThrows(IllegalArgumentException.class, () -> {
+            store.add("1", "Bobbybobbybob", "Smith", "1234567890", "123 Maple Street");
+        });
+        assertEquals(Contact.errorMessage(Contact.FIELD_FIRST_NAME, ValidationError.TOO_LONG), e.getMessage());
+
+        Contact view = store.add("1", "Bob", "Smith", "1234567890", "123 Maple Street");
+        assertThrows(IllegalArgumentException.class, () -> {
+            view.setPhone("12345");
+        });
+        assertEquals("1234567890", view.getPhone());
+        assertEquals(1, store.size());
+    }
+
+    /*
+     * Tests that text outside Latin-1 is rejected.
+     */
+    @Test
+    void testNonLatin1Rejected() {
+        ContactStore store = new ContactStore();
+        assertThrows(IllegalArgumentException.class, () -> {
+            store.add("1", "Āna", "Smith", "1234567890", "123 Maple Street");
+        });
+
+        Contact view = store.add("1", "Zöe", "Smith", "1234567890", "123 Maple Street");
+        assertEquals("Zöe", view.getFirstName());
+    }
+
+    /*
+     * Tests that duplicate IDs are rejected by add and replaced by put.
+     */
+    @Test
+    void testDuplicateID() {
+        ContactStore store = new ContactStore();
+        store.add("1", "Bob", "Smith", "1234567890", "123 Maple Street");
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            store.add("1", "Jane", "Doe", "0987654321", "456 Elm Street");
+        });
+
+        store.put(new Contact("1", "Jane", "Doe", "0987654321", "456 Elm Street"));
+        assertEquals("Jane", store.get("1").getFirstName());
+        assertEquals(1, store.size());
+    }
+
+    /*
+     * Tests that a view of a deleted contact throws, even after its row is reused.
+     */
+    @Test
+    void testRemoveInvalidatesView() {
+        ContactStore store = new ContactStore();
+        Contact view = store.add("1", "Bob", "Smith", "1234567890", "123 Maple Street");
+
+        assertTrue(store.remove("1"));
+        assertFalse(store.remove("1"));
+        assertNull(store.get("1"));
+        assertEquals(0, store.size());
+        assertThrows(IllegalStateException.class, view::getFirstName);
+
+        store.add("2", "Jane", "Doe", "0987654321", "456 Elm Street");
+        assertThrows(IllegalStateException.class, view::getFirstName);
+        assertThrows(IllegalStateException.class, () -> view.setLastName("Jones"));
+        assertEquals("Doe", store.get("2").getLastName());
+    }
+
+    /*
+     * Tests growth past one page and many removals.
+     */
+    @Test
+    void testManyRows() {
+        ContactStore store = new ContactStore();
+        for (int i = 0; i < 100000; i++) {
+            store.add(Integer.toString(i), "First", "Last", "1234567890", "Address " + i);
+        }
+        for (int i = 0; i < 100000; i += 2) {
+            assertTrue(store.remove(Integer.toString(i)));
+        }
+
+        assertEquals(50000, store.size());
+        assertNull(store.get("99998"));
+        assertEquals("Address 99999", store.get("99999").getAddress());
+        assertEquals("Address 1", store.get("1").getAddress());
+    }
+
+    /*
+     * Tests that forEach visits every stored contact.
+     */
+    @Test
+    void testForEach() {
+        ContactStore store = new ContactStore();
+        store.add("1", "Bob", "Smith", "1234567890", "123 Maple Street");
+        store.add("2", "Jane", "Doe", "0987654321", "456 Elm Street");
+        store.add("3", "Ann", "Lee", "5555555555", "789 Pine Street");
+        store.remove("2");
+
+        List<String> seen = new ArrayList<>();
+        store.forEach(contact -> seen.add(contact.getContactID()));
+        assertEquals(List.of("1", "3"), seen);
+
+        store.clear();
+        assertEquals(0, store.size());
+        assertNull(store.get("1"));
+    }
+
+    /*
+     * Tests that row versions count edits and guard ContactService updates.
+     */
+    @Test
+    void testVersions() {
+        ContactStore store = new ContactStore();
+        ContactService service = new ContactService(store);
+        service.addContact("John", "Smith", "1234567891", "123 Main Street");
+        assertEquals(0, store.get("0").getVersion());
+
+        service.editFirstName("0", "Johnny");
+        assertEquals(1, store.get("0").getVersion());
+        assertFalse(service.updateContact("0", 0, "Jane", "Doe", "0987654321", "1 Elm Street"));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.updateContact("0", 1, "J\u0101ne", "Doe", "0987654321", "1 Elm Street"));
+        assertEquals("Johnny", store.get("0").getFirstName());
+
+        assertTrue(service.updateContact("0", 1, "Jane", "Doe", "0987654321", "1 Elm Street"));
+        assertEquals("Jane", store.get("0").getFirstName());
+        assertEquals(2, store.get("0").getVersion());
+
+        store.remove("0");
+        store.add("0", "Ann", "Lee", "5555555555", "789 Pine Street");
+        assertEquals(0, store.get("0").getVersion());
+    }
+
+    /*
+     * Tests that a batch row the store cannot hold is reported, not thrown.
+     */
+    @Test
+    void testBatchReportsNonLatin1Rows() {
+        ContactStore store = new ContactStore();
+        ContactService service = new ContactService(store);
+        List<String[]> rows = new ArrayList<String[]>();
+        rows.add(new String[] {"Ann", "Lee", "1234567890", "1 Elm Street"});
+        rows.add(new String[] {"Zo\u0107", "Lee", "0987654321", "2 Elm Street"});
+        
+        BatchResult result = service.addContacts(rows);
+        assertEquals(1, result.getAddedCount());
+        assertEquals(1, result.getErrorRow(0));
+        assertEquals("Contact fields must be Latin-1 text.", result.getErrorMessage(0));
+        assertEquals("Ann", store.get("0").getFirstName());
+        assertNull(store.get("1"));
+    }
+
+    /*
+     * Tests that ContactService hands out frozen copies of store rows, so
+     * later edits and deletes do not show through and setters throw.
+     */
+    @Test
+    void testServiceHandsOutSnapshots() {
+        ContactStore store = new ContactStore();
+        ContactService service = new ContactService(store);
+        service.addContact("John", "Smith", "1234567891", "123 Main Street");
+        Contact before = service.getContact("0");
+
+        service.updateContact("0", 0, "Jane", "Doe", "0987654321", "1 Elm Street");
+        assertEquals("John", before.getFirstName());
+        assertEquals("Smith", before.getLastName());
+        assertEquals(0, before.getVersion());
+        assertEquals("Doe", service.getContact("0").getLastName());
+        assertThrows(IllegalStateException.class, () -> before.setFirstName("Sneaky"));
+
+        store.remove("0");
+        assertEquals("1234567891", before.getPhone());
+        assertNull(service.getContact("0"));
+    }
+}
\ No newline at end of file
@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import Project.Contact;
+import Project.ValidationError;
 
 /**
  * Unit tests for the Contact class.
@@ -398,4 +399,46 @@ class ContactTest {
         assertTrue(exception.getMessage().contains("illegal characters"));
     }
 
-}
\ No newline at end of file
+    /*
+     * Tests the non-throwing field checks.
+     */
+    @Test
+    void testCheckFields() {
+        Assertions.assertEquals(0, Contact.checkFields("1", "John", "Smith", "1234567891", "123 Main Street"));
+        Assertions.assertEquals(Contact.FIELD_FIRST_NAME | Contact.FIELD_PHONE, 
+                Contact.checkFields("1", "Bad<Name>", "Smith", "123", "123 Main Street"));
+        Assertions.assertEquals(ValidationError.MISSING, Contact.checkLastName(""));
+        Assertions.assertEquals(ValidationError.TOO_LONG, Contact.checkAddress("1234567890123456789012345678901"));
+        Assertions.assertEquals(ValidationError.WRONG_LENGTH, Contact.checkPhone(null));
+        Assertions.assertNull(Contact.checkContactID("1"));
+    }
+
+    /*
+     * Tests that the throwing path reports the same message as errorMessage.
+     */
+    @Test
+    void testErrorMessageMatchesException() {
+        Exception exception = Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new Contact("1", "Bad<Name>", "Smith", "1234567891", "123 Main Street");
+        });
+        Assertions.assertEquals(Contact.errorMessage(Contact.FIELD_FIRST_NAME, ValidationError.ILLEGAL_CHARACTERS), 
+                exception.getMessage());
+    }
+
+    /*
+     * Tests that all-digit phones are packed and read back with leading zeros.
+     */
+    @Test
+    void testPackedPhone() {
+        Contact contact = new Contact("1", "John", "Smith", "0012345678", "123 Main Street");
+        Assertions.assertEquals(12345678L, contact.getPhoneDigits());
+        Assertions.assertEquals("0012345678", contact.getPhone());
+        
+        contact.setPhone("555CALLNOW");
+        Assertions.assertEquals(Contact.NOT_DIGITS, contact.getPhoneDigits());
+        Assertions.assertEquals("555CALLNOW", contact.getPhone());
+        Assertions.assertEquals(Contact.NOT_DIGITS, Contact.packPhone("12345"));
+        Assertions.assertEquals("9999999999", Contact.unpackPhone(Contact.packPhone("9999999999")));
+    }
+
+}
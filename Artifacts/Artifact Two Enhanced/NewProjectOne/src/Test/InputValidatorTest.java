@@ -0,0 +1,54 @@
+package Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import Project.InputValidator;
+
+/**
+ * Unit tests for the InputValidator class.
+ * Tests every illegal character and the characters around them.
+ * 
+ * @author Stewart Withrow
+ */
+class InputValidatorTest {
+
+    /*
+     * Tests that each injection character is detected anywhere in the input.
+     */
+    @Test
+    void testIllegalCharacters() {
+        String[] patterns = {"<", ">", "'", "\"", "%", ";", "(", ")", "&", "+"};
+        for (String pattern : patterns) {
+            assertTrue(InputValidator.containsIllegalCharacters(pattern));
+            assertTrue(InputValidator.containsIllegalCharacters("Valid" + pattern));
+            assertTrue(InputValidator.containsIllegalCharacters(pattern + "Valid"));
+        }
+    }
+
+    /*
+     * Tests that every other character matches the old regex result.
+     */
+    @Test
+    void testMatchesRegex() {
+        java.util.regex.Pattern regex = java.util.regex.Pattern.compile("[<>\"'%;()&+]");
+        for (char c = 0; c < 1024; c++) {
+            String input = "a" + c + "b";
+            assertEquals(regex.matcher(input).find(), InputValidator.containsIllegalCharacters(input));
+        }
+    }
+
+    /*
+     * Tests the throwing wrapper.
+     */
+    @Test
+    void testValidateNoInjection() {
+        assertDoesNotThrow(() -> InputValidator.validateNoInjection("123 Main Street", "Address"));
+        assertDoesNotThrow(() -> InputValidator.validateNoInjection(null, "Address"));
+        IllegalArgumentException exception = Assertions.assertThrows(IllegalArgumentException.class, () ->
+            InputValidator.validateNoInjection("1 & 2", "Address"));
+        assertEquals("Address contains illegal characters.", exception.getMessage());
+    }
+}
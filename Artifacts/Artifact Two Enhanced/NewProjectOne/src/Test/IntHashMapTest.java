@@ -0,0 +1,167 @@
+package Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import Project.IntHashMap;
+
+/**
+ * Unit tests for the IntHashMap class.
+ * Tests put, get, remove, growth and the String key shim.
+ * 
+ * @author Stewart Withrow
+ */
+class IntHashMapTest {
+
+    /*
+     * Tests storing and reading back a value.
+     */
+    @Test
+    void testPutGet() {
+        IntHashMap<String> map = new IntHashMap<>();
+        
+        assertNull(map.put(7, "seven"));
+        assertEquals("seven", map.get(7));
+        assertTrue(map.containsKey(7));
+        assertFalse(map.containsKey(8));
+        assertEquals(1, map.size());
+    }
+
+    /*
+     * Tests that putting an existing key replaces the value.
+     */
+    @Test
+    void testPutReplace() {
+        IntHashMap<String> map = new IntHashMap<>();
+        map.put(1, "one");
+        
+        assertEquals("one", map.put(1, "uno"));
+        assertEquals("uno", map.get(1));
+        assertEquals(1, map.size());
+    }
+
+    /*
+     * Tests removing keys, including removing an absent key.
+     */
+    @Test
+    void testRemove() {
+        IntHashMap<String> map = new IntHashMap<>();
+        map.put(1, "one");
+        map.put(2, "two");
+        
+        assertEquals("one", map.remove(1));
+        assertNull(map.remove(1));
+        assertNull(map.get(1));
+        assertEquals("two", map.get(2));
+        assertEquals(1, map.size());
+    }
+
+    /*
+     * Tests growth and tombstone cleanup across many inserts and removes.
+     */
+    @Test
+    void testManyEntries() {
+        IntHashMap<Integer> map = new IntHashMap<>();
+        int count = 100_000;
+        
+        for (int i = 0; i < count; i++) {
+            map.put(i, i);
+        }
+        for (int i = 0; i < count; i += 2) {
+            map.remove(i);
+        }
+        for (int i = 0; i < count; i++) {
+            map.put(count + i, i);
+        }
+        
+        assertEquals(count + count / 2, map.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i % 2 == 0 ? null : Integer.valueOf(i), map.get(i));
+            assertEquals(Integer.valueOf(i), map.get(count + i));
+        }
+    }
+
+    /*
+     * Tests the String key compatibility shim.
+     */
+    @Test
+    void testStringKeys() {
+        IntHashMap<String> map = new IntHashMap<>();
+        map.put(42, "answer");
+        
+        assertEquals("answer", map.get("42"));
+        assertTrue(map.containsKey("42"));
+        assertNull(map.get("abc"));
+        assertNull(map.get("-42"));
+        assertNull(map.get(null));
+        assertEquals("answer", map.remove("42"));
+        assertTrue(map.isEmpty());
+    }
+
+    /*
+     * Tests parsing of String keys.
+     */
+    @Test
+    void testParseKey() {
+        assertEquals(0, IntHashMap.parseKey("0"));
+        assertEquals(Integer.MAX_VALUE, IntHashMap.parseKey("2147483647"));
+        assertEquals(-1, IntHashMap.parseKey("2147483648"));
+        assertEquals(-1, IntHashMap.parseKey(""));
+        assertEquals(-1, IntHashMap.parseKey("1a"));
+    }
+
+    /*
+     * Tests visiting every entry and clearing the map.
+     */
+    @Test
+    void testForEachAndClear() {
+        IntHashMap<Integer> map = new IntHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i * 2);
+        }
+        map.remove(50);
+        
+        long[] sum = new long[1];
+        map.forEach((key, value) -> {
+            assertEquals(key * 2, value.intValue());
+            sum[0] += key;
+        });
+        
+        assertEquals(4950 - 50, sum[0]);
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+    }
+    
+    /*
+     * Tests that a reader running alongside the writer always finds stable keys.
+     */
+    @Test
+    void testConcurrentReader() throws Exception {
+        IntHashMap<Integer> map = new IntHashMap<>();
+        int stable = 1000;
+        for (int i = 0; i < stable; i++) {
+            map.put(i, i);
+        }
+        
+        boolean[] missed = new boolean[1];
+        Thread reader = new Thread(() -> {
+            for (int round = 0; round < 200; round++) {
+                for (int i = 0; i < stable; i++) {
+                    if (map.get(i) == null) {
+                        missed[0] = true;
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int i = stable; i < 200_000; i++) {
+            map.put(i, i);
+            map.remove(i - 1 > stable ? i - 1 : stable);
+        }
+        reader.join();
+        
+        assertFalse(missed[0]);
+    }
+}
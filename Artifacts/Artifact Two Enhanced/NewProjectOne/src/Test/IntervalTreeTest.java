@@ -0,0 +1,107 @@
+package Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import Project.IntervalTree;
+
+/**
+ * Unit tests for the IntervalTree class.
+ * Tests overlap lookup, removal and agreement with a brute-force scan.
+ * 
+ * @author Stewart Withrow
+ */
+class IntervalTreeTest {
+
+    /*
+     * Tests overlap detection on half-open intervals.
+     */
+    @Test
+    void testFindOverlap() {
+        IntervalTree<String> tree = new IntervalTree<>();
+        tree.insert(10, 20, 1, "a");
+        tree.insert(30, 40, 2, "b");
+        
+        assertEquals("a", tree.findOverlap(15, 16).getValue());
+        assertEquals("b", tree.findOverlap(35, 50).getValue());
+        assertNull(tree.findOverlap(20, 30));
+        assertNull(tree.findOverlap(0, 10));
+        assertNull(tree.findOverlap(40, 45));
+        assertNotNull(tree.findOverlap(0, 100));
+    }
+
+    /*
+     * Tests removing intervals by start and ID.
+     */
+    @Test
+    void testRemove() {
+        IntervalTree<String> tree = new IntervalTree<>();
+        tree.insert(10, 20, 1, "a");
+        tree.insert(10, 20, 2, "b");
+        
+        assertTrue(tree.remove(10, 1));
+        assertFalse(tree.remove(10, 1));
+        assertEquals(1, tree.size());
+        assertEquals("b", tree.findOverlap(10, 11).getValue());
+        assertTrue(tree.remove(10, 2));
+        assertNull(tree.findOverlap(0, 100));
+    }
+
+    /*
+     * Tests that an empty interval is rejected.
+     */
+    @Test
+    void testInsertEmpty() {
+        IntervalTree<String> tree = new IntervalTree<>();
+        
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            tree.insert(10, 10, 1, "a");
+        });
+    }
+
+    /*
+     * Tests random inserts, removes and queries against a brute-force scan.
+     */
+    @Test
+    void testMatchesBruteForce() {
+        IntervalTree<Integer> tree = new IntervalTree<>();
+        Random random = new Random(42);
+        int count = 2000;
+        long[] starts = new long[count];
+        long[] ends = new long[count];
+        boolean[] live = new boolean[count];
+        
+        for (int i = 0; i < count; i++) {
+            starts[i] = random.nextInt(100_000);
+            ends[i] = starts[i] + 1 + random.nextInt(500);
+            tree.insert(starts[i], ends[i], i, i);
+            live[i] = true;
+        }
+        for (int i = 0; i < count; i += 3) {
+            tree.remove(starts[i], i);
+            live[i] = false;
+        }
+        
+        for (int q = 0; q < 5000; q++) {
+            long start = random.nextInt(100_000);
+            long end = start + 1 + random.nextInt(200);
+            boolean expected = false;
+            for (int i = 0; i < count; i++) {
+                if (live[i] && starts[i] < end && start < ends[i]) {
+                    expected = true;
+                    break;
+                }
+            }
+            IntervalTree.Interval<Integer> found = tree.findOverlap(start, end);
+            assertEquals(expected, found != null);
+            if (found != null) {
+                assertTrue(live[found.getValue()]);
+                assertTrue(found.getStart() < end && start < found.getEnd());
+            }
+        }
+    }
+}
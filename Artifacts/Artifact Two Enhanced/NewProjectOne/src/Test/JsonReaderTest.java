@@ -0,0 +1,65 @@
+package Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import Server.JsonReader;
+
+/**
+ * Unit tests for the JsonReader class.
+ * Tests each kind of value, escapes and the ways a body can be malformed.
+ *
+ * @author Stewart Withrow
+ */
+class JsonReaderTest {
+
+    /*
+     * Tests reading every supported kind of value.
+     */
+    @Test
+    void testValues() {
+        Map<String, Object> members = read(" { \"s\" : \"text\", \"n\":-42, \"big\":9223372036854775807,"
+                + "\"min\":-9223372036854775808, \"t\":true, \"f\":false, \"z\":null } ");
+        assertEquals("text", members.get("s"));
+        assertEquals(-42L, members.get("n"));
+        assertEquals(Long.MAX_VALUE, members.get("big"));
+        assertEquals(Long.MIN_VALUE, members.get("min"));
+        assertEquals(Boolean.TRUE, members.get("t"));
+        assertEquals(Boolean.FALSE, members.get("f"));
+        assertTrue(members.containsKey("z"));
+        assertNull(members.get("z"));
+        assertTrue(read("{}").isEmpty());
+    }
+
+    /*
+     * Tests escapes and multi-byte characters in strings.
+     */
+    @Test
+    void testStrings() {
+        Map<String, Object> members = read("{\"a\":\"x\\\"y\\\\z\\/\\n\\u00e9 é € \uD83D\uDE00\"}");
+        assertEquals("x\"y\\z/\né é € \uD83D\uDE00", members.get("a"));
+    }
+
+    /*
+     * Tests that malformed bodies are rejected with the position of the problem.
+     */
+    @Test
+    void testMalformed() {
+        String[] bad = { "", "[]", "{", "{\"a\"}", "{\"a\":1,}", "{\"a\":01}", "{\"a\":1.5}", "{\"a\":1e3}",
+                "{\"a\":{}}", "{\"a\":[1]}", "{\"a\":tru}", "{\"a\":\"x\\q\"}", "{\"a\":\"\\u12\"}",
+                "{\"a\":9223372036854775808}", "{\"a\":1} x", "{\"a\":\"\n\"}", "{\"a\":-}" };
+        for (String text : bad) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> read(text), text);
+            assertTrue(e.getMessage().startsWith("Malformed JSON: "));
+        }
+    }
+
+    private static Map<String, Object> read(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return JsonReader.readObject(bytes, bytes.length);
+    }
+}
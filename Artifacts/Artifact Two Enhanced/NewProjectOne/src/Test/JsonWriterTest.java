@@ -0,0 +1,95 @@
+package Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import Server.JsonWriter;
+
+/**
+ * Unit tests for the JsonWriter class.
+ * Tests separators, number and string encoding, and streaming a buffer
+ * smaller than the output.
+ *
+ * @author Stewart Withrow
+ */
+class JsonWriterTest {
+
+    /*
+     * Tests that members and elements are separated by commas at every level.
+     */
+    @Test
+    void testNesting() throws IOException {
+        JsonWriter json = new JsonWriter(4);
+        json.beginObject()
+                .name("list").beginArray().value(1).value(true).value((String) null).endArray()
+                .name("empty").beginObject().endObject()
+                .name("last").value("x")
+                .endObject();
+        assertEquals("{\"list\":[1,true,null],\"empty\":{},\"last\":\"x\"}", text(json));
+    }
+
+    /*
+     * Tests whole numbers at the edges of the long range.
+     */
+    @Test
+    void testNumbers() throws IOException {
+        JsonWriter json = new JsonWriter(16);
+        json.beginArray().value(0).value(-7).value(Long.MAX_VALUE).value(Long.MIN_VALUE).endArray();
+        assertEquals("[0,-7," + Long.MAX_VALUE + "," + Long.MIN_VALUE + "]", text(json));
+    }
+
+    /*
+     * Tests escaping and UTF-8 encoding of strings.
+     */
+    @Test
+    void testStrings() throws IOException {
+        JsonWriter json = new JsonWriter(16);
+        json.value("a\"b\\c\n\u0001 é € \uD83D\uDE00 \uD800");
+        assertEquals("\"a\\\"b\\\\c\\n\\u0001 é € \uD83D\uDE00 \\ud800\"", text(json));
+    }
+
+    /*
+     * Tests that a streaming writer writes out its buffer as it fills and
+     * the rest on flush.
+     */
+    @Test
+    void testStreaming() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonWriter json = new JsonWriter(out, 16);
+        json.beginArray();
+        StringBuilder expected = new StringBuilder("[");
+        for (int i = 0; i < 100; i++) {
+            json.value("item" + i);
+            expected.append(i == 0 ? "" : ",").append("\"item").append(i).append('"');
+        }
+        json.endArray();
+        expected.append(']');
+        assertTrue(out.size() > 0);
+        assertTrue(json.size() <= 16);
+        json.flush();
+        assertEquals(expected.toString(), out.toString(StandardCharsets.UTF_8));
+        assertEquals(0, json.size());
+    }
+
+    /*
+     * Tests that closing without an open container is refused.
+     */
+    @Test
+    void testUnbalanced() throws IOException {
+        JsonWriter json = new JsonWriter(16);
+        assertThrows(IllegalStateException.class, () -> json.endObject());
+        json.beginObject().name("a");
+        assertThrows(IllegalStateException.class, () -> json.endObject());
+    }
+
+    private static String text(JsonWriter json) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        json.writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
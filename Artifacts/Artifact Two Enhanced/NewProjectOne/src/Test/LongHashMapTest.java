@@ -0,0 +1,66 @@
+package Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import Project.LongHashMap;
+
+/**
+ * Unit tests for the LongHashMap class.
+ * Tests put, get, remove and growth with keys past the int range.
+ *
+ * @author Stewart Withrow
+ */
+class LongHashMapTest {
+
+    /*
+     * Tests storing and reading back values under wide keys.
+     */
+    @Test
+    void testPutGet() {
+        LongHashMap<String> map = new LongHashMap<>();
+
+        assertNull(map.put(9_876_543_210L, "big"));
+        assertNull(map.put(-5L, "negative"));
+        assertEquals("big", map.get(9_876_543_210L));
+        assertEquals("negative", map.get(-5L));
+        assertNull(map.get(9_876_543_210L & 0xFFFFFFFFL));
+        assertEquals(2, map.size());
+    }
+
+    /*
+     * Tests replacing and removing keys.
+     */
+    @Test
+    void testReplaceRemove() {
+        LongHashMap<String> map = new LongHashMap<>();
+        map.put(1L, "one");
+
+        assertEquals("one", map.put(1L, "uno"));
+        assertEquals("uno", map.remove(1L));
+        assertNull(map.remove(1L));
+        assertTrue(map.isEmpty());
+    }
+
+    /*
+     * Tests growth with many phone-sized keys.
+     */
+    @Test
+    void testManyEntries() {
+        LongHashMap<Long> map = new LongHashMap<>();
+        for (long key = 5_550_000_000L; key < 5_550_010_000L; key++) {
+            map.put(key, key);
+        }
+        for (long key = 5_550_000_000L; key < 5_550_010_000L; key += 2) {
+            map.remove(key);
+        }
+
+        assertEquals(5000, map.size());
+        assertNull(map.get(5_550_000_000L));
+        assertEquals(Long.valueOf(5_550_009_999L), map.get(5_550_009_999L));
+        long[] sum = new long[1];
+        map.forEach((key, value) -> sum[0] += key - value);
+        assertEquals(0, sum[0]);
+    }
+}
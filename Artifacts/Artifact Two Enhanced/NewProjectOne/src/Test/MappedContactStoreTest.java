@@ -0,0 +1,213 @@
+package Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import Project.Contact;
+import Project.ContactService;
+import Project.MappedContactStore;
+import Project.MutationListener;
+
+/**
+ * Unit tests for the MappedContactStore class.
+ * Tests reads and edits through the mapping, reopening, growth and
+ * use as ContactService storage.
+ *
+ * @author Stewart Withrow
+ */
+class MappedContactStoreTest {
+
+	private Path directory;
+	private Path file;
+
+	/*
+	 * Creates an empty directory for the store file.
+	 */
+	@BeforeEach
+	void setUp() throws IOException {
+		directory = Files.createTempDirectory("contacts");
+		file = directory.resolve("contacts.db");
+	}
+
+	/*
+	 * Deletes the store directory.
+	 */
+	@AfterEach
+	void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	/*
+	 * Tests that an added contact reads back and edits write through.
+	 */
+	@Test
+	void testAddGetEdit() throws IOException {
+		try (MappedContactStore store = MappedContactStore.open(file)) {
+			store.add(new Contact("1", "Bob", "Smith", "1234567890", "123 Maple Street"));
+
+			Contact contact = store.get("1");
+			assertEquals("Bob", contact.getFirstName());
+			assertEquals("Smith", contact.getLastName());
+			assertEquals("1234567890", contact.getPhone());
+			assertEquals("123 Maple Street", contact.getAddress());
+
+			assertTrue(store.edit("1", c -> c.setLastName("Jones"), MutationListener.NONE));
+			assertFalse(store.edit("2", c -> c.setLastName("Jones"), MutationListener.NONE));
+			assertEquals("Jones", contact.getLastName());
+			assertNull(store.get("2"));
+			assertEquals(1, store.size());
+		}
+	}
+
+	/*
+	 * Tests that duplicate IDs and invalid fields are rejected.
+	 */
+	@Test
+	void testRejectsBadContacts() throws IOException {
+		try (MappedContactStore store = MappedContactStore.open(file)) {
+			Contact contact = new Contact("1", "Bob", "Smith", "1234567890", "123 Maple Street");
+			store.add(contact);
+
+			assertThrows(IllegalArgumentException.class, () -> store.add(contact));
+			assertThrows(IllegalArgumentException.class, () -> store.get("1").setPhone("123"));
+			assertEquals("1234567890", store.get("1").getPhone());
+		}
+	}
+
+	/*
+	 * Tests that a deleted contact's views throw and its ID is free again.
+	 */
+	@Test
+	void testRemove() throws IOException {
+		try (MappedContactStore store = MappedContactStore.open(file)) {
+			store.add(new Contact("1", "Bob", "Smith", "1234567890", "123 Maple Street"));
+			Contact view = store.get("1");
+
+			assertTrue(store.remove("1", MutationListener.NONE));
+			assertFalse(store.remove("1", MutationListener.NONE));
+			assertThrows(IllegalStateException.class, view::getFirstName);
+			assertEquals(0, store.size());
+
+			store.add(new Contact("1", "Jane", "Doe", "0987654321", "456 Elm Street"));
+			assertEquals("Jane", store.get("1").getFirstName());
+		}
+	}
+
+	/*
+	 * Tests that contacts and the next ID survive closing and reopening.
+	 */
+	@Test
+	void testReopen() throws IOException {
+		try (MappedContactStore store = MappedContactStore.open(file)) {
+			store.add(new Contact("1", "Bob", "Smith", "1234567890", "123 Maple Street"));
+			store.add(new Contact("7", "Jane", "Doe", "0987654321", "456 Elm Street"));
+			store.remove("1", MutationListener.NONE);
+		}
+
+		try (MappedContactStore store = MappedContactStore.open(file)) {
+			assertEquals(1, store.size());
+			assertNull(store.get("1"));
+			assertEquals("Doe", store.get("7").getLastName());
+			assertEquals(8, store.nextContactID());
+		}
+	}
+
+	/*
+	 * Tests that the table grows, keeping every contact, and reopens at its new size.
+	 */
+	@Test
+	void testGrowth() throws IOException {
+		try (MappedContactStore store = MappedContactStore.open(file)) {
+			for (int i = 0; i < 5000; i++) {
+				store.add(new Contact(Integer.toString(i), "First", "Last", "1234567890", "Address " + i));
+			}
+			assertEquals("Address 42", store.get("42").getAddress());
+		}
+
+		try (MappedContactStore store = MappedContactStore.open(file)) {
+			assertEquals(5000, store.size());
+			int[] count = new int[1];
+			store.forEach(contact -> count[0]++);
+			assertEquals(5000, count[0]);
+			assertEquals("Address 4999", store.get("4999").getAddress());
+		}
+	}
+
+	/*
+	 * Tests that a closed store rejects use, including through old views.
+	 */
+	@Test
+	void testClosed() throws IOException {
+		MappedContactStore store = MappedContactStore.open(file);
+		store.add(new Contact("1", "Bob", "Smith", "1234567890", "123 Maple Street"));
+		Contact view = store.get("1");
+		store.close();
+
+		assertThrows(IllegalStateException.class, () -> store.get("1"));
+		assertThrows(IllegalStateException.class, view::getFirstName);
+	}
+
+	/*
+	 * Tests that a file that is not a store is refused.
+	 */
+	@Test
+	void testRejectsForeignFile() throws IOException {
+		Files.writeString(file, "not a contact store");
+		assertThrows(IOException.class, () -> MappedContactStore.open(file));
+	}
+
+	/*
+	 * Tests ContactService on mapped storage, continuing IDs after a reopen.
+	 */
+	@Test
+	void testContactServiceStorage() throws IOException {
+		try (MappedContactStore store = MappedContactStore.open(file)) {
+			ContactService service = new ContactService(store);
+			service.addContact("John", "Smith", "1234567891", "123 Main Street");
+			service.addContact("Jane", "Doe", "0987654321", "456 Elm Street");
+			service.editFirstName("0", "Johnny");
+			service.deleteContact("1");
+		}
+
+		try (MappedContactStore store = MappedContactStore.open(file)) {
+			ContactService service = new ContactService(store);
+			assertEquals("Johnny", service.getContact("0").getFirstName());
+			assertNull(service.getContact("1"));
+
+			service.addContact("Ann", "Lee", "5555555555", "789 Pine Street");
+			assertEquals("Ann", service.getContact("2").getFirstName());
+			assertTrue(ContactService.contacts.isEmpty());
+		}
+	}
+
+
+	/*
+	 * Tests that slot versions count edits and survive a reopen.
+	 */
+	@Test
+	void testVersions() throws IOException {
+		try (MappedContactStore store = MappedContactStore.open(file)) {
+			ContactService service = new ContactService(store);
+			service.addContact("John", "Smith", "1234567891", "123 Main Street");
+			service.editFirstName("0", "Johnny");
+			assertFalse(service.updateContact("0", 0, "Jane", "Doe", "0987654321", "1 Elm Street"));
+			assertTrue(service.updateContact("0", 1, "Jane", "Doe", "0987654321", "1 Elm Street"));
+		}
+
+		try (MappedContactStore store = MappedContactStore.open(file)) {
+			assertEquals(2, store.get("0").getVersion());
+			assertEquals("Jane", store.get("0").getFirstName());
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,212 @@
+package Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import Project.AppointmentService;
+import Project.ContactService;
+import Project.TaskService;
+import Server.JsonReader;
+import Server.ServiceServer;
+
+/**
+ * End-to-end tests for the ServiceServer class.
+ * Tests each resource over real HTTP: adding, reading, replacing with and
+ * without a version, deleting, streamed listings and error responses.
+ *
+ * @author Stewart Withrow
+ */
+class ServiceServerTest {
+
+    private ServiceServer server;
+    private HttpClient client;
+    private TaskService taskService;
+    private ContactService contactService;
+    private AppointmentService appointmentService;
+
+	/*
+	 * Starts a server on a free port before each test.
+	 */
+    @BeforeEach
+    void setUp() throws Exception {
+        taskService = new TaskService();
+        contactService = new ContactService();
+        appointmentService = new AppointmentService();
+        server = new ServiceServer(new InetSocketAddress("127.0.0.1", 0), contactService, taskService,
+                appointmentService);
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+	/*
+	 * Stops the server and clears the shared maps after each test.
+	 */
+    @AfterEach
+    void tearDown() {
+        server.close();
+        client.close();
+        TaskService.tasks.clear();
+        ContactService.contacts.clear();
+        AppointmentService.appointments.clear();
+    }
+
+    /*
+     * Tests the task resources from adding through deleting.
+     */
+    @Test
+    void testTaskLifecycle() throws Exception {
+        HttpResponse<String> created = send("POST", "/tasks", "{\"name\":\"Write\",\"description\":\"Draft it\"}");
+        assertEquals(201, created.statusCode());
+        int id = ((Long) parse(created).get("id")).intValue();
+        assertEquals("Write", taskService.getTask(id).getName());
+
+        HttpResponse<String> read = send("GET", "/tasks/" + id, null);
+        assertEquals(200, read.statusCode());
+        assertTrue(read.headers().firstValue("Content-Type").orElse("").startsWith("application/json"));
+        Map<String, Object> task = parse(read);
+        assertEquals("Draft it", task.get("description"));
+        long version = (Long) task.get("version");
+
+        HttpResponse<String> replaced = send("PUT", "/tasks/" + id,
+                "{\"name\":\"Edit\",\"description\":\"Tidy it\",\"version\":" + version + "}");
+        assertEquals(200, replaced.statusCode());
+        assertEquals("Edit", parse(replaced).get("name"));
+
+        // The old version is stale now
+        HttpResponse<String> stale = send("PUT", "/tasks/" + id,
+                "{\"name\":\"Late\",\"description\":\"Too late\",\"version\":" + version + "}");
+        assertEquals(409, stale.statusCode());
+        assertEquals("Edit", taskService.getTask(id).getName());
+
+        // Without a version the last writer wins
+        assertEquals(200, send("PUT", "/tasks/" + id, "{\"name\":\"Last\",\"description\":\"Wins\"}").statusCode());
+        assertEquals("Last", taskService.getTask(id).getName());
+
+        assertEquals(204, send("DELETE", "/tasks/" + id, null).statusCode());
+        assertNull(taskService.getTask(id));
+        assertEquals(404, send("GET", "/tasks/" + id, null).statusCode());
+        assertEquals(404, send("DELETE", "/tasks/" + id, null).statusCode());
+    }
+
+    /*
+     * Tests the contact resources, whose IDs are strings.
+     */
+    @Test
+    void testContactLifecycle() throws Exception {
+        HttpResponse<String> created = send("POST", "/contacts",
+                "{\"firstName\":\"Ada\",\"lastName\":\"Lovelace\",\"phone\":\"5551234567\",\"address\":\"1 Main St\"}");
+        assertEquals(201, created.statusCode());
+        String id = (String) parse(created).get("id");
+
+        Map<String, Object> contact = parse(send("GET", "/contacts/" + id, null));
+        assertEquals("Lovelace", contact.get("lastName"));
+        assertEquals("5551234567", contact.get("phone"));
+
+        HttpResponse<String> replaced = send("PUT", "/contacts/" + id,
+                "{\"firstName\":\"Ada\",\"lastName\":\"King\",\"phone\":\"5557654321\",\"address\":\"2 Main St\","
+                        + "\"version\":" + contact.get("version") + "}");
+        assertEquals(200, replaced.statusCode());
+        assertEquals("King", contactService.getContact(id).getLastName());
+
+        assertEquals(204, send("DELETE", "/contacts/" + id, null).statusCode());
+        assertNull(contactService.getContact(id));
+    }
+
+    /*
+     * Tests the appointment resources, including listing a date range.
+     */
+    @Test
+    void testAppointmentsBetween() throws Exception {
+        long day = 24L * 60 * 60 * 1000;
+        long start = System.currentTimeMillis() + day;
+        for (int i = 0; i < 5; i++) {
+            HttpResponse<String> created = send("POST", "/appointments", "{\"date\":" + (start + i * day)
+                    + ",\"description\":\"Visit " + i + "\",\"durationMinutes\":30}");
+            assertEquals(201, created.statusCode());
+        }
+
+        String all = send("GET", "/appointments", null).body();
+        assertEquals(5, count(all, "\"description\""));
+
+        HttpResponse<String> range = send("GET",
+                "/appointments?from=" + (start + day) + "&to=" + (start + 4 * day), null);
+        assertEquals(200, range.statusCode());
+        assertEquals(3, count(range.body(), "\"description\""));
+        assertTrue(range.body().contains("\"Visit 1\""));
+        assertFalse(range.body().contains("\"Visit 0\""));
+
+        int id = appointmentService.getAppointmentsBetween(new Date(start), new Date(start + 1)).get(0).getApptID();
+        Map<String, Object> appointment = parse(send("GET", "/appointments/" + id, null));
+        assertEquals(start, appointment.get("date"));
+        assertEquals(30L, appointment.get("durationMinutes"));
+    }
+
+    /*
+     * Tests that a listing longer than one chunk is streamed in full.
+     */
+    @Test
+    void testStreamLongListing() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            taskService.addTask("Task" + i, "Description " + i);
+        }
+        HttpResponse<String> listing = send("GET", "/tasks", null);
+        assertEquals(200, listing.statusCode());
+        String body = listing.body();
+        assertTrue(body.startsWith("[{") && body.endsWith("}]"));
+        assertEquals(1000, count(body, "\"name\""));
+    }
+
+    /*
+     * Tests that bad requests answer with the right status.
+     */
+    @Test
+    void testErrors() throws Exception {
+        HttpResponse<String> invalid = send("POST", "/tasks", "{\"name\":null,\"description\":\"None\"}");
+        assertEquals(400, invalid.statusCode());
+        assertNotNull(parse(invalid).get("error"));
+
+        assertEquals(400, send("POST", "/tasks", "{\"name\":").statusCode());
+        assertEquals(400, send("POST", "/tasks", "{\"name\":5,\"description\":\"Five\"}").statusCode());
+        assertEquals(404, send("GET", "/tasks/abc", null).statusCode());
+        assertEquals(404, send("GET", "/tasks/1/2", null).statusCode());
+        assertEquals(405, send("DELETE", "/tasks", null).statusCode());
+        assertEquals(400, send("GET", "/appointments?from=soon", null).statusCode());
+
+        String large = "{\"name\":\"" + "x".repeat(70 * 1024) + "\"}";
+        assertEquals(413, send("POST", "/tasks", large).statusCode());
+        assertTrue(TaskService.tasks.isEmpty());
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws Exception {
+        HttpRequest.BodyPublisher publisher = body == null ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(body);
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path))
+                .method(method, publisher).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static Map<String, Object> parse(HttpResponse<String> response) {
+        byte[] bytes = response.body().getBytes(StandardCharsets.UTF_8);
+        return JsonReader.readObject(bytes, bytes.length);
+    }
+
+    private static int count(String text, String part) {
+        int count = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
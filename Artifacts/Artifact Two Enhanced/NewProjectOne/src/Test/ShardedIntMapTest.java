@@ -0,0 +1,99 @@
+package Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import Project.ShardedIntMap;
+
+/**
+ * Unit tests for the ShardedIntMap class.
+ * Tests shard selection, reads and writes across shards, iteration and
+ * the fork/join fan-out.
+ * 
+ * @author Stewart Withrow
+ */
+class ShardedIntMapTest {
+
+    /*
+     * Tests that the shard count is rounded up to a power of two and
+     * that out-of-range counts are rejected.
+     */
+    @Test
+    void testShardCount() {
+        assertEquals(1, new ShardedIntMap<String>().shardCount());
+        assertEquals(4, new ShardedIntMap<String>(3).shardCount());
+        assertEquals(8, new ShardedIntMap<String>(8).shardCount());
+        assertThrows(IllegalArgumentException.class, () -> new ShardedIntMap<String>(0));
+        assertThrows(IllegalArgumentException.class, () -> new ShardedIntMap<String>(ShardedIntMap.MAX_SHARDS + 1));
+    }
+
+    /*
+     * Tests that each key lives in the shard its low bits select.
+     */
+    @Test
+    void testPutGetAcrossShards() {
+        ShardedIntMap<String> map = new ShardedIntMap<>(4);
+        for (int i = 0; i < 100; i++) {
+            assertNull(map.put(i, "v" + i));
+        }
+        
+        assertEquals(100, map.size());
+        assertEquals(25, map.shard(1).size());
+        assertEquals(2, map.shardOf(6));
+        assertSame(map.shard(2), map.shardFor(6));
+        assertEquals("v6", map.shard(2).get(6));
+        assertEquals("v42", map.get(42));
+        assertTrue(map.containsKey("42"));
+        assertNull(map.get("x"));
+        assertEquals("v42", map.remove(42));
+        assertFalse(map.containsKey(42));
+        
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+
+    /*
+     * Tests that iteration visits every value in every shard once.
+     */
+    @Test
+    void testValueIterator() {
+        ShardedIntMap<Integer> map = new ShardedIntMap<>(8);
+        assertFalse(map.valueIterator().hasNext());
+        map.put(3, 3);
+        map.put(17, 17);
+        map.put(1000, 1000);
+        
+        Set<Integer> seen = new HashSet<>();
+        Iterator<Integer> values = map.valueIterator();
+        while (values.hasNext()) {
+            assertTrue(seen.add(values.next()));
+        }
+        assertEquals(Set.of(3, 17, 1000), seen);
+    }
+
+    /*
+     * Tests that reduceShards runs on every shard and combines the results,
+     * and that lockAll runs its action.
+     */
+    @Test
+    void testReduceShards() {
+        ShardedIntMap<Integer> map = new ShardedIntMap<>(16);
+        for (int i = 0; i < 1000; i++) {
+            map.put(i, i);
+        }
+        
+        long sum = map.reduceShards(shard -> {
+            long[] total = new long[1];
+            map.shard(shard).forEach((key, value) -> total[0] += value);
+            return total[0];
+        }, Long::sum);
+        assertEquals(999L * 1000 / 2, sum);
+        assertEquals(16, (int) map.reduceShards(shard -> 1, Integer::sum));
+        assertEquals("done", map.lockAll(() -> "done"));
+    }
+}
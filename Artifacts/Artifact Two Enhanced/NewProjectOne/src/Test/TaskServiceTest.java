@@ -2,10 +2,20 @@ package Test;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import Project.BatchResult;
+import Project.Task;
 import Project.TaskService;
 
 /**
@@ -221,4 +231,359 @@ class TaskServiceTest {
         });
     }
 
+    /*
+     * Tests a batch insert with good and bad rows.
+     */
+    @Test
+    void testAddTasksBatch() {
+        TaskService taskService = new TaskService();
+        List<String[]> rows = Arrays.asList(
+            new String[] {"John Smith", "Lorem ipsum dolor sit amet."},
+            new String[] {"", "Missing name"},
+            new String[] {"Greg Tippton", "This is a good description"});
+        
+        BatchResult result = taskService.addTasks(rows);
+        
+        assertEquals(2, result.getAddedCount());
+        assertEquals(1, result.getErrorCount());
+        assertEquals(1, result.getErrorRow(0));
+        assertEquals(2, TaskService.tasks.size());
+        assertEquals("Greg Tippton", TaskService.tasks.get(2).getName());
+        assertNull(TaskService.tasks.get(1));
+    }
+
+    /*
+     * Tests AND and OR keyword search, with name matches ranked first.
+     */
+    @Test
+    void testSearchTasks() {
+        TaskService taskService = new TaskService();
+        taskService.addTask("Fix login", "Users cannot log in after reset");
+        taskService.addTask("Write docs", "Explain how to fix a login loop");
+        taskService.addTask("Plan party", "Order cake and balloons");
+        
+        assertEquals(List.of(0, 1), taskService.searchTasks("LOGIN fix", true, 10));
+        assertEquals(List.of(0), taskService.searchTasks("login reset", true, 10));
+        assertEquals(List.of(0, 1, 2), taskService.searchTasks("login cake", false, 10).stream().sorted().toList());
+        assertEquals(List.of(0), taskService.searchTasks("login", false, 1));
+        assertTrue(taskService.searchTasks("login missing", true, 10).isEmpty());
+        assertTrue(taskService.searchTasks("!!", false, 10).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> taskService.searchTasks("login", true, 0));
+    }
+    
+    /*
+     * Tests that the keyword index follows edits and deletes.
+     */
+    @Test
+    void testSearchFollowsChanges() {
+        TaskService taskService = new TaskService();
+        taskService.addTask("Fix login", "Users cannot log in after reset");
+        taskService.addTask("Plan party", "Order cake and balloons");
+        
+        taskService.editTask(0, "Fix signup", "Users cannot sign up");
+        assertTrue(taskService.searchTasks("login", false, 10).isEmpty());
+        assertEquals(List.of(0), taskService.searchTasks("signup", true, 10));
+        
+        taskService.deleteTask(1);
+        assertTrue(taskService.searchTasks("cake", false, 10).isEmpty());
+    }
+    
+    /*
+     * Tests search over enough tasks to use skips and compact after deletes.
+     */
+    @Test
+    void testSearchManyTasks() {
+        TaskService taskService = new TaskService();
+        for (int i = 0; i < 5000; i++) {
+            taskService.addTask("Task " + i, (i % 7 == 0 ? "alpha " : "") + (i % 11 == 0 ? "beta" : "gamma"));
+        }
+        assertEquals(65, taskService.searchTasks("alpha beta", true, 100).size());
+        
+        for (int i = 0; i < 4000; i++) {
+            taskService.deleteTask(i);
+        }
+        List<Integer> both = taskService.searchTasks("alpha beta", true, 100);
+        assertEquals(13, both.size());
+        for (int taskID : both) {
+            assertTrue(taskID >= 4000 && taskID % 77 == 0);
+        }
+        assertEquals(List.of(4999), taskService.searchTasks("4999", true, 10));
+    }
+    
+    /*
+     * Tests that editing one task over and over compacts the keyword index.
+     */
+    @Test
+    void testEditsCompactIndex() {
+        TaskService taskService = new TaskService();
+        int taskID = taskService.addTask("Fix login", "Edit 0");
+        
+        // Each edit leaves a dead document; the index must shrink well before it holds them all
+        boolean compacted = false;
+        for (int i = 1; i <= 20000 && !compacted; i++) {
+            int before = TaskService.indexedDocuments();
+            taskService.editTask(taskID, "Fix login", "Edit " + i);
+            compacted = TaskService.indexedDocuments() < before;
+        }
+        assertTrue(compacted);
+        assertEquals(List.of(taskID), taskService.searchTasks("login", true, 10));
+    }
+    
+    /*
+     * Tests that dead documents left by edits do not change term weights,
+     * so ranking stays the same however often another task is edited.
+     */
+    @Test
+    void testRankingAfterEdits() {
+        TaskService taskService = new TaskService();
+        int quokka = taskService.addTask("Quokka", "quokka quokka");
+        int wombat = taskService.addTask("Wombat", "Plain note");
+        int edited = taskService.addTask("Quokka", "Edit 0");
+        taskService.addTask("Wombat", "Other note");
+        
+        // Each term is in two live tasks, so the task with more matches ranks first
+        assertEquals(List.of(quokka, wombat), taskService.searchTasks("quokka wombat", false, 2));
+        for (int i = 1; i <= 1000; i++) {
+            taskService.editTask(edited, "Quokka", "Edit " + i);
+        }
+        assertEquals(List.of(quokka, wombat), taskService.searchTasks("quokka wombat", false, 2));
+    }
+    
+    /*
+     * Tests that an edit replaces the task and a rejected edit changes nothing.
+     */
+    @Test
+    void testEditPublishesCopy() {
+        TaskService taskService = new TaskService();
+        taskService.addTask("Fix login", "Users cannot log in");
+        Task before = taskService.getTask(0);
+        
+        taskService.editTask(0, "Fix signup", "Users cannot sign up");
+        assertEquals("Fix login", before.getName());
+        assertEquals("Fix signup", taskService.getTask(0).getName());
+        assertNotSame(before, taskService.getTask(0));
+        
+        Task edited = taskService.getTask(0);
+        assertThrows(IllegalArgumentException.class, () -> taskService.editTask(0, "Renamed", null));
+        assertSame(edited, taskService.getTask(0));
+        assertEquals("Fix signup", edited.getName());
+        assertNull(taskService.getTask(1));
+        
+        // Published tasks only change through the service
+        assertThrows(IllegalStateException.class, () -> edited.setName("Sneaky"));
+        assertThrows(IllegalStateException.class, () -> edited.setDescription("Sneaky edit"));
+        assertEquals("Fix signup", taskService.getTask(0).getName());
+        assertEquals(1, taskService.getTask(0).getVersion());
+    }
+    
+    /*
+     * Tests that readers never see a name from one edit with the description of another.
+     */
+    @Test
+    void testReadersSeeWholeEdits() throws InterruptedException {
+        TaskService taskService = new TaskService();
+        taskService.addTask("Name 0", "Description 0");
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i <= 20000; i++) {
+                taskService.editTask(0, "Name " + i, "Description " + i);
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            Task task = taskService.getTask(0);
+            assertEquals(task.getName().substring(5), task.getDescription().substring(12));
+        }
+        writer.join();
+        assertEquals("Name 20000", taskService.getTask(0).getName());
+    }
+    
+    /*
+     * Tests that updateTask applies both fields only at the version read.
+     */
+    @Test
+    void testUpdateTaskVersion() {
+        TaskService taskService = new TaskService();
+        taskService.addTask("Fix login", "Users cannot log in");
+        Task read = taskService.getTask(0);
+        assertEquals(0, read.getVersion());
+        
+        taskService.editTask(0, "Fix signup", "Users cannot sign up");
+        assertFalse(taskService.updateTask(0, read.getVersion(), "Stale", "Lost update"));
+        assertEquals("Fix signup", taskService.getTask(0).getName());
+        
+        long current = taskService.getTask(0).getVersion();
+        assertEquals(1, current);
+        assertThrows(IllegalArgumentException.class,
+                () -> taskService.updateTask(0, current, "Renamed", null));
+        assertEquals("Fix signup", taskService.getTask(0).getName());
+        
+        assertTrue(taskService.updateTask(0, current, "Renamed", "New description"));
+        assertEquals("Renamed", taskService.getTask(0).getName());
+        assertEquals("New description", taskService.getTask(0).getDescription());
+        assertEquals(2, taskService.getTask(0).getVersion());
+        assertFalse(taskService.updateTask(5, 0, "Missing", "No such task"));
+    }
+    
+    /*
+     * Tests single-writer mode with many callers, errors and a restart.
+     */
+    @Test
+    void testSingleWriterMode() throws InterruptedException {
+        TaskService taskService = new TaskService();
+        taskService.startWriter(16);
+        assertThrows(IllegalStateException.class, () -> taskService.startWriter(16));
+        
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    taskService.addTask("Task", "Queued through the writer");
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4000, TaskService.tasks.size());
+        
+        assertThrows(IllegalArgumentException.class, () -> taskService.addTask(null, "No name"));
+        taskService.editTask(0, "Edited", "Through the writer");
+        assertTrue(taskService.updateTask(0, 1, "Updated", "Through the writer"));
+        assertEquals("Updated", taskService.getTask(0).getName());
+        
+        taskService.stopWriter();
+        taskService.deleteTask(0);
+        assertNull(taskService.getTask(0));
+        assertEquals(3999, TaskService.tasks.size());
+    }
+    
+    /*
+     * Tests the async changes: every add gets its own ID, and an invalid
+     * value fails the future instead of throwing.
+     */
+    @Test
+    void testAsyncChanges() {
+        TaskService taskService = new TaskService();
+        List<CompletableFuture<Integer>> adds = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            adds.add(taskService.addTaskAsync("Task", "Added on a virtual thread"));
+        }
+        boolean[] seen = new boolean[1000];
+        for (CompletableFuture<Integer> add : adds) {
+            int taskID = add.join();
+            assertFalse(seen[taskID]);
+            seen[taskID] = true;
+        }
+        assertEquals(1000, TaskService.tasks.size());
+        
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> taskService.addTaskAsync(null, "No name").join());
+        assertTrue(failure.getCause() instanceof IllegalArgumentException);
+        assertThrows(CompletionException.class, () -> taskService.editTaskAsync(0, "Renamed", null).join());
+        
+        taskService.editTaskAsync(0, "Renamed", "Edited later").join();
+        assertEquals("Renamed", taskService.getTask(0).getName());
+        assertFalse(taskService.updateTaskAsync(0, 0, "Stale", "Lost update").join());
+        assertTrue(taskService.updateTaskAsync(0, 1, "Updated", "Edited again").join());
+        assertEquals(2, taskService.addTasksAsync(Arrays.asList(new String[] {"One", "First"},
+                new String[] {"Two", "Second"})).join().getAddedCount());
+        taskService.deleteTaskAsync(0).join();
+        assertNull(taskService.getTask(0));
+        assertEquals(1001, TaskService.tasks.size());
+    }
+    
+    /*
+     * Tests streaming every task in chunks, cancelling part way and
+     * rejecting a request for nothing.
+     */
+    @Test
+    void testStreamTasks() throws InterruptedException {
+        TaskService taskService = new TaskService();
+        CollectingSubscriber<Task> empty = new CollectingSubscriber<>(10);
+        taskService.streamTasks().subscribe(empty);
+        assertTrue(empty.await().isEmpty());
+        assertTrue(empty.completed);
+        
+        for (int i = 0; i < 10000; i++) {
+            taskService.addTask("Task", "Streamed");
+        }
+        CollectingSubscriber<Task> all = new CollectingSubscriber<>(100);
+        taskService.streamTasks().subscribe(all);
+        boolean[] seen = new boolean[10000];
+        for (Task task : all.await()) {
+            assertFalse(seen[task.getTaskID()]);
+            seen[task.getTaskID()] = true;
+        }
+        assertEquals(10000, all.items.size());
+        assertTrue(all.completed);
+        
+        CollectingSubscriber<Task> cancelled = new CollectingSubscriber<>(100, 250);
+        taskService.streamTasks().subscribe(cancelled);
+        cancelled.await();
+        Thread.sleep(50);
+        assertEquals(250, cancelled.items.size());
+        assertFalse(cancelled.completed);
+        assertNull(cancelled.error);
+        
+        CollectingSubscriber<Task> invalid = new CollectingSubscriber<>(0);
+        taskService.streamTasks().subscribe(invalid);
+        invalid.await();
+        assertTrue(invalid.error instanceof IllegalArgumentException);
+        assertTrue(invalid.items.isEmpty());
+    }
+    
+    /*
+     * Tests partitioned mode: tasks added from many threads get distinct
+     * IDs from their shards, batches and scans cover every shard, each
+     * shard gets a writer, and going back to one shard keeps every task.
+     */
+    @Test
+    void testPartitionedMode() {
+        TaskService taskService = new TaskService();
+        taskService.addTask("Before", "Added before partitioning");
+        taskService.partition(3);
+        List<CompletableFuture<Integer>> adds = new ArrayList<>();
+        try {
+            assertEquals(4, TaskService.tasks.shardCount());
+            assertEquals("Before", taskService.getTask(0).getName());
+            
+            for (int i = 0; i < 200; i++) {
+                adds.add(taskService.addTaskAsync("Task" + i, "Partitioned"));
+            }
+            Set<Integer> ids = new HashSet<>();
+            for (CompletableFuture<Integer> add : adds) {
+                int taskID = add.join();
+                assertTrue(taskID > 0);
+                assertTrue(ids.add(taskID));
+            }
+            
+            BatchResult batch = taskService.addTasks(Arrays.asList(new String[] {"One", "First"},
+                    new String[] {null, "No name"}, new String[] {"Three", "Third"}));
+            assertEquals(2, batch.getAddedCount());
+            assertEquals("Three", taskService.getTask(batch.getID(2)).getName());
+            assertFalse(ids.contains(batch.getID(0)) || ids.contains(batch.getID(2)));
+            assertEquals(203, TaskService.tasks.size());
+            assertEquals(200, taskService.findTasks(task -> task.getDescription().equals("Partitioned")).size());
+            
+            int edited = adds.get(0).join();
+            taskService.editTask(edited, "Edited", "In its shard");
+            assertEquals("Edited", TaskService.tasks.get(edited).getName());
+            taskService.deleteTask(adds.get(1).join());
+            
+            taskService.startWriter(16);
+            assertThrows(IllegalStateException.class, () -> taskService.partition(1));
+            int written = taskService.addTask("Written", "By a shard writer");
+            assertTrue(ids.add(written));
+            taskService.stopWriter();
+        } finally {
+            taskService.partition(1);
+        }
+        assertEquals(1, TaskService.tasks.shardCount());
+        assertEquals(203, TaskService.tasks.size());
+        assertEquals("Edited", TaskService.tasks.get(adds.get(0).join()).getName());
+        assertTrue(taskService.addTask("After", "Consecutive again") > 203);
+        assertThrows(IllegalArgumentException.class, () -> taskService.partition(0));
+        assertThrows(IllegalArgumentException.class, () -> taskService.findTasks(null));
+    }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import Project.Task;
+import Project.ValidationError;
 
 /**
  * Unit tests for the Task class.
@@ -297,4 +298,44 @@ class TaskTest {
         Assertions.assertTrue(exception.getMessage().contains("illegal characters"));
     }
 
-}
\ No newline at end of file
+    /*
+     * Tests the Task constructor with a non-numeric ID.
+     */
+    @Test
+    void testTaskIDNonNumeric() {
+        String taskID = "abc";
+        String name = "John Smith";
+        String description = "Lorem ipsum dolor sit amet.";
+        
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new Task(taskID, name, description);
+        });
+    }
+
+    /*
+     * Tests the numeric ID constructor.
+     */
+    @Test
+    void testTaskIntID() {
+        Task task = new Task(5, "John Smith", "Lorem ipsum dolor sit amet.");
+        
+        Assertions.assertEquals(5, task.getTaskID());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            new Task(-1, "John Smith", "Lorem ipsum dolor sit amet.");
+        });
+    }
+
+    /*
+     * Tests the non-throwing field checks.
+     */
+    @Test
+    void testCheckFields() {
+        Assertions.assertEquals(0, Task.checkFields("1", "John Smith", "Lorem ipsum dolor sit amet."));
+        Assertions.assertEquals(Task.FIELD_TASK_ID | Task.FIELD_DESCRIPTION, 
+                Task.checkFields("abc", "John Smith", null));
+        Assertions.assertEquals(ValidationError.NOT_NUMERIC, Task.checkTaskID(-1));
+        Assertions.assertEquals(ValidationError.ILLEGAL_CHARACTERS, Task.checkName("Drop;"));
+        Assertions.assertEquals("Task ID must be a non-negative number.", 
+                Task.errorMessage(Task.FIELD_TASK_ID, ValidationError.NOT_NUMERIC));
+    }
+}
@@ -0,0 +1,351 @@
+package Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import Project.AppointmentService;
+import Project.ContactService;
+import Project.TaskService;
+import Project.WriteAheadLog;
+import Project.WriteAheadLog.SyncPolicy;
+
+/**
+ * Unit tests for the WriteAheadLog class.
+ * Tests that changes made through logged services survive a reopen,
+ * with and without snapshots.
+ * 
+ * @author Stewart Withrow
+ */
+class WriteAheadLogTest {
+
+	private Path directory;
+
+	/*
+	 * Creates an empty log directory for each test.
+	 */
+	@BeforeEach
+	void setUp() throws IOException {
+		directory = Files.createTempDirectory("wal");
+	}
+
+	/*
+	 * Clears the stores and deletes the log directory.
+	 */
+	@AfterEach
+	void tearDown() throws IOException {
+		clearStores();
+		try (Stream<Path> paths = Files.walk(directory)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	/*
+	 * Tests that adds, edits and deletes of every kind are replayed.
+	 */
+	@Test
+	void testReplayRestoresStores() throws IOException {
+		Date date = new Date(System.currentTimeMillis() + 3_600_000L);
+		try (WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.EVERY_WRITE, 0, true)) {
+			ContactService contacts = new ContactService(log);
+			contacts.addContact("John", "Smith", "1234567891", "123 Main Street");
+			contacts.addContact("Mark", "Hall", "9876543210", "123 Holly Street");
+			contacts.editFirstName("0", "Greg");
+			contacts.deleteContact("1");
+
+			TaskService tasks = new TaskService(log);
+			tasks.addTask("John Smith", "Lorem ipsum dolor sit amet.");
+			tasks.editTask(0, "Mark Hall", "Updated description.");
+
+			AppointmentService appointments = new AppointmentService(false, log);
+			appointments.addAppointment(date, "Lorem ipsum dolor sit amet.", 30);
+			appointments.addAppointment(date, "Second appointment.");
+			appointments.deleteAppointment(0);
+		}
+		clearStores();
+
+		try (WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.EVERY_WRITE, 0, true)) {
+			Assertions.assertEquals(0, log.getAppendedCount());
+			Assertions.assertEquals(1, ContactService.contacts.size());
+			Assertions.assertEquals("Greg", ContactService.contacts.get("0").getFirstName());
+			Assertions.assertEquals("Mark Hall", TaskService.tasks.get(0).getName());
+			Assertions.assertEquals("Updated description.", TaskService.tasks.get(0).getDescription());
+			Assertions.assertNull(AppointmentService.appointments.get(0));
+			Assertions.assertEquals("Second appointment.", AppointmentService.appointments.get(1).getDescription());
+			Assertions.assertEquals(1, new AppointmentService().countAppointmentsBetween(date, new Date(date.getTime() + 1)));
+		}
+	}
+
+	/*
+	 * Tests that services on a reopened log continue after the recovered IDs.
+	 */
+	@Test
+	void testIDsContinueAfterReplay() throws IOException {
+		try (WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.OS, 0, false)) {
+			ContactService service = new ContactService(log);
+			service.addContact("John", "Smith", "1234567891", "123 Main Street");
+			service.addContact("Mark", "Hall", "9876543210", "123 Holly Street");
+			service.deleteContact("1");
+		}
+		clearStores();
+
+		try (WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.OS, 0, false)) {
+			new ContactService(log).addContact("Greg", "Hall", "9876543210", "123 Holly Street");
+			Assertions.assertEquals("John", ContactService.contacts.get("0").getFirstName());
+			Assertions.assertNull(ContactService.contacts.get("1"));
+			Assertions.assertEquals("Greg", ContactService.contacts.get("2").getFirstName());
+		}
+	}
+
+	/*
+	 * Tests that changes the log rejects are not left visible in the stores.
+	 */
+	@Test
+	void testClosedLogLeavesStoresUnchanged() throws IOException {
+		WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.OS, 0, false);
+		TaskService tasks = new TaskService(log);
+		ContactService contacts = new ContactService(log);
+		tasks.addTask("John Smith", "Lorem ipsum dolor sit amet.");
+		contacts.addContact("John", "Smith", "1234567891", "123 Main Street");
+		log.close();
+
+		Assertions.assertThrows(IllegalStateException.class, () -> tasks.addTask("Mark Hall", "Second task."));
+		Assertions.assertThrows(IllegalStateException.class,
+				() -> contacts.addContact("Mark", "Hall", "9876543210", "123 Holly Street"));
+		Assertions.assertThrows(IllegalStateException.class, () -> tasks.editTask(0, "Greg", "Edited."));
+		Assertions.assertThrows(IllegalStateException.class, () -> tasks.deleteTask(0));
+		Assertions.assertThrows(IllegalStateException.class, () -> contacts.deleteContact("0"));
+
+		Assertions.assertEquals(1, TaskService.tasks.size());
+		Assertions.assertEquals("John Smith", TaskService.tasks.get(0).getName());
+		Assertions.assertTrue(tasks.searchTasks("Mark", false, 10).isEmpty());
+		Assertions.assertEquals(1, ContactService.contacts.size());
+		Assertions.assertNotNull(ContactService.contacts.get("0"));
+		Assertions.assertTrue(contacts.findByLastName("Hall").isEmpty());
+	}
+
+	/*
+	 * Tests that a half-written record at the end is cut off on replay.
+	 */
+	@Test
+	void testTornTailIsTruncated() throws IOException {
+		try (WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.INTERVAL, 5, true)) {
+			new TaskService(log).addTask("John Smith", "Lorem ipsum dolor sit amet.");
+		}
+		Path segment = onlyFile("log-");
+		long good = Files.size(segment);
+		Files.write(segment, new byte[] {0, 0, 0, 20, 1, 2, 3}, StandardOpenOption.APPEND);
+		clearStores();
+
+		try (WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.INTERVAL, 5, true)) {
+			Assertions.assertEquals(good, Files.size(segment));
+			Assertions.assertEquals(1, TaskService.tasks.size());
+			new TaskService(log).addTask("Mark Hall", "Second task.");
+		}
+		clearStores();
+
+		try (WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.INTERVAL, 5, true)) {
+			Assertions.assertEquals(0, log.getAppendedCount());
+			Assertions.assertEquals("Mark Hall", TaskService.tasks.get(1).getName());
+		}
+	}
+
+	/*
+	 * Tests that an appointment whose date has since passed is still restored.
+	 */
+	@Test
+	void testReplayKeepsPastAppointments() throws Exception {
+		Date soon = new Date(System.currentTimeMillis() + 50);
+		try (WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.EVERY_WRITE, 0, false)) {
+			new AppointmentService(false, log).addAppointment(soon, "Lorem ipsum dolor sit amet.");
+		}
+		clearStores();
+		Thread.sleep(100);
+
+		try (WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.EVERY_WRITE, 0, false)) {
+			Assertions.assertEquals(0, log.getAppendedCount());
+			Assertions.assertEquals(soon, AppointmentService.appointments.get(0).getDate());
+		}
+	}
+
+	/*
+	 * Tests that concurrent writers with group commit are all recovered.
+	 */
+	@Test
+	void testConcurrentGroupCommit() throws Exception {
+		try (WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.EVERY_WRITE, 0, true)) {
+			ContactService service = new ContactService(log);
+			Thread[] threads = new Thread[8];
+			for (int i = 0; i < threads.length; i++) {
+				threads[i] = new Thread(() -> {
+					for (int j = 0; j < 50; j++) {
+						service.addContact("John", "Smith", "1234567891", "123 Main Street");
+					}
+				});
+				threads[i].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			Assertions.assertEquals(400, log.getAppendedCount());
+		}
+		clearStores();
+
+		try (WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.EVERY_WRITE, 0, true)) {
+			Assertions.assertEquals(0, log.getAppendedCount());
+			Assertions.assertEquals(400, ContactService.contacts.size());
+		}
+	}
+
+	/*
+	 * Tests that a closed log rejects further changes.
+	 */
+	@Test
+	void testClosedLogRejectsWrites() throws IOException {
+		WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.OS, 0, true);
+		ContactService service = new ContactService(log);
+		log.close();
+
+		Assertions.assertThrows(IllegalStateException.class, () -> {
+			service.addContact("John", "Smith", "1234567891", "123 Main Street");
+		});
+	}
+
+	/*
+	 * Tests that the interval policy requires a positive interval.
+	 */
+	@Test
+	void testIntervalMustBePositive() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> {
+			WriteAheadLog.open(directory, SyncPolicy.INTERVAL, 0, true);
+		});
+	}
+
+	/*
+	 * Tests that a snapshot replaces the log and restores the same state.
+	 */
+	@Test
+	void testSnapshotReplacesLog() throws IOException {
+		Date date = new Date(System.currentTimeMillis() + 3_600_000L);
+		try (WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.EVERY_WRITE, 0, true)) {
+			ContactService contacts = new ContactService(log);
+			contacts.addContact("John", "Smith", "1234567891", "123 Main Street");
+			contacts.addContact("Mark", "Hall", "9876543210", "123 Holly Street");
+			contacts.deleteContact("1");
+			TaskService tasks = new TaskService(log);
+			tasks.addTask("John Smith", "Lorem ipsum dolor sit amet.");
+			new AppointmentService(false, log).addAppointment(date, "Lorem ipsum dolor sit amet.", 30);
+			log.snapshot();
+
+			contacts.editFirstName("0", "Greg");
+			log.snapshot();
+			tasks.addTask("Mark Hall", "Second task.");
+		}
+		clearStores();
+
+		Assertions.assertEquals(1, countFiles("snapshot-"));
+		Assertions.assertEquals(1, countFiles("log-"));
+		try (WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.EVERY_WRITE, 0, true)) {
+			Assertions.assertEquals(1, ContactService.contacts.size());
+			Assertions.assertEquals("Greg", ContactService.contacts.get("0").getFirstName());
+			Assertions.assertEquals(2, TaskService.tasks.size());
+			Assertions.assertEquals(30, AppointmentService.appointments.get(0).getDurationMinutes());
+
+			// The deleted contact is gone from the snapshot but its ID stays used
+			new ContactService(log).addContact("Greg", "Hall", "9876543210", "123 Holly Street");
+			Assertions.assertNotNull(ContactService.contacts.get("2"));
+		}
+	}
+
+	/*
+	 * Tests that scheduled snapshots run in the background.
+	 */
+	@Test
+	void testScheduledSnapshots() throws Exception {
+		try (WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.OS, 0, true)) {
+			new TaskService(log).addTask("John Smith", "Lorem ipsum dolor sit amet.");
+			log.scheduleSnapshots(10);
+			for (int i = 0; i < 200 && countFiles("snapshot-") == 0; i++) {
+				Thread.sleep(10);
+			}
+			Assertions.assertThrows(IllegalStateException.class, () -> log.scheduleSnapshots(10));
+		}
+		Assertions.assertEquals(1, countFiles("snapshot-"));
+		clearStores();
+
+		try (WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.OS, 0, true)) {
+			Assertions.assertEquals(0, log.getAppendedCount());
+			Assertions.assertEquals("John Smith", TaskService.tasks.get(0).getName());
+		}
+	}
+
+	/*
+	 * Tests that a closed log cannot take a snapshot.
+	 */
+	@Test
+	void testSnapshotAfterClose() throws IOException {
+		WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.OS, 0, true);
+		log.close();
+
+		Assertions.assertThrows(IllegalStateException.class, () -> log.snapshot());
+	}
+
+	private Path onlyFile(String prefix) throws IOException {
+		try (Stream<Path> paths = Files.list(directory)) {
+			return paths.filter(path -> path.getFileName().toString().startsWith(prefix)).findFirst().get();
+		}
+	}
+
+	private long countFiles(String prefix) throws IOException {
+		try (Stream<Path> paths = Files.list(directory)) {
+			return paths.filter(path -> path.getFileName().toString().startsWith(prefix)).count();
+		}
+	}
+
+	private static void clearStores() {
+		ContactService.contacts.clear();
+		TaskService.tasks.clear();
+		AppointmentService.appointments.clear();
+	}
+
+	/*
+	 * Tests that changes applied in writer batches are all logged and replayed.
+	 */
+	@Test
+	void testSingleWriterReplay() throws IOException, InterruptedException {
+		try (WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.EVERY_WRITE, 0, true)) {
+			TaskService tasks = new TaskService(log);
+			tasks.startWriter(64);
+			Thread[] threads = new Thread[8];
+			for (int t = 0; t < threads.length; t++) {
+				threads[t] = new Thread(() -> {
+					for (int i = 0; i < 100; i++) {
+						tasks.addTask("John Smith", "Lorem ipsum dolor sit amet.");
+					}
+				});
+				threads[t].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			tasks.editTask(0, "Mark Hall", "Updated description.");
+			tasks.stopWriter();
+		}
+		clearStores();
+
+		try (WriteAheadLog log = WriteAheadLog.open(directory, SyncPolicy.EVERY_WRITE, 0, true)) {
+			Assertions.assertEquals(0, log.getAppendedCount());
+			Assertions.assertEquals(800, TaskService.tasks.size());
+			Assertions.assertEquals("Mark Hall", TaskService.tasks.get(0).getName());
+		}
+	}
+}
\ No newline at end of file